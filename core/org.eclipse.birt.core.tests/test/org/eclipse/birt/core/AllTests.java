@@ -49,7 +49,14 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.ArchiveViewTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.archive.compound.UpgradeArchiveTest.class );
 
+		/* in package: org.eclipse.birt.core.archive.compression */
+		suite.addTestSuite( org.eclipse.birt.core.archive.compression.CompressedArchiveTest.class );
+
+		/* in package: org.eclipse.birt.core.archive.store */
+		suite.addTestSuite( org.eclipse.birt.core.archive.store.DocumentStoreTest.class );
+
 		/* in package: org.eclipse.birt.core.btree */
+		suite.addTestSuite( org.eclipse.birt.core.btree.BTreeBuilderTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.btree.BTreeCursorTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.btree.BTreeMultipleThreadTest.class );
 		suite.addTestSuite( org.eclipse.birt.core.btree.BTreeTest.class );
@@ -0,0 +1,324 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+
+public class CompressedArchiveTest extends TestCase
+{
+
+	static final String TEST_FOLDER = "./utest/";
+	static final String ARCHIVE_FILE = TEST_FOLDER + "compressed.rptdocument";
+
+	private ArchiveFile archive;
+
+	public void setUp( ) throws IOException
+	{
+		new File( TEST_FOLDER ).mkdirs( );
+		archive = new ArchiveFile( ARCHIVE_FILE, "rw" );
+	}
+
+	public void tearDown( ) throws IOException
+	{
+		archive.close( );
+		new File( ARCHIVE_FILE ).delete( );
+		new File( TEST_FOLDER ).delete( );
+	}
+
+	public void testCodecs( ) throws IOException
+	{
+		ICompressionCodec[] codecs = new ICompressionCodec[]{new LZCodec( ),
+				new DeflateCodec( )};
+		for ( int i = 0; i < codecs.length; i++ )
+		{
+			ICompressionCodec codec = codecs[i];
+			assertSame( codec.getClass( ), CompressionCodecs.getCodec( codec.getId( ) )
+					.getClass( ) );
+
+			for ( int length = 0; length < 40; length++ )
+			{
+				assertRoundTrip( codec, createText( length ) );
+			}
+			assertRoundTrip( codec, new byte[100000] );
+			assertRoundTrip( codec, createRandom( 100000 ) );
+			byte[] text = createText( 100000 );
+			assertTrue( assertRoundTrip( codec, text ) < text.length / 4 );
+		}
+	}
+
+	public void testCorruptedBlock( )
+	{
+		LZCodec codec = new LZCodec( );
+		byte[] text = createText( 1000 );
+		byte[] compressed = new byte[codec.getMaxCompressedLength( text.length )];
+		int length = codec.compress( text, 0, text.length, compressed, 0 );
+		try
+		{
+			codec.decompress( compressed,
+					0,
+					length / 2,
+					new byte[text.length],
+					0,
+					text.length );
+			fail( );
+		}
+		catch ( IOException ex )
+		{
+		}
+	}
+
+	public void testRandomAccess( ) throws IOException
+	{
+		byte[] expected = new byte[300000];
+		ArchiveWriter writer = new ArchiveWriter( archive );
+		CompressedArchiveWriter compressedWriter = new CompressedArchiveWriter( writer,
+				new LZCodec( ) );
+		compressedWriter.initialize( );
+
+		RAOutputStream out = compressedWriter.createRandomAccessStream( "/content" );
+		byte[] text = createText( 280000 );
+		write( out, expected, 0, text );
+		// patch the first block after it is compressed
+		write( out, expected, 10, createRandom( 100 ) );
+		out.seek( 70000 );
+		out.writeInt( 0x12345678 );
+		write( expected, 70000, new byte[]{0x12, 0x34, 0x56, 0x78} );
+		// leave a gap after the end
+		write( out, expected, 290000, createRandom( 10000 ) );
+		assertEquals( expected.length, out.length( ) );
+		out.close( );
+
+		compressedWriter.finish( );
+
+		IDocArchiveReader reader = new ArchiveReader( archive );
+		assertTrue( CompressedArchiveReader.isCompressed( reader ) );
+		RAInputStream stored = reader.getStream( "/content" );
+		assertTrue( stored.length( ) < expected.length / 2 );
+		stored.close( );
+
+		CompressedArchiveReader compressedReader = new CompressedArchiveReader( reader );
+		RAInputStream in = compressedReader.getStream( "/content" );
+		assertEquals( expected.length, in.length( ) );
+		assertRead( in, expected, 0, 1000 );
+		assertRead( in, expected, 250000, 50000 );
+		assertRead( in, expected, 65530, 20 );
+		in.seek( 70000 );
+		assertEquals( 0x12345678, in.readInt( ) );
+		assertRead( in, expected, 0, expected.length );
+		in.seek( expected.length );
+		assertEquals( -1, in.read( ) );
+		in.close( );
+		compressedReader.close( );
+	}
+
+	public void testReopen( ) throws IOException
+	{
+		byte[] expected = new byte[200000];
+		CompressedArchiveWriter writer = new CompressedArchiveWriter( new ArchiveWriter( archive ),
+				new DeflateCodec( ) );
+		writer.initialize( );
+		RAOutputStream out = writer.createRandomAccessStream( "/content" );
+		write( out, expected, 0, createText( 150000 ) );
+		out.close( );
+
+		out = writer.openRandomAccessStream( "/content" );
+		assertEquals( 150000, out.length( ) );
+		write( out, expected, 100000, createRandom( 100000 ) );
+		out.close( );
+
+		RAInputStream in = writer.getInputStream( "/content" );
+		assertRead( in, expected, 0, expected.length );
+		in.close( );
+		writer.finish( );
+	}
+
+	public void testFlush( ) throws IOException
+	{
+		byte[] expected = new byte[100000];
+		CompressedArchiveWriter writer = new CompressedArchiveWriter( new ArchiveWriter( archive ),
+				new LZCodec( ) );
+		writer.initialize( );
+		RAOutputStream out = writer.createRandomAccessStream( "/content" );
+		write( out, expected, 0, createText( 100000 ) );
+		out.flush( );
+
+		// the stream has no index until it is closed
+		CompressedArchiveReader reader = new CompressedArchiveReader( new ArchiveReader( archive ) );
+		RAInputStream in = reader.getStream( "/content" );
+		assertRead( in, expected, 0, expected.length );
+
+		write( out, expected, 50000, createRandom( 10 ) );
+		out.close( );
+		in.refresh( );
+		assertRead( in, expected, 0, expected.length );
+		in.close( );
+		writer.finish( );
+	}
+
+	public void testRepeatedPatches( ) throws IOException
+	{
+		byte[] expected = new byte[200000];
+		CompressedArchiveWriter writer = new CompressedArchiveWriter( new ArchiveWriter( archive ),
+				new LZCodec( ) );
+		writer.initialize( );
+		RAOutputStream out = writer.createRandomAccessStream( "/content" );
+		write( out, expected, 0, createText( expected.length ) );
+		out.flush( );
+
+		// patch the blocks and flush them again and again, like the writers
+		// of the links of a document
+		patch( out, expected, 0, 500 );
+		long length = getStoredLength( "/content" );
+		patch( out, expected, 500, 1000 );
+		// the patched blocks are written over their last records
+		assertEquals( length, getStoredLength( "/content" ) );
+
+		// the stream has no index until it is closed, so its records are
+		// scanned
+		CompressedArchiveReader reader = new CompressedArchiveReader( new ArchiveReader( archive ) );
+		RAInputStream in = reader.getStream( "/content" );
+		assertRead( in, expected, 0, expected.length );
+		in.close( );
+		out.close( );
+
+		RAOutputStream reference = writer.createRandomAccessStream( "/reference" );
+		reference.write( expected );
+		reference.close( );
+		writer.finish( );
+		assertTrue( getStoredLength( "/content" ) < getStoredLength( "/reference" ) * 5 / 4 );
+
+		in = new CompressedArchiveReader( new ArchiveReader( archive ) ).getStream( "/content" );
+		assertRead( in, expected, 0, expected.length );
+		in.close( );
+	}
+
+	public void testUncompressedStream( ) throws IOException
+	{
+		ArchiveWriter writer = new ArchiveWriter( archive );
+		RAOutputStream out = writer.createRandomAccessStream( "/raw" );
+		byte[] text = createText( 1000 );
+		out.write( text );
+		out.close( );
+
+		CompressedArchiveWriter compressedWriter = new CompressedArchiveWriter( writer,
+				new LZCodec( ) );
+		out = compressedWriter.openRandomAccessStream( "/raw" );
+		out.seek( 1000 );
+		out.writeInt( 1 );
+		out.close( );
+
+		RAInputStream in = new CompressedArchiveReader( new ArchiveReader( archive ) ).getStream( "/raw" );
+		assertEquals( 1004, in.length( ) );
+		byte[] b = new byte[1000];
+		in.readFully( b, 0, b.length );
+		assertTrue( Arrays.equals( text, b ) );
+		assertEquals( 1, in.readInt( ) );
+		in.close( );
+	}
+
+	private void patch( RAOutputStream out, byte[] expected, int from, int to )
+			throws IOException
+	{
+		for ( int i = from; i < to; i++ )
+		{
+			int offset = ( i % 20 ) * 9973;
+			out.seek( offset );
+			out.writeInt( i );
+			write( expected, offset, new byte[]{0, 0, (byte) ( i >> 8 ),
+					(byte) i} );
+			out.flush( );
+		}
+	}
+
+	private long getStoredLength( String name ) throws IOException
+	{
+		RAInputStream in = new ArchiveReader( archive ).getStream( name );
+		long length = in.length( );
+		in.close( );
+		return length;
+	}
+
+	private int assertRoundTrip( ICompressionCodec codec, byte[] data )
+			throws IOException
+	{
+		byte[] compressed = new byte[codec.getMaxCompressedLength( data.length ) + 3];
+		int length = codec.compress( data, 0, data.length, compressed, 3 );
+		assertTrue( length <= codec.getMaxCompressedLength( data.length ) );
+		byte[] decompressed = new byte[data.length + 2];
+		codec.decompress( compressed, 3, length, decompressed, 2, data.length );
+		for ( int i = 0; i < data.length; i++ )
+		{
+			assertEquals( data[i], decompressed[i + 2] );
+		}
+		return length;
+	}
+
+	private void assertRead( RAInputStream in, byte[] expected, int offset,
+			int length ) throws IOException
+	{
+		in.seek( offset );
+		byte[] b = new byte[length];
+		in.readFully( b, 0, length );
+		for ( int i = 0; i < length; i++ )
+		{
+			assertEquals( expected[offset + i], b[i] );
+		}
+	}
+
+	private void write( RAOutputStream out, byte[] expected, int offset,
+			byte[] data ) throws IOException
+	{
+		out.seek( offset );
+		out.write( data );
+		write( expected, offset, data );
+	}
+
+	private void write( byte[] expected, int offset, byte[] data )
+	{
+		System.arraycopy( data, 0, expected, offset, data.length );
+	}
+
+	private byte[] createText( int length )
+	{
+		StringBuffer buffer = new StringBuffer( );
+		int row = 0;
+		while ( buffer.length( ) < length )
+		{
+			buffer.append( "<row id=\"" ).append( row++ ).append( "\">value</row>" );
+		}
+		byte[] b = new byte[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			b[i] = (byte) buffer.charAt( i );
+		}
+		return b;
+	}
+
+	private byte[] createRandom( int length )
+	{
+		byte[] b = new byte[length];
+		new Random( length ).nextBytes( b );
+		return b;
+	}
+}
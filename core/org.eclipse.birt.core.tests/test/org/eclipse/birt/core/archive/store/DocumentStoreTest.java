@@ -0,0 +1,414 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveEntry;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+
+public class DocumentStoreTest extends TestCase
+{
+
+	static final String TEST_FOLDER = "./utest/store/";
+
+	private DocumentStore store;
+
+	public void setUp( ) throws IOException
+	{
+		deleteFolder( new File( TEST_FOLDER ) );
+		store = new DocumentStore( TEST_FOLDER );
+		store.setMinSharedSize( 1024 );
+	}
+
+	public void tearDown( ) throws IOException
+	{
+		deleteFolder( new File( TEST_FOLDER ) );
+	}
+
+	public void testSharedStreams( ) throws IOException
+	{
+		byte[] data = createData( 10000, 1 );
+		writeDocument( "a.rptdocument", new String[]{"/data", "/small"},
+				new byte[][]{data, createData( 100, 2 )} );
+		writeDocument( "b.rptdocument", new String[]{"/data", "/other"},
+				new byte[][]{data, createData( 5000, 3 )} );
+
+		assertEquals( 2, store.listDocuments( ).size( ) );
+		// the data stream is saved once and linked twice
+		assertEquals( 2, countStreamFiles( ) );
+		String hash = getLinks( "a.rptdocument" ).get( "/data" ).hash;
+		assertEquals( 2, store.getReferenceCount( hash ) );
+		// the small stream stays in the document
+		assertNull( getLinks( "a.rptdocument" ).get( "/small" ) );
+
+		IDocArchiveReader reader = store.openReader( "a.rptdocument" );
+		try
+		{
+			assertTrue( reader.exists( "/data" ) );
+			assertTrue( reader.exists( "small" ) );
+			assertFalse( reader.exists( StreamLink.LINK_STREAM ) );
+			List<String> streams = reader.listAllStreams( );
+			assertEquals( 2, streams.size( ) );
+			assertTrue( streams.contains( "/data" ) );
+			assertTrue( streams.contains( "/small" ) );
+			assertStream( reader, "/data", data );
+			assertStream( reader, "/small", createData( 100, 2 ) );
+		}
+		finally
+		{
+			reader.close( );
+		}
+
+		// a new store counts the links of the existing documents
+		DocumentStore other = new DocumentStore( TEST_FOLDER );
+		assertEquals( 2, other.getReferenceCount( hash ) );
+	}
+
+	public void testRemoveDocument( ) throws IOException
+	{
+		byte[] data = createData( 10000, 1 );
+		writeDocument( "a.rptdocument", new String[]{"/data", "/a"},
+				new byte[][]{data, createData( 2000, 2 )} );
+		writeDocument( "b.rptdocument", new String[]{"/data"},
+				new byte[][]{data} );
+		String hash = getLinks( "b.rptdocument" ).get( "/data" ).hash;
+		assertEquals( 2, countStreamFiles( ) );
+
+		assertTrue( store.removeDocument( "a.rptdocument" ) );
+		assertFalse( store.exists( "a.rptdocument" ) );
+		assertFalse( store.removeDocument( "a.rptdocument" ) );
+		assertEquals( 1, store.getReferenceCount( hash ) );
+		assertEquals( 1, store.collectGarbage( ) );
+		assertEquals( 1, countStreamFiles( ) );
+
+		IDocArchiveReader reader = store.openReader( "b.rptdocument" );
+		try
+		{
+			assertStream( reader, "/data", data );
+		}
+		finally
+		{
+			reader.close( );
+		}
+
+		assertTrue( store.removeDocument( "b.rptdocument" ) );
+		assertEquals( 0, store.getReferenceCount( hash ) );
+		assertEquals( 1, store.collectGarbage( ) );
+		assertEquals( 0, countStreamFiles( ) );
+	}
+
+	public void testReplaceDocument( ) throws IOException
+	{
+		byte[] data1 = createData( 10000, 1 );
+		byte[] data2 = createData( 10000, 2 );
+		writeDocument( "folder/a.rptdocument", new String[]{"/data"},
+				new byte[][]{data1} );
+		writeDocument( "folder/a.rptdocument", new String[]{"/data"},
+				new byte[][]{data2} );
+		assertEquals( Arrays.asList( new String[]{"folder/a.rptdocument"} ),
+				store.listDocuments( ) );
+
+		assertEquals( 1, store.collectGarbage( ) );
+		assertEquals( 1, countStreamFiles( ) );
+		IDocArchiveReader reader = store.openReader( "folder/a.rptdocument" );
+		try
+		{
+			assertStream( reader, "/data", data2 );
+		}
+		finally
+		{
+			reader.close( );
+		}
+	}
+
+	public void testUnfinishedWriter( ) throws IOException
+	{
+		IDocArchiveWriter writer = store.createWriter( "a.rptdocument" );
+		writer.initialize( );
+		writeStream( writer, "/data", createData( 10000, 1 ) );
+		// the document is not visible until the writer is finished
+		assertFalse( store.exists( "a.rptdocument" ) );
+		assertTrue( store.listDocuments( ).isEmpty( ) );
+		writer.finish( );
+		assertTrue( store.exists( "a.rptdocument" ) );
+	}
+
+	public void testShortName( ) throws IOException
+	{
+		byte[] data = createData( 2000, 1 );
+		String[] names = new String[]{"r1", "x/ab"};
+		for ( int i = 0; i < names.length; i++ )
+		{
+			writeDocument( names[i], new String[]{"/data"},
+					new byte[][]{data} );
+			IDocArchiveReader reader = store.openReader( names[i] );
+			try
+			{
+				assertStream( reader, "/data", data );
+			}
+			finally
+			{
+				reader.close( );
+			}
+		}
+		assertEquals( 2, store.listDocuments( ).size( ) );
+	}
+
+	public void testRemoveOpenDocument( ) throws IOException
+	{
+		byte[] data = createData( 10000, 1 );
+		writeDocument( "a.rptdocument", new String[]{"/data"},
+				new byte[][]{data} );
+		String hash = getLinks( "a.rptdocument" ).get( "/data" ).hash;
+
+		IDocArchiveReader reader = store.openReader( "a.rptdocument" );
+		try
+		{
+			assertEquals( 2, store.getReferenceCount( hash ) );
+			assertTrue( store.removeDocument( "a.rptdocument" ) );
+			// the open reader keeps the shared stream
+			assertEquals( 0, store.collectGarbage( ) );
+			assertStream( reader, "/data", data );
+		}
+		finally
+		{
+			reader.close( );
+		}
+		// closing it twice releases the links once
+		reader.close( );
+		assertEquals( 0, store.getReferenceCount( hash ) );
+		assertEquals( 1, store.collectGarbage( ) );
+		assertEquals( 0, countStreamFiles( ) );
+	}
+
+	public void testOrphanedTempFiles( ) throws IOException
+	{
+		// the files left by the writers of a process which crashed
+		File documentFolder = new File( TEST_FOLDER,
+				DocumentStore.DOCUMENT_FOLDER );
+		File orphan = new File( documentFolder, "folder/doca123.tmp" );
+		orphan.getParentFile( ).mkdirs( );
+		assertTrue( orphan.createNewFile( ) );
+		File streamFolder = new File( new File( TEST_FOLDER,
+				DocumentStore.STREAM_FOLDER ), "ab" );
+		streamFolder.mkdirs( );
+		File streamOrphan = new File( streamFolder, "cdef123.tmp" );
+		assertTrue( streamOrphan.createNewFile( ) );
+
+		byte[] data = createData( 10000, 1 );
+		IDocArchiveWriter writer = store.createWriter( "b.rptdocument" );
+		writer.initialize( );
+		writeStream( writer, "/data", data );
+		writer.flush( );
+
+		assertEquals( 0, store.collectGarbage( ) );
+		assertFalse( orphan.exists( ) );
+		assertFalse( streamOrphan.exists( ) );
+		// the writer of this store goes on
+		writer.finish( );
+		IDocArchiveReader reader = store.openReader( "b.rptdocument" );
+		try
+		{
+			assertStream( reader, "/data", data );
+		}
+		finally
+		{
+			reader.close( );
+		}
+		assertEquals( 0, store.collectGarbage( ) );
+		assertEquals( Arrays.asList( new String[]{"b.rptdocument"} ),
+				store.listDocuments( ) );
+		assertEquals( 0, countTempFiles( documentFolder ) );
+	}
+
+	public void testUnreadableLinks( ) throws IOException
+	{
+		byte[] data = createData( 10000, 1 );
+		writeDocument( "a.rptdocument", new String[]{"/data"},
+				new byte[][]{data} );
+		writeDocument( "b.rptdocument", new String[]{"/other"},
+				new byte[][]{createData( 10000, 2 )} );
+		String hash = getLinks( "a.rptdocument" ).get( "/data" ).hash;
+		assertTrue( store.removeDocument( "b.rptdocument" ) );
+
+		// corrupt the link file of a
+		ArchiveFile archive = new ArchiveFile( TEST_FOLDER
+				+ DocumentStore.DOCUMENT_FOLDER + "/a.rptdocument", "rw+" );
+		try
+		{
+			ArchiveEntry entry = archive.createEntry( StreamLink.LINK_STREAM );
+			try
+			{
+				byte[] b = new byte[]{0, 0, 0, 99};
+				entry.write( 0, b, 0, b.length );
+			}
+			finally
+			{
+				entry.close( );
+			}
+		}
+		finally
+		{
+			archive.close( );
+		}
+
+		// the new store can not count the links of a, so it keeps all the
+		// streams
+		DocumentStore other = new DocumentStore( TEST_FOLDER );
+		assertEquals( 0, other.getReferenceCount( hash ) );
+		assertEquals( 0, other.collectGarbage( ) );
+		assertEquals( 2, countStreamFiles( ) );
+
+		// until the document is removed
+		assertTrue( other.removeDocument( "a.rptdocument" ) );
+		assertEquals( 2, other.collectGarbage( ) );
+		assertEquals( 0, countStreamFiles( ) );
+	}
+
+	public void testInvalidName( ) throws IOException
+	{
+		String[] names = new String[]{"", "../a.rptdocument", "a.tmp"};
+		for ( int i = 0; i < names.length; i++ )
+		{
+			try
+			{
+				store.createWriter( names[i] );
+				fail( names[i] );
+			}
+			catch ( IllegalArgumentException ex )
+			{
+			}
+		}
+	}
+
+	private void writeDocument( String document, String[] names, byte[][] data )
+			throws IOException
+	{
+		IDocArchiveWriter writer = store.createWriter( document );
+		writer.initialize( );
+		for ( int i = 0; i < names.length; i++ )
+		{
+			writeStream( writer, names[i], data[i] );
+		}
+		writer.finish( );
+	}
+
+	private void writeStream( IDocArchiveWriter writer, String name,
+			byte[] data ) throws IOException
+	{
+		RAOutputStream out = writer.createRandomAccessStream( name );
+		try
+		{
+			out.write( data );
+		}
+		finally
+		{
+			out.close( );
+		}
+	}
+
+	private void assertStream( IDocArchiveReader reader, String name,
+			byte[] data ) throws IOException
+	{
+		RAInputStream in = reader.getStream( name );
+		try
+		{
+			assertEquals( data.length, in.length( ) );
+			byte[] b = new byte[data.length];
+			in.readFully( b, 0, b.length );
+			assertTrue( Arrays.equals( data, b ) );
+		}
+		finally
+		{
+			in.close( );
+		}
+	}
+
+	private Map<String, StreamLink> getLinks( String document )
+			throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( TEST_FOLDER
+				+ DocumentStore.DOCUMENT_FOLDER + "/" + document, "r" );
+		try
+		{
+			return StreamLink.read( archive );
+		}
+		finally
+		{
+			archive.close( );
+		}
+	}
+
+	private int countStreamFiles( )
+	{
+		int count = 0;
+		File[] folders = new File( TEST_FOLDER, DocumentStore.STREAM_FOLDER )
+				.listFiles( );
+		for ( int i = 0; i < folders.length; i++ )
+		{
+			count += folders[i].listFiles( ).length;
+		}
+		return count;
+	}
+
+	private int countTempFiles( File folder )
+	{
+		int count = 0;
+		File[] files = folder.listFiles( );
+		for ( int i = 0; i < files.length; i++ )
+		{
+			if ( files[i].isDirectory( ) )
+			{
+				count += countTempFiles( files[i] );
+			}
+			else if ( files[i].getName( ).endsWith( DocumentStore.TEMP_SUFFIX ) )
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private byte[] createData( int length, int seed )
+	{
+		byte[] data = new byte[length];
+		for ( int i = 0; i < length; i++ )
+		{
+			data[i] = (byte) ( i * seed + i / 7 );
+		}
+		return data;
+	}
+
+	private void deleteFolder( File folder )
+	{
+		File[] files = folder.listFiles( );
+		if ( files != null )
+		{
+			for ( int i = 0; i < files.length; i++ )
+			{
+				deleteFolder( files[i] );
+			}
+		}
+		folder.delete( );
+	}
+}
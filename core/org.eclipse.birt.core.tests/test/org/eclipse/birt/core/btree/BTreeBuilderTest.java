@@ -0,0 +1,206 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.btree;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+import junit.framework.TestCase;
+
+public class BTreeBuilderTest extends TestCase
+{
+
+	public void testBuild( ) throws Exception
+	{
+		RAMBTreeFile file = new RAMBTreeFile( );
+		BTreeOption<Long, String> option = createOption( file );
+		BTree<Long, String> btree = new BTree<Long, String>( option );
+		BTreeBuilder<Long, String> builder = btree.createBuilder( );
+		for ( long i = 0; i < 100000; i++ )
+		{
+			builder.append( Long.valueOf( i * 2 ), String.valueOf( i ) );
+		}
+		assertEquals( 100000, btree.getTotalKeys( ) );
+		btree.close( );
+
+		btree = new BTree<Long, String>( option );
+		assertEquals( 100000, btree.getTotalKeys( ) );
+		assertEquals( 100000, btree.getTotalValues( ) );
+		for ( long i = 0; i < 100000; i++ )
+		{
+			assertEquals( String.valueOf( i ), btree.getValue( Long
+					.valueOf( i * 2 ) ) );
+			assertFalse( btree.exist( Long.valueOf( i * 2 + 1 ) ) );
+		}
+		assertFalse( btree.exist( Long.valueOf( -1 ) ) );
+
+		BTreeCursor<Long, String> cursor = btree.createCursor( );
+		try
+		{
+			long i = 0;
+			while ( cursor.next( ) )
+			{
+				assertEquals( Long.valueOf( i * 2 ), cursor.getKey( ) );
+				i++;
+			}
+			assertEquals( 100000, i );
+			while ( cursor.previous( ) )
+			{
+				i--;
+				assertEquals( Long.valueOf( i * 2 ), cursor.getKey( ) );
+			}
+			assertEquals( 0, i );
+			assertTrue( cursor.moveTo( Long.valueOf( 1000 ) ) );
+			assertFalse( cursor.moveTo( Long.valueOf( 1001 ) ) );
+			assertEquals( Long.valueOf( 1000 ), cursor.getKey( ) );
+		}
+		finally
+		{
+			cursor.close( );
+		}
+		btree.close( );
+	}
+
+	public void testFilledNodes( ) throws Exception
+	{
+		RAMBTreeFile insertFile = new RAMBTreeFile( );
+		BTree<Long, String> btree = new BTree<Long, String>(
+				createOption( insertFile ) );
+		for ( long i = 0; i < 10000; i++ )
+		{
+			btree.insert( Long.valueOf( i ), String.valueOf( i ) );
+		}
+		btree.close( );
+
+		RAMBTreeFile buildFile = new RAMBTreeFile( );
+		btree = new BTree<Long, String>( createOption( buildFile ) );
+		BTreeBuilder<Long, String> builder = btree.createBuilder( );
+		for ( long i = 0; i < 10000; i++ )
+		{
+			builder.append( Long.valueOf( i ), String.valueOf( i ) );
+		}
+		btree.close( );
+
+		// the nodes split in half by the inserts are half empty
+		assertTrue( buildFile.getTotalBlock( ) * 3 < insertFile
+				.getTotalBlock( ) * 2 );
+	}
+
+	public void testDuplicateKeys( ) throws Exception
+	{
+		RAMBTreeFile file = new RAMBTreeFile( );
+		BTreeOption<Long, String> option = createOption( file );
+		option.setAllowDuplicate( true );
+		BTree<Long, String> btree = new BTree<Long, String>( option );
+		BTreeBuilder<Long, String> builder = btree.createBuilder( );
+		for ( long i = 0; i < 10000; i++ )
+		{
+			builder.append( Long.valueOf( i ), String.valueOf( i ) );
+			builder.append( Long.valueOf( i ), new String[]{"a", "b"} );
+		}
+		assertEquals( 10000, btree.getTotalKeys( ) );
+		assertEquals( 30000, btree.getTotalValues( ) );
+		for ( long i = 0; i < 10000; i++ )
+		{
+			Collection<String> values = btree.getValues( Long.valueOf( i ) );
+			assertEquals( Arrays.asList( new String[]{String.valueOf( i ),
+					"a", "b"} ), values );
+		}
+		btree.close( );
+
+		// the last value replaces the others if duplicate is not allowed
+		file = new RAMBTreeFile( );
+		btree = new BTree<Long, String>( createOption( file ) );
+		builder = btree.createBuilder( );
+		builder.append( Long.valueOf( 1 ), "a" );
+		builder.append( Long.valueOf( 1 ), "b" );
+		assertEquals( 1, btree.getTotalKeys( ) );
+		assertEquals( "b", btree.getValue( Long.valueOf( 1 ) ) );
+		btree.close( );
+	}
+
+	public void testUnsortedKeys( ) throws Exception
+	{
+		BTree<Long, String> btree = new BTree<Long, String>(
+				createOption( new RAMBTreeFile( ) ) );
+		BTreeBuilder<Long, String> builder = btree.createBuilder( );
+		builder.append( Long.valueOf( 2 ), "2" );
+		try
+		{
+			builder.append( Long.valueOf( 1 ), "1" );
+			fail( );
+		}
+		catch ( IOException ex )
+		{
+		}
+
+		// the builder can only load an empty tree
+		try
+		{
+			btree.createBuilder( );
+			fail( );
+		}
+		catch ( IOException ex )
+		{
+		}
+		btree.close( );
+	}
+
+	public void testSerializers( ) throws Exception
+	{
+		LongSerializer longSerializer = new LongSerializer( );
+		long[] longs = new long[]{0, 1, -1, Long.MAX_VALUE, Long.MIN_VALUE,
+				0x123456789ABCDEFL};
+		for ( int i = 0; i < longs.length; i++ )
+		{
+			byte[] bytes = longSerializer.getBytes( Long.valueOf( longs[i] ) );
+			assertEquals( 8, bytes.length );
+			assertEquals( longs[i], longSerializer.getObject( bytes )
+					.longValue( ) );
+		}
+
+		IntegerSerializer intSerializer = new IntegerSerializer( );
+		int[] ints = new int[]{0, 1, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+		for ( int i = 0; i < ints.length; i++ )
+		{
+			byte[] bytes = intSerializer.getBytes( Integer.valueOf( ints[i] ) );
+			assertEquals( 4, bytes.length );
+			assertEquals( ints[i], intSerializer.getObject( bytes ).intValue( ) );
+		}
+
+		// the string is saved as DataOutput.writeUTF
+		StringSerializer stringSerializer = new StringSerializer( );
+		String[] strings = new String[]{"", "abc", "\u0000",
+				"\u00e9\u07ff\u0800\u4e2d\uffff"};
+		for ( int i = 0; i < strings.length; i++ )
+		{
+			ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+			new DataOutputStream( buffer ).writeUTF( strings[i] );
+			byte[] bytes = stringSerializer.getBytes( strings[i] );
+			assertTrue( Arrays.equals( buffer.toByteArray( ), bytes ) );
+			assertEquals( strings[i], stringSerializer.getObject( bytes ) );
+		}
+	}
+
+	private BTreeOption<Long, String> createOption( BTreeFile file )
+	{
+		BTreeOption<Long, String> option = new BTreeOption<Long, String>( );
+		option.setKeySize( 8 );
+		option.setKeySerializer( new LongSerializer( ) );
+		option.setValueSerializer( new StringSerializer( ) );
+		option.setFile( file );
+		return option;
+	}
+}
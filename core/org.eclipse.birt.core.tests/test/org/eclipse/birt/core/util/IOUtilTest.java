@@ -228,6 +228,79 @@ public class IOUtilTest extends TestCase
 			assertEquals( testValues[i], IOUtil.readString( dis ) );
 		}
 	}
+	/*
+	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readVarInt(DataInputStream)'
+	 */
+	public void testRWVarInt( ) throws IOException
+	{
+		int[] testValues = new int[]{
+				0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, -1,
+				Integer.MIN_VALUE
+		};
+		int[] testSizes = new int[]{
+				1, 1, 1, 2, 2, 3, 5, 5, 5
+		};
+
+		for ( int i = 0; i < testValues.length; i++ )
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+			DataOutputStream dos = new DataOutputStream( bos );
+			IOUtil.writeVarInt( dos, testValues[i] );
+			byte[] content = bos.toByteArray( );
+			assertEquals( testSizes[i], content.length );
+
+			DataInputStream dis = new DataInputStream( new ByteArrayInputStream( content ) );
+			assertEquals( testValues[i], IOUtil.readVarInt( dis ) );
+		}
+	}
+
+	/*
+	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readVarLong(DataInputStream)'
+	 */
+	public void testRWVarLong( ) throws IOException
+	{
+		long[] testValues = new long[]{
+				0, 1, 128, 1L << 35, Long.MAX_VALUE, -1, Long.MIN_VALUE
+		};
+
+		for ( int i = 0; i < testValues.length; i++ )
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+			DataOutputStream dos = new DataOutputStream( bos );
+			IOUtil.writeVarLong( dos, testValues[i] );
+			byte[] content = bos.toByteArray( );
+
+			DataInputStream dis = new DataInputStream( new ByteArrayInputStream( content ) );
+			assertEquals( testValues[i], IOUtil.readVarLong( dis ) );
+			assertEquals( 0, dis.available( ) );
+		}
+	}
+
+	/*
+	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readVarString(DataInputStream)'
+	 */
+	public void testRWVarString( ) throws IOException
+	{
+		String[] testValues = new String[]{
+				null, "", "G", "GUI", "\u0000\u00e9\u4e2d"
+		};
+
+		ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( bos );
+		for ( int i = 0; i < testValues.length; i++ )
+		{
+			IOUtil.writeVarString( dos, testValues[i] );
+		}
+		// the size of "GUI" takes one byte
+		assertEquals( 1 + 1 + 2 + 4 + 8, bos.size( ) );
+
+		DataInputStream dis = new DataInputStream( new ByteArrayInputStream( bos.toByteArray( ) ) );
+		for ( int i = 0; i < testValues.length; i++ )
+		{
+			assertEquals( testValues[i], IOUtil.readVarString( dis ) );
+		}
+	}
+
 	/*
 	 * Test method for 'org.eclipse.birt.core.util.IOUtil.readString(DataInputStream)'
 	 */
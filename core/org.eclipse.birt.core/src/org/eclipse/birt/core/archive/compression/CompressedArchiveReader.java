@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.RAInputStream;
+
+/**
+ * An archive reader of an archive written by a CompressedArchiveWriter, which
+ * decompresses the compressed streams. The other streams are read as they
+ * are.
+ */
+public class CompressedArchiveReader implements IDocArchiveReader
+{
+
+	private IDocArchiveReader reader;
+
+	/**
+	 * @param reader
+	 *            the reader of the archive
+	 */
+	public CompressedArchiveReader( IDocArchiveReader reader )
+	{
+		this.reader = reader;
+	}
+
+	/**
+	 * Tests if an archive is written by a CompressedArchiveWriter.
+	 *
+	 * @param reader
+	 * @return
+	 */
+	public static boolean isCompressed( IDocArchiveReader reader )
+	{
+		return reader.exists( CompressedArchiveWriter.COMPRESSION_STREAM );
+	}
+
+	public String getName( )
+	{
+		return reader.getName( );
+	}
+
+	public void open( ) throws IOException
+	{
+		reader.open( );
+	}
+
+	public RAInputStream getStream( String relativePath ) throws IOException
+	{
+		return decompress( reader.getStream( relativePath ) );
+	}
+
+	public RAInputStream getInputStream( String relativePath )
+			throws IOException
+	{
+		return decompress( reader.getInputStream( relativePath ) );
+	}
+
+	private RAInputStream decompress( RAInputStream in ) throws IOException
+	{
+		if ( in != null && CompressedStreamFormat.isCompressed( in ) )
+			return new CompressedRAInputStream( in );
+		return in;
+	}
+
+	public boolean exists( String relativePath )
+	{
+		return reader.exists( relativePath );
+	}
+
+	public List<String> listStreams( String relativeStoragePath )
+			throws IOException
+	{
+		return reader.listStreams( relativeStoragePath );
+	}
+
+	public List<String> listAllStreams( ) throws IOException
+	{
+		return reader.listAllStreams( );
+	}
+
+	public void close( ) throws IOException
+	{
+		reader.close( );
+	}
+
+	public Object lock( String stream ) throws IOException
+	{
+		return reader.lock( stream );
+	}
+
+	public void unlock( Object locker )
+	{
+		reader.unlock( locker );
+	}
+}
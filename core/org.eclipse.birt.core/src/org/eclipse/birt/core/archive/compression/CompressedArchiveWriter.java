@@ -0,0 +1,295 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.archive.IStreamSorter;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+
+/**
+ * An archive writer which compresses the streams it creates into the streams
+ * of another archive writer. The streams which already exist uncompressed in
+ * the archive stay uncompressed.
+ * <p>
+ * The writer saves a COMPRESSION_STREAM stream in the archive, so that the
+ * readers of the archive know that they have to use a CompressedArchiveReader.
+ */
+public class CompressedArchiveWriter implements IDocArchiveWriter
+{
+
+	/**
+	 * The stream which marks an archive with compressed streams. It holds the
+	 * id of the codec of the writer.
+	 */
+	public static final String COMPRESSION_STREAM = "/compression"; //$NON-NLS-1$
+
+	private IDocArchiveWriter writer;
+	private ICompressionCodec codec;
+	/**
+	 * The compressed streams which are open, whose last blocks are not in the
+	 * archive yet.
+	 */
+	private HashMap<String, CompressedRAOutputStream> openStreams = new HashMap<String, CompressedRAOutputStream>( );
+
+	/**
+	 * @param writer
+	 *            the writer of the archive
+	 * @param codec
+	 *            the codec of the streams
+	 */
+	public CompressedArchiveWriter( IDocArchiveWriter writer,
+			ICompressionCodec codec )
+	{
+		this.writer = writer;
+		this.codec = codec;
+	}
+
+	/**
+	 * Returns the writer of the archive.
+	 *
+	 * @return
+	 */
+	public IDocArchiveWriter getWriter( )
+	{
+		return writer;
+	}
+
+	public void initialize( ) throws IOException
+	{
+		writer.initialize( );
+		RAOutputStream out = writer.createRandomAccessStream( COMPRESSION_STREAM );
+		try
+		{
+			out.writeInt( codec.getId( ) );
+		}
+		finally
+		{
+			out.close( );
+		}
+	}
+
+	public String getName( )
+	{
+		return writer.getName( );
+	}
+
+	public RAOutputStream createRandomAccessStream( String relativePath )
+			throws IOException
+	{
+		relativePath = normalize( relativePath );
+		if ( COMPRESSION_STREAM.equals( relativePath ) )
+			return writer.createRandomAccessStream( relativePath );
+		RAOutputStream out = writer.createRandomAccessStream( relativePath );
+		CompressedRAOutputStream stream = new CompressedRAOutputStream( this,
+				relativePath,
+				out,
+				codec );
+		streamOpened( relativePath, stream );
+		return stream;
+	}
+
+	public RAOutputStream openRandomAccessStream( String relativePath )
+			throws IOException
+	{
+		relativePath = normalize( relativePath );
+		if ( COMPRESSION_STREAM.equals( relativePath ) )
+			return writer.openRandomAccessStream( relativePath );
+		if ( !writer.exists( relativePath ) )
+			return createRandomAccessStream( relativePath );
+
+		flushStream( relativePath );
+		RAInputStream in = writer.getInputStream( relativePath );
+		if ( !CompressedStreamFormat.isCompressed( in ) )
+		{
+			in.close( );
+			return writer.openRandomAccessStream( relativePath );
+		}
+		RAOutputStream out = writer.openRandomAccessStream( relativePath );
+		CompressedRAOutputStream stream;
+		try
+		{
+			stream = new CompressedRAOutputStream( this,
+					relativePath,
+					out,
+					in );
+		}
+		catch ( IOException ex )
+		{
+			in.close( );
+			out.close( );
+			throw ex;
+		}
+		streamOpened( relativePath, stream );
+		return stream;
+	}
+
+	public RAOutputStream createOutputStream( String relativePath )
+			throws IOException
+	{
+		return createRandomAccessStream( relativePath );
+	}
+
+	public RAOutputStream getOutputStream( String relativePath )
+			throws IOException
+	{
+		return openRandomAccessStream( relativePath );
+	}
+
+	public RAInputStream getInputStream( String relativePath )
+			throws IOException
+	{
+		relativePath = normalize( relativePath );
+		flushStream( relativePath );
+		RAInputStream in = writer.getInputStream( relativePath );
+		if ( CompressedStreamFormat.isCompressed( in ) )
+			return new CompressedRAInputStream( in );
+		return in;
+	}
+
+	/**
+	 * Returns an input stream of the compressed data of a stream.
+	 */
+	RAInputStream getRawInputStream( String relativePath ) throws IOException
+	{
+		return writer.getInputStream( relativePath );
+	}
+
+	public boolean dropStream( String relativePath )
+	{
+		relativePath = normalize( relativePath );
+		synchronized ( openStreams )
+		{
+			openStreams.remove( relativePath );
+		}
+		return writer.dropStream( relativePath );
+	}
+
+	public boolean exists( String relativePath )
+	{
+		return writer.exists( relativePath );
+	}
+
+	public List<String> listStreams( String relativeStoragePath )
+			throws IOException
+	{
+		return writer.listStreams( relativeStoragePath );
+	}
+
+	public List<String> listAllStreams( ) throws IOException
+	{
+		return writer.listAllStreams( );
+	}
+
+	public void setStreamSorter( IStreamSorter streamSorter )
+	{
+		writer.setStreamSorter( streamSorter );
+	}
+
+	/**
+	 * Closes the compressed streams which are still open, so that their last
+	 * blocks are saved, and finishes the archive.
+	 */
+	public void finish( ) throws IOException
+	{
+		ArrayList<CompressedRAOutputStream> streams;
+		synchronized ( openStreams )
+		{
+			streams = new ArrayList<CompressedRAOutputStream>( openStreams.values( ) );
+		}
+		for ( CompressedRAOutputStream stream : streams )
+		{
+			stream.close( );
+		}
+		writer.finish( );
+	}
+
+	public void flush( ) throws IOException
+	{
+		flushStreams( );
+		writer.flush( );
+	}
+
+	/**
+	 * Saves the blocks of the compressed streams which are open into the
+	 * archive, so that a reader of the archive can read them.
+	 *
+	 * @throws IOException
+	 */
+	public void flushStreams( ) throws IOException
+	{
+		ArrayList<CompressedRAOutputStream> streams;
+		synchronized ( openStreams )
+		{
+			streams = new ArrayList<CompressedRAOutputStream>( openStreams.values( ) );
+		}
+		for ( CompressedRAOutputStream stream : streams )
+		{
+			stream.flush( );
+		}
+	}
+
+	public Object lock( String stream ) throws IOException
+	{
+		return writer.lock( stream );
+	}
+
+	public void unlock( Object locker )
+	{
+		writer.unlock( locker );
+	}
+
+	private void streamOpened( String relativePath,
+			CompressedRAOutputStream stream )
+	{
+		synchronized ( openStreams )
+		{
+			openStreams.put( relativePath, stream );
+		}
+	}
+
+	void streamClosed( String relativePath, CompressedRAOutputStream stream )
+	{
+		synchronized ( openStreams )
+		{
+			if ( openStreams.get( relativePath ) == stream )
+				openStreams.remove( relativePath );
+		}
+	}
+
+	/**
+	 * Saves the blocks of a stream which is open, before the stream is read.
+	 */
+	private void flushStream( String relativePath ) throws IOException
+	{
+		CompressedRAOutputStream stream;
+		synchronized ( openStreams )
+		{
+			stream = openStreams.get( relativePath );
+		}
+		if ( stream != null )
+			stream.flush( );
+	}
+
+	private static String normalize( String relativePath )
+	{
+		if ( !relativePath.startsWith( ArchiveUtil.UNIX_SEPERATOR ) )
+			return ArchiveUtil.UNIX_SEPERATOR + relativePath;
+		return relativePath;
+	}
+}
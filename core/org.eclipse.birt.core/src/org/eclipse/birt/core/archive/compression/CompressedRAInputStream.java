@@ -0,0 +1,186 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * An input stream of the uncompressed data of a compressed stream. A seek
+ * only finds the block of the position in the index of the stream, so that
+ * only the block which is read is decompressed.
+ */
+public class CompressedRAInputStream extends RAInputStream
+{
+
+	private RAInputStream input;
+	private CompressedStreamFormat.Header header;
+	private ICompressionCodec codec;
+	private long[] blockOffsets;
+
+	private byte[] block;
+	private int blockIndex = -1;
+	private byte[] buffer;
+
+	private long position;
+
+	/**
+	 * @param input
+	 *            the input stream of the compressed stream
+	 * @throws IOException
+	 */
+	public CompressedRAInputStream( RAInputStream input ) throws IOException
+	{
+		this.input = input;
+		this.header = CompressedStreamFormat.readHeader( input );
+		this.codec = CompressedStreamFormat.getCodec( header.codecId );
+		this.blockOffsets = CompressedStreamFormat.readBlockOffsets( input,
+				header );
+		this.block = new byte[header.blockSize];
+		this.buffer = new byte[header.blockSize];
+	}
+
+	public int read( ) throws IOException
+	{
+		if ( position >= header.length )
+			return -1;
+		loadBlock( (int) ( position / header.blockSize ) );
+		int b = block[(int) ( position % header.blockSize )] & 0xff;
+		position++;
+		return b;
+	}
+
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+			return 0;
+		if ( position >= header.length )
+			return -1;
+		len = (int) Math.min( len, header.length - position );
+		int n = 0;
+		while ( n < len )
+		{
+			loadBlock( (int) ( position / header.blockSize ) );
+			int offset = (int) ( position % header.blockSize );
+			int size = Math.min( len - n, header.blockSize - offset );
+			System.arraycopy( block, offset, b, off + n, size );
+			n += size;
+			position += size;
+		}
+		return n;
+	}
+
+	public void readFully( byte[] b, int off, int len ) throws IOException
+	{
+		if ( header.length - position < len )
+			throw new EOFException( );
+		read( b, off, len );
+	}
+
+	public int readInt( ) throws IOException
+	{
+		byte[] b = new byte[4];
+		readFully( b, 0, 4 );
+		return ArchiveUtil.bytesToInteger( b );
+	}
+
+	public long readLong( ) throws IOException
+	{
+		byte[] b = new byte[8];
+		readFully( b, 0, 8 );
+		return ArchiveUtil.bytesToLong( b );
+	}
+
+	public long skip( long n ) throws IOException
+	{
+		if ( n <= 0 )
+			return 0;
+		long size = Math.min( n, Math.max( header.length - position, 0 ) );
+		position += size;
+		return size;
+	}
+
+	public void seek( long localPos ) throws IOException
+	{
+		if ( localPos < 0 )
+		{
+			throw new IOException( CoreMessages.getFormattedString( ResourceConstants.INVALID_SEEK_OFFSET,
+					new Object[]{localPos} ) );
+		}
+		if ( localPos > header.length )
+		{
+			throw new EOFException( CoreMessages.getString( ResourceConstants.EXCEED_FILE_LENGTH ) );
+		}
+		position = localPos;
+	}
+
+	public long getOffset( ) throws IOException
+	{
+		return position;
+	}
+
+	public long length( ) throws IOException
+	{
+		return header.length;
+	}
+
+	public int available( ) throws IOException
+	{
+		long av = header.length - position;
+		if ( av > Integer.MAX_VALUE )
+		{
+			return Integer.MAX_VALUE;
+		}
+		return (int) av;
+	}
+
+	/**
+	 * Reloads the index of the stream, to read the blocks written since the
+	 * stream is opened.
+	 */
+	public void refresh( ) throws IOException
+	{
+		input.refresh( );
+		header = CompressedStreamFormat.readHeader( input );
+		blockOffsets = CompressedStreamFormat.readBlockOffsets( input, header );
+		blockIndex = -1;
+	}
+
+	public void close( ) throws IOException
+	{
+		input.close( );
+	}
+
+	private void loadBlock( int index ) throws IOException
+	{
+		if ( index == blockIndex )
+			return;
+		int length = 0;
+		if ( index < blockOffsets.length && blockOffsets[index] >= 0 )
+		{
+			length = CompressedStreamFormat.readBlock( input,
+					blockOffsets[index],
+					codec,
+					buffer,
+					block );
+		}
+		// the data after the block is written reads as zeros
+		Arrays.fill( block, length, block.length, (byte) 0 );
+		blockIndex = index;
+	}
+}
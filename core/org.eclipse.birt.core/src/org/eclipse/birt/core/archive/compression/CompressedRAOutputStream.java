@@ -0,0 +1,444 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * An output stream which compresses the data it writes into a stream of an
+ * archive, block by block, in the format of CompressedStreamFormat.
+ * <p>
+ * The last blocks written are kept uncompressed in memory until they are
+ * evicted by other blocks, or the stream is flushed, so that the writers which
+ * seek back to patch the data they have just written do not compress the same
+ * block again and again. A block changed after it is compressed is decompressed
+ * from the stream and written again. The new record of a block replaces its
+ * last record if it fits in it, or if it is the last record of the stream.
+ * Otherwise it is appended. The records have some room to grow, so that the
+ * stream does not keep a stale record for each patch of a block.
+ */
+public class CompressedRAOutputStream extends RAOutputStream
+{
+
+	/**
+	 * The number of blocks kept in memory.
+	 */
+	private static final int CACHED_BLOCKS = 4;
+
+	private CompressedArchiveWriter archive;
+	private String name;
+	private RAOutputStream output;
+	private ICompressionCodec codec;
+	private CompressedStreamFormat.Header header;
+
+	/**
+	 * The offsets in the output stream of the last records of the blocks.
+	 */
+	private long[] blockOffsets;
+	/**
+	 * The room for the data in the last records of the blocks, including the
+	 * room of their pad records, or -1 if it is not known.
+	 */
+	private int[] blockCapacities;
+	/**
+	 * The offset in the output stream where the next record is written.
+	 */
+	private long outputOffset;
+
+	private long position;
+
+	private LinkedHashMap<Integer, Block> blocks = new LinkedHashMap<Integer, Block>( 16,
+			0.75f,
+			true );
+	private Block current;
+	private byte[] buffer;
+	private RAInputStream input;
+
+	/**
+	 * Creates a compressed stream.
+	 *
+	 * @param archive
+	 *            the archive of the stream
+	 * @param name
+	 *            the name of the stream
+	 * @param output
+	 *            the empty output stream
+	 * @param codec
+	 * @throws IOException
+	 */
+	CompressedRAOutputStream( CompressedArchiveWriter archive, String name,
+			RAOutputStream output, ICompressionCodec codec ) throws IOException
+	{
+		this.archive = archive;
+		this.name = name;
+		this.output = output;
+		this.codec = codec;
+		this.header = new CompressedStreamFormat.Header( );
+		header.codecId = codec.getId( );
+		header.blockSize = CompressedStreamFormat.DEFAULT_BLOCK_SIZE;
+		this.blockOffsets = new long[16];
+		Arrays.fill( blockOffsets, -1 );
+		this.blockCapacities = new int[16];
+		Arrays.fill( blockCapacities, -1 );
+		output.seek( 0 );
+		output.write( header.toBytes( ) );
+		this.outputOffset = CompressedStreamFormat.HEADER_SIZE;
+		this.buffer = new byte[Math.max( codec.getMaxCompressedLength( header.blockSize ),
+				header.blockSize )];
+	}
+
+	/**
+	 * Opens an existing compressed stream to change it. The blocks written
+	 * afterwards are appended to the stream.
+	 *
+	 * @param archive
+	 *            the archive of the stream
+	 * @param name
+	 *            the name of the stream
+	 * @param output
+	 *            the output stream
+	 * @param input
+	 *            an input stream of the existing data
+	 * @throws IOException
+	 */
+	CompressedRAOutputStream( CompressedArchiveWriter archive, String name,
+			RAOutputStream output, RAInputStream input ) throws IOException
+	{
+		this.archive = archive;
+		this.name = name;
+		this.output = output;
+		this.input = input;
+		this.header = CompressedStreamFormat.readHeader( input );
+		this.codec = CompressedStreamFormat.getCodec( header.codecId );
+		this.blockOffsets = CompressedStreamFormat.readBlockOffsets( input,
+				header );
+		// the records written before are never replaced
+		this.blockCapacities = new int[blockOffsets.length];
+		Arrays.fill( blockCapacities, -1 );
+		this.outputOffset = input.length( );
+		this.buffer = new byte[Math.max( codec.getMaxCompressedLength( header.blockSize ),
+				header.blockSize )];
+		// the index is out of date as soon as a block is appended
+		header.indexOffset = 0;
+		writeHeader( );
+	}
+
+	public void write( int b ) throws IOException
+	{
+		Block block = getBlock( position );
+		int offset = (int) ( position % header.blockSize );
+		block.data[offset] = (byte) b;
+		block.dirty = true;
+		position++;
+		if ( position > header.length )
+			header.length = position;
+	}
+
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		while ( len > 0 )
+		{
+			Block block = getBlock( position );
+			int offset = (int) ( position % header.blockSize );
+			int size = Math.min( len, header.blockSize - offset );
+			System.arraycopy( b, off, block.data, offset, size );
+			block.dirty = true;
+			off += size;
+			len -= size;
+			position += size;
+			// the length of a block is the length of the stream when it is
+			// evicted
+			if ( position > header.length )
+				header.length = position;
+		}
+	}
+
+	public void writeInt( int value ) throws IOException
+	{
+		byte[] b = new byte[4];
+		ArchiveUtil.integerToBytes( value, b );
+		write( b, 0, 4 );
+	}
+
+	public void writeLong( long value ) throws IOException
+	{
+		byte[] b = new byte[8];
+		ArchiveUtil.longToBytes( value, b );
+		write( b, 0, 8 );
+	}
+
+	public void seek( long localPos ) throws IOException
+	{
+		if ( localPos < 0 )
+		{
+			throw new IOException( CoreMessages.getFormattedString( ResourceConstants.INVALID_SEEK_OFFSET,
+					new Object[]{localPos} ) );
+		}
+		position = localPos;
+	}
+
+	public long getOffset( ) throws IOException
+	{
+		return position;
+	}
+
+	public long length( ) throws IOException
+	{
+		return header.length;
+	}
+
+	/**
+	 * Compresses the changed blocks into the stream, so that the readers of
+	 * the stream can read them.
+	 */
+	public void flush( ) throws IOException
+	{
+		writeBlocks( );
+		writeHeader( );
+		output.flush( );
+	}
+
+	public void close( ) throws IOException
+	{
+		if ( output == null )
+			return;
+		try
+		{
+			writeBlocks( );
+			writeIndex( );
+			writeHeader( );
+			output.close( );
+		}
+		finally
+		{
+			output = null;
+			blocks.clear( );
+			current = null;
+			if ( input != null )
+			{
+				input.close( );
+				input = null;
+			}
+			archive.streamClosed( name, this );
+		}
+	}
+
+	/**
+	 * Returns the block of a position, loading it if it is not in memory.
+	 */
+	private Block getBlock( long pos ) throws IOException
+	{
+		if ( output == null )
+			throw new IOException( "Stream " + name + " is closed" ); //$NON-NLS-1$ //$NON-NLS-2$
+		int index = (int) ( pos / header.blockSize );
+		if ( current != null && current.index == index )
+			return current;
+
+		Integer key = Integer.valueOf( index );
+		Block block = blocks.get( key );
+		if ( block == null )
+		{
+			if ( blocks.size( ) >= CACHED_BLOCKS )
+			{
+				Iterator<Block> iter = blocks.values( ).iterator( );
+				Block eldest = iter.next( );
+				iter.remove( );
+				writeBlock( eldest );
+			}
+			block = new Block( index, header.blockSize );
+			if ( index < blockOffsets.length && blockOffsets[index] >= 0 )
+				readBlock( block );
+			blocks.put( key, block );
+		}
+		current = block;
+		return block;
+	}
+
+	/**
+	 * Loads a block from the records written before.
+	 */
+	private void readBlock( Block block ) throws IOException
+	{
+		output.flush( );
+		if ( input == null )
+			input = archive.getRawInputStream( name );
+		else
+			input.refresh( );
+		CompressedStreamFormat.readBlock( input,
+				blockOffsets[block.index],
+				codec,
+				buffer,
+				block.data );
+	}
+
+	private void writeBlocks( ) throws IOException
+	{
+		Iterator<Block> iter = blocks.values( ).iterator( );
+		while ( iter.hasNext( ) )
+			writeBlock( iter.next( ) );
+	}
+
+	/**
+	 * Writes a record of a block to the stream if it is changed.
+	 */
+	private void writeBlock( Block block ) throws IOException
+	{
+		if ( !block.dirty )
+			return;
+		long start = (long) block.index * header.blockSize;
+		int rawLength = (int) Math.min( header.blockSize, header.length
+				- start );
+		int storedLength = codec.compress( block.data,
+				0,
+				rawLength,
+				buffer,
+				0 );
+		byte[] data = buffer;
+		if ( storedLength >= rawLength )
+		{
+			data = block.data;
+			storedLength = rawLength;
+		}
+
+		if ( block.index >= blockOffsets.length )
+			growBlockOffsets( block.index + 1 );
+		long recordOffset = blockOffsets[block.index];
+		int capacity = blockCapacities[block.index];
+		// the last record of the block is replaced if the data fits in it
+		if ( capacity < 0 || !fits( storedLength, capacity ) )
+		{
+			if ( capacity >= 0
+					&& recordOffset + CompressedStreamFormat.RECORD_HEADER_SIZE
+							+ capacity == outputOffset )
+			{
+				// the last record of the stream grows
+				capacity = storedLength > capacity ? storedLength
+						: storedLength + CompressedStreamFormat.PAD_HEADER_SIZE;
+				outputOffset = recordOffset
+						+ CompressedStreamFormat.RECORD_HEADER_SIZE + capacity;
+			}
+			else
+			{
+				// a record has some room for the patches of its block, and
+				// a block written again is likely to be patched again
+				capacity = storedLength
+						+ storedLength
+						/ ( recordOffset >= 0 ? 8 : 64 )
+						+ CompressedStreamFormat.PAD_HEADER_SIZE;
+				recordOffset = outputOffset;
+				outputOffset += CompressedStreamFormat.RECORD_HEADER_SIZE
+						+ capacity;
+			}
+		}
+
+		byte[] b = new byte[CompressedStreamFormat.RECORD_HEADER_SIZE
+				+ CompressedStreamFormat.PAD_HEADER_SIZE];
+		ArchiveUtil.integerToBytes( CompressedStreamFormat.BLOCK_RECORD, b, 0 );
+		ArchiveUtil.integerToBytes( block.index, b, 4 );
+		ArchiveUtil.integerToBytes( rawLength, b, 8 );
+		ArchiveUtil.integerToBytes( storedLength, b, 12 );
+		output.seek( recordOffset );
+		output.write( b, 0, CompressedStreamFormat.RECORD_HEADER_SIZE );
+		output.write( data, 0, storedLength );
+		if ( capacity > storedLength )
+		{
+			ArchiveUtil.integerToBytes( CompressedStreamFormat.PAD_RECORD,
+					b,
+					0 );
+			ArchiveUtil.integerToBytes( capacity - storedLength
+					- CompressedStreamFormat.PAD_HEADER_SIZE, b, 4 );
+			output.write( b, 0, CompressedStreamFormat.PAD_HEADER_SIZE );
+		}
+
+		blockOffsets[block.index] = recordOffset;
+		blockCapacities[block.index] = capacity;
+		block.dirty = false;
+	}
+
+	/**
+	 * Tests if the data of a record fits in the room of another record. The
+	 * room left must be empty or hold a pad record.
+	 */
+	private static boolean fits( int storedLength, int capacity )
+	{
+		return storedLength == capacity
+				|| capacity - storedLength >= CompressedStreamFormat.PAD_HEADER_SIZE;
+	}
+
+	private void growBlockOffsets( int count )
+	{
+		int length = Math.max( count, blockOffsets.length * 2 );
+		long[] offsets = new long[length];
+		Arrays.fill( offsets, -1 );
+		System.arraycopy( blockOffsets, 0, offsets, 0, blockOffsets.length );
+		blockOffsets = offsets;
+		int[] capacities = new int[length];
+		Arrays.fill( capacities, -1 );
+		System.arraycopy( blockCapacities,
+				0,
+				capacities,
+				0,
+				blockCapacities.length );
+		blockCapacities = capacities;
+	}
+
+	private void writeIndex( ) throws IOException
+	{
+		int count = CompressedStreamFormat.getBlockCount( header.length,
+				header.blockSize );
+		byte[] b = new byte[8 + count * 8];
+		ArchiveUtil.integerToBytes( CompressedStreamFormat.INDEX_RECORD, b, 0 );
+		ArchiveUtil.integerToBytes( count, b, 4 );
+		for ( int i = 0; i < count; i++ )
+		{
+			long offset = i < blockOffsets.length ? blockOffsets[i] : -1;
+			ArchiveUtil.longToBytes( offset, b, 8 + i * 8 );
+		}
+		output.seek( outputOffset );
+		output.write( b );
+		header.indexOffset = outputOffset;
+		outputOffset += b.length;
+	}
+
+	private void writeHeader( ) throws IOException
+	{
+		output.seek( 0 );
+		output.write( header.toBytes( ) );
+		output.seek( outputOffset );
+	}
+
+	/**
+	 * A block of the uncompressed data.
+	 */
+	private static class Block
+	{
+
+		int index;
+		byte[] data;
+		boolean dirty;
+
+		Block( int index, int size )
+		{
+			this.index = index;
+			this.data = new byte[size];
+		}
+	}
+}
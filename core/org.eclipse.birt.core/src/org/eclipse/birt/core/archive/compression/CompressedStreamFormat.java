@@ -0,0 +1,276 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.RAInputStream;
+
+/**
+ * The format of a compressed stream.
+ * <p>
+ * The stream starts with a header:
+ *
+ * <pre>
+ * magic          8 bytes
+ * codec id       int
+ * block size     int
+ * length         long, the length of the uncompressed data
+ * index offset   long, the offset of the index record, or 0 if there is none
+ * </pre>
+ *
+ * which is followed by records. A block record holds the data of a block of
+ * the uncompressed data:
+ *
+ * <pre>
+ * tag            int, BLOCK_RECORD
+ * block index    int
+ * raw length     int, the length of the uncompressed block
+ * stored length  int, the length of the data, which is not compressed if it
+ *                is the raw length
+ * data           stored length bytes
+ * </pre>
+ *
+ * A block may be written several times, when the data written before is
+ * changed. It is written again over its last record if it fits there, or else
+ * in a new record, and the last record of the block wins. The room left in a
+ * record is filled by a pad record, which is skipped:
+ *
+ * <pre>
+ * tag            int, PAD_RECORD
+ * length         int
+ * data           length bytes
+ * </pre>
+ *
+ * An index record, written
+ * when the stream is closed, holds the offsets of the last records of the
+ * blocks, so that the readers of a closed stream do not scan the records:
+ *
+ * <pre>
+ * tag            int, INDEX_RECORD
+ * block count    int
+ * offsets        a long for each block, -1 for the blocks never written
+ * </pre>
+ *
+ * The blocks which are never written read as zeros.
+ */
+final class CompressedStreamFormat
+{
+
+	static final byte[] MAGIC = new byte[]{'B', 'I', 'R', 'T', 'C', 'M', 'P',
+			'1'};
+
+	static final int HEADER_SIZE = 32;
+	static final int RECORD_HEADER_SIZE = 16;
+
+	static final int BLOCK_RECORD = 1;
+	static final int INDEX_RECORD = 2;
+	static final int PAD_RECORD = 3;
+
+	static final int PAD_HEADER_SIZE = 8;
+
+	static final int DEFAULT_BLOCK_SIZE = 64 * 1024;
+
+	private CompressedStreamFormat( )
+	{
+	}
+
+	/**
+	 * The header of a compressed stream.
+	 */
+	static class Header
+	{
+
+		int codecId;
+		int blockSize;
+		long length;
+		long indexOffset;
+
+		byte[] toBytes( )
+		{
+			byte[] b = new byte[HEADER_SIZE];
+			System.arraycopy( MAGIC, 0, b, 0, MAGIC.length );
+			ArchiveUtil.integerToBytes( codecId, b, 8 );
+			ArchiveUtil.integerToBytes( blockSize, b, 12 );
+			ArchiveUtil.longToBytes( length, b, 16 );
+			ArchiveUtil.longToBytes( indexOffset, b, 24 );
+			return b;
+		}
+	}
+
+	/**
+	 * Tests if a stream is a compressed stream. The stream is at its start
+	 * afterwards.
+	 *
+	 * @param in
+	 * @return
+	 * @throws IOException
+	 */
+	static boolean isCompressed( RAInputStream in ) throws IOException
+	{
+		if ( in.length( ) < HEADER_SIZE )
+			return false;
+		in.seek( 0 );
+		byte[] b = new byte[MAGIC.length];
+		in.readFully( b, 0, b.length );
+		in.seek( 0 );
+		for ( int i = 0; i < b.length; i++ )
+		{
+			if ( b[i] != MAGIC[i] )
+				return false;
+		}
+		return true;
+	}
+
+	static Header readHeader( RAInputStream in ) throws IOException
+	{
+		byte[] b = new byte[HEADER_SIZE];
+		in.seek( 0 );
+		in.readFully( b, 0, HEADER_SIZE );
+		for ( int i = 0; i < MAGIC.length; i++ )
+		{
+			if ( b[i] != MAGIC[i] )
+				throw new IOException( "Not a compressed stream" ); //$NON-NLS-1$
+		}
+		Header header = new Header( );
+		header.codecId = ArchiveUtil.bytesToInteger( b, 8 );
+		header.blockSize = ArchiveUtil.bytesToInteger( b, 12 );
+		header.length = ArchiveUtil.bytesToLong( b, 16 );
+		header.indexOffset = ArchiveUtil.bytesToLong( b, 24 );
+		if ( header.blockSize <= 0 || header.length < 0 )
+			throw new IOException( "Corrupted compressed stream header" ); //$NON-NLS-1$
+		return header;
+	}
+
+	static ICompressionCodec getCodec( int codecId ) throws IOException
+	{
+		ICompressionCodec codec = CompressionCodecs.getCodec( codecId );
+		if ( codec == null )
+			throw new IOException( "Unknown compression codec " + codecId ); //$NON-NLS-1$
+		return codec;
+	}
+
+	/**
+	 * Returns the number of blocks of some data.
+	 */
+	static int getBlockCount( long length, int blockSize )
+	{
+		return (int) ( ( length + blockSize - 1 ) / blockSize );
+	}
+
+	/**
+	 * Reads the offsets of the last records of the blocks, from the index
+	 * record if there is one, or else by scanning the records.
+	 *
+	 * @param in
+	 * @param header
+	 * @return the offsets, -1 for the blocks never written
+	 * @throws IOException
+	 */
+	static long[] readBlockOffsets( RAInputStream in, Header header )
+			throws IOException
+	{
+		long[] offsets = new long[getBlockCount( header.length,
+				header.blockSize )];
+		Arrays.fill( offsets, -1 );
+		byte[] b = new byte[RECORD_HEADER_SIZE];
+		if ( header.indexOffset > 0 )
+		{
+			in.seek( header.indexOffset );
+			in.readFully( b, 0, 8 );
+			if ( ArchiveUtil.bytesToInteger( b, 0 ) != INDEX_RECORD )
+				throw new IOException( "Corrupted compressed stream index" ); //$NON-NLS-1$
+			int count = Math.min( ArchiveUtil.bytesToInteger( b, 4 ),
+					offsets.length );
+			byte[] index = new byte[count * 8];
+			in.readFully( index, 0, index.length );
+			for ( int i = 0; i < count; i++ )
+			{
+				offsets[i] = ArchiveUtil.bytesToLong( index, i * 8 );
+			}
+			return offsets;
+		}
+
+		long end = in.length( );
+		long offset = HEADER_SIZE;
+		while ( offset + 8 <= end )
+		{
+			in.seek( offset );
+			in.readFully( b, 0, 8 );
+			int tag = ArchiveUtil.bytesToInteger( b, 0 );
+			if ( tag == INDEX_RECORD )
+			{
+				offset += 8 + 8L * ArchiveUtil.bytesToInteger( b, 4 );
+				continue;
+			}
+			if ( tag == PAD_RECORD )
+			{
+				offset += PAD_HEADER_SIZE + ArchiveUtil.bytesToInteger( b, 4 );
+				continue;
+			}
+			if ( tag != BLOCK_RECORD || offset + RECORD_HEADER_SIZE > end )
+				break;
+			in.readFully( b, 8, 8 );
+			int blockIndex = ArchiveUtil.bytesToInteger( b, 4 );
+			int storedLength = ArchiveUtil.bytesToInteger( b, 12 );
+			long next = offset + RECORD_HEADER_SIZE + storedLength;
+			// a record which is not completely written yet
+			if ( next > end )
+				break;
+			if ( blockIndex >= 0 && blockIndex < offsets.length )
+				offsets[blockIndex] = offset;
+			offset = next;
+		}
+		return offsets;
+	}
+
+	/**
+	 * Reads and decompresses the data of a block record.
+	 *
+	 * @param in
+	 * @param offset
+	 *            the offset of the record
+	 * @param codec
+	 * @param buffer
+	 *            the buffer of the stored data, of the block size of the
+	 *            stream
+	 * @param block
+	 *            the block, of the block size of the stream
+	 * @return the raw length of the block
+	 * @throws IOException
+	 */
+	static int readBlock( RAInputStream in, long offset,
+			ICompressionCodec codec, byte[] buffer, byte[] block )
+			throws IOException
+	{
+		byte[] b = new byte[RECORD_HEADER_SIZE];
+		in.seek( offset );
+		in.readFully( b, 0, RECORD_HEADER_SIZE );
+		if ( ArchiveUtil.bytesToInteger( b, 0 ) != BLOCK_RECORD )
+			throw new IOException( "Corrupted compressed stream block" ); //$NON-NLS-1$
+		int rawLength = ArchiveUtil.bytesToInteger( b, 8 );
+		int storedLength = ArchiveUtil.bytesToInteger( b, 12 );
+		if ( rawLength < 0 || rawLength > block.length || storedLength < 0
+				|| storedLength > rawLength )
+			throw new IOException( "Corrupted compressed stream block" ); //$NON-NLS-1$
+		if ( storedLength == rawLength )
+		{
+			in.readFully( block, 0, rawLength );
+			return rawLength;
+		}
+		in.readFully( buffer, 0, storedLength );
+		codec.decompress( buffer, 0, storedLength, block, 0, rawLength );
+		return rawLength;
+	}
+}
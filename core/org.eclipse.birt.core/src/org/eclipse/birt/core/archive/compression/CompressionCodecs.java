@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.util.HashMap;
+
+/**
+ * The registry of the compression codecs, by the ids saved in the compressed
+ * streams.
+ */
+public class CompressionCodecs
+{
+
+	private static final HashMap<Integer, ICompressionCodec> codecs = new HashMap<Integer, ICompressionCodec>( );
+
+	static
+	{
+		register( new LZCodec( ) );
+		register( new DeflateCodec( ) );
+	}
+
+	private CompressionCodecs( )
+	{
+	}
+
+	/**
+	 * Registers a codec. A codec registered with the id of another codec
+	 * replaces it.
+	 *
+	 * @param codec
+	 */
+	public static synchronized void register( ICompressionCodec codec )
+	{
+		codecs.put( Integer.valueOf( codec.getId( ) ), codec );
+	}
+
+	/**
+	 * Returns the codec of an id.
+	 *
+	 * @param id
+	 * @return the codec, or null if no codec is registered with the id
+	 */
+	public static synchronized ICompressionCodec getCodec( int id )
+	{
+		return codecs.get( Integer.valueOf( id ) );
+	}
+}
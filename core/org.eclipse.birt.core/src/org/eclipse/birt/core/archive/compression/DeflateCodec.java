@@ -0,0 +1,94 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A codec which compresses the blocks with the best compression of Deflater,
+ * for the documents whose size matters more than the time to write them.
+ */
+public class DeflateCodec implements ICompressionCodec
+{
+
+	public static final int ID = 2;
+
+	public int getId( )
+	{
+		return ID;
+	}
+
+	public int getMaxCompressedLength( int length )
+	{
+		// the overhead of the stored blocks of deflate and of the zlib wrapper
+		return length + ( length >> 12 ) + ( length >> 14 ) + 32;
+	}
+
+	public int compress( byte[] src, int srcOff, int srcLen, byte[] dst,
+			int dstOff )
+	{
+		Deflater deflater = new Deflater( Deflater.BEST_COMPRESSION, true );
+		try
+		{
+			deflater.setInput( src, srcOff, srcLen );
+			deflater.finish( );
+			int length = 0;
+			int capacity = getMaxCompressedLength( srcLen );
+			while ( !deflater.finished( ) && length < capacity )
+			{
+				length += deflater.deflate( dst, dstOff + length, capacity
+						- length );
+			}
+			return length;
+		}
+		finally
+		{
+			deflater.end( );
+		}
+	}
+
+	public void decompress( byte[] src, int srcOff, int srcLen, byte[] dst,
+			int dstOff, int dstLen ) throws IOException
+	{
+		// the nowrap inflater needs an extra byte after the compressed data
+		byte[] input = new byte[srcLen + 1];
+		System.arraycopy( src, srcOff, input, 0, srcLen );
+		Inflater inflater = new Inflater( true );
+		try
+		{
+			inflater.setInput( input );
+			int length = 0;
+			while ( length < dstLen )
+			{
+				int size = inflater.inflate( dst, dstOff + length, dstLen
+						- length );
+				if ( size == 0 && ( inflater.finished( ) || inflater.needsInput( ) ) )
+					break;
+				length += size;
+			}
+			if ( length != dstLen )
+				throw new IOException( "Corrupted compressed block" ); //$NON-NLS-1$
+		}
+		catch ( DataFormatException e )
+		{
+			throw new IOException( "Corrupted compressed block: " //$NON-NLS-1$
+					+ e.getMessage( ) );
+		}
+		finally
+		{
+			inflater.end( );
+		}
+	}
+}
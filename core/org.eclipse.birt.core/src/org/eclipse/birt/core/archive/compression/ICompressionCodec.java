@@ -0,0 +1,70 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+
+/**
+ * A codec which compresses the blocks of the compressed streams. A codec must
+ * be stateless, as it is shared by all the streams, and registered in
+ * CompressionCodecs under an id which never changes, since the id is saved
+ * in the streams.
+ */
+public interface ICompressionCodec
+{
+
+	/**
+	 * Returns the id of the codec saved in the compressed streams.
+	 *
+	 * @return a positive id
+	 */
+	int getId( );
+
+	/**
+	 * Returns the maximum length of the compressed data of a block.
+	 *
+	 * @param length
+	 *            the length of the block
+	 * @return
+	 */
+	int getMaxCompressedLength( int length );
+
+	/**
+	 * Compresses a block.
+	 *
+	 * @param src
+	 * @param srcOff
+	 * @param srcLen
+	 * @param dst
+	 *            the buffer of the compressed data, of at least
+	 *            getMaxCompressedLength( srcLen ) bytes after dstOff
+	 * @param dstOff
+	 * @return the length of the compressed data
+	 */
+	int compress( byte[] src, int srcOff, int srcLen, byte[] dst, int dstOff );
+
+	/**
+	 * Decompresses a block.
+	 *
+	 * @param src
+	 * @param srcOff
+	 * @param srcLen
+	 * @param dst
+	 * @param dstOff
+	 * @param dstLen
+	 *            the length of the block
+	 * @throws IOException
+	 *             if the compressed data is corrupted
+	 */
+	void decompress( byte[] src, int srcOff, int srcLen, byte[] dst,
+			int dstOff, int dstLen ) throws IOException;
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.compression;
+
+import java.io.IOException;
+
+/**
+ * A fast LZ77 codec, which writes the block format of LZ4.
+ * <p>
+ * The compressed data is a list of sequences. A sequence starts with a token
+ * byte, whose high 4 bits are the number of literals and low 4 bits the match
+ * length minus 4; the value 15 is followed by bytes of 255 and a last byte
+ * less than 255 which are added to it. The literals follow, then the offset of
+ * the match in 2 bytes, little endian. The last sequence only has literals.
+ * The matches are found with a hash table of the 4-byte sequences, without
+ * searching for longer matches, which favors speed over ratio.
+ */
+public class LZCodec implements ICompressionCodec
+{
+
+	public static final int ID = 1;
+
+	private static final int MIN_MATCH = 4;
+	private static final int MAX_OFFSET = 0xFFFF;
+	// the last 5 bytes are always literals, and the last match starts at
+	// least 12 bytes before the end
+	private static final int LAST_LITERALS = 5;
+	private static final int MATCH_FIND_LIMIT = 12;
+
+	private static final int HASH_BITS = 12;
+
+	public int getId( )
+	{
+		return ID;
+	}
+
+	public int getMaxCompressedLength( int length )
+	{
+		return length + length / 255 + 16;
+	}
+
+	public int compress( byte[] src, int srcOff, int srcLen, byte[] dst,
+			int dstOff )
+	{
+		int srcEnd = srcOff + srcLen;
+		int op = dstOff;
+		int anchor = srcOff;
+		int ip = srcOff;
+		int limit = srcEnd - MATCH_FIND_LIMIT;
+		int matchLimit = srcEnd - LAST_LITERALS;
+		int[] table = new int[1 << HASH_BITS];
+
+		while ( ip < limit )
+		{
+			int sequence = readInt( src, ip );
+			int hash = hash( sequence );
+			// the table holds the positions plus one, 0 is empty
+			int ref = table[hash] - 1;
+			table[hash] = ip + 1;
+			if ( ref < 0 || ip - ref > MAX_OFFSET || readInt( src, ref ) != sequence )
+			{
+				ip++;
+				continue;
+			}
+
+			int matchLength = MIN_MATCH;
+			while ( ip + matchLength < matchLimit
+					&& src[ref + matchLength] == src[ip + matchLength] )
+				matchLength++;
+
+			op = writeSequence( src, anchor, ip - anchor, dst, op );
+			dst[op++] = (byte) ( ip - ref );
+			dst[op++] = (byte) ( ( ip - ref ) >>> 8 );
+			int tokenPosition = op - 2 - ( ip - anchor ) - 1
+					- extraLength( ip - anchor );
+			int extra = matchLength - MIN_MATCH;
+			if ( extra >= 15 )
+			{
+				dst[tokenPosition] |= 15;
+				op = writeLength( extra - 15, dst, op );
+			}
+			else
+			{
+				dst[tokenPosition] |= extra;
+			}
+
+			ip += matchLength;
+			anchor = ip;
+		}
+		return writeSequence( src, anchor, srcEnd - anchor, dst, op ) - dstOff;
+	}
+
+	public void decompress( byte[] src, int srcOff, int srcLen, byte[] dst,
+			int dstOff, int dstLen ) throws IOException
+	{
+		int ip = srcOff;
+		int srcEnd = srcOff + srcLen;
+		int op = dstOff;
+		int dstEnd = dstOff + dstLen;
+		try
+		{
+			while ( ip < srcEnd )
+			{
+				int token = src[ip++] & 0xFF;
+
+				int literalLength = token >>> 4;
+				if ( literalLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						literalLength += b;
+					} while ( b == 255 );
+				}
+				if ( ip + literalLength > srcEnd || op + literalLength > dstEnd )
+					throw new IOException( "Corrupted compressed block" ); //$NON-NLS-1$
+				System.arraycopy( src, ip, dst, op, literalLength );
+				ip += literalLength;
+				op += literalLength;
+				if ( ip == srcEnd )
+					break;
+
+				int offset = ( src[ip] & 0xFF ) | ( ( src[ip + 1] & 0xFF ) << 8 );
+				ip += 2;
+				int matchLength = token & 15;
+				if ( matchLength == 15 )
+				{
+					int b;
+					do
+					{
+						b = src[ip++] & 0xFF;
+						matchLength += b;
+					} while ( b == 255 );
+				}
+				matchLength += MIN_MATCH;
+				int ref = op - offset;
+				if ( offset == 0 || ref < dstOff || op + matchLength > dstEnd )
+					throw new IOException( "Corrupted compressed block" ); //$NON-NLS-1$
+				// the match may overlap the bytes it produces
+				for ( int i = 0; i < matchLength; i++ )
+					dst[op++] = dst[ref++];
+			}
+		}
+		catch ( ArrayIndexOutOfBoundsException e )
+		{
+			throw new IOException( "Corrupted compressed block" ); //$NON-NLS-1$
+		}
+		if ( op != dstEnd )
+			throw new IOException( "Corrupted compressed block" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * Writes the token and the literals of a sequence. The match length is
+	 * added to the token afterwards.
+	 *
+	 * @return the position after the literals
+	 */
+	private static int writeSequence( byte[] src, int literalOff,
+			int literalLength, byte[] dst, int op )
+	{
+		if ( literalLength >= 15 )
+		{
+			dst[op++] = (byte) ( 15 << 4 );
+			op = writeLength( literalLength - 15, dst, op );
+		}
+		else
+		{
+			dst[op++] = (byte) ( literalLength << 4 );
+		}
+		System.arraycopy( src, literalOff, dst, op, literalLength );
+		return op + literalLength;
+	}
+
+	/**
+	 * Writes the bytes which follow the value 15 of a length in the token.
+	 */
+	private static int writeLength( int length, byte[] dst, int op )
+	{
+		while ( length >= 255 )
+		{
+			dst[op++] = (byte) 255;
+			length -= 255;
+		}
+		dst[op++] = (byte) length;
+		return op;
+	}
+
+	/**
+	 * Returns the number of bytes which follow the token for a literal length.
+	 */
+	private static int extraLength( int literalLength )
+	{
+		return literalLength >= 15 ? ( literalLength - 15 ) / 255 + 1 : 0;
+	}
+
+	private static int readInt( byte[] b, int off )
+	{
+		return ( b[off] & 0xFF )
+				| ( ( b[off + 1] & 0xFF ) << 8 )
+				| ( ( b[off + 2] & 0xFF ) << 16 )
+				| ( ( b[off + 3] & 0xFF ) << 24 );
+	}
+
+	private static int hash( int sequence )
+	{
+		return ( sequence * -1640531535 ) >>> ( 32 - HASH_BITS );
+	}
+}
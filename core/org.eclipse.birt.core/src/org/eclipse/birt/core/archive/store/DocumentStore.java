@@ -0,0 +1,560 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.store;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+
+/**
+ * A folder which stores many report documents, where the streams with the
+ * same data are stored only once.
+ * <p>
+ * A document is written by the writer returned by createWriter. When the
+ * writer is finished, each stream of the document which is not smaller than
+ * the min shared size is identified by the SHA-1 hash of its data and moved
+ * to the shared streams of the store, unless the store has it already. The
+ * document keeps a link to the shared stream instead of the data. The other
+ * streams stay in the archive of the document.
+ * <p>
+ * The store counts the links to each shared stream, from the documents and
+ * from the readers which are open. A shared stream which is no longer linked,
+ * as its documents are removed and their readers closed, is deleted by
+ * collectGarbage, with the temporary files left by the writers which did not
+ * finish. While the links of a document can not be read, the store does not
+ * know which streams it links, so collectGarbage deletes nothing until the
+ * document is readable or removed.
+ * <p>
+ * The documents and the shared streams are plain files, so that several
+ * stores may read the same folder, but only one store instance should write
+ * and collect the garbage of a folder at a time.
+ */
+public class DocumentStore
+{
+
+	protected static Logger logger = Logger.getLogger( DocumentStore.class
+			.getName( ) );
+
+	/**
+	 * The default min size of a shared stream. The smaller streams are not
+	 * worth a file.
+	 */
+	public static final long DEFAULT_MIN_SHARED_SIZE = 4096;
+
+	static final String DOCUMENT_FOLDER = "documents"; //$NON-NLS-1$
+	static final String STREAM_FOLDER = "streams"; //$NON-NLS-1$
+	/**
+	 * The suffix of the files which are being written.
+	 */
+	static final String TEMP_SUFFIX = ".tmp"; //$NON-NLS-1$
+	/**
+	 * The prefix of the temporary file of a document, as the prefix of
+	 * File.createTempFile must be 3 characters at least.
+	 */
+	static final String TEMP_PREFIX = "doc"; //$NON-NLS-1$
+
+	private File documentFolder;
+	private File streamFolder;
+	private long minSharedSize = DEFAULT_MIN_SHARED_SIZE;
+
+	/**
+	 * The number of links to each shared stream, including the links of the
+	 * documents which are being written and of the open readers.
+	 */
+	private HashMap<String, Integer> references = new HashMap<String, Integer>( );
+
+	/**
+	 * The temporary files which are being written by this store. The other
+	 * temporary files are left by the writers which did not finish.
+	 */
+	private HashSet<File> tempFiles = new HashSet<File>( );
+
+	/**
+	 * The documents whose links can not be read, so they are not counted in
+	 * the references.
+	 */
+	private HashSet<File> unreadableDocuments = new HashSet<File>( );
+
+	/**
+	 * Opens the store in a folder, creating the folder if it does not exist.
+	 *
+	 * @param folder
+	 *            the folder of the store
+	 * @throws IOException
+	 */
+	public DocumentStore( String folder ) throws IOException
+	{
+		File root = new File( folder ).getCanonicalFile( );
+		documentFolder = new File( root, DOCUMENT_FOLDER );
+		streamFolder = new File( root, STREAM_FOLDER );
+		documentFolder.mkdirs( );
+		streamFolder.mkdirs( );
+		if ( !documentFolder.isDirectory( ) || !streamFolder.isDirectory( ) )
+		{
+			throw new IOException( "Can not create the document store in " //$NON-NLS-1$
+					+ root );
+		}
+		loadReferences( );
+	}
+
+	public long getMinSharedSize( )
+	{
+		return minSharedSize;
+	}
+
+	/**
+	 * Sets the min size of the streams which are shared. It applies to the
+	 * writers created afterwards.
+	 *
+	 * @param minSharedSize
+	 */
+	public void setMinSharedSize( long minSharedSize )
+	{
+		this.minSharedSize = minSharedSize;
+	}
+
+	/**
+	 * Creates a writer of a document. The document replaces the existing one
+	 * of the same name when the writer is finished. It can not be read from
+	 * the store before.
+	 *
+	 * @param document
+	 *            the name of the document, which may contain '/' to put it
+	 *            in a sub folder.
+	 * @return the writer
+	 * @throws IOException
+	 */
+	public IDocArchiveWriter createWriter( String document ) throws IOException
+	{
+		return new StoreArchiveWriter( this, getDocumentFile( document ),
+				minSharedSize );
+	}
+
+	/**
+	 * Opens a reader of a document.
+	 *
+	 * @param document
+	 *            the name of the document
+	 * @return the reader
+	 * @throws IOException
+	 *             if the document does not exist
+	 */
+	public IDocArchiveReader openReader( String document ) throws IOException
+	{
+		File file = getDocumentFile( document );
+		if ( !file.isFile( ) )
+		{
+			throw new FileNotFoundException( file.getPath( ) );
+		}
+		return new StoreArchiveReader( this, file );
+	}
+
+	public boolean exists( String document )
+	{
+		try
+		{
+			return getDocumentFile( document ).isFile( );
+		}
+		catch ( IOException ex )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Returns the names of the documents in the store.
+	 */
+	public List<String> listDocuments( )
+	{
+		ArrayList<String> documents = new ArrayList<String>( );
+		listDocuments( documentFolder, "", documents ); //$NON-NLS-1$
+		return documents;
+	}
+
+	/**
+	 * Removes a document. The shared streams which are no longer linked are
+	 * deleted by the next collectGarbage.
+	 *
+	 * @param document
+	 *            the name of the document
+	 * @return true if the document is removed
+	 * @throws IOException
+	 */
+	public synchronized boolean removeDocument( String document )
+			throws IOException
+	{
+		File file = getDocumentFile( document );
+		if ( !file.isFile( ) )
+		{
+			return false;
+		}
+		// the links of an unreadable document are not counted
+		Collection<StreamLink> links = unreadableDocuments.contains( file )
+				? null
+				: readLinks( file );
+		if ( !file.delete( ) )
+		{
+			return false;
+		}
+		unreadableDocuments.remove( file );
+		if ( links != null )
+		{
+			release( links );
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of links to a shared stream, from the documents and
+	 * the open readers.
+	 *
+	 * @param hash
+	 *            the hash of the stream
+	 */
+	public synchronized int getReferenceCount( String hash )
+	{
+		Integer count = references.get( hash );
+		return count == null ? 0 : count.intValue( );
+	}
+
+	/**
+	 * Deletes the shared streams which are not linked by any document or open
+	 * reader, and the temporary files which are not being written, as their
+	 * writers did not finish. Nothing is deleted while the links of a
+	 * document can not be read, as it may link any of the streams.
+	 *
+	 * @return the number of the shared streams deleted
+	 */
+	public synchronized int collectGarbage( )
+	{
+		if ( !loadUnreadableReferences( ) )
+		{
+			logger.log( Level.WARNING,
+					"Skip the garbage collection as the links of " //$NON-NLS-1$
+							+ unreadableDocuments + " can not be read" ); //$NON-NLS-1$
+			return 0;
+		}
+		deleteTempFiles( documentFolder );
+		int removed = 0;
+		File[] folders = streamFolder.listFiles( );
+		if ( folders == null )
+		{
+			return 0;
+		}
+		for ( File folder : folders )
+		{
+			File[] files = folder.listFiles( );
+			if ( files == null )
+			{
+				continue;
+			}
+			for ( File file : files )
+			{
+				if ( file.getName( ).endsWith( TEMP_SUFFIX ) )
+				{
+					if ( !tempFiles.contains( file ) )
+					{
+						file.delete( );
+					}
+				}
+				else if ( !references.containsKey( folder.getName( )
+						+ file.getName( ) )
+						&& file.delete( ) )
+				{
+					removed++;
+				}
+			}
+			// it fails if the folder is not empty
+			folder.delete( );
+		}
+		return removed;
+	}
+
+	/**
+	 * Returns the file of a shared stream.
+	 */
+	File getStreamFile( String hash )
+	{
+		File folder = new File( streamFolder, hash.substring( 0, 2 ) );
+		return new File( folder, hash.substring( 2 ) );
+	}
+
+	/**
+	 * Creates a temporary file to write a shared stream, which is renamed to
+	 * the stream file once it is written. The garbage collection keeps it
+	 * until it is released by releaseTempFile.
+	 */
+	synchronized File createTempStreamFile( String hash ) throws IOException
+	{
+		File file = getStreamFile( hash );
+		File folder = file.getParentFile( );
+		folder.mkdirs( );
+		return createTempFile( file.getName( ), folder );
+	}
+
+	/**
+	 * Creates a temporary file to write a document, next to the document. The
+	 * garbage collection keeps it until it is released by releaseTempFile.
+	 */
+	synchronized File createTempDocumentFile( File document )
+			throws IOException
+	{
+		File folder = document.getParentFile( );
+		folder.mkdirs( );
+		return createTempFile( TEMP_PREFIX + document.getName( ), folder );
+	}
+
+	/**
+	 * Releases a temporary file once it is deleted or renamed.
+	 */
+	synchronized void releaseTempFile( File file )
+	{
+		tempFiles.remove( file );
+	}
+
+	/**
+	 * Reads the links of a document for a reader, and acquires them until the
+	 * reader releases them, so that the garbage collection keeps the shared
+	 * streams the reader may read after the document is removed.
+	 */
+	synchronized LinkedHashMap<String, StreamLink> acquireLinks(
+			ArchiveFile document ) throws IOException
+	{
+		LinkedHashMap<String, StreamLink> links = StreamLink.read( document );
+		for ( StreamLink link : links.values( ) )
+		{
+			acquire( link.hash );
+		}
+		return links;
+	}
+
+	/**
+	 * Adds a link to a shared stream, so that the garbage collection keeps
+	 * the stream. It must be called before the stream is written or linked.
+	 */
+	synchronized void acquire( String hash )
+	{
+		Integer count = references.get( hash );
+		references.put( hash, Integer.valueOf( count == null ? 1 : count
+				.intValue( ) + 1 ) );
+	}
+
+	/**
+	 * Removes the links to shared streams.
+	 */
+	synchronized void release( Collection<StreamLink> links )
+	{
+		for ( StreamLink link : links )
+		{
+			Integer count = references.get( link.hash );
+			if ( count == null )
+			{
+				continue;
+			}
+			if ( count.intValue( ) <= 1 )
+			{
+				references.remove( link.hash );
+			}
+			else
+			{
+				references.put( link.hash, Integer.valueOf( count.intValue( )
+						- 1 ) );
+			}
+		}
+	}
+
+	/**
+	 * Moves a written document to its place, replacing the existing one. The
+	 * links of the new document are acquired by its writer.
+	 */
+	synchronized void commit( File written, File document ) throws IOException
+	{
+		Collection<StreamLink> links = null;
+		if ( document.exists( ) )
+		{
+			if ( !unreadableDocuments.contains( document ) )
+			{
+				links = readLinks( document );
+			}
+			if ( !document.delete( ) )
+			{
+				throw new IOException( "Can not replace the document " //$NON-NLS-1$
+						+ document );
+			}
+			unreadableDocuments.remove( document );
+		}
+		if ( !written.renameTo( document ) )
+		{
+			throw new IOException( "Can not save the document " + document ); //$NON-NLS-1$
+		}
+		if ( links != null )
+		{
+			release( links );
+		}
+	}
+
+	private File getDocumentFile( String document ) throws IOException
+	{
+		if ( document == null || document.length( ) == 0
+				|| document.endsWith( TEMP_SUFFIX ) )
+		{
+			throw new IllegalArgumentException( document );
+		}
+		File file = new File( documentFolder, document ).getCanonicalFile( );
+		// the document must be in the folder of the store
+		if ( !file.getPath( ).startsWith( documentFolder.getPath( )
+				+ File.separator ) )
+		{
+			throw new IllegalArgumentException( document );
+		}
+		return file;
+	}
+
+	private void listDocuments( File folder, String prefix,
+			List<String> documents )
+	{
+		File[] files = folder.listFiles( );
+		if ( files == null )
+		{
+			return;
+		}
+		for ( File file : files )
+		{
+			if ( file.isDirectory( ) )
+			{
+				listDocuments( file, prefix + file.getName( ) + '/', documents );
+			}
+			else if ( !file.getName( ).endsWith( TEMP_SUFFIX ) )
+			{
+				documents.add( prefix + file.getName( ) );
+			}
+		}
+	}
+
+	private File createTempFile( String prefix, File folder )
+			throws IOException
+	{
+		File file = File.createTempFile( prefix, TEMP_SUFFIX, folder )
+				.getCanonicalFile( );
+		tempFiles.add( file );
+		return file;
+	}
+
+	/**
+	 * Deletes the temporary files of a folder and its sub folders which are
+	 * not being written.
+	 */
+	private void deleteTempFiles( File folder )
+	{
+		File[] files = folder.listFiles( );
+		if ( files == null )
+		{
+			return;
+		}
+		for ( File file : files )
+		{
+			if ( file.isDirectory( ) )
+			{
+				deleteTempFiles( file );
+			}
+			else if ( file.getName( ).endsWith( TEMP_SUFFIX )
+					&& !tempFiles.contains( file ) )
+			{
+				file.delete( );
+			}
+		}
+	}
+
+	/**
+	 * Counts the links of the documents in the store. The documents whose
+	 * links can not be read are kept in the unreadable documents.
+	 */
+	private void loadReferences( )
+	{
+		for ( String document : listDocuments( ) )
+		{
+			File file = new File( documentFolder, document );
+			try
+			{
+				for ( StreamLink link : readLinks( file ) )
+				{
+					acquire( link.hash );
+				}
+			}
+			catch ( IOException ex )
+			{
+				logger.log( Level.WARNING, "Failed to read the links of " //$NON-NLS-1$
+						+ file, ex );
+				unreadableDocuments.add( file );
+			}
+		}
+	}
+
+	/**
+	 * Reads the links of the unreadable documents again, forgetting the
+	 * documents which no longer exist.
+	 *
+	 * @return true if the links of all the documents are counted
+	 */
+	private boolean loadUnreadableReferences( )
+	{
+		Iterator<File> iter = unreadableDocuments.iterator( );
+		while ( iter.hasNext( ) )
+		{
+			File file = iter.next( );
+			if ( !file.isFile( ) )
+			{
+				iter.remove( );
+				continue;
+			}
+			try
+			{
+				for ( StreamLink link : readLinks( file ) )
+				{
+					acquire( link.hash );
+				}
+				iter.remove( );
+			}
+			catch ( IOException ex )
+			{
+			}
+		}
+		return unreadableDocuments.isEmpty( );
+	}
+
+	private Collection<StreamLink> readLinks( File document )
+			throws IOException
+	{
+		ArchiveFile archive = new ArchiveFile( document.getPath( ), "r" ); //$NON-NLS-1$
+		try
+		{
+			return StreamLink.read( archive ).values( );
+		}
+		finally
+		{
+			archive.close( );
+		}
+	}
+}
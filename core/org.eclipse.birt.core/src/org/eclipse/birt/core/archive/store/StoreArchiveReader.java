@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.store;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.ArchiveUtil;
+import org.eclipse.birt.core.archive.IDocArchiveReader;
+import org.eclipse.birt.core.archive.RAFolderInputStream;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveReader;
+
+/**
+ * The reader of a document of a DocumentStore. The linked streams are read
+ * from the shared streams of the store, the others from the archive of the
+ * document. The reader holds its links until it is closed, so that the
+ * shared streams are kept if the document is removed meanwhile.
+ */
+public class StoreArchiveReader implements IDocArchiveReader
+{
+
+	private DocumentStore store;
+	private ArchiveFile archive;
+	private ArchiveReader reader;
+	private LinkedHashMap<String, StreamLink> links;
+
+	StoreArchiveReader( DocumentStore store, File document ) throws IOException
+	{
+		this.store = store;
+		// the document is not removed while its links are read
+		synchronized ( store )
+		{
+			this.archive = new ArchiveFile( document.getPath( ), "r" ); //$NON-NLS-1$
+			try
+			{
+				this.links = store.acquireLinks( archive );
+			}
+			catch ( IOException ex )
+			{
+				archive.close( );
+				throw ex;
+			}
+		}
+		try
+		{
+			this.reader = new ArchiveReader( archive );
+		}
+		catch ( IOException ex )
+		{
+			close( );
+			throw ex;
+		}
+	}
+
+	public String getName( )
+	{
+		return archive.getName( );
+	}
+
+	public void open( ) throws IOException
+	{
+	}
+
+	public RAInputStream getStream( String relativePath ) throws IOException
+	{
+		relativePath = normalize( relativePath );
+		StreamLink link = links.get( relativePath );
+		if ( link != null )
+		{
+			File file = store.getStreamFile( link.hash );
+			if ( !file.isFile( ) )
+			{
+				throw new FileNotFoundException( file.getPath( ) );
+			}
+			return new RAFolderInputStream( file );
+		}
+		if ( StreamLink.LINK_STREAM.equals( relativePath ) )
+		{
+			throw new FileNotFoundException( relativePath );
+		}
+		return reader.getStream( relativePath );
+	}
+
+	public RAInputStream getInputStream( String relativePath )
+			throws IOException
+	{
+		return getStream( relativePath );
+	}
+
+	public boolean exists( String relativePath )
+	{
+		relativePath = normalize( relativePath );
+		if ( links.containsKey( relativePath ) )
+		{
+			return true;
+		}
+		return !StreamLink.LINK_STREAM.equals( relativePath )
+				&& reader.exists( relativePath );
+	}
+
+	public List<String> listStreams( String relativeStoragePath )
+			throws IOException
+	{
+		ArrayList<String> list = new ArrayList<String>( );
+		for ( String name : listAllStreams( ) )
+		{
+			if ( name.startsWith( relativeStoragePath )
+					&& !name.equalsIgnoreCase( relativeStoragePath ) )
+			{
+				String diffString = ArchiveUtil.generateRelativePath(
+						relativeStoragePath, name );
+				if ( diffString.lastIndexOf( ArchiveUtil.UNIX_SEPERATOR ) == 0 )
+				{
+					list.add( name );
+				}
+			}
+		}
+		return list;
+	}
+
+	public List<String> listAllStreams( ) throws IOException
+	{
+		ArrayList<String> list = new ArrayList<String>( );
+		for ( String name : reader.listAllStreams( ) )
+		{
+			if ( !StreamLink.LINK_STREAM.equals( name ) )
+			{
+				list.add( name );
+			}
+		}
+		list.addAll( links.keySet( ) );
+		return list;
+	}
+
+	public void close( ) throws IOException
+	{
+		if ( links != null )
+		{
+			store.release( links.values( ) );
+			links = null;
+			archive.close( );
+		}
+	}
+
+	/**
+	 * The shared streams never change, so the lock of a linked stream does
+	 * nothing.
+	 */
+	public Object lock( String stream ) throws IOException
+	{
+		StreamLink link = links.get( normalize( stream ) );
+		if ( link != null )
+		{
+			return link;
+		}
+		return reader.lock( stream );
+	}
+
+	public void unlock( Object locker )
+	{
+		if ( !( locker instanceof StreamLink ) )
+		{
+			reader.unlock( locker );
+		}
+	}
+
+	private static String normalize( String relativePath )
+	{
+		if ( !relativePath.startsWith( ArchiveUtil.UNIX_SEPERATOR ) )
+			return ArchiveUtil.UNIX_SEPERATOR + relativePath;
+		return relativePath;
+	}
+}
@@ -0,0 +1,332 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.store;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.archive.IStreamSorter;
+import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.archive.compound.ArchiveEntry;
+import org.eclipse.birt.core.archive.compound.ArchiveFile;
+import org.eclipse.birt.core.archive.compound.ArchiveWriter;
+
+/**
+ * The writer of a document of a DocumentStore. The streams are written into a
+ * temporary archive, and they are moved into the store when the writer is
+ * finished.
+ */
+public class StoreArchiveWriter implements IDocArchiveWriter
+{
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final char[] HEX_DIGITS = "0123456789abcdef" //$NON-NLS-1$
+			.toCharArray( );
+
+	private DocumentStore store;
+	private File document;
+	private long minSharedSize;
+
+	private File file;
+	private ArchiveFile archive;
+	private ArchiveWriter writer;
+
+	StoreArchiveWriter( DocumentStore store, File document, long minSharedSize )
+			throws IOException
+	{
+		this.store = store;
+		this.document = document;
+		this.minSharedSize = minSharedSize;
+		this.file = store.createTempDocumentFile( document );
+		// the temporary archive is removed when it is closed
+		this.archive = new ArchiveFile( file.getPath( ), "rwt" ); //$NON-NLS-1$
+		this.writer = new ArchiveWriter( archive );
+	}
+
+	public void initialize( ) throws IOException
+	{
+		writer.initialize( );
+	}
+
+	/**
+	 * Returns the path of the document in the store.
+	 */
+	public String getName( )
+	{
+		return document.getPath( );
+	}
+
+	public RAOutputStream createRandomAccessStream( String relativePath )
+			throws IOException
+	{
+		return writer.createRandomAccessStream( relativePath );
+	}
+
+	public RAOutputStream openRandomAccessStream( String relativePath )
+			throws IOException
+	{
+		return writer.openRandomAccessStream( relativePath );
+	}
+
+	public RAOutputStream createOutputStream( String relativePath )
+			throws IOException
+	{
+		return writer.createOutputStream( relativePath );
+	}
+
+	public RAOutputStream getOutputStream( String relativePath )
+			throws IOException
+	{
+		return writer.getOutputStream( relativePath );
+	}
+
+	public RAInputStream getInputStream( String relativePath )
+			throws IOException
+	{
+		return writer.getInputStream( relativePath );
+	}
+
+	public boolean dropStream( String relativePath )
+	{
+		return writer.dropStream( relativePath );
+	}
+
+	public boolean exists( String relativePath )
+	{
+		return writer.exists( relativePath );
+	}
+
+	public List<String> listStreams( String relativeStoragePath )
+			throws IOException
+	{
+		return writer.listStreams( relativeStoragePath );
+	}
+
+	public List<String> listAllStreams( ) throws IOException
+	{
+		return writer.listAllStreams( );
+	}
+
+	public void setStreamSorter( IStreamSorter streamSorter )
+	{
+		writer.setStreamSorter( streamSorter );
+	}
+
+	public void flush( ) throws IOException
+	{
+		writer.flush( );
+	}
+
+	public Object lock( String stream ) throws IOException
+	{
+		return writer.lock( stream );
+	}
+
+	public void unlock( Object locker )
+	{
+		writer.unlock( locker );
+	}
+
+	/**
+	 * Moves the streams into the store: the large streams are linked to the
+	 * shared streams, and the others are copied into the archive of the
+	 * document, which replaces the existing document.
+	 */
+	public void finish( ) throws IOException
+	{
+		if ( writer == null )
+		{
+			return;
+		}
+		ArrayList<StreamLink> links = new ArrayList<StreamLink>( );
+		File written = null;
+		try
+		{
+			writer.finish( );
+			written = store.createTempDocumentFile( document );
+			ArchiveFile output = new ArchiveFile( written.getPath( ), "rw" ); //$NON-NLS-1$
+			try
+			{
+				byte[] buffer = new byte[BUFFER_SIZE];
+				for ( String name : archive.listEntries( "/" ) ) //$NON-NLS-1$
+				{
+					ArchiveEntry entry = archive.openEntry( name );
+					try
+					{
+						long length = entry.getLength( );
+						if ( length >= minSharedSize )
+						{
+							share( entry, length, buffer, links );
+						}
+						else
+						{
+							ArchiveEntry target = output.createEntry( name );
+							try
+							{
+								copy( entry, length, buffer, target );
+							}
+							finally
+							{
+								target.close( );
+							}
+						}
+					}
+					finally
+					{
+						entry.close( );
+					}
+				}
+				StreamLink.write( output, links );
+			}
+			finally
+			{
+				output.close( );
+			}
+			store.commit( written, document );
+			store.releaseTempFile( written );
+			written = null;
+		}
+		catch ( IOException ex )
+		{
+			store.release( links );
+			throw ex;
+		}
+		finally
+		{
+			if ( written != null )
+			{
+				written.delete( );
+				store.releaseTempFile( written );
+			}
+			writer = null;
+			archive.close( );
+			file.delete( );
+			store.releaseTempFile( file );
+		}
+	}
+
+	/**
+	 * Links a stream to the shared stream of its data, saving the shared
+	 * stream if the store does not have it.
+	 */
+	private void share( ArchiveEntry entry, long length, byte[] buffer,
+			List<StreamLink> links ) throws IOException
+	{
+		MessageDigest digest;
+		try
+		{
+			digest = MessageDigest.getInstance( "SHA-1" ); //$NON-NLS-1$
+		}
+		catch ( NoSuchAlgorithmException ex )
+		{
+			IOException ioex = new IOException( ex.getMessage( ) );
+			ioex.initCause( ex );
+			throw ioex;
+		}
+		long pos = 0;
+		while ( pos < length )
+		{
+			int size = read( entry, pos, buffer, length );
+			digest.update( buffer, 0, size );
+			pos += size;
+		}
+		String hash = toHex( digest.digest( ) );
+
+		// acquire it before it is written, so that it is not collected
+		store.acquire( hash );
+		links.add( new StreamLink( entry.getName( ), hash, length ) );
+
+		File file = store.getStreamFile( hash );
+		if ( file.exists( ) )
+		{
+			if ( file.length( ) != length )
+			{
+				throw new IOException( "The shared stream " + file //$NON-NLS-1$
+						+ " does not match the stream " + entry.getName( ) ); //$NON-NLS-1$
+			}
+			return;
+		}
+		File temp = store.createTempStreamFile( hash );
+		try
+		{
+			FileOutputStream out = new FileOutputStream( temp );
+			try
+			{
+				pos = 0;
+				while ( pos < length )
+				{
+					int size = read( entry, pos, buffer, length );
+					out.write( buffer, 0, size );
+					pos += size;
+				}
+			}
+			finally
+			{
+				out.close( );
+			}
+			// another writer may have saved the same stream meanwhile
+			if ( !temp.renameTo( file ) && !file.exists( ) )
+			{
+				throw new IOException( "Can not save the shared stream " //$NON-NLS-1$
+						+ file );
+			}
+		}
+		finally
+		{
+			temp.delete( );
+			store.releaseTempFile( temp );
+		}
+	}
+
+	private void copy( ArchiveEntry entry, long length, byte[] buffer,
+			ArchiveEntry target ) throws IOException
+	{
+		long pos = 0;
+		while ( pos < length )
+		{
+			int size = read( entry, pos, buffer, length );
+			target.write( pos, buffer, 0, size );
+			pos += size;
+		}
+	}
+
+	private int read( ArchiveEntry entry, long pos, byte[] buffer, long length )
+			throws IOException
+	{
+		int size = entry.read( pos, buffer, 0, (int) Math.min( buffer.length,
+				length - pos ) );
+		if ( size <= 0 )
+		{
+			throw new IOException( "Failed to read the stream " //$NON-NLS-1$
+					+ entry.getName( ) );
+		}
+		return size;
+	}
+
+	private static String toHex( byte[] bytes )
+	{
+		char[] chars = new char[bytes.length * 2];
+		for ( int i = 0; i < bytes.length; i++ )
+		{
+			chars[i * 2] = HEX_DIGITS[( bytes[i] >> 4 ) & 0x0F];
+			chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+		}
+		return new String( chars );
+	}
+}
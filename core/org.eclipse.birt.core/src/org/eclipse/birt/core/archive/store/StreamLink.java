@@ -0,0 +1,139 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.archive.store;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+
+import org.eclipse.birt.core.archive.compound.ArchiveEntry;
+import org.eclipse.birt.core.archive.compound.IArchiveFile;
+import org.eclipse.birt.core.util.IOUtil;
+
+/**
+ * A stream of a document which is saved in the shared streams of the store.
+ * The links of a document are saved in the LINK_STREAM of its archive.
+ */
+class StreamLink
+{
+
+	/**
+	 * The stream of a document archive which holds its links.
+	 */
+	static final String LINK_STREAM = "/.links"; //$NON-NLS-1$
+
+	static final int LINK_VERSION_0 = 0;
+
+	/**
+	 * the name of the stream in the document
+	 */
+	final String name;
+	/**
+	 * the hash of the data of the stream
+	 */
+	final String hash;
+	/**
+	 * the length of the stream
+	 */
+	final long length;
+
+	StreamLink( String name, String hash, long length )
+	{
+		this.name = name;
+		this.hash = hash;
+		this.length = length;
+	}
+
+	/**
+	 * Reads the links of a document archive.
+	 *
+	 * @return the links by the name of the streams, empty if the document
+	 *         has no links.
+	 */
+	static LinkedHashMap<String, StreamLink> read( IArchiveFile archive )
+			throws IOException
+	{
+		LinkedHashMap<String, StreamLink> links = new LinkedHashMap<String, StreamLink>( );
+		if ( !archive.exists( LINK_STREAM ) )
+		{
+			return links;
+		}
+		ArchiveEntry entry = archive.openEntry( LINK_STREAM );
+		try
+		{
+			byte[] b = new byte[(int) entry.getLength( )];
+			int offset = 0;
+			while ( offset < b.length )
+			{
+				int size = entry.read( offset, b, offset, b.length - offset );
+				if ( size <= 0 )
+				{
+					throw new EOFException( );
+				}
+				offset += size;
+			}
+			DataInputStream in = new DataInputStream( new ByteArrayInputStream( b ) );
+			int version = IOUtil.readInt( in );
+			if ( version != LINK_VERSION_0 )
+			{
+				throw new IOException( "Unsupported link version " + version ); //$NON-NLS-1$
+			}
+			int count = IOUtil.readInt( in );
+			for ( int i = 0; i < count; i++ )
+			{
+				String name = IOUtil.readString( in );
+				String hash = IOUtil.readString( in );
+				long length = IOUtil.readLong( in );
+				links.put( name, new StreamLink( name, hash, length ) );
+			}
+		}
+		finally
+		{
+			entry.close( );
+		}
+		return links;
+	}
+
+	/**
+	 * Writes the links of a document archive.
+	 */
+	static void write( IArchiveFile archive, Collection<StreamLink> links )
+			throws IOException
+	{
+		ByteArrayOutputStream buffer = new ByteArrayOutputStream( );
+		DataOutputStream out = new DataOutputStream( buffer );
+		IOUtil.writeInt( out, LINK_VERSION_0 );
+		IOUtil.writeInt( out, links.size( ) );
+		for ( StreamLink link : links )
+		{
+			IOUtil.writeString( out, link.name );
+			IOUtil.writeString( out, link.hash );
+			IOUtil.writeLong( out, link.length );
+		}
+		out.flush( );
+		byte[] b = buffer.toByteArray( );
+		ArchiveEntry entry = archive.createEntry( LINK_STREAM );
+		try
+		{
+			entry.write( 0, b, 0, b.length );
+		}
+		finally
+		{
+			entry.close( );
+		}
+	}
+}
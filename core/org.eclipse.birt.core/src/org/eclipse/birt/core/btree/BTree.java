@@ -253,13 +253,7 @@ public class BTree<K, V> implements BTreeConstants
 	protected LeafEntry<K, V> insertEntry( K k, V v ) throws IOException
 	{
 		BTreeValue<K> key = createKey( k );
-		@SuppressWarnings("unchecked")
-		BTreeValue<V>[] values = (BTreeValue<V>[]) new BTreeValue[1];
-		if ( hasValue( ) )
-		{
-			values[0] = createValue( v );
-		}
-		return insertEntry( key, values );
+		return insertEntry( key, createValues( v ) );
 	}
 
 	LeafEntry<K, V> insertEntry( K k, V[] vs ) throws IOException
@@ -270,11 +264,27 @@ public class BTree<K, V> implements BTreeConstants
 		}
 		assert vs != null && vs.length > 0;
 		BTreeValue<K> key = createKey( k );
+		return insertEntry( key, createValues( vs ) );
+	}
+
+	BTreeValue<V>[] createValues( V v ) throws IOException
+	{
+		@SuppressWarnings("unchecked")
+		BTreeValue<V>[] values = (BTreeValue<V>[]) new BTreeValue[1];
+		if ( hasValue( ) )
+		{
+			values[0] = createValue( v );
+		}
+		return values;
+	}
+
+	BTreeValue<V>[] createValues( V[] vs ) throws IOException
+	{
 		if ( !hasValue( ) || vs == null || vs.length == 0 )
 		{
 			@SuppressWarnings("unchecked")
 			BTreeValue<V>[] values = (BTreeValue<V>[]) new BTreeValue[1];
-			return insertEntry( key, values );
+			return values;
 		}
 		@SuppressWarnings("unchecked")
 		BTreeValue<V>[] values = (BTreeValue<V>[]) new BTreeValue[vs.length];
@@ -282,11 +292,11 @@ public class BTree<K, V> implements BTreeConstants
 		{
 			values[i] = createValue( vs[i] );
 		}
-		return insertEntry( key, values );
+		return values;
 	}
 
-	private LeafEntry<K, V> insertEntry( BTreeValue<K> key,
-			BTreeValue<V>[] values ) throws IOException
+	LeafEntry<K, V> insertEntry( BTreeValue<K> key, BTreeValue<V>[] values )
+			throws IOException
 	{
 		if ( rootNodeId == -1 )
 		{
@@ -481,6 +491,30 @@ public class BTree<K, V> implements BTreeConstants
 		return new BTreeCursor<K, V>( this );
 	}
 
+	/**
+	 * Creates a builder which loads the entries sorted by their keys into
+	 * this tree. The tree must be empty, and it should not be changed by
+	 * insert until the entries are loaded.
+	 * 
+	 * @return the builder
+	 * @throws IOException
+	 *             if the tree is read only or not empty
+	 */
+	public BTreeBuilder<K, V> createBuilder( ) throws IOException
+	{
+		if ( readOnly )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.READ_ONLY_TREE ) );
+		}
+		if ( rootNodeId != -1 )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.NOT_EMPTY_TREE ) );
+		}
+		return new BTreeBuilder<K, V>( this );
+	}
+
 	int compare( BTreeValue<K> k1, BTreeValue<K> k2 ) throws IOException
 	{
 		K key1 = getKey( k1 );
@@ -964,6 +998,11 @@ public class BTree<K, V> implements BTreeConstants
 		return allowDuplicate;
 	}
 
+	boolean allowNullKey( )
+	{
+		return allowNullKey;
+	}
+
 	int getRootNodeId( )
 	{
 		return rootNodeId;
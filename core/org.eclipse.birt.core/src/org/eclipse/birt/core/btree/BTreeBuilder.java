@@ -0,0 +1,158 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.btree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * Loads the entries sorted by their keys into an empty btree, bottom up.
+ * <p>
+ * The entries are always appended to the last leaf node. A full node is not
+ * split in half, as by insert, but only its last entry is moved to a new
+ * node, so that the nodes are filled up and the tree is built without
+ * searching it from the root. The nodes are written as they are evicted from
+ * the node cache of the tree.
+ * <p>
+ * The entries with the same key are handled as by insert: the values are
+ * appended if the tree allows duplicate values, otherwise the last value
+ * replaces the others.
+ *
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class BTreeBuilder<K, V>
+{
+
+	private BTree<K, V> btree;
+	/**
+	 * the id of the last node of each level, the leaf level first.
+	 */
+	private ArrayList<Integer> lastNodes = new ArrayList<Integer>( );
+	private BTreeValue<K> lastKey;
+
+	BTreeBuilder( BTree<K, V> btree )
+	{
+		this.btree = btree;
+	}
+
+	/**
+	 * append an entry to the tree.
+	 *
+	 * @param k
+	 *            the key, which must not be less than the previous keys
+	 * @param v
+	 *            the value
+	 * @throws IOException
+	 */
+	public void append( K k, V v ) throws IOException
+	{
+		if ( k == null && !btree.allowNullKey( ) )
+		{
+			throw new NullPointerException( "key can not be null" );
+		}
+		append( btree.createKey( k ), btree.createValues( v ) );
+	}
+
+	/**
+	 * append an entry with several values to the tree.
+	 *
+	 * @param k
+	 *            the key, which must not be less than the previous keys
+	 * @param vs
+	 *            the values
+	 * @throws IOException
+	 */
+	public void append( K k, V[] vs ) throws IOException
+	{
+		if ( k == null && !btree.allowNullKey( ) )
+		{
+			throw new NullPointerException( "key can not be null" );
+		}
+		append( btree.createKey( k ), btree.createValues( vs ) );
+	}
+
+	private void append( BTreeValue<K> key, BTreeValue<V>[] values )
+			throws IOException
+	{
+		if ( lastKey != null && btree.compare( lastKey, key ) > 0 )
+		{
+			throw new IOException(
+					CoreMessages.getString( ResourceConstants.UNSORTED_KEYS ) );
+		}
+		if ( lastNodes.isEmpty( ) )
+		{
+			// the first entry creates the root
+			btree.insertEntry( key, values );
+			lastNodes.add( Integer.valueOf( btree.getRootNodeId( ) ) );
+			lastKey = key;
+			return;
+		}
+
+		LeafNode<K, V> leafNode = btree.loadLeafNode( lastNodes.get( 0 ) );
+		try
+		{
+			leafNode.insert( key, values );
+			if ( leafNode.needSplit( ) )
+			{
+				IndexEntry<K, V> splitEntry = leafNode.split( leafNode
+						.getEntryCount( ) - 1 );
+				lastNodes.set( 0, Integer.valueOf( splitEntry.getChildNodeId( ) ) );
+				appendIndex( 1, splitEntry );
+			}
+		}
+		finally
+		{
+			leafNode.unlock( );
+		}
+		lastKey = key;
+	}
+
+	/**
+	 * append the index entry of a new node to the last node of a level.
+	 */
+	private void appendIndex( int level, IndexEntry<K, V> entry )
+			throws IOException
+	{
+		if ( level == lastNodes.size( ) )
+		{
+			// the root is split, create a new root upon it
+			btree.insertIndex( entry.getKey( ), entry.getChildNodeId( ) );
+			lastNodes.add( Integer.valueOf( btree.getRootNodeId( ) ) );
+			return;
+		}
+
+		IndexNode<K, V> indexNode = btree.loadIndexNode( lastNodes.get( level ) );
+		try
+		{
+			indexNode.insertIndex( entry.getKey( ), entry.getChildNodeId( ) );
+			if ( indexNode.needSplit( ) )
+			{
+				// keep an entry in the new node besides its first child
+				IndexEntry<K, V> splitEntry = indexNode.split( indexNode
+						.getEntryCount( ) - 2 );
+				lastNodes.set( level, Integer.valueOf( splitEntry
+						.getChildNodeId( ) ) );
+				appendIndex( level + 1, splitEntry );
+			}
+		}
+		finally
+		{
+			indexNode.unlock( );
+		}
+	}
+}
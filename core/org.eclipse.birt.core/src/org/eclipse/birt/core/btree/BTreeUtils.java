@@ -27,4 +27,30 @@ public class BTreeUtils
 		b[2] = (byte) ( ( v >>> 8 ) & 0xFF );
 		b[3] = (byte) ( ( v >>> 0 ) & 0xFF );
 	}
+
+	static public long bytesToLong( byte[] b )
+	{
+		return ( ( (long) bytesToInteger( b, 0 ) ) << 32 )
+				+ ( bytesToInteger( b, 4 ) & 0xFFFFFFFFL );
+	}
+
+	static public void longToBytes( long v, byte[] b )
+	{
+		integerToBytes( (int) ( v >>> 32 ), b, 0 );
+		integerToBytes( (int) v, b, 4 );
+	}
+
+	static int bytesToInteger( byte[] b, int off )
+	{
+		return ( ( b[off] & 0xFF ) << 24 ) + ( ( b[off + 1] & 0xFF ) << 16 )
+				+ ( ( b[off + 2] & 0xFF ) << 8 ) + ( ( b[off + 3] & 0xFF ) << 0 );
+	}
+
+	static void integerToBytes( int v, byte[] b, int off )
+	{
+		b[off] = (byte) ( ( v >>> 24 ) & 0xFF );
+		b[off + 1] = (byte) ( ( v >>> 16 ) & 0xFF );
+		b[off + 2] = (byte) ( ( v >>> 8 ) & 0xFF );
+		b[off + 3] = (byte) ( ( v >>> 0 ) & 0xFF );
+	}
 }
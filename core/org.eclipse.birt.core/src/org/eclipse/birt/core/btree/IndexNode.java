@@ -285,9 +285,22 @@ public class IndexNode<K, V> extends BTreeNode<K, V>
 	}
 
 	public IndexEntry<K, V> split( ) throws IOException
+	{
+		return split( entries.size( ) / 2 );
+	}
+
+	/**
+	 * split the node at an entry, the entry is moved to the upper level and
+	 * the following entries are moved to a new node.
+	 * 
+	 * @param splitIndex
+	 *            the index of the entry moved to the upper level
+	 * @return the index entry of the new node
+	 * @throws IOException
+	 */
+	IndexEntry<K, V> split( int splitIndex ) throws IOException
 	{
 		// break at the node into two nodes: current and new node.
-		int splitIndex = entries.size( ) / 2;
 
 		// create a new node for splitEntry
 		IndexNode<K, V> newNode = btree.createIndexNode( );
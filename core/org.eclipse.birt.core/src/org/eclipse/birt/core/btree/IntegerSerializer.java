@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.btree;
+
+import java.io.IOException;
+
+/**
+ * Serializes an integer key into 4 bytes, so that it can be used with the key
+ * size 4.
+ */
+public class IntegerSerializer implements BTreeSerializer<Integer>
+{
+
+	public byte[] getBytes( Integer object ) throws IOException
+	{
+		byte[] bytes = new byte[4];
+		BTreeUtils.integerToBytes( object.intValue( ), bytes );
+		return bytes;
+	}
+
+	public Integer getObject( byte[] bytes ) throws IOException,
+			ClassNotFoundException
+	{
+		return Integer.valueOf( BTreeUtils.bytesToInteger( bytes ) );
+	}
+}
@@ -290,8 +290,20 @@ class LeafNode<K, V> extends BTreeNode<K, V>
 
 	public IndexEntry<K, V> split( ) throws IOException
 	{
-		int splitIndex = entries.size( ) / 2;
+		return split( entries.size( ) / 2 );
+	}
 
+	/**
+	 * split the node at an entry, the entry and the following entries are
+	 * moved to a new node.
+	 * 
+	 * @param splitIndex
+	 *            the index of the first entry of the new node
+	 * @return the index entry of the new node
+	 * @throws IOException
+	 */
+	IndexEntry<K, V> split( int splitIndex ) throws IOException
+	{
 		// create a new node for values which after (include) splitEntry
 		LeafNode<K, V> newNode = btree.createLeafNode( );
 		try
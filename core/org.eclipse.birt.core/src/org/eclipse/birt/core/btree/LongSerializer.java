@@ -0,0 +1,35 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.btree;
+
+import java.io.IOException;
+
+/**
+ * Serializes a long key into 8 bytes, so that it can be used with the key
+ * size 8.
+ */
+public class LongSerializer implements BTreeSerializer<Long>
+{
+
+	public byte[] getBytes( Long object ) throws IOException
+	{
+		byte[] bytes = new byte[8];
+		BTreeUtils.longToBytes( object.longValue( ), bytes );
+		return bytes;
+	}
+
+	public Long getObject( byte[] bytes ) throws IOException,
+			ClassNotFoundException
+	{
+		return Long.valueOf( BTreeUtils.bytesToLong( bytes ) );
+	}
+}
@@ -0,0 +1,157 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.core.btree;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+
+import org.eclipse.birt.core.i18n.CoreMessages;
+import org.eclipse.birt.core.i18n.ResourceConstants;
+
+/**
+ * Serializes a string key in the format of DataOutput.writeUTF: the length of
+ * the encoded string in 2 bytes, followed by the modified UTF-8 encoding of
+ * the string. It encodes the string directly, without the streams used by the
+ * JavaSerializer.
+ */
+public class StringSerializer implements BTreeSerializer<String>
+{
+
+	public byte[] getBytes( String object ) throws IOException
+	{
+		int length = object.length( );
+		int utfLength = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = object.charAt( i );
+			if ( c >= 0x0001 && c <= 0x007F )
+			{
+				utfLength++;
+			}
+			else if ( c > 0x07FF )
+			{
+				utfLength += 3;
+			}
+			else
+			{
+				utfLength += 2;
+			}
+		}
+		if ( utfLength > 65535 )
+		{
+			throw new UTFDataFormatException( "encoded string too long: " //$NON-NLS-1$
+					+ utfLength + " bytes" ); //$NON-NLS-1$
+		}
+
+		byte[] bytes = new byte[utfLength + 2];
+		bytes[0] = (byte) ( ( utfLength >>> 8 ) & 0xFF );
+		bytes[1] = (byte) ( utfLength & 0xFF );
+		int count = 2;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = object.charAt( i );
+			if ( c >= 0x0001 && c <= 0x007F )
+			{
+				bytes[count++] = (byte) c;
+			}
+			else if ( c > 0x07FF )
+			{
+				bytes[count++] = (byte) ( 0xE0 | ( ( c >> 12 ) & 0x0F ) );
+				bytes[count++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+				bytes[count++] = (byte) ( 0x80 | ( c & 0x3F ) );
+			}
+			else
+			{
+				bytes[count++] = (byte) ( 0xC0 | ( ( c >> 6 ) & 0x1F ) );
+				bytes[count++] = (byte) ( 0x80 | ( c & 0x3F ) );
+			}
+		}
+		return bytes;
+	}
+
+	public String getObject( byte[] bytes ) throws IOException,
+			ClassNotFoundException
+	{
+		int utfLength = ( ( bytes[0] & 0xFF ) << 8 ) + ( bytes[1] & 0xFF );
+		if ( utfLength + 2 > bytes.length )
+		{
+			throw new UTFDataFormatException( CoreMessages
+					.getString( ResourceConstants.MALFORMED_INPUT_ERROR ) );
+		}
+		char[] chars = new char[utfLength];
+		int length = 0;
+		int count = 2;
+		int end = utfLength + 2;
+		while ( count < end )
+		{
+			int c = bytes[count] & 0xFF;
+			switch ( c >> 4 )
+			{
+				case 0 :
+				case 1 :
+				case 2 :
+				case 3 :
+				case 4 :
+				case 5 :
+				case 6 :
+				case 7 :
+					// 0xxxxxxx
+					count++;
+					chars[length++] = (char) c;
+					break;
+				case 12 :
+				case 13 :
+					// 110x xxxx 10xx xxxx
+					if ( count + 2 > end )
+					{
+						throw new UTFDataFormatException( CoreMessages
+								.getString( ResourceConstants.MALFORMED_INPUT_ERROR ) );
+					}
+					int c2 = bytes[count + 1];
+					if ( ( c2 & 0xC0 ) != 0x80 )
+					{
+						throw new UTFDataFormatException( CoreMessages.getFormattedString(
+								ResourceConstants.MALFORMED_INPUT_AROUND_BYTE,
+								new Object[]{count + 1} ) );
+					}
+					chars[length++] = (char) ( ( ( c & 0x1F ) << 6 ) | ( c2 & 0x3F ) );
+					count += 2;
+					break;
+				case 14 :
+					// 1110 xxxx 10xx xxxx 10xx xxxx
+					if ( count + 3 > end )
+					{
+						throw new UTFDataFormatException( CoreMessages
+								.getString( ResourceConstants.MALFORMED_INPUT_ERROR ) );
+					}
+					c2 = bytes[count + 1];
+					int c3 = bytes[count + 2];
+					if ( ( ( c2 & 0xC0 ) != 0x80 ) || ( ( c3 & 0xC0 ) != 0x80 ) )
+					{
+						throw new UTFDataFormatException( CoreMessages.getFormattedString(
+								ResourceConstants.MALFORMED_INPUT_AROUND_BYTE,
+								new Object[]{count + 2} ) );
+					}
+					chars[length++] = (char) ( ( ( c & 0x0F ) << 12 )
+							| ( ( c2 & 0x3F ) << 6 ) | ( c3 & 0x3F ) );
+					count += 3;
+					break;
+				default :
+					// 10xx xxxx, 1111 xxxx
+					throw new UTFDataFormatException( CoreMessages.getFormattedString(
+							ResourceConstants.MALFORMED_INPUT_AROUND_BYTE,
+							new Object[]{count} ) );
+			}
+		}
+		return new String( chars, 0, length );
+	}
+}
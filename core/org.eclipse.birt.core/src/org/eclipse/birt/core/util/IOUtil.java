@@ -406,6 +406,91 @@ public class IOUtil
 		outputStream.writeLong( value );
 	}
 
+	/**
+	 * Read an int value written by writeVarInt from an input stream
+	 * 
+	 * @param inputStream
+	 * @return int value
+	 * @throws IOException
+	 */
+	public final static int readVarInt( DataInputStream inputStream )
+			throws IOException
+	{
+		int value = 0;
+		for ( int shift = 0; shift < 32; shift += 7 )
+		{
+			int b = inputStream.readUnsignedByte( );
+			value |= ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 )
+			{
+				return value;
+			}
+		}
+		throw new IOException( "Malformed variable length int" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * Write an int value to an output stream in 7 bits groups, so that the
+	 * small positive values take less than 4 bytes. A negative value takes 5
+	 * bytes.
+	 * 
+	 * @param outputStream
+	 * @param value
+	 * @throws IOException
+	 */
+	public final static void writeVarInt( DataOutputStream outputStream,
+			int value ) throws IOException
+	{
+		while ( ( value & ~0x7F ) != 0 )
+		{
+			outputStream.writeByte( ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		outputStream.writeByte( value );
+	}
+
+	/**
+	 * Read a long value written by writeVarLong from an input stream
+	 * 
+	 * @param inputStream
+	 * @return long value
+	 * @throws IOException
+	 */
+	public final static long readVarLong( DataInputStream inputStream )
+			throws IOException
+	{
+		long value = 0;
+		for ( int shift = 0; shift < 64; shift += 7 )
+		{
+			int b = inputStream.readUnsignedByte( );
+			value |= (long) ( b & 0x7F ) << shift;
+			if ( ( b & 0x80 ) == 0 )
+			{
+				return value;
+			}
+		}
+		throw new IOException( "Malformed variable length long" ); //$NON-NLS-1$
+	}
+
+	/**
+	 * Write a long value to an output stream in 7 bits groups, so that the
+	 * small positive values take less than 8 bytes.
+	 * 
+	 * @param outputStream
+	 * @param value
+	 * @throws IOException
+	 */
+	public final static void writeVarLong( DataOutputStream outputStream,
+			long value ) throws IOException
+	{
+		while ( ( value & ~0x7FL ) != 0 )
+		{
+			outputStream.writeByte( (int) ( value & 0x7F ) | 0x80 );
+			value >>>= 7;
+		}
+		outputStream.writeByte( (int) value );
+	}
+
 	/**
 	 * Write a byte array to an output stream only with its raw content.
 	 * 
@@ -860,6 +945,51 @@ public class IOUtil
 		}
 	}
 
+	/**
+	 * Read a String value written by writeVarString from an input stream
+	 * 
+	 * @param dis
+	 * @return an String
+	 * @throws IOException
+	 */
+	public final static String readVarString( DataInputStream dis )
+			throws IOException
+	{
+		int length = readVarInt( dis );
+		if ( length == 0 )
+		{
+			return null;
+		}
+		if ( length < 0 )
+		{
+			throw new EOFException( );
+		}
+		byte[] bytes = new byte[length - 1];
+		dis.readFully( bytes );
+		return convertBytes2String( bytes );
+	}
+
+	/**
+	 * Write a String value to an output stream as the variable length size of
+	 * its UTF bytes followed by the bytes. Unlike writeString, it writes no
+	 * type, and the size of a short string takes one byte.
+	 * 
+	 * @param dos
+	 * @param str
+	 * @throws IOException
+	 */
+	public final static void writeVarString( DataOutputStream dos, String str )
+			throws IOException
+	{
+		if ( str == null )
+		{
+			writeVarInt( dos, 0 );
+			return;
+		}
+		writeVarInt( dos, getBytesSize( str ) + 1 );
+		writeUTFBytes( dos, str );
+	}
+
 	/**
 	 * Read a list from an input stream
 	 * 
@@ -1144,11 +1274,22 @@ public class IOUtil
 	 */
 	private static void writeUTF( DataOutputStream dos, String str )
 			throws IOException
+	{
+		dos.writeInt( getBytesSize( str ) );
+		writeUTFBytes( dos, str );
+	}
+
+	/**
+	 * private utility method to write the UTF bytes of a String to a
+	 * DataOutputStream
+	 * 
+	 * @param str
+	 */
+	private static void writeUTFBytes( DataOutputStream dos, String str )
+			throws IOException
 	{
 		int strlen = str.length( );
 		int c = 0;
-		int utflen = getBytesSize( str );
-		dos.writeInt( utflen );
 
 		int i = 0;
 		for ( ; i < strlen; i++ )
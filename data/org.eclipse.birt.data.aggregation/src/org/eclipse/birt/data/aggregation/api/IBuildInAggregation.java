@@ -48,5 +48,8 @@ public interface IBuildInAggregation
 	public static final String TOTAL_PERCENTSUM_FUNC = "PERCENTSUM";//$NON-NLS-1$
 	public static final String TOTAL_RUNNINGCOUNT_FUNC = "RUNNINGCOUNT";//$NON-NLS-1$
 	public static final String TOTAL_CONCATENATE_FUNC = "CONCATENATE";//$NON-NLS-1$
+	public static final String TOTAL_APPROX_PERCENTILE_FUNC = "APPROXPERCENTILE";//$NON-NLS-1$
+	public static final String TOTAL_APPROX_COUNTDISTINCT_FUNC = "APPROXCOUNTDISTINCT";//$NON-NLS-1$
+	public static final String TOTAL_APPROX_MODE_FUNC = "APPROXMODE";//$NON-NLS-1$
 
 }
\ No newline at end of file
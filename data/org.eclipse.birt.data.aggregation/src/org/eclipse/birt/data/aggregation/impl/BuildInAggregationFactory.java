@@ -17,6 +17,7 @@ import java.util.List;
 import java.util.Map;
 
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.aggregation.impl.rank.TotalApproxPercentile;
 import org.eclipse.birt.data.aggregation.impl.rank.TotalIsBottomN;
 import org.eclipse.birt.data.aggregation.impl.rank.TotalIsBottomNPercent;
 import org.eclipse.birt.data.aggregation.impl.rank.TotalIsTopN;
@@ -140,6 +141,17 @@ public class BuildInAggregationFactory implements IAggregationFactory
 		final TotalConcatenate totalConcatenate = new TotalConcatenate( );
 		aggrMap.put( IBuildInAggregation.TOTAL_CONCATENATE_FUNC, totalConcatenate );
 		aggregations.add( totalConcatenate );
+		final TotalApproxPercentile totalApproxPercentile = new TotalApproxPercentile( );
+		aggrMap.put( IBuildInAggregation.TOTAL_APPROX_PERCENTILE_FUNC,
+				totalApproxPercentile );
+		aggregations.add( totalApproxPercentile );
+		final TotalApproxCountDistinct totalApproxCountDistinct = new TotalApproxCountDistinct( );
+		aggrMap.put( IBuildInAggregation.TOTAL_APPROX_COUNTDISTINCT_FUNC,
+				totalApproxCountDistinct );
+		aggregations.add( totalApproxCountDistinct );
+		final TotalApproxMode totalApproxMode = new TotalApproxMode( );
+		aggrMap.put( IBuildInAggregation.TOTAL_APPROX_MODE_FUNC, totalApproxMode );
+		aggregations.add( totalApproxMode );
 	}
 
 	/**
@@ -20,7 +20,9 @@ import java.util.Date;
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.calculator.ICalculator;
+import org.eclipse.birt.data.aggregation.calculator.NumberCalculator;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
@@ -112,6 +114,71 @@ public abstract class SummaryAccumulator extends Accumulator
 		return value;
 	}
 
+	/**
+	 * Chooses the calculator of a batch of values the way onRow() does on its
+	 * first non-null value, and returns whether the values of the batch can be
+	 * calculated as primitive doubles.
+	 * 
+	 * @param valueClass
+	 * @param nulls
+	 * @param count
+	 * @return
+	 */
+	protected boolean isDoubleBatch( Class valueClass, boolean[] nulls,
+			int count )
+	{
+		for ( int i = 0; i < count && calculator == null; i++ )
+		{
+			if ( !nulls[i] )
+				calculator = CalculatorFactory.getCalculator( valueClass );
+		}
+		return calculator == null || calculator instanceof NumberCalculator;
+	}
+
+	/**
+	 * Passes the non-null values of a batch to onRow() one by one, e.g. when
+	 * the calculator of the accumulator is not a NumberCalculator.
+	 * 
+	 * @param valueClass
+	 * @param values
+	 * @param nulls
+	 * @param count
+	 * @throws DataException
+	 */
+	protected void onBatchRows( Class valueClass, double[] values,
+			boolean[] nulls, int count ) throws DataException
+	{
+		Object[] args = new Object[1];
+		for ( int i = 0; i < count; i++ )
+		{
+			if ( !nulls[i] )
+			{
+				args[0] = toBatchValue( valueClass, values[i] );
+				onRow( args );
+			}
+		}
+	}
+
+	/**
+	 * Converts a value of a batch back to its class.
+	 * 
+	 * @param valueClass
+	 * @param value
+	 * @return
+	 */
+	protected static Object toBatchValue( Class valueClass, double value )
+	{
+		if ( valueClass == Integer.class )
+			return Integer.valueOf( (int) value );
+		if ( valueClass == Float.class )
+			return Float.valueOf( (float) value );
+		if ( valueClass == Short.class )
+			return Short.valueOf( (short) value );
+		if ( valueClass == Byte.class )
+			return Byte.valueOf( (byte) value );
+		return Double.valueOf( value );
+	}
+
 	abstract public Object getSummaryValue( ) throws DataException;
 
 }
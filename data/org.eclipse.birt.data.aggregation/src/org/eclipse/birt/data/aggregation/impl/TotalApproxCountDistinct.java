@@ -0,0 +1,145 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
+import org.eclipse.birt.data.aggregation.i18n.Messages;
+import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
+import org.eclipse.birt.data.aggregation.impl.sketch.HyperLogLog;
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * Implements the built-in Total.approxCountDistinct aggregation, which
+ * estimates the number of distinct values with a HyperLogLog sketch of a
+ * fixed size rather than keeping all the distinct values as countDistinct
+ * does. The count is exact for up to about one thousand distinct values.
+ */
+public class TotalApproxCountDistinct extends AggrFunction
+{
+
+	public String getName( )
+	{
+		return IBuildInAggregation.TOTAL_APPROX_COUNTDISTINCT_FUNC;
+	}
+
+	public int getType( )
+	{
+		return SUMMARY_AGGR;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggregation#getDateType()
+	 */
+	public int getDataType( )
+	{
+		return DataType.INTEGER_TYPE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getParameterDefn()
+	 */
+	public IParameterDefn[] getParameterDefn( )
+	{
+		// 1 argument
+		return new IParameterDefn[]{
+			new ParameterDefn( Constants.EXPRESSION_NAME,
+					Constants.EXPRESSION_DISPLAY_NAME,
+					false,
+					true,
+					SupportedDataTypes.ANY,
+					"" )//$NON-NLS-1$
+		};
+	}
+
+	public Accumulator newAccumulator( )
+	{
+		return new MyAccumulator( );
+	}
+
+	private static class MyAccumulator extends SummaryAccumulator
+	{
+
+		private HyperLogLog sketch;
+		private boolean hasNullValue = false;
+
+		public void start( )
+		{
+			super.start( );
+			sketch = new HyperLogLog( );
+			this.hasNullValue = false;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.eclipse.birt.data.engine.aggregation.Accumulator#onRow(java.lang.Object[])
+		 */
+		public void onRow( Object[] args ) throws DataException
+		{
+			assert ( args.length > 0 );
+			if ( args[0] instanceof Comparable )
+			{
+				sketch.update( HyperLogLog.hash( args[0] ) );
+			}
+			else if ( args[0] == null )
+			{
+				this.hasNullValue = true;
+			}
+			else
+			{
+				throw new DataException( ResourceConstants.UNSUPPORTED_DATA_TYPE,
+						args[0].getClass( ).getName( ) );
+			}
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
+		 */
+		public Object getSummaryValue( )
+		{
+			long count = sketch.estimate( ) + ( this.hasNullValue ? 1 : 0 );
+			return Integer.valueOf( (int) Math.min( count, Integer.MAX_VALUE ) );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getDescription()
+	 */
+	public String getDescription( )
+	{
+		return Messages.getString( "TotalApproxCountDistinct.description" ); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.IAggrFunction#getDisplayName()
+	 */
+	public String getDisplayName( )
+	{
+		return Messages.getString( "TotalApproxCountDistinct.displayName" ); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.AggrFunction#getDefaultValue()
+	 */
+	public Object getDefaultValue( )
+	{
+		return Integer.valueOf( 0 );
+	}
+}
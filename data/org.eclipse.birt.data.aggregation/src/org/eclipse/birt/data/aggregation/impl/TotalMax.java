@@ -17,6 +17,7 @@ import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 
 /**
@@ -82,7 +83,7 @@ public class TotalMax extends AggrFunction
         return new MyAccumulator();
     }
 
-    private static class MyAccumulator extends SummaryAccumulator
+    private static class MyAccumulator extends SummaryAccumulator implements IBatchAccumulator
     {
         private Object max = null;
 
@@ -128,6 +129,28 @@ public class TotalMax extends AggrFunction
             return max;
         }
 
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(java.lang.Class, double[], boolean[], int)
+         */
+        public void onBatch(Class valueClass, double[] values, boolean[] nulls, int count)
+        {
+            // only the max of the batch is compared with the current max
+            int maxIndex = -1;
+            for (int i = 0; i < count; i++)
+            {
+                if (!nulls[i] && (maxIndex == -1 || Double.compare(values[i], values[maxIndex]) > 0))
+                {
+                    maxIndex = i;
+                }
+            }
+            if (maxIndex != -1)
+            {
+                onRow(new Object[]{toBatchValue(valueClass, values[maxIndex])});
+            }
+        }
+
         private boolean isGreaterThan(Object origin, Object target)
         {
             if((origin instanceof Comparable)&&(target instanceof Comparable))
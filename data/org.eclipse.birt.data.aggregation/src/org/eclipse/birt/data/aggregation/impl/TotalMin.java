@@ -17,6 +17,7 @@ import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 
 /**
@@ -82,7 +83,7 @@ public class TotalMin extends AggrFunction
         return new MyAccumulator();
     }
 
-    private static class MyAccumulator extends SummaryAccumulator
+    private static class MyAccumulator extends SummaryAccumulator implements IBatchAccumulator
     {
         private Object min = null;
 
@@ -114,6 +115,28 @@ public class TotalMin extends AggrFunction
 
         }
         
+        /*
+         * (non-Javadoc)
+         * 
+         * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(java.lang.Class, double[], boolean[], int)
+         */
+        public void onBatch(Class valueClass, double[] values, boolean[] nulls, int count)
+        {
+            // only the min of the batch is compared with the current min
+            int minIndex = -1;
+            for (int i = 0; i < count; i++)
+            {
+                if (!nulls[i] && (minIndex == -1 || Double.compare(values[i], values[minIndex]) < 0))
+                {
+                    minIndex = i;
+                }
+            }
+            if (minIndex != -1)
+            {
+                onRow(new Object[]{toBatchValue(valueClass, values[minIndex])});
+            }
+        }
+
         private boolean isLessThan(Object origin, Object target)
         {
             if((origin instanceof Comparable)&&(target instanceof Comparable))
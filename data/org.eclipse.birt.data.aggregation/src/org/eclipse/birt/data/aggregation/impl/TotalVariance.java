@@ -20,6 +20,7 @@ import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.calculator.CalculatorFactory;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
 import org.eclipse.birt.data.engine.core.DataException;
 
@@ -88,6 +89,8 @@ public class TotalVariance extends AggrFunction
 	}
 
 	private static class MyAccumulator extends SummaryAccumulator
+			implements
+				IBatchAccumulator
 	{
 
 		private Number sum = 0.0D;
@@ -126,6 +129,34 @@ public class TotalVariance extends AggrFunction
 			}
 		}
 
+		/*
+		 * (non-Javadoc)
+		 * 
+		 * @see org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator#onBatch(java.lang.Class, double[], boolean[], int)
+		 */
+		public void onBatch( Class valueClass, double[] values,
+				boolean[] nulls, int count ) throws DataException
+		{
+			if ( !isDoubleBatch( valueClass, nulls, count ) )
+			{
+				onBatchRows( valueClass, values, nulls, count );
+				return;
+			}
+			double doubleSum = sum.doubleValue( );
+			double doubleSquareSum = squareSum.doubleValue( );
+			for ( int i = 0; i < count; i++ )
+			{
+				if ( !nulls[i] )
+				{
+					doubleSum += values[i];
+					doubleSquareSum += values[i] * values[i];
+					this.count++;
+				}
+			}
+			sum = doubleSum;
+			squareSum = doubleSquareSum;
+		}
+
 		/*
 		 * (non-Javadoc)
 		 * 
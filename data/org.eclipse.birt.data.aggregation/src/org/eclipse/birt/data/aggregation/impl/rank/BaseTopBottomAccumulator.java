@@ -14,21 +14,35 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 import org.eclipse.birt.data.aggregation.impl.RunningAccumulator;
 import org.eclipse.birt.data.aggregation.impl.TempDir;
 import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.cache.TopNHeap;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
 
 /**
  * The most common part of all Top and Bottom accumulator.
- * 
+ * <p>
+ * If N does not depend on the row count, the first pass keeps the N topmost or
+ * bottommost values only, in a TopNHeap. Otherwise, or if N is too large for
+ * the heap to be kept in memory, the values of the first pass are cached and
+ * selected once the row count is known. The second pass then walks the
+ * ascending indexes of the selected rows, or the disk based flags of the rows
+ * if more rows are selected than a heap may hold.
  */
 public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 
+	// the greatest N whose values are selected in the first pass
+	private static final int MAX_HEAP_SIZE = 100000;
+
 	//
 	protected BasicCachedListExt cachedValues;
 	 
 	private double N;
 	private int passNo = 0;
-	private BasicCachedArray targetValue;
+	private int rowCount;
+	private TopNHeap heap;
+	private int[] targetIndexes;
+	private BasicCachedArray targetFlags;
+	private int targetCursor;
 	private int currentIndex = -1;
 	private Object value = null;
 	private static Boolean trueValue = Boolean.TRUE;
@@ -39,7 +53,6 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 	public BaseTopBottomAccumulator(  )
 	{
 		this.tempDir = TempDir.getInstance( ).getPath( );
-		targetValue = new BasicCachedArray(tempDir, 0);
 	}
 
 	/*
@@ -52,35 +65,79 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 		passNo++;
 		
 		if (passNo == 1) {
-			cachedValues = new BasicCachedListExt(tempDir);
+			cachedValues = null;
+			heap = null;
+			rowCount = 0;
 			N = -1;
 		}
 		else
 		{
-			this.targetValue = this.getTargetValueIndex();
+			this.targetFlags = null;
+			this.targetIndexes = this.getTargetIndexes( );
+			this.targetCursor = 0;
 		}
 	}
 
-	/*
-	 * (non-Javadoc)
-	 * @see org.eclipse.birt.data.engine.aggregation.SummaryAccumulator#getSummaryValue()
+	/**
+	 * Returns the ascending indexes of the selected rows of the first pass,
+	 * or null if there are too many of them to be kept in memory, in which
+	 * case the selected rows are flagged in targetFlags.
+	 * 
+	 * @return
+	 * @throws DataException
 	 */
-	private BasicCachedArray getTargetValueIndex( ) throws DataException
+	private int[] getTargetIndexes( ) throws DataException
 	{
-		int n = adjustNValue( N );
-		BasicCachedArray result = new BasicCachedArray( tempDir, (int) ( n < cachedValues.size( )
-				? n : cachedValues.size( ) ) );
-	
-		
-		for ( int i = 0; i < n && i < cachedValues.size( ); i++ )
+		if ( heap == null )
 		{
-			int ind = getNextIndex( );
-			if ( ind == -1 )
+			if ( cachedValues == null )
+				return new int[0];
+			int n = adjustNValue( N, rowCount );
+			if ( n >= rowCount )
+			{
+				// all the rows are selected
+				int[] result = new int[rowCount];
+				for ( int i = 0; i < rowCount; i++ )
+					result[i] = i;
+				this.cachedValues = null;
 				return result;
-
-			result.set( i, Integer.valueOf( ind ) );
+			}
+			if ( n > MAX_HEAP_SIZE )
+			{
+				try
+				{
+					this.targetFlags = TopNHeap.select( cachedValues,
+							n,
+							isTop( ),
+							RankAggregationUtil.getNullFirstComparator( ),
+							MAX_HEAP_SIZE,
+							tempDir );
+				}
+				catch ( DataComparisonException e )
+				{
+					throw e.getWrappedException( );
+				}
+				this.cachedValues = null;
+				return null;
+			}
+			heap = new TopNHeap( n,
+					isTop( ),
+					RankAggregationUtil.getNullFirstComparator( ) );
+			try
+			{
+				for ( int i = 0; i < cachedValues.size( ); i++ )
+				{
+					heap.add( cachedValues.get( i ), i );
+				}
+			}
+			catch ( DataComparisonException e )
+			{
+				throw e.getWrappedException( );
+			}
+			this.cachedValues = null;
 		}
-		this.cachedValues = null;
+		int[] result = heap.getIndexes( );
+		this.heap = null;
 		return result;
 	}
 	
@@ -100,19 +157,36 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 		assert ( args.length == 2 );
 		if( passNo == 1)
 		{	
-			if ( args[0] != null )
-			{
-				cachedValues.add( args[0] );
-			}else
-			{
-				cachedValues.add( RankAggregationUtil.getNullObject( ) );
-			}
 			if ( N == -1 )
 			{
 				if( args.length < 2 ) 
 					throw new DataException(ResourceConstants.INVALID_TOP_BOTTOM_N_ARGUMENT);
 				N = populateNValue( args[1] );
+				if ( isNFixed( ) && adjustNValue( N, 0 ) <= MAX_HEAP_SIZE )
+					heap = new TopNHeap( adjustNValue( N, 0 ),
+							isTop( ),
+							RankAggregationUtil.getNullFirstComparator( ) );
+				else
+					cachedValues = new BasicCachedListExt( tempDir );
 			}
+			Object value = args[0] != null ? args[0]
+					: RankAggregationUtil.getNullObject( );
+			if ( heap != null )
+			{
+				try
+				{
+					heap.add( value, rowCount );
+				}
+				catch ( DataComparisonException e )
+				{
+					throw e.getWrappedException( );
+				}
+			}
+			else
+			{
+				cachedValues.add( value );
+			}
+			rowCount++;
 		}else
 		{
 			this.currentIndex ++;
@@ -126,21 +200,34 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 	 */
 	private Boolean populateValue( )
 	{
-		for( int i = 0; i < this.targetValue.length( ); i++ )
-		{
-			if ( this.currentIndex == ( (Integer) this.targetValue.get( i ) ).intValue( ) )
-				return trueValue;
-		}
+		if ( targetFlags != null )
+			return currentIndex < targetFlags.length( )
+					&& targetFlags.get( currentIndex ) != null ? trueValue
+					: falseValue;
+		while ( targetCursor < targetIndexes.length
+				&& targetIndexes[targetCursor] < currentIndex )
+			targetCursor++;
+		if ( targetCursor < targetIndexes.length
+				&& targetIndexes[targetCursor] == currentIndex )
+			return trueValue;
 		
 		return falseValue;
 	}
 	
 	/**
-	 * Get index of next topmost or bottommost value in cachedValues.
+	 * Returns whether the topmost values or the bottommost ones are selected.
+	 * 
+	 * @return
+	 */
+	protected abstract boolean isTop( );
+	
+	/**
+	 * Returns whether N does not depend on the row count, so that the values
+	 * can be selected during the first pass.
+	 * 
 	 * @return
-	 * @throws DataException
 	 */
-	protected abstract int getNextIndex( ) throws DataException;
+	protected abstract boolean isNFixed( );
 	
 	/**
 	 * Populate the N value get from argument.
@@ -155,7 +242,9 @@ public abstract class BaseTopBottomAccumulator extends RunningAccumulator {
 	 * Adjust the N value.
 	 * 
 	 * @param N
+	 * @param rowCount
+	 *            the row count of the first pass, 0 if N is fixed
 	 * @return
 	 */
-	protected abstract int adjustNValue( double N );
+	protected abstract int adjustNValue( double N, int rowCount );
 }
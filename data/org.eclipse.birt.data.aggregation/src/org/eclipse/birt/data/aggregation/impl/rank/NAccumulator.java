@@ -44,9 +44,18 @@ public abstract class NAccumulator extends BaseTopBottomAccumulator
 	
 	/*
 	 * (non-Javadoc)
-	 * @see org.eclipse.birt.data.engine.aggregation.rank.BaseTopBottomAccumulator#adjustNValue(double)
+	 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#isNFixed()
 	 */
-	protected int adjustNValue( double N )
+	protected boolean isNFixed( )
+	{
+		return true;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#adjustNValue(double, int)
+	 */
+	protected int adjustNValue( double N, int rowCount )
 	{
 		return (int)N;
 	}
@@ -44,10 +44,19 @@ public abstract class PercentAccumulator extends BaseTopBottomAccumulator
 	
 	/*
 	 * (non-Javadoc)
-	 * @see org.eclipse.birt.data.engine.aggregation.rank.BaseTopBottomAccumulator#adjustNValue(double)
+	 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#isNFixed()
 	 */
-	protected int adjustNValue( double N )
+	protected boolean isNFixed( )
 	{
-		return (int)Math.round( N / 100 * cachedValues.size( ) );
+		return false;
+	}
+	
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#adjustNValue(double, int)
+	 */
+	protected int adjustNValue( double N, int rowCount )
+	{
+		return (int)Math.round( N / 100 * rowCount );
 	}
 }
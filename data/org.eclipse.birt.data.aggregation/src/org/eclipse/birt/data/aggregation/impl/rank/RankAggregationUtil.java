@@ -14,7 +14,6 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.List;
 
 import org.eclipse.birt.data.aggregation.i18n.ResourceConstants;
 import org.eclipse.birt.data.aggregation.impl.AggrException;
@@ -28,113 +27,8 @@ import org.eclipse.birt.data.engine.script.ScriptEvalUtil;
 final class RankAggregationUtil
 {
 
-	// The dummy object.
-	private static DummyObject dummy = new DummyObject( );
 	private static NullObject nullObject = new NullObject( );
-
-	/**
-	 * Return the next top index
-	 * 
-	 * @param cachedValues
-	 * @return
-	 * @throws DataException
-	 */
-	static int getNextTopIndex( List cachedValues ) throws DataException
-	{
-		return getIndex( cachedValues, true );
-	}
-
-	/**
-	 * Return next bottom index.
-	 * 
-	 * @param cachedValues
-	 * @return
-	 * @throws DataException
-	 */
-	static int getNextBottomIndex( List cachedValues ) throws DataException
-	{
-		return getIndex( cachedValues, false );
-	}
-
-	/**
-	 * 
-	 * @param cachedValues
-	 * @param top
-	 * @return
-	 * @throws DataException
-	 */
-	private static int getIndex( List cachedValues, boolean top )
-			throws DataException
-	{
-		int result = -1;
-		for ( int i = 0; i < cachedValues.size( ); i++ )
-		{
-			if ( cachedValues.get( i ).getClass( ) == DummyObject.class )
-				continue;
-
-			if ( result == -1 )
-			{
-				result = i;
-				continue;
-			}
-
-			if ( top ? compareTop( cachedValues.get( result ),
-					cachedValues.get( i ) )
-					: compareBottom( cachedValues.get( result ),
-							cachedValues.get( i ) ) )
-			{
-				result = i;
-			}
-		}
-		cachedValues.set( result, dummy );
-		return result;
-	}
-
-	/**
-	 * 
-	 * @param value1
-	 * @param value2
-	 * @return
-	 * @throws DataException
-	 */
-	private static boolean compareTop( Object value1, Object value2 )
-			throws DataException
-	{
-		if ( value1.getClass( ) == DummyObject.class
-				|| value2.getClass( ) == DummyObject.class )
-			return false;
-		if ( value1.getClass( ) == NullObject.class )
-			return true;
-		if ( value2.getClass( ) == NullObject.class )
-			return false;
-		return Boolean.valueOf( ScriptEvalUtil.evalConditionalExpr( value1,
-				IConditionalExpression.OP_LT,
-				value2,
-				null ).toString( ) ).booleanValue( );
-	}
-
-	/**
-	 * 
-	 * @param value1
-	 * @param value2
-	 * @return
-	 * @throws DataException
-	 */
-	private static boolean compareBottom( Object value1, Object value2 )
-			throws DataException
-	{
-		if ( value1.getClass( ) == DummyObject.class
-				|| value2.getClass( ) == DummyObject.class )
-			return false;
-		if ( value1.getClass( ) == NullObject.class )
-			return false;
-		if ( value2.getClass( ) == NullObject.class )
-			return true;
-		return Boolean.valueOf( ScriptEvalUtil.evalConditionalExpr( value1,
-				IConditionalExpression.OP_GT,
-				value2,
-				null ).toString( ) ).booleanValue( );
-	}
+	private static Comparator nullFirstComparator = new NullFirstComparator( );
 
 	/**
 	 * 
@@ -167,6 +61,17 @@ final class RankAggregationUtil
 		return nullObject;
 	}
 
+	/**
+	 * Returns the comparator of the values of a Top/Bottom aggregation, which
+	 * places the null values before all the other ones.
+	 * 
+	 * @return
+	 */
+	static Comparator getNullFirstComparator( )
+	{
+		return nullFirstComparator;
+	}
+
 	/**
 	 * 
 	 * @param objs
@@ -227,6 +132,30 @@ class ValueComparator implements Comparator
 	}
 }
 
+/**
+ * A comparator of the values of a Top/Bottom aggregation, where the null
+ * values are NullObject instances.
+ */
+class NullFirstComparator implements Comparator
+{
+
+	public int compare( Object o1, Object o2 )
+	{
+		if ( o1 instanceof NullObject )
+			return o2 instanceof NullObject ? 0 : -1;
+		else if ( o2 instanceof NullObject )
+			return 1;
+		try
+		{
+			return ScriptEvalUtil.compare( o1, o2 );
+		}
+		catch ( DataException e )
+		{
+			throw new DataComparisonException( e );
+		}
+	}
+}
+
 /**
  * 
  * 
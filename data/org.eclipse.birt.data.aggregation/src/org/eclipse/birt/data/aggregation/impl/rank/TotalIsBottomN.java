@@ -15,7 +15,6 @@ import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.aggregation.plugin.AggregationPlugin;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
-import org.eclipse.birt.data.engine.core.DataException;
 
 /**
  * Implements the built-in Total.isBottomN aggregation.
@@ -47,11 +46,11 @@ public class TotalIsBottomN extends BaseTopBottomAggregation
 		/*
 		 * (non-Javadoc)
 		 * 
-		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getNextIndex()
+		 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#isTop()
 		 */
-		protected int getNextIndex( ) throws DataException
+		protected boolean isTop( )
 		{
-			return RankAggregationUtil.getNextBottomIndex( cachedValues );
+			return false;
 		}
 	}
 
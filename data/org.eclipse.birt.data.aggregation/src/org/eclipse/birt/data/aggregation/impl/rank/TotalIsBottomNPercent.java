@@ -14,7 +14,6 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
-import org.eclipse.birt.data.engine.core.DataException;
 
 /**
  * Implements the built-in Total.isBottomPercent aggregation.
@@ -43,11 +42,11 @@ public class TotalIsBottomNPercent extends BaseTopBottomAggregation
 	{
 		/*
 		 * (non-Javadoc)
-		 * @see org.eclipse.birt.data.engine.aggregation.rank.PercentAccumulator#getNextIndex()
+		 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#isTop()
 		 */
-		protected int getNextIndex( ) throws DataException
+		protected boolean isTop( )
 		{
-			return RankAggregationUtil.getNextBottomIndex( cachedValues );
+			return false;
 		}
 
 	}
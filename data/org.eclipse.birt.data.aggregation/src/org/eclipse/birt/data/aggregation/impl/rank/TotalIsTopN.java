@@ -14,7 +14,6 @@ package org.eclipse.birt.data.aggregation.impl.rank;
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.i18n.Messages;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
-import org.eclipse.birt.data.engine.core.DataException;
 
 /**
  * Implements the built-in Total.isTopN aggregation.
@@ -47,11 +46,11 @@ public class TotalIsTopN extends BaseTopBottomAggregation
 		/*
 		 * (non-Javadoc)
 		 * 
-		 * @see org.eclipse.birt.data.engine.aggregation.rank.NAccumulator#getNextIndex()
+		 * @see org.eclipse.birt.data.aggregation.impl.rank.BaseTopBottomAccumulator#isTop()
 		 */
-		protected int getNextIndex( ) throws DataException
+		protected boolean isTop( )
 		{
-			return RankAggregationUtil.getNextTopIndex( cachedValues );
+			return true;
 		}
 	}
 
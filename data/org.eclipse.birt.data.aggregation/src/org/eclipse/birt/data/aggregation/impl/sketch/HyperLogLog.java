@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.sketch;
+
+import java.util.Date;
+
+/**
+ * A HyperLogLog sketch which estimates the number of distinct values of a
+ * stream. The sketch keeps the 64-bit hashes of the values in a hash set
+ * until it holds more than MAX_EXACT_SIZE of them, and thus counts small
+ * streams exactly. It then switches to 2^14 registers of one byte, which
+ * estimate the count with a standard error of about 0.8%.
+ * <p>
+ * Two sketches of disjoint or overlapping streams may be merged into the
+ * sketch of the union of the streams.
+ */
+public class HyperLogLog
+{
+
+	private static final int PRECISION = 14;
+	private static final int REGISTER_COUNT = 1 << PRECISION;
+
+	private static final int MAX_EXACT_SIZE = 1024;
+
+	// the hashes, in an open addressing table where 0 means an empty slot
+	private long[] hashes;
+	private boolean hasZeroHash;
+	private int exactSize;
+
+	private byte[] registers;
+
+	/**
+	 * Constructor.
+	 */
+	public HyperLogLog( )
+	{
+		this.hashes = new long[MAX_EXACT_SIZE * 2];
+	}
+
+	/**
+	 * Returns the 64-bit hash of a value. The values which are equal have the
+	 * same hash, and the class of a value is part of its hash, since the
+	 * numbers of different classes are not equal.
+	 *
+	 * @param value
+	 *            not null
+	 * @return
+	 */
+	public static long hash( Object value )
+	{
+		long h;
+		if ( value instanceof String )
+		{
+			// FNV-1a
+			String s = (String) value;
+			h = 0xcbf29ce484222325L;
+			for ( int i = 0; i < s.length( ); i++ )
+			{
+				h ^= s.charAt( i );
+				h *= 0x100000001b3L;
+			}
+		}
+		else if ( value instanceof Double || value instanceof Float )
+		{
+			h = Double.doubleToLongBits( ( (Number) value ).doubleValue( ) );
+		}
+		else if ( value instanceof Long
+				|| value instanceof Integer
+				|| value instanceof Short
+				|| value instanceof Byte )
+		{
+			h = ( (Number) value ).longValue( );
+		}
+		else if ( value instanceof Date )
+		{
+			h = ( (Date) value ).getTime( );
+		}
+		else
+		{
+			h = value.hashCode( );
+		}
+		return mix( mix( h ) ^ value.getClass( ).getName( ).hashCode( ) );
+	}
+
+	/**
+	 * The finalizer of MurmurHash3, which spreads the bits of a value over
+	 * the whole hash.
+	 *
+	 * @param h
+	 * @return
+	 */
+	private static long mix( long h )
+	{
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Adds a value of the stream, given by its hash.
+	 *
+	 * @param hash
+	 *            the hash of the value
+	 * @see #hash(Object)
+	 */
+	public void update( long hash )
+	{
+		if ( registers != null )
+		{
+			addToRegisters( hash );
+		}
+		else if ( addToSet( hash ) && exactSize > MAX_EXACT_SIZE )
+		{
+			toRegisters( );
+		}
+	}
+
+	/**
+	 * Adds the values of another stream, summarized by the specified sketch,
+	 * which is not modified.
+	 *
+	 * @param other
+	 */
+	public void merge( HyperLogLog other )
+	{
+		if ( other.registers == null )
+		{
+			if ( other.hasZeroHash )
+				update( 0 );
+			for ( int i = 0; i < other.hashes.length; i++ )
+			{
+				if ( other.hashes[i] != 0 )
+					update( other.hashes[i] );
+			}
+			return;
+		}
+		if ( registers == null )
+			toRegisters( );
+		for ( int i = 0; i < REGISTER_COUNT; i++ )
+		{
+			if ( other.registers[i] > registers[i] )
+				registers[i] = other.registers[i];
+		}
+	}
+
+	/**
+	 * Returns the estimated number of distinct values.
+	 *
+	 * @return
+	 */
+	public long estimate( )
+	{
+		if ( registers == null )
+			return exactSize;
+
+		double sum = 0;
+		int zeros = 0;
+		for ( int i = 0; i < REGISTER_COUNT; i++ )
+		{
+			sum += 1.0 / ( 1L << registers[i] );
+			if ( registers[i] == 0 )
+				zeros++;
+		}
+		double m = REGISTER_COUNT;
+		double estimate = 0.7213 / ( 1 + 1.079 / m ) * m * m / sum;
+		// the linear counting is more accurate for the small counts
+		if ( estimate <= 2.5 * m && zeros > 0 )
+			estimate = m * Math.log( m / zeros );
+		return Math.round( estimate );
+	}
+
+	/**
+	 * Adds a hash to the set of the exact mode.
+	 *
+	 * @param hash
+	 * @return whether the hash was not in the set
+	 */
+	private boolean addToSet( long hash )
+	{
+		if ( hash == 0 )
+		{
+			if ( hasZeroHash )
+				return false;
+			hasZeroHash = true;
+			exactSize++;
+			return true;
+		}
+		int mask = hashes.length - 1;
+		int index = (int) hash & mask;
+		while ( hashes[index] != 0 )
+		{
+			if ( hashes[index] == hash )
+				return false;
+			index = ( index + 1 ) & mask;
+		}
+		hashes[index] = hash;
+		exactSize++;
+		return true;
+	}
+
+	/**
+	 * Switches to the registers, dropping the set of hashes.
+	 */
+	private void toRegisters( )
+	{
+		registers = new byte[REGISTER_COUNT];
+		if ( hasZeroHash )
+			addToRegisters( 0 );
+		for ( int i = 0; i < hashes.length; i++ )
+		{
+			if ( hashes[i] != 0 )
+				addToRegisters( hashes[i] );
+		}
+		hashes = null;
+	}
+
+	/**
+	 * Adds a hash to the registers.
+	 *
+	 * @param hash
+	 */
+	private void addToRegisters( long hash )
+	{
+		int index = (int) ( hash >>> ( 64 - PRECISION ) );
+		// a bit is set past the remaining bits to bound the rank
+		long remaining = ( hash << PRECISION ) | ( 1L << ( PRECISION - 1 ) );
+		byte rank = (byte) ( Long.numberOfLeadingZeros( remaining ) + 1 );
+		if ( rank > registers[index] )
+			registers[index] = rank;
+	}
+}
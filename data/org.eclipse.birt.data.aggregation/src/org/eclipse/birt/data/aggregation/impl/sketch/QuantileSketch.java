@@ -0,0 +1,330 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.sketch;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A KLL quantile sketch of a stream of doubles. The values are kept in levels
+ * of compactors, a value of level h standing for 2^h values of the stream.
+ * When a level is full, it is sorted and every other value of it is promoted to
+ * the next level, the other ones being dropped. The sketch holds
+ * O(k log(n/k)) values at most and the rank error of a quantile is about
+ * 1.7/k of the count.
+ * <p>
+ * The quantiles are exact as long as no level has been compacted, i.e. up to
+ * about k values. Two sketches of disjoint streams may be merged into the
+ * sketch of the whole stream. NaN values are ignored.
+ */
+public class QuantileSketch
+{
+
+	public static final int DEFAULT_K = 256;
+
+	// the capacity of a level is this ratio of the capacity of the level above
+	private static final double CAPACITY_RATIO = 2.0 / 3.0;
+	private static final int MIN_CAPACITY = 8;
+
+	// the same seed is used so that a report shows the same values at each run
+	private static final long SEED = 0x5DEECE66DL;
+
+	private int k;
+	private double[][] levels;
+	private int[] sizes;
+	private int levelCount;
+
+	private long count;
+	private double min;
+	private double max;
+
+	private Random random;
+
+	/**
+	 * Constructor.
+	 */
+	public QuantileSketch( )
+	{
+		this( DEFAULT_K );
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param k
+	 *            the capacity of the top level, which the accuracy is
+	 *            proportional to
+	 */
+	public QuantileSketch( int k )
+	{
+		assert k >= MIN_CAPACITY;
+		this.k = k;
+		this.levels = new double[4][];
+		this.sizes = new int[4];
+		this.levels[0] = new double[MIN_CAPACITY];
+		this.levelCount = 1;
+		this.min = Double.NaN;
+		this.max = Double.NaN;
+		this.random = new Random( SEED );
+	}
+
+	/**
+	 * Adds a value of the stream.
+	 *
+	 * @param value
+	 */
+	public void update( double value )
+	{
+		if ( Double.isNaN( value ) )
+			return;
+		if ( count == 0 || value < min )
+			min = value;
+		if ( count == 0 || value > max )
+			max = value;
+		count++;
+		append( 0, value );
+		if ( sizes[0] >= capacity( 0 ) )
+			compress( );
+	}
+
+	/**
+	 * Adds the values of another stream, summarized by the specified sketch,
+	 * which is not modified.
+	 *
+	 * @param other
+	 */
+	public void merge( QuantileSketch other )
+	{
+		if ( other.count == 0 )
+			return;
+		if ( count == 0 || other.min < min )
+			min = other.min;
+		if ( count == 0 || other.max > max )
+			max = other.max;
+		count += other.count;
+		// the values of a level of the other sketch go to the same level here
+		while ( levelCount < other.levelCount )
+			addLevel( );
+		for ( int h = 0; h < other.levelCount; h++ )
+		{
+			for ( int i = 0; i < other.sizes[h]; i++ )
+				append( h, other.levels[h][i] );
+		}
+		compress( );
+	}
+
+	/**
+	 * Returns the number of values of the stream.
+	 *
+	 * @return
+	 */
+	public long getCount( )
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the quantile of the specified fraction of the stream. As Excel
+	 * does, the quantile is interpolated between the values of rank
+	 * floor(fraction*(count-1)) and the next one.
+	 *
+	 * @param fraction
+	 *            between 0 and 1
+	 * @return the quantile, or NaN if the stream is empty
+	 */
+	public double getQuantile( double fraction )
+	{
+		assert fraction >= 0 && fraction <= 1;
+		if ( count == 0 )
+			return Double.NaN;
+
+		// the sorted values and the cumulative weights of the sketch
+		int size = 0;
+		for ( int h = 0; h < levelCount; h++ )
+			size += sizes[h];
+		long[] entries = new long[size];
+		double[] values = new double[size];
+		int index = 0;
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			for ( int i = 0; i < sizes[h]; i++ )
+			{
+				values[index] = levels[h][i];
+				index++;
+			}
+		}
+		Arrays.sort( values );
+		index = 0;
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			double[] level = levels[h];
+			for ( int i = 0; i < sizes[h]; i++ )
+			{
+				// the position of a value in the sorted values, with the level
+				// in the low bits, so that the i-th sorted entry holds the
+				// weight of values[i]
+				entries[index] = ( (long) find( values, level[i] ) << 6 ) | h;
+				index++;
+			}
+		}
+		Arrays.sort( entries );
+		long[] cumulative = new long[size];
+		long total = 0;
+		for ( int i = 0; i < size; i++ )
+		{
+			total += 1L << ( entries[i] & 0x3F );
+			cumulative[i] = total;
+		}
+
+		double position = fraction * ( count - 1 );
+		long lower = (long) Math.floor( position );
+		double low = getValue( values, cumulative, lower );
+		if ( position == lower )
+			return low;
+		double high = getValue( values, cumulative, lower + 1 );
+		return low + ( position - lower ) * ( high - low );
+	}
+
+	/**
+	 * Returns the value of the specified rank in the stream.
+	 *
+	 * @param values
+	 * @param cumulative
+	 * @param rank
+	 * @return
+	 */
+	private double getValue( double[] values, long[] cumulative, long rank )
+	{
+		// the extreme values are kept apart since the compactions may drop them
+		if ( rank <= 0 )
+			return min;
+		if ( rank >= count - 1 )
+			return max;
+		// the weights of the sketch may not sum up to the count exactly
+		long scaled = (long) ( (double) rank
+				* cumulative[cumulative.length - 1] / count );
+		int low = 0;
+		int high = cumulative.length - 1;
+		while ( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if ( cumulative[middle] > scaled )
+				high = middle;
+			else
+				low = middle + 1;
+		}
+		return values[low];
+	}
+
+	/**
+	 * Returns the index of the first occurrence of a value in a sorted array.
+	 *
+	 * @param values
+	 * @param value
+	 * @return
+	 */
+	private static int find( double[] values, double value )
+	{
+		int low = 0;
+		int high = values.length - 1;
+		while ( low < high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if ( values[middle] < value )
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Returns the number of values a level holds before it is compacted.
+	 *
+	 * @param h
+	 * @return
+	 */
+	private int capacity( int h )
+	{
+		int depth = levelCount - 1 - h;
+		return Math.max( MIN_CAPACITY,
+				(int) Math.ceil( k * Math.pow( CAPACITY_RATIO, depth ) ) );
+	}
+
+	/**
+	 * Compacts the full levels, from the bottom to the top.
+	 */
+	private void compress( )
+	{
+		for ( int h = 0; h < levelCount; h++ )
+		{
+			if ( sizes[h] >= capacity( h ) )
+				compact( h );
+		}
+	}
+
+	/**
+	 * Promotes half of the values of a level to the next one.
+	 *
+	 * @param h
+	 */
+	private void compact( int h )
+	{
+		if ( h + 1 == levelCount )
+			addLevel( );
+		double[] level = levels[h];
+		int size = sizes[h];
+		Arrays.sort( level, 0, size );
+		// an odd value out is kept at this level
+		int start = size % 2;
+		int offset = random.nextBoolean( ) ? 1 : 0;
+		for ( int i = start + offset; i < size; i += 2 )
+			append( h + 1, level[i] );
+		sizes[h] = start;
+	}
+
+	/**
+	 * Adds a level at the top.
+	 */
+	private void addLevel( )
+	{
+		if ( levelCount == levels.length )
+		{
+			double[][] newLevels = new double[levelCount * 2][];
+			System.arraycopy( levels, 0, newLevels, 0, levelCount );
+			levels = newLevels;
+			int[] newSizes = new int[levelCount * 2];
+			System.arraycopy( sizes, 0, newSizes, 0, levelCount );
+			sizes = newSizes;
+		}
+		levels[levelCount] = new double[MIN_CAPACITY];
+		levelCount++;
+	}
+
+	/**
+	 * Appends a value to a level.
+	 *
+	 * @param h
+	 * @param value
+	 */
+	private void append( int h, double value )
+	{
+		if ( sizes[h] == levels[h].length )
+		{
+			double[] level = new double[levels[h].length * 2];
+			System.arraycopy( levels[h], 0, level, 0, sizes[h] );
+			levels[h] = level;
+		}
+		levels[h][sizes[h]] = value;
+		sizes[h]++;
+	}
+}
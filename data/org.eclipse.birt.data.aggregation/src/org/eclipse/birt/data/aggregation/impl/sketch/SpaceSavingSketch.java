@@ -0,0 +1,283 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.aggregation.impl.sketch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Space-Saving sketch which finds the most frequent values of a stream with
+ * a fixed number of counters. When all the counters are taken, the value of
+ * the smallest counter is replaced by the new value, whose count is then
+ * overestimated by at most the replaced count. The count of any value is
+ * overestimated by at most count/capacity, so that a value more frequent
+ * than that is always kept.
+ * <p>
+ * The counts are exact as long as there are no more distinct values than
+ * counters. Two sketches of disjoint streams may be merged into the sketch of
+ * the whole stream.
+ */
+public class SpaceSavingSketch
+{
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	private int capacity;
+	private Map<Object, Counter> counters;
+	// a min-heap of the counters, ordered by count
+	private Counter[] heap;
+	private long sequence;
+
+	/**
+	 * Constructor.
+	 */
+	public SpaceSavingSketch( )
+	{
+		this( DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param capacity
+	 *            the number of counters
+	 */
+	public SpaceSavingSketch( int capacity )
+	{
+		assert capacity > 0;
+		this.capacity = capacity;
+		this.counters = new HashMap<Object, Counter>( );
+		this.heap = new Counter[capacity];
+	}
+
+	/**
+	 * Adds a value of the stream.
+	 *
+	 * @param value
+	 */
+	public void update( Object value )
+	{
+		Counter counter = counters.get( value );
+		if ( counter != null )
+		{
+			counter.count++;
+			siftDown( counter.index );
+			return;
+		}
+		int size = counters.size( );
+		if ( size < capacity )
+		{
+			counter = new Counter( value, 1, 0, sequence++ );
+			counters.put( value, counter );
+			heap[size] = counter;
+			counter.index = size;
+			siftUp( size );
+			return;
+		}
+		// the value takes the place of the least frequent one
+		counter = heap[0];
+		counters.remove( counter.value );
+		counter.value = value;
+		counter.error = counter.count;
+		counter.count++;
+		counter.order = sequence++;
+		counters.put( value, counter );
+		siftDown( 0 );
+	}
+
+	/**
+	 * Adds the values of another stream, summarized by the specified sketch,
+	 * which is not modified.
+	 *
+	 * @param other
+	 */
+	public void merge( SpaceSavingSketch other )
+	{
+		// a value missing from a full sketch may have been counted up to its
+		// smallest count
+		long minCount = counters.size( ) < capacity ? 0 : heap[0].count;
+		long otherMinCount = other.counters.size( ) < other.capacity ? 0
+				: other.heap[0].count;
+
+		List<Counter> merged = new ArrayList<Counter>( );
+		for ( Iterator<Counter> i = counters.values( ).iterator( ); i.hasNext( ); )
+		{
+			Counter counter = i.next( );
+			Counter otherCounter = other.counters.get( counter.value );
+			if ( otherCounter != null )
+			{
+				counter.count += otherCounter.count;
+				counter.error += otherCounter.error;
+			}
+			else
+			{
+				counter.count += otherMinCount;
+				counter.error += otherMinCount;
+			}
+			merged.add( counter );
+		}
+		Counter[] otherCounters = other.counters.values( )
+				.toArray( new Counter[other.counters.size( )] );
+		Arrays.sort( otherCounters, new Comparator<Counter>( ) {
+
+			public int compare( Counter c1, Counter c2 )
+			{
+				return c1.order < c2.order ? -1 : ( c1.order == c2.order ? 0
+						: 1 );
+			}
+		} );
+		for ( int i = 0; i < otherCounters.length; i++ )
+		{
+			Counter otherCounter = otherCounters[i];
+			if ( !counters.containsKey( otherCounter.value ) )
+				merged.add( new Counter( otherCounter.value,
+						otherCounter.count + minCount,
+						otherCounter.error + minCount,
+						sequence++ ) );
+		}
+
+		// keep the most frequent values
+		Collections.sort( merged, new Comparator<Counter>( ) {
+
+			public int compare( Counter c1, Counter c2 )
+			{
+				return c1.count > c2.count ? -1 : ( c1.count == c2.count ? 0
+						: 1 );
+			}
+		} );
+		counters.clear( );
+		int size = Math.min( capacity, merged.size( ) );
+		for ( int i = 0; i < size; i++ )
+		{
+			Counter counter = merged.get( i );
+			counters.put( counter.value, counter );
+			heap[i] = counter;
+			counter.index = i;
+		}
+		for ( int i = size; i < capacity; i++ )
+			heap[i] = null;
+		for ( int i = size / 2 - 1; i >= 0; i-- )
+			siftDown( i );
+	}
+
+	/**
+	 * Returns the most frequent value. Among the values of the same count, the
+	 * first one added to the sketch is returned.
+	 *
+	 * @return the most frequent value, or null if no value is known to occur
+	 *         more than once
+	 */
+	public Object getMode( )
+	{
+		Counter mode = null;
+		for ( Iterator<Counter> i = counters.values( ).iterator( ); i.hasNext( ); )
+		{
+			Counter counter = i.next( );
+			if ( mode == null
+					|| counter.count > mode.count
+					|| ( counter.count == mode.count && counter.order < mode.order ) )
+				mode = counter;
+		}
+		if ( mode == null || mode.count - mode.error <= 1 )
+			return null;
+		return mode.value;
+	}
+
+	/**
+	 * Returns the estimated count of a value, which is exact if the value has
+	 * always been kept by the sketch, and otherwise overestimated.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public long getCount( Object value )
+	{
+		Counter counter = counters.get( value );
+		if ( counter != null )
+			return counter.count;
+		return counters.size( ) < capacity ? 0 : heap[0].count;
+	}
+
+	/**
+	 *
+	 * @param index
+	 */
+	private void siftUp( int index )
+	{
+		Counter counter = heap[index];
+		while ( index > 0 )
+		{
+			int parent = ( index - 1 ) / 2;
+			if ( heap[parent].count <= counter.count )
+				break;
+			heap[index] = heap[parent];
+			heap[index].index = index;
+			index = parent;
+		}
+		heap[index] = counter;
+		counter.index = index;
+	}
+
+	/**
+	 *
+	 * @param index
+	 */
+	private void siftDown( int index )
+	{
+		int size = counters.size( );
+		Counter counter = heap[index];
+		while ( true )
+		{
+			int child = index * 2 + 1;
+			if ( child >= size )
+				break;
+			if ( child + 1 < size && heap[child + 1].count < heap[child].count )
+				child++;
+			if ( heap[child].count >= counter.count )
+				break;
+			heap[index] = heap[child];
+			heap[index].index = index;
+			index = child;
+		}
+		heap[index] = counter;
+		counter.index = index;
+	}
+
+	/**
+	 * The counter of a value.
+	 */
+	private static class Counter
+	{
+
+		private Object value;
+		private long count;
+		// the number of occurrences the count may exceed the actual one by
+		private long error;
+		// the order in which the value was added to the sketch
+		private long order;
+		private int index;
+
+		Counter( Object value, long count, long error, long order )
+		{
+			this.value = value;
+			this.count = count;
+			this.error = error;
+			this.order = order;
+		}
+	}
+}
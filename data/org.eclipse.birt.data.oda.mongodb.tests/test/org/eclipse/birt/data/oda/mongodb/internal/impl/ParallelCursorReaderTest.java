@@ -0,0 +1,139 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *
+ *************************************************************************
+ */
+
+package org.eclipse.birt.data.oda.mongodb.internal.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.bson.types.ObjectId;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+public class ParallelCursorReaderTest extends TestCase
+{
+    private static final int MIN_TIME = 1360000000;    // in seconds
+    private static final int MAX_TIME = MIN_TIME + 1000;
+
+    public void testRangeSplit()
+    {
+        ObjectId minId = new ObjectId( MIN_TIME, 5, 7 );
+        ObjectId maxId = new ObjectId( MAX_TIME, 5, 7 );
+        List<DBObject> rangeQueries = ParallelCursorReader.getRangeQueries( minId, maxId, null, 4 );
+        assertEquals( 4, rangeQueries.size() );
+
+        // the first and last ranges are open-ended
+        DBObject firstRange = getIdRange( rangeQueries.get( 0 ) );
+        assertNull( firstRange.get( "$gte" ) ); //$NON-NLS-1$
+        assertNotNull( firstRange.get( "$lt" ) ); //$NON-NLS-1$
+        DBObject lastRange = getIdRange( rangeQueries.get( 3 ) );
+        assertNotNull( lastRange.get( "$gte" ) ); //$NON-NLS-1$
+        assertNull( lastRange.get( "$lt" ) ); //$NON-NLS-1$
+
+        // a range starts where the previous one ends, with increasing boundaries
+        ObjectId previous = minId;
+        for( int i = 1; i < rangeQueries.size(); i++ )
+        {
+            ObjectId boundary = (ObjectId)getIdRange( rangeQueries.get( i ) ).get( "$gte" ); //$NON-NLS-1$
+            assertEquals( boundary, getIdRange( rangeQueries.get( i - 1 ) ).get( "$lt" ) ); //$NON-NLS-1$
+            assertTrue( boundary.compareTo( previous ) > 0 );
+            assertTrue( boundary.compareTo( maxId ) <= 0 );
+            previous = boundary;
+        }
+    }
+
+    public void testEachIdInOneRange()
+    {
+        ObjectId minId = new ObjectId( MIN_TIME, 0, 0 );
+        ObjectId maxId = new ObjectId( MAX_TIME, Integer.MAX_VALUE, Integer.MAX_VALUE );
+        List<DBObject> rangeQueries = ParallelCursorReader.getRangeQueries( minId, maxId, null, 7 );
+
+        // the boundaries are not the lowest ids of their second, so the ids of
+        // the same second as a boundary fall on either side of it
+        List<ObjectId> ids = new ArrayList<ObjectId>();
+        for( int time = MIN_TIME; time <= MAX_TIME; time++ )
+        {
+            ids.add( new ObjectId( time, 0, 0 ) );
+            ids.add( new ObjectId( time, Integer.MAX_VALUE, Integer.MAX_VALUE ) );
+        }
+        for( int i = 1; i < rangeQueries.size(); i++ )
+        {
+            ObjectId boundary = (ObjectId)getIdRange( rangeQueries.get( i ) ).get( "$gte" ); //$NON-NLS-1$
+            ids.add( boundary );
+            ids.add( new ObjectId( boundary.getTimeSecond(), boundary.getMachine(), boundary.getInc() - 1 ) );
+            ids.add( new ObjectId( boundary.getTimeSecond(), boundary.getMachine(), boundary.getInc() + 1 ) );
+        }
+
+        for( ObjectId id : ids )
+        {
+            int count = 0;
+            for( DBObject rangeQuery : rangeQueries )
+            {
+                if( isInRange( id, getIdRange( rangeQuery ) ) )
+                    count++;
+            }
+            assertEquals( id.toString(), 1, count );
+        }
+    }
+
+    public void testFilterQuery()
+    {
+        DBObject queryObj = new BasicDBObject( "name", "value" ); //$NON-NLS-1$ //$NON-NLS-2$
+        List<DBObject> rangeQueries = ParallelCursorReader.getRangeQueries(
+                new ObjectId( MIN_TIME, 5, 7 ), new ObjectId( MAX_TIME, 5, 7 ), queryObj, 2 );
+        assertEquals( 2, rangeQueries.size() );
+        for( DBObject rangeQuery : rangeQueries )
+        {
+            List<?> operands = (List<?>)rangeQuery.get( "$and" ); //$NON-NLS-1$
+            assertEquals( 2, operands.size() );
+            assertSame( queryObj, operands.get( 0 ) );
+            assertNotNull( getIdRange( rangeQuery ) );
+        }
+
+        // an empty query is not added to the ranges
+        rangeQueries = ParallelCursorReader.getRangeQueries(
+                new ObjectId( MIN_TIME, 5, 7 ), new ObjectId( MAX_TIME, 5, 7 ), new BasicDBObject(), 2 );
+        assertNull( rangeQueries.get( 0 ).get( "$and" ) ); //$NON-NLS-1$
+    }
+
+    public void testNoSplit()
+    {
+        // a single id
+        ObjectId id = new ObjectId( MIN_TIME, 5, 7 );
+        assertNull( ParallelCursorReader.getRangeQueries( id, id, null, 4 ) );
+        // a single range
+        assertNull( ParallelCursorReader.getRangeQueries( new ObjectId( MIN_TIME, 0, 0 ),
+                new ObjectId( MAX_TIME, 0, 0 ), null, 1 ) );
+    }
+
+    private static DBObject getIdRange( DBObject rangeQuery )
+    {
+        Object operands = rangeQuery.get( "$and" ); //$NON-NLS-1$
+        if( operands != null )
+            rangeQuery = (DBObject)( (List<?>)operands ).get( 1 );
+        return (DBObject)rangeQuery.get( QueryModel.DOC_ID_FIELD_NAME );
+    }
+
+    private static boolean isInRange( ObjectId id, DBObject idRange )
+    {
+        ObjectId lowerBoundary = (ObjectId)idRange.get( "$gte" ); //$NON-NLS-1$
+        ObjectId upperBoundary = (ObjectId)idRange.get( "$lt" ); //$NON-NLS-1$
+        return ( lowerBoundary == null || id.compareTo( lowerBoundary ) >= 0 )
+                && ( upperBoundary == null || id.compareTo( upperBoundary ) < 0 );
+    }
+
+}
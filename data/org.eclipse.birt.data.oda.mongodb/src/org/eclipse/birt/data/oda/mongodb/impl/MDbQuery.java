@@ -44,6 +44,7 @@ public class MDbQuery implements IQuery
 
     private QueryModel m_model;
     private QuerySpecification m_querySpec;
+    private SortSpec m_sortSpec;
     private int m_maxRows;
 
     
@@ -71,6 +72,8 @@ public class MDbQuery implements IQuery
         if( hasValidModel() )
         {
             m_model.addQuerySpec( getSpecification() );
+            if( m_sortSpec != null && m_model.supportsSortSpec() )
+                m_model.setSortSpec( m_sortSpec );
         }
 
         // #prepare may be called multiple times;
@@ -340,9 +343,11 @@ public class MDbQuery implements IQuery
 	 */
 	public void setSortSpec( SortSpec sortBy ) throws OdaException
 	{
-		// no push-down support;
-	    // only supports user-defined MongoDB Sort Expression defined in the data set
-        throw new UnsupportedOperationException();
+	    // push-down support for a find query and an aggregate command only;
+	    // other command results are sorted by the user-defined MongoDB command expression
+        if( hasValidModel() )
+            m_model.setSortSpec( sortBy );
+        m_sortSpec = sortBy;
 	}
 
 	/*
@@ -350,7 +355,7 @@ public class MDbQuery implements IQuery
 	 */
 	public SortSpec getSortSpec() throws OdaException
 	{
-		return null;
+		return m_sortSpec;
 	}
 
     /* (non-Javadoc)
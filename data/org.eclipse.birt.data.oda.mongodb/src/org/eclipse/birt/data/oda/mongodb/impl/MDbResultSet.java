@@ -25,6 +25,7 @@ import java.util.logging.Logger;
 
 import org.bson.types.BSONTimestamp;
 import org.eclipse.birt.data.oda.mongodb.internal.impl.DriverUtil;
+import org.eclipse.birt.data.oda.mongodb.internal.impl.ParallelCursorReader;
 import org.eclipse.birt.data.oda.mongodb.internal.impl.QueryProperties;
 import org.eclipse.birt.data.oda.mongodb.internal.impl.ResultDataHandler;
 import org.eclipse.birt.data.oda.mongodb.internal.impl.MDbMetaData.FieldMetaData;
@@ -48,6 +49,7 @@ public class MDbResultSet implements IResultSet
 {
     private Iterator<DBObject> m_resultsIterator;
     private DBCursor m_mongoCursor;
+    private ParallelCursorReader m_parallelReader;
     private MDbResultSetMetaData m_metadata;
     private QueryProperties m_queryProps;
     
@@ -68,6 +70,8 @@ public class MDbResultSet implements IResultSet
         m_resultsIterator = resultsIterator;
         if( resultsIterator instanceof DBCursor )
             m_mongoCursor = (DBCursor)resultsIterator;
+        else if( resultsIterator instanceof ParallelCursorReader )
+            m_parallelReader = (ParallelCursorReader)resultsIterator;
         m_metadata = rsmd;
         m_queryProps = queryProps != null ? 
                         queryProps : 
@@ -92,6 +96,9 @@ public class MDbResultSet implements IResultSet
 		m_maxRows = max;
         if( m_maxRows > 0 && m_mongoCursor != null )
             m_mongoCursor.limit( m_maxRows );
+        // no range may return more rows than the limit
+        if( m_maxRows > 0 && m_parallelReader != null )
+            m_parallelReader.limit( m_maxRows );
 	}
 	
 	/**
@@ -154,6 +161,11 @@ public class MDbResultSet implements IResultSet
             m_mongoCursor.close();
             m_mongoCursor = null;
         }
+        if( m_parallelReader != null )
+        {
+            m_parallelReader.close();
+            m_parallelReader = null;
+        }
 	}
 
 	/*
@@ -14,6 +14,9 @@
 
 package org.eclipse.birt.data.oda.mongodb.internal.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.logging.Level;
 
 import org.eclipse.birt.data.oda.mongodb.impl.MDbResultSet;
@@ -46,6 +49,9 @@ public class MDbOperation
     private DBObject m_queryObj;
     private MDbResultSetMetaData m_rsMetaData;
     
+    private static final String PROJECT_AGGR_KEY = "$project"; //$NON-NLS-1$
+    private static final String SORT_AGGR_KEY = "$sort"; //$NON-NLS-1$
+
     private static final MDbOperation sm_factory = new MDbOperation();
     
     static MDbOperation createQueryOperation( QueryModel queryModel )
@@ -135,15 +141,30 @@ public class MDbOperation
         if( m_queryObj == null || m_queryCollection == null )
             throw new OdaException( Messages.mDbOp_invalidQueryExpr );
 
+        QueryProperties queryProps = getModel().getQueryProperties();
         try
         {
+            // read the ranges of a large collection in parallel, if the order of documents does not matter
+            if( isParallelReadable( queryProps ) )
+            {
+                ParallelCursorReader rangesReader = ParallelCursorReader.create( 
+                        m_queryCollection, m_queryObj, m_fieldsObj, queryProps );
+                if( rangesReader != null )
+                    return new MDbResultSet( rangesReader, getResultSetMetaData(), queryProps );
+            }
+
             DBCursor rowsCursor = m_queryCollection.find( m_queryObj, m_fieldsObj );
 
             // no search limit applies here; 
             // defer to MDbResultSet to set DBCursor#limit based on its maxRows
-            applyPropertiesToCursor( rowsCursor, getModel().getQueryProperties(), false, true );
+            applyPropertiesToCursor( rowsCursor, queryProps, false, true );
+
+            // sort keys pushed down by the ODA consumer override the user-defined sortExpr
+            DBObject sortKeys = getModel().getSortKeys();
+            if( sortKeys != null )
+                rowsCursor.sort( sortKeys );
 
-            return new MDbResultSet( rowsCursor, getResultSetMetaData(), getModel().getQueryProperties() );
+            return new MDbResultSet( rowsCursor, getResultSetMetaData(), queryProps );
         }
         catch( RuntimeException ex )
         {
@@ -152,6 +173,15 @@ public class MDbOperation
         }        
     }
 
+    private boolean isParallelReadable( QueryProperties queryProps )
+    {
+        // a sort or skip applies to the documents of all ranges
+        return queryProps.getNumParallelReads() > 1 &&
+                getModel().getSortKeys() == null &&
+                queryProps.getSortExpr().isEmpty() &&
+                queryProps.getNumDocsToSkip() <= 0;
+    }
+
     /* 
      * Applies data set query properties and hints on DBCursor.
      */
@@ -223,7 +253,15 @@ public class MDbOperation
 
     protected QueryProperties getEffectiveProperties()
     {
-        return getModel().getQueryProperties();
+        QueryProperties queryProps = getModel().getQueryProperties();
+        DBObject sortKeys = getModel().getSortKeys();
+        if( sortKeys == null )
+            return queryProps;
+
+        // show the sort keys pushed down by the ODA consumer in place of the sortExpr
+        QueryProperties effectiveProps = QueryProperties.copy( queryProps );
+        effectiveProps.setSortExpr( sortKeys.toString() );
+        return effectiveProps;
     }
 
     /* 
@@ -257,7 +295,7 @@ public class MDbOperation
             // call the specified command
             Iterable<DBObject> cmdResults = null;
             if( queryProps.hasAggregateCommand() )
-                cmdResults = callAggregateCmd( dbCollection, queryProps );
+                cmdResults = callAggregateCmd( dbCollection, queryProps, getModel().getSortKeys(), true );
             else if( queryProps.hasRunCommand() )
                 cmdResults = callDBCommand( getModel().getConnectedDB(), queryProps );
             else if( queryProps.hasMapReduceCommand() )
@@ -326,6 +364,20 @@ public class MDbOperation
 
     static Iterable<DBObject> callAggregateCmd( DBCollection dbCollection,
             QueryProperties queryProps ) throws OdaException
+    {
+        return callAggregateCmd( dbCollection, queryProps, null, false );
+    }
+
+    /**
+     * Calls the aggregate command with the user-specified pipeline, followed by
+     * the pipeline operations pushed down to the server: a $project of the 
+     * selected fields, and a $sort of the specified sort keys.
+     * @param sortKeys  the sort keys pushed down by an ODA consumer; may be null
+     * @param projectsSelectedFields    whether to project the selected fields of the data set
+     */
+    static Iterable<DBObject> callAggregateCmd( DBCollection dbCollection,
+            QueryProperties queryProps, DBObject sortKeys, boolean projectsSelectedFields ) 
+        throws OdaException
     {
         if( ! queryProps.hasAggregateCommand() )
             return null;
@@ -340,6 +392,24 @@ public class MDbOperation
 
         DBObject[] addlOps = QueryProperties.getSecondaryObjectSets( operationExprObj );
 
+        // reduce the inline command result to the selected fields, 
+        // and sort it on the server
+        List<DBObject> pushedOps = new ArrayList<DBObject>(2);
+        if( projectsSelectedFields )
+        {
+            DBObject projectionKeys = queryProps.getSelectedFieldsAsPipelineProjection();
+            if( projectionKeys != null )
+                pushedOps.add( new BasicDBObject( PROJECT_AGGR_KEY, projectionKeys ) );
+        }
+        if( sortKeys != null )
+            pushedOps.add( new BasicDBObject( SORT_AGGR_KEY, sortKeys ) );
+        if( ! pushedOps.isEmpty() )
+        {
+            if( addlOps != null )
+                pushedOps.addAll( 0, Arrays.asList( addlOps ) );
+            addlOps = (DBObject[])pushedOps.toArray( new DBObject[pushedOps.size()] );
+        }
+
         // aggregation $limit and $skip operators applies to the number 
         // of documents in the *input* pipeline, and thus cannot be used to apply
         // the searchLimit and numSkipDocuments properties defined for data set
@@ -0,0 +1,364 @@
+/*
+ *************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *
+ *************************************************************************
+ */
+
+package org.eclipse.birt.data.oda.mongodb.internal.impl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import org.bson.types.ObjectId;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Reads the documents of a find query with several cursors in parallel,
+ * each cursor reading one range of the ObjectId document ids of a collection.
+ * The documents are returned in no particular order, thus it applies only to
+ * a query without sort and skip.
+ */
+public class ParallelCursorReader implements Iterator<DBObject>
+{
+    private static final String DOC_ID_FIELD_NAME = QueryModel.DOC_ID_FIELD_NAME;
+    private static final String AND_QUERY_OPERATOR = "$and"; //$NON-NLS-1$
+    private static final String GTE_QUERY_OPERATOR = "$gte"; //$NON-NLS-1$
+    private static final String LT_QUERY_OPERATOR = "$lt"; //$NON-NLS-1$
+    private static final String READER_THREAD_NAME = "MongoDB ODA parallel reader "; //$NON-NLS-1$
+
+    private static final int CHUNKS_PER_CURSOR = 2;     // read-ahead of each cursor
+    private static final long OFFER_TIMEOUT = 100;      // in milliseconds
+
+    // marks the end of a range in the queue of chunks
+    private static final List<DBObject> sm_endOfRange = Collections.emptyList();
+
+    private List<DBCursor> m_cursors;
+    private int m_chunkSize;
+    private BlockingQueue<List<DBObject>> m_chunks;
+    private List<Thread> m_readers;
+    private int m_openRanges;
+    private Iterator<DBObject> m_currentChunk;
+
+    private volatile boolean m_isClosed = false;
+    private volatile RuntimeException m_readFailure;
+
+    /**
+     * Creates a reader of the specified query, split into the specified number
+     * of document id ranges.
+     * @return  the reader, or null if the collection can't be split into ranges,
+     *          e.g. its document ids are not all ObjectIds, or has too few of them
+     */
+    static ParallelCursorReader create( DBCollection dbCollection, DBObject queryObj,
+            DBObject fieldsObj, QueryProperties queryProps )
+    {
+        List<DBObject> rangeQueries = getRangeQueries( dbCollection, queryObj,
+                queryProps.getNumParallelReads() );
+        if( rangeQueries == null )
+            return null;
+
+        List<DBCursor> cursors = new ArrayList<DBCursor>( rangeQueries.size() );
+        for( DBObject rangeQuery : rangeQueries )
+        {
+            DBCursor rangeCursor = dbCollection.find( rangeQuery, fieldsObj );
+            MDbOperation.applyPropertiesToCursor( rangeCursor, queryProps, false );
+            cursors.add( rangeCursor );
+        }
+
+        int chunkSize = queryProps.getBatchSize() > 0 ?
+                queryProps.getBatchSize() :
+                QueryProperties.DEFAULT_CURSOR_BATCH_SIZE;
+        return new ParallelCursorReader( cursors, chunkSize );
+    }
+
+    private ParallelCursorReader( List<DBCursor> cursors, int chunkSize )
+    {
+        m_cursors = cursors;
+        m_chunkSize = chunkSize;
+        m_chunks = new ArrayBlockingQueue<List<DBObject>>( cursors.size() * CHUNKS_PER_CURSOR );
+        m_openRanges = cursors.size();
+    }
+
+    /*
+     * Splits the time span of the collection's ObjectId document ids in the
+     * specified number of ranges, and returns the query of each range.
+     */
+    static List<DBObject> getRangeQueries( DBCollection dbCollection, DBObject queryObj,
+            int numRanges )
+    {
+        if( numRanges <= 1 )
+            return null;
+
+        ObjectId minId = getBoundaryId( dbCollection, 1 );
+        ObjectId maxId = getBoundaryId( dbCollection, -1 );
+        // ids of other types may sort in between; can't split in ranges
+        if( minId == null || maxId == null )
+            return null;
+        return getRangeQueries( minId, maxId, queryObj, numRanges );
+    }
+
+    /*
+     * Splits the time span between the specified lowest and highest document ids
+     * in the specified number of ranges, and returns the query of each range.
+     */
+    static List<DBObject> getRangeQueries( ObjectId minId, ObjectId maxId, DBObject queryObj,
+            int numRanges )
+    {
+        if( numRanges <= 1 )
+            return null;
+
+        List<ObjectId> boundaries = new ArrayList<ObjectId>( numRanges - 1 );
+        long minTime = minId.getTime();
+        long maxTime = maxId.getTime();
+        for( int i = 1; i < numRanges; i++ )
+        {
+            // the driver fills in its own machine id and counter, so the boundary is
+            // just some id of that second, not the lowest one; any id will do, as
+            // the ranges are half-open and each id falls in exactly one of them
+            ObjectId boundary = new ObjectId( new Date( minTime + ( maxTime - minTime ) * i / numRanges ) );
+            ObjectId lowerBoundary = boundaries.isEmpty() ?
+                    minId : boundaries.get( boundaries.size() - 1 );
+            if( boundary.compareTo( lowerBoundary ) > 0 && boundary.compareTo( maxId ) <= 0 )
+                boundaries.add( boundary );
+        }
+        if( boundaries.isEmpty() )
+            return null;    // all ids are generated within a second
+
+        List<DBObject> rangeQueries = new ArrayList<DBObject>( boundaries.size() + 1 );
+        for( int i = 0; i <= boundaries.size(); i++ )
+        {
+            // the first and last ranges are open-ended
+            BasicDBObject idRange = new BasicDBObject();
+            if( i > 0 )
+                idRange.append( GTE_QUERY_OPERATOR, boundaries.get( i - 1 ) );
+            if( i < boundaries.size() )
+                idRange.append( LT_QUERY_OPERATOR, boundaries.get( i ) );
+
+            DBObject rangeQuery = new BasicDBObject( DOC_ID_FIELD_NAME, idRange );
+            if( queryObj != null && ! queryObj.keySet().isEmpty() )
+                rangeQuery = new BasicDBObject( AND_QUERY_OPERATOR,
+                        Arrays.asList( new DBObject[]{ queryObj, rangeQuery } ) );
+            rangeQueries.add( rangeQuery );
+        }
+        return rangeQueries;
+    }
+
+    private static ObjectId getBoundaryId( DBCollection dbCollection, int sortOrder )
+    {
+        DBCursor idCursor = dbCollection.find( new BasicDBObject(),
+                    new BasicDBObject( DOC_ID_FIELD_NAME, 1 ) )
+                .sort( new BasicDBObject( DOC_ID_FIELD_NAME, sortOrder ) )
+                .limit( 1 );
+        try
+        {
+            if( ! idCursor.hasNext() )
+                return null;
+            Object docId = idCursor.next().get( DOC_ID_FIELD_NAME );
+            return docId instanceof ObjectId ? (ObjectId)docId : null;
+        }
+        finally
+        {
+            idCursor.close();
+        }
+    }
+
+    /**
+     * Limits the number of documents read by each cursor.
+     * Must be called before reading the first document.
+     */
+    public void limit( int maxDocs )
+    {
+        if( m_readers != null || maxDocs <= 0 )
+            return;
+        for( DBCursor rangeCursor : m_cursors )
+            rangeCursor.limit( maxDocs );
+    }
+
+    private void startReaders()
+    {
+        if( m_readers != null )
+            return;
+
+        m_readers = new ArrayList<Thread>( m_cursors.size() );
+        for( int i = 0; i < m_cursors.size(); i++ )
+        {
+            Thread reader = new Thread( new RangeReader( m_cursors.get( i ) ), READER_THREAD_NAME + i );
+            reader.setDaemon( true );
+            m_readers.add( reader );
+            reader.start();
+        }
+    }
+
+    /*
+     * @see java.util.Iterator#hasNext()
+     */
+    public boolean hasNext()
+    {
+        while( m_currentChunk == null || ! m_currentChunk.hasNext() )
+        {
+            m_currentChunk = null;
+            if( m_isClosed || m_openRanges == 0 )
+                return false;
+
+            startReaders();
+            List<DBObject> chunk;
+            try
+            {
+                chunk = m_chunks.take();
+            }
+            catch( InterruptedException ex )
+            {
+                Thread.currentThread().interrupt();
+                close();
+                throw new MongoException( "Interrupted while reading the collection in parallel.", ex ); //$NON-NLS-1$
+            }
+
+            if( chunk == sm_endOfRange )
+            {
+                m_openRanges--;
+                RuntimeException readFailure = m_readFailure;
+                if( readFailure != null )
+                {
+                    close();
+                    throw readFailure;
+                }
+                continue;
+            }
+            m_currentChunk = chunk.iterator();
+        }
+        return true;
+    }
+
+    /*
+     * @see java.util.Iterator#next()
+     */
+    public DBObject next()
+    {
+        if( ! hasNext() )
+            throw new NoSuchElementException();
+        return m_currentChunk.next();
+    }
+
+    /*
+     * @see java.util.Iterator#remove()
+     */
+    public void remove()
+    {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the reader threads and closes their cursors.
+     */
+    public void close()
+    {
+        if( m_isClosed )
+            return;
+        m_isClosed = true;
+        m_currentChunk = null;
+
+        if( m_readers == null )
+        {
+            for( DBCursor rangeCursor : m_cursors )
+                rangeCursor.close();
+        }
+        else
+        {
+            // each reader closes its own cursor
+            for( Thread reader : m_readers )
+                reader.interrupt();
+        }
+        m_chunks.clear();
+    }
+
+    /*
+     * Puts a chunk in the queue, unless this reader is closed while waiting.
+     */
+    private boolean offer( List<DBObject> chunk ) throws InterruptedException
+    {
+        while( ! m_isClosed )
+        {
+            if( m_chunks.offer( chunk, OFFER_TIMEOUT, TimeUnit.MILLISECONDS ) )
+                return true;
+        }
+        return false;
+    }
+
+    /*
+     * Reads the documents of one range, in chunks of the cursor batch size.
+     */
+    private class RangeReader implements Runnable
+    {
+        private DBCursor m_rangeCursor;
+
+        RangeReader( DBCursor rangeCursor )
+        {
+            m_rangeCursor = rangeCursor;
+        }
+
+        public void run()
+        {
+            try
+            {
+                List<DBObject> chunk = new ArrayList<DBObject>( m_chunkSize );
+                while( ! m_isClosed && m_rangeCursor.hasNext() )
+                {
+                    chunk.add( m_rangeCursor.next() );
+                    if( chunk.size() < m_chunkSize )
+                        continue;
+                    if( ! offer( chunk ) )
+                        return;
+                    chunk = new ArrayList<DBObject>( m_chunkSize );
+                }
+                if( ! chunk.isEmpty() )
+                    offer( chunk );
+            }
+            catch( InterruptedException ex )
+            {
+                // closed while waiting for the consumer; done
+            }
+            catch( RuntimeException ex )
+            {
+                if( ! m_isClosed )
+                {
+                    DriverUtil.getLogger().log( Level.SEVERE, "Encountered RuntimeException in a parallel read: ", ex ); //$NON-NLS-1$
+                    m_readFailure = ex;
+                }
+            }
+            finally
+            {
+                m_rangeCursor.close();
+                try
+                {
+                    offer( sm_endOfRange );
+                }
+                catch( InterruptedException ex )
+                {
+                    // closed; no consumer waits for the end of range
+                }
+            }
+        }
+    }
+
+}
@@ -23,6 +23,7 @@ import org.eclipse.birt.data.oda.mongodb.impl.MDbResultSetMetaData;
 import org.eclipse.birt.data.oda.mongodb.internal.impl.QueryProperties.CommandOperationType;
 import org.eclipse.birt.data.oda.mongodb.nls.Messages;
 import org.eclipse.datatools.connectivity.oda.OdaException;
+import org.eclipse.datatools.connectivity.oda.SortSpec;
 import org.eclipse.datatools.connectivity.oda.spec.QuerySpecification;
 
 import com.mongodb.BasicDBList;
@@ -62,6 +63,7 @@ public class QueryModel
     private DB m_connectedDB;    
     private DBCollection m_dbCollection;
     private Integer m_metaDataSearchLimit;
+    private DBObject m_sortKeys;    // pushed down by an ODA consumer
 
     private MDbOperation m_operation;
     
@@ -83,6 +85,54 @@ public class QueryModel
         m_queryProps.setNonNullValues( querySpec.getProperties() );        
     }
 
+    /**
+     * Indicates whether the query operation can apply the sort spec of an ODA consumer, 
+     * i.e. it is a find query, or an aggregate command that ends its pipeline with a $sort.
+     */
+    public boolean supportsSortSpec()
+    {
+        return ! m_queryProps.hasValidCommandOperation() ||
+                m_queryProps.hasAggregateCommand();
+    }
+
+    /**
+     * Sets the sort spec of an ODA consumer, which overrides the user-defined 
+     * Sort Expression of a find query.
+     * @param sortSpec  the sort keys; may be null to remove the sort keys
+     * @throws UnsupportedOperationException    if the query operation does not support a sort spec
+     */
+    public void setSortSpec( SortSpec sortSpec )
+    {
+        if( ! supportsSortSpec() )
+            throw new UnsupportedOperationException();
+
+        DBObject sortKeys = toSortKeys( sortSpec );
+        if( sortKeys == null ? m_sortKeys == null : sortKeys.equals( m_sortKeys ) )
+            return;     // no change
+
+        m_sortKeys = sortKeys;
+        m_operation = null;     // re-prepare the operation with the new sort keys
+    }
+
+    private static DBObject toSortKeys( SortSpec sortSpec )
+    {
+        if( sortSpec == null || sortSpec.getSortKeyCount() == 0 )
+            return null;
+
+        BasicDBObject sortKeys = new BasicDBObject();
+        for( int i = 1; i <= sortSpec.getSortKeyCount(); i++ )     // 1-based index
+        {
+            int sortOrder = sortSpec.getSortOrder( i ) == SortSpec.sortDescending ? -1 : 1;
+            sortKeys.append( sortSpec.getSortColumn( i ), sortOrder );
+        }
+        return sortKeys;
+    }
+
+    DBObject getSortKeys()
+    {
+        return m_sortKeys;
+    }
+
     private void initialize() throws OdaException
     {
         if( m_queryProps == null || m_queryProps.getPropertiesMap().isEmpty() )
@@ -60,9 +60,11 @@ public class QueryProperties
     private static final String INDEX_HINTS_PROP = MONGO_PROP_PREFIX.concat( "indexHints" ); //$NON-NLS-1$
     private static final String NO_TIMEOUT_PROP = MONGO_PROP_PREFIX.concat( "noTimeOut" ); //$NON-NLS-1$
     private static final String PARTIAL_RESULTS_PROP = MONGO_PROP_PREFIX.concat( "allowsPartialResults" ); //$NON-NLS-1$
+    private static final String NUM_PARALLEL_READS_PROP = MONGO_PROP_PREFIX.concat( "numParallelReads" ); //$NON-NLS-1$
     
     public static final int DEFAULT_RUNTIME_METADATA_SEARCH_LIMIT = 10;
     public static final int DEFAULT_CURSOR_BATCH_SIZE = 101;    // default used by Mongo
+    public static final int DEFAULT_NUM_PARALLEL_READS = 1;     // serial read
 
     private static final String DOC_ID_FIELD_NAME = QueryModel.DOC_ID_FIELD_NAME;
     private static final String ARRAY_BEGIN_MARKER = "["; //$NON-NLS-1$
@@ -184,6 +186,7 @@ public class QueryProperties
         setAutoFlattening( false );
         setNoTimeOut( false );
         setPartialResultsOk( true );
+        setNumParallelReads( DEFAULT_NUM_PARALLEL_READS );
     }
 
     private static Object getDefaultPropValue( String propKey )
@@ -552,6 +555,20 @@ public class QueryProperties
         return new BasicDBObject();
     }
 
+    /**
+     * Returns the selected fields as the keys of a $project pipeline operation,
+     * or null if the fields are not selected from a list of field names.
+     */
+    DBObject getSelectedFieldsAsPipelineProjection() throws OdaException
+    {
+        Object propValue = getPropertiesMap().get( SELECTED_FIELDS_PROP );
+        // a user-defined projection may have exclusions not supported by $project
+        if( !(propValue instanceof List<?>) || ((List<?>)propValue).isEmpty() )
+            return null;
+
+        return getSelectedFieldsAsProjectionKeys();
+    }
+
     public void setQueryReadPreference( String readPrefLiteral )
     {
         ReadPreference readPref = toReadPreference( readPrefLiteral );
@@ -739,6 +756,25 @@ public class QueryProperties
         return getBooleanPropOrDefaultValue( PARTIAL_RESULTS_PROP );
     }
 
+    public void setNumParallelReads( Integer numParallelReads )
+    {
+        getPropertiesMap().put( NUM_PARALLEL_READS_PROP, numParallelReads );
+    }
+
+    /**
+     * Returns the number of cursors that may read the ranges of a collection
+     * in parallel.
+     */
+    public Integer getNumParallelReads()
+    {
+        return getIntPropOrDefaultValue( NUM_PARALLEL_READS_PROP );
+    }
+    
+    public boolean hasNumParallelReads()
+    {
+        return hasIntPropertyValue( getPropertiesMap(), NUM_PARALLEL_READS_PROP );
+    }
+
     public void setFindQueryExpr( String findQueryExpr )
     {
         getPropertiesMap().put( FIND_QUERY_EXPR_PROP, findQueryExpr );
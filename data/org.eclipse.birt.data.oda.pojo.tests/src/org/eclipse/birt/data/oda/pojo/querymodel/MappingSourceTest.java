@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.oda.pojo.querymodel;
+
+import org.eclipse.birt.data.oda.pojo.impl.internal.ClassMethodFieldBuffer;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the values read by the method and field sources, whose member is
+ * resolved once per class.
+ */
+@SuppressWarnings("nls")
+public class MappingSourceTest extends TestCase
+{
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		ClassMethodFieldBuffer.createInstance( );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		ClassMethodFieldBuffer.release( );
+		super.tearDown( );
+	}
+
+	public void testMethodSource( ) throws OdaException
+	{
+		MethodSource ms = new MethodSource( "getName", null );
+		ClassLoader cl = getClass( ).getClassLoader( );
+		assertEquals( "a1", ms.fetchValue( new A( "a1" ), cl ) );
+		assertEquals( "a2", ms.fetchValue( new A( "a2" ), cl ) );
+		// another class with the same method
+		assertEquals( "b:b1", ms.fetchValue( new B( "b1" ), cl ) );
+		assertEquals( "a3", ms.fetchValue( new A( "a3" ), cl ) );
+		assertNull( ms.fetchValue( null, cl ) );
+
+		assertNull( new MethodSource( "clear", null ).fetchValue( new A( "a" ),
+				cl ) );
+	}
+
+	public void testFieldSource( ) throws OdaException
+	{
+		FieldSource fs = new FieldSource( "name" );
+		ClassLoader cl = getClass( ).getClassLoader( );
+		assertEquals( "a1", fs.fetchValue( new A( "a1" ), cl ) );
+		assertEquals( "b1", fs.fetchValue( new B( "b1" ), cl ) );
+		assertEquals( "a2", fs.fetchValue( new A( "a2" ), cl ) );
+	}
+
+	public void testMissingMethod( )
+	{
+		try
+		{
+			new MethodSource( "getId", null ).fetchValue( new A( "a" ),
+					getClass( ).getClassLoader( ) );
+			fail( );
+		}
+		catch ( OdaException e )
+		{
+		}
+	}
+
+	// public members of non-public classes
+	private static class A
+	{
+		public String name;
+
+		A( String name )
+		{
+			this.name = name;
+		}
+
+		public String getName( )
+		{
+			return name;
+		}
+
+		public void clear( )
+		{
+			name = null;
+		}
+	}
+
+	private static class B
+	{
+		public String name;
+
+		B( String name )
+		{
+			this.name = name;
+		}
+
+		public String getName( )
+		{
+			return "b:" + name;
+		}
+	}
+}
@@ -10,26 +10,31 @@
  *******************************************************************************/
 package org.eclipse.birt.data.oda.pojo.impl.internal;
 
+import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.eclipse.datatools.connectivity.oda.OdaException;
 
 /**
  * A buffer used to save loaded Classes and Methods and Fields.
  * The buffer is created when Connection is opened and released when Connection is closed.
+ * It may be read by several queries at the same time, so its maps are concurrent. The
+ * saved methods and fields have their access checks suppressed when the security
+ * manager allows it, which makes their invocation cheaper.
  */
 public class ClassMethodFieldBuffer 
 {
-	private static ClassMethodFieldBuffer instance;
+	private static volatile ClassMethodFieldBuffer instance;
 	
 	@SuppressWarnings("unchecked")
-	private Map<Class, Map<MethodIdentifier, Method>> classMethods = new HashMap<Class, Map<MethodIdentifier, Method>>( );
+	private ConcurrentMap<Class, Map<MethodIdentifier, Method>> classMethods = new ConcurrentHashMap<Class, Map<MethodIdentifier, Method>>( );
 	
 	@SuppressWarnings("unchecked")
-	private Map<Class, Map<String, Field>> classFields = new HashMap<Class, Map<String, Field>>( );
+	private ConcurrentMap<Class, Map<String, Field>> classFields = new ConcurrentHashMap<Class, Map<String, Field>>( );
 	
 	private ClassMethodFieldBuffer( )
 	{
@@ -48,21 +53,22 @@ public class ClassMethodFieldBuffer
 	
 	public static void release( )
 	{
-		if ( instance == null )
+		ClassMethodFieldBuffer buffer = instance;
+		if ( buffer == null )
 		{
 			return; //already released
 		}
-		for ( Map<MethodIdentifier, Method> methods : instance.classMethods.values( ))
+		instance = null;
+		for ( Map<MethodIdentifier, Method> methods : buffer.classMethods.values( ))
 		{
 			methods.clear( );
 		}
-		instance.classMethods.clear( );
-		for ( Map<String, Field> fields : instance.classFields.values( ))
+		buffer.classMethods.clear( );
+		for ( Map<String, Field> fields : buffer.classFields.values( ))
 		{
 			fields.clear( );
 		}
-		instance.classFields.clear( );
-		instance = null;
+		buffer.classFields.clear( );
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -102,11 +108,16 @@ public class ClassMethodFieldBuffer
 		try
 		{
 			Method m = c.getMethod( mi.getName( ), mi.getParams( ) );
+			suppressAccessChecks( m );
 			Map<MethodIdentifier, Method> methods = classMethods.get( c );
 			if ( methods == null )
 			{
-				methods = new HashMap<MethodIdentifier, Method>( );
-				classMethods.put( c, methods );
+				methods = new ConcurrentHashMap<MethodIdentifier, Method>( );
+				Map<MethodIdentifier, Method> existing = classMethods.putIfAbsent( c, methods );
+				if ( existing != null )
+				{
+					methods = existing;
+				}
 			}
 			methods.put( mi, m );
 			return m;
@@ -145,11 +156,16 @@ public class ClassMethodFieldBuffer
 		try
 		{
 			Field f = c.getField( fieldName );
+			suppressAccessChecks( f );
 			Map<String, Field> fields = classFields.get( c );
 			if ( fields == null )
 			{
-				fields = new HashMap<String, Field>( );
-				classFields.put( c, fields );
+				fields = new ConcurrentHashMap<String, Field>( );
+				Map<String, Field> existing = classFields.putIfAbsent( c, fields );
+				if ( existing != null )
+				{
+					fields = existing;
+				}
 			}
 			fields.put( fieldName, f );
 			return f;
@@ -163,4 +179,21 @@ public class ClassMethodFieldBuffer
 			throw new OdaException( e );
 		}
 	}
+	
+	/**
+	 * Lets a public member of a non-public class be called, and saves the
+	 * access check on each call
+	 * @param member
+	 */
+	static void suppressAccessChecks( AccessibleObject member )
+	{
+		try
+		{
+			member.setAccessible( true );
+		}
+		catch ( SecurityException e )
+		{
+			//keep the access checks
+		}
+	}
 }
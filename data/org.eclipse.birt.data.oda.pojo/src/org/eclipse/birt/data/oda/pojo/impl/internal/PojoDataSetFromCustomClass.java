@@ -97,6 +97,17 @@ public class PojoDataSetFromCustomClass implements IPojoDataSet
 			logger.log( Level.WARNING, "failed to locate close( ) method ", e ); //$NON-NLS-1$
 		}
 
+		//next() is called for each row
+		for ( Method m : new Method[]{
+				openMethod, nextMethod, closeMethod
+		} )
+		{
+			if ( m != null )
+			{
+				ClassMethodFieldBuffer.suppressAccessChecks( m );
+			}
+		}
+
 		try
 		{
 			instance = dataSetClass.newInstance( );
@@ -28,6 +28,9 @@ public class FieldSource implements IMappingSource
 {
 	private String name; //the filed name
 	
+	//the field resolved for the class of the last object read
+	private volatile ResolvedField resolved;
+	
 	/**
 	 * @param name: the field name
 	 * @throws NullPointerException if <code>name</code> is null
@@ -53,10 +56,17 @@ public class FieldSource implements IMappingSource
 		{
 			return null;
 		}
-		Field f = ClassMethodFieldBuffer.getInstance( ).getField( from.getClass( ), getName( ) );
+		ResolvedField rf = resolved;
+		if ( rf == null || rf.c != from.getClass( ) )
+		{
+			//the objects read are usually all of the same class
+			rf = new ResolvedField( from.getClass( ),
+					ClassMethodFieldBuffer.getInstance( ).getField( from.getClass( ), getName( ) ) );
+			resolved = rf;
+		}
 		try
 		{
-			return f.get( from );
+			return rf.f.get( from );
 		}
 		catch ( IllegalArgumentException e )
 		{
@@ -119,4 +129,16 @@ public class FieldSource implements IMappingSource
 		//no parameter at all for FildSource
 	}
 	
+	@SuppressWarnings("unchecked")
+	private static class ResolvedField
+	{
+		private final Class c;
+		private final Field f;
+		
+		ResolvedField( Class c, Field f )
+		{
+			this.c = c;
+			this.f = f;
+		}
+	}
 }
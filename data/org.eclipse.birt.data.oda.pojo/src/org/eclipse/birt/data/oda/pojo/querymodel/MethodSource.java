@@ -39,6 +39,9 @@ public class MethodSource implements IMappingSource
 	
 	private Object[] parameterValues; 
 	
+	//the method resolved for the class of the last object read
+	private volatile ResolvedMethod resolved;
+	
 	/**
 	 * @param name: the method name
 	 */
@@ -81,11 +84,18 @@ public class MethodSource implements IMappingSource
 		{
 			mi = MethodIdentifier.newInstance( this, pojoClassLoader );
 		}
-		Method m = ClassMethodFieldBuffer.getInstance( ).getMethod( from.getClass( ), mi );
+		ResolvedMethod rm = resolved;
+		if ( rm == null || rm.c != from.getClass( ) )
+		{
+			//the objects read are usually all of the same class
+			rm = new ResolvedMethod( from.getClass( ),
+					ClassMethodFieldBuffer.getInstance( ).getMethod( from.getClass( ), mi ) );
+			resolved = rm;
+		}
 		try
 		{
-			return m.getReturnType( ).equals( Void.TYPE ) ? 
-					null : m.invoke( from, parameterValues );
+			return rm.isVoid ? 
+					null : rm.m.invoke( from, parameterValues );
 		}
 		catch ( IllegalArgumentException e )
 		{
@@ -167,4 +177,18 @@ public class MethodSource implements IMappingSource
 
 
 	
+	@SuppressWarnings("unchecked")
+	private static class ResolvedMethod
+	{
+		private final Class c;
+		private final Method m;
+		private final boolean isVoid;
+		
+		ResolvedMethod( Class c, Method m )
+		{
+			this.c = c;
+			this.m = m;
+			this.isVoid = m.getReturnType( ).equals( Void.TYPE );
+		}
+	}
 }
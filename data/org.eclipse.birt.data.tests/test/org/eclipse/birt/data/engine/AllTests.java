@@ -70,6 +70,9 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.binding.newbinding.MultiplePassTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.binding.newbinding.ColumnBindingTest.class );
 		
+		/* in package org.eclipse.birt.data.engine.cache */
+		suite.addTestSuite( org.eclipse.birt.data.engine.cache.TopNHeapTest.class );
+		
 		/* in package org.eclipse.birt.data.engine.executor.cache */
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheClobAndBlobTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.executor.cache.CacheComputedColumnTest.class );
@@ -91,6 +94,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.expression.ComplexExpressionCompilerTest.class);
 		suite.addTestSuite( org.eclipse.birt.data.engine.expression.ExpressionCompilerTest.class);
 		suite.addTestSuite( org.eclipse.birt.data.engine.expression.ExpressionCompilerUtilTest.class);
+		suite.addTestSuite( org.eclipse.birt.data.engine.expression.NativeExpressionTest.class);
 		
 		/* in package org.eclipse.birt.data.engine.impl.rd */
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.rd.ViewingTest2.class);
@@ -114,9 +118,18 @@ public class AllTests
 		/* in package org.eclipse.birt.data.engine.impl.document */
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.document.GroupInfoUtilTest.class);
 		
+		/* in package org.eclipse.birt.data.engine.impl.jointdataset */
+		suite.addTestSuite( org.eclipse.birt.data.engine.impl.jointdataset.HashJoinResultObjectSeekerTest.class );
+		
+		/* in package org.eclipse.birt.data.engine.impl.index */
+		suite.addTestSuite( org.eclipse.birt.data.engine.impl.index.CompressedIntSetTest.class );
+		
 		/* in package org.eclipse.birt.data.engine.impl */
 		suite.addTestSuite( org.eclipse.birt.data.engine.impl.util.DirectedGraphTest.class );
 		
+		/* in package org.eclipse.birt.data.engine.odaconsumer */
+		suite.addTestSuite( org.eclipse.birt.data.engine.odaconsumer.ColumnReaderTest.class );
+		
 		/* in package org.eclipse.birt.data.engine.olap.api */
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.api.CubeFeaturesTest.class);
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.api.CubeIVTest.class);
@@ -127,6 +140,7 @@ public class AllTests
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.document.CachedDocumentObjectManagerTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.document.DocumentManagerTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.document.FileDocumentManagerTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.document.MappedFileDocumentManagerTest.class );
 		
 		/* in package org.eclipse.birt.data.engine.olap.data.impl*/
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.data.impl.CubeAggregationTest.class );
@@ -173,6 +187,7 @@ public class AllTests
 
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.cursor.CursorNavigatorTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.cursor.CursorModelTest.class );
+		suite.addTestSuite( org.eclipse.birt.data.engine.olap.cursor.AggregationResultSetIndexTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.cursor.MirrorCursorModelTest.class );
 		suite.addTestSuite( org.eclipse.birt.data.engine.olap.cursor.MirrorCursorNavigatorTest.class );
 		
@@ -3,14 +3,19 @@ package org.eclipse.birt.data.engine.aggregation;
 
 
 import java.math.BigDecimal;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Random;
 
 import junit.framework.TestCase;
 
 import org.eclipse.birt.data.aggregation.api.IBuildInAggregation;
 import org.eclipse.birt.data.aggregation.impl.BuildInAggregationFactory;
+import org.eclipse.birt.data.aggregation.impl.sketch.HyperLogLog;
+import org.eclipse.birt.data.aggregation.impl.sketch.QuantileSketch;
+import org.eclipse.birt.data.aggregation.impl.sketch.SpaceSavingSketch;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.core.DataException;
@@ -1612,6 +1617,52 @@ public class TotalTest extends TestCase
         ac.finish();
     }
     
+    public void testTotalTopBeyondHeapSize() throws Exception
+    {
+        // N is greater than the values a heap holds in memory
+        int count = 250000;
+        int n = 200001;
+        int[] values = shuffledValues(count);
+        for(int top=0; top<2; top++)
+        {
+            boolean isTop = top == 0;
+            IAggrFunction ag = buildInAggrFactory.getAggregation(isTop ? "isTopN" : "isBottomN");
+            Accumulator ac = ag.newAccumulator();
+            ac.start();
+            for(int i=0; i<count; i++)
+            {
+                ac.onRow(new Object[]{new Integer(values[i] / 2), new Integer(n)});
+            }
+            ac.finish();
+
+            // of two equal values, the first one is selected
+            boolean[] expected = new boolean[count];
+            int[] firstIndexes = new int[count / 2];
+            Arrays.fill(firstIndexes, -1);
+            for(int i=0; i<count; i++)
+            {
+                int value = values[i] / 2;
+                boolean isFirst = firstIndexes[value] == -1;
+                if(isFirst)
+                    firstIndexes[value] = i;
+                int rank = isTop ? (count / 2 - 1 - value) * 2 : value * 2;
+                expected[i] = (isFirst ? rank : rank + 1) < n;
+            }
+
+            ac.start();
+            int selected = 0;
+            for(int i=0; i<count; i++)
+            {
+                ac.onRow(new Object[]{new Integer(values[i] / 2), new Integer(n)});
+                assertEquals(Boolean.valueOf(expected[i]), ac.getValue());
+                if(expected[i])
+                    selected++;
+            }
+            ac.finish();
+            assertEquals(n, selected);
+        }
+    }
+
     public void testTotalBottom() throws Exception
     {
         IAggrFunction ag = buildInAggrFactory.getAggregation("isBottomN");
@@ -2097,5 +2148,288 @@ public class TotalTest extends TestCase
 		ac.finish( );
 		assertEquals( new Integer( 8 ), ac.getValue( ) );
 	}
+
+    public void testBatchAccumulator() throws Exception
+    {
+        String[] names = {"sum", "ave", "max", "min", "stddev", "variance"};
+        Object[][] valueArrays = new Object[4][3000];
+        for(int i=0; i<3000; i++)
+        {
+            // a single class, nulls, mixed classes, a BigDecimal first
+            valueArrays[0][i] = new Double((i*37%1000)/7.0);
+            valueArrays[1][i] = i%5==0 ? null : new Integer(i*37%1000-500);
+            valueArrays[2][i] = i%3==0 ? (Object)new Integer(i%100) : new Double(i/3.0);
+            valueArrays[3][i] = i%100==0 ? (Object)new BigDecimal(i) : new Double(i%17);
+        }
+        for(int i=0; i<names.length; i++)
+        {
+            IAggrFunction ag = buildInAggrFactory.getAggregation(names[i]);
+            Accumulator expected = ag.newAccumulator();
+            Accumulator ac = BatchAccumulator.wrap(ag, ag.newAccumulator());
+            assertTrue(ac instanceof BatchAccumulator);
+            for(int j=0; j<valueArrays.length; j++)
+            {
+                // min and max can't compare the values of different classes
+                if(j>=2 && (names[i].equals("max") || names[i].equals("min")))
+                    continue;
+                expected.start();
+                ac.start();
+                for(int k=0; k<valueArrays[j].length; k++)
+                {
+                    expected.onRow(new Object[]{valueArrays[j][k]});
+                    ac.onRow(new Object[]{valueArrays[j][k]});
+                }
+                expected.finish();
+                ac.finish();
+                assertEquals(names[i], expected.getValue(), ac.getValue());
+            }
+            ac.start();
+            ac.finish();
+            assertEquals(null, ac.getValue());
+        }
+    }
+
+    public void testTotalApproxPercentile() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxPercentile");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_PERCENTILE_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(2, ag.getParameterDefn().length);
+        assertFalse(ag.getParameterDefn()[1].isOptional());
+
+        // the same values as Total.Percentile for a few values
+        double[] pcts = {0.1, 0, 1, 0.7, 0.35};
+        double[] expected = {10, 10, 300, 70, 17.5};
+        for(int i=0; i<pcts.length; i++)
+        {
+            ac.start();
+            for(int j=0; j<doubleArray3.length; j++)
+            {
+                ac.onRow(new Object[]{doubleArray3[j], new Double(pcts[i])});
+            }
+            ac.finish();
+            assertEquals(new Double(expected[i]), ac.getValue());
+        }
+
+        try
+        {
+            ac.start();
+            ac.onRow(new Object[]{doubleArray3[0], new Double(1.1)});
+            fail("should not arrive here");
+        }
+        catch ( DataException e )
+        {
+        }
+
+        // the rank of the result is close to the expected one for many values
+        int count = 100000;
+        int[] values = shuffledValues(count);
+        pcts = new double[]{0, 0.01, 0.25, 0.5, 0.9, 0.99, 1};
+        for(int i=0; i<pcts.length; i++)
+        {
+            ac.start();
+            for(int j=0; j<count; j++)
+            {
+                ac.onRow(new Object[]{new Integer(values[j]), new Double(pcts[i])});
+            }
+            ac.finish();
+            double value = ((Double)ac.getValue()).doubleValue();
+            assertEquals(pcts[i]*(count-1), value, count*0.01);
+        }
+        assertEquals(new Double(count-1), ac.getValue());
+
+        ac.start();
+        ac.finish();
+        assertEquals(null, ac.getValue());
+    }
+
+    public void testTotalApproxCountDistinct() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxCountDistinct");
+        Accumulator ac = ag.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_COUNTDISTINCT_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(1, ag.getParameterDefn().length);
+        assertEquals(new Integer(0), ag.getDefaultValue());
+
+        // exact for a few values; the numbers of different classes differ
+        ac.start();
+        for(int i=0; i<anyObjectArray.length; i++)
+        {
+            ac.onRow(new Object[]{anyObjectArray[i]});
+        }
+        ac.finish();
+        assertEquals(new Integer(6), ac.getValue());
+
+        int[] counts = {1000, 20000, 500000};
+        for(int i=0; i<counts.length; i++)
+        {
+            ac.start();
+            for(int j=0; j<counts[i]*2; j++)
+            {
+                ac.onRow(new Object[]{"value" + (j % counts[i])});
+            }
+            ac.finish();
+            int value = ((Integer)ac.getValue()).intValue();
+            if(counts[i]<=1000)
+                assertEquals(counts[i], value);
+            else
+                assertEquals(counts[i], value, counts[i]*0.03);
+        }
+
+        try
+        {
+            ac.start();
+            ac.onRow(new Object[]{new Object()});
+            fail("should not arrive here");
+        }
+        catch ( DataException e )
+        {
+        }
+    }
+
+    public void testTotalApproxMode() throws Exception
+    {
+        IAggrFunction ag = buildInAggrFactory.getAggregation("approxMode");
+        IAggrFunction mode = buildInAggrFactory.getAggregation("mode");
+        Accumulator ac = ag.newAccumulator();
+        Accumulator expected = mode.newAccumulator();
+        assertEquals(IBuildInAggregation.TOTAL_APPROX_MODE_FUNC, ag.getName());
+        assertEquals(IAggrFunction.SUMMARY_AGGR, ag.getType());
+        assertEquals(1, ag.getParameterDefn().length);
+
+        // the same values as Total.Mode for a few distinct values
+        Object[][] valueArrays = {str1, doubleArray3, {new Integer(3), new Integer(2), new Integer(2), new Integer(3), new Integer(1)}};
+        for(int i=0; i<valueArrays.length; i++)
+        {
+            ac.start();
+            expected.start();
+            for(int j=0; j<valueArrays[i].length; j++)
+            {
+                ac.onRow(new Object[]{valueArrays[i][j]});
+                expected.onRow(new Object[]{valueArrays[i][j]});
+            }
+            ac.finish();
+            expected.finish();
+            assertEquals(expected.getValue(), ac.getValue());
+        }
+
+        // a frequent value among many distinct ones
+        int count = 100000;
+        int[] values = shuffledValues(count);
+        ac.start();
+        for(int j=0; j<count; j++)
+        {
+            ac.onRow(new Object[]{new Integer(j % 10 == 0 ? -1 : values[j])});
+        }
+        ac.finish();
+        assertEquals(new Double(-1), ac.getValue());
+
+        // no value occurs more than once
+        ac.start();
+        for(int j=0; j<count; j++)
+        {
+            ac.onRow(new Object[]{new Integer(values[j])});
+        }
+        ac.finish();
+        assertEquals(null, ac.getValue());
+    }
+
+    public void testSketchMerge() throws Exception
+    {
+        int count = 100000;
+        int[] values = shuffledValues(count);
+        QuantileSketch quantiles = new QuantileSketch();
+        QuantileSketch otherQuantiles = new QuantileSketch();
+        HyperLogLog distinct = new HyperLogLog();
+        HyperLogLog otherDistinct = new HyperLogLog();
+        SpaceSavingSketch frequent = new SpaceSavingSketch();
+        SpaceSavingSketch otherFrequent = new SpaceSavingSketch();
+        for(int i=0; i<count; i++)
+        {
+            boolean isOther = i % 3 == 0;
+            (isOther ? otherQuantiles : quantiles).update(values[i]);
+            (isOther ? otherDistinct : distinct).update(HyperLogLog.hash(new Integer(values[i] / 2)));
+            (isOther ? otherFrequent : frequent).update(new Integer(i % 7 == 0 ? -1 : values[i]));
+        }
+        quantiles.merge(otherQuantiles);
+        distinct.merge(otherDistinct);
+        frequent.merge(otherFrequent);
+
+        assertEquals(count, quantiles.getCount());
+        assertEquals(0, quantiles.getQuantile(0), 0);
+        assertEquals(count*0.5, quantiles.getQuantile(0.5), count*0.01);
+        assertEquals(count*0.9, quantiles.getQuantile(0.9), count*0.01);
+        assertEquals(count/2, distinct.estimate(), count*0.03);
+        assertEquals(new Integer(-1), frequent.getMode());
+        assertTrue(frequent.getCount(new Integer(-1)) >= count/7);
+
+        // merging small sketches is exact
+        HyperLogLog small = new HyperLogLog();
+        HyperLogLog otherSmall = new HyperLogLog();
+        for(int i=0; i<100; i++)
+        {
+            small.update(HyperLogLog.hash(new Integer(i)));
+            otherSmall.update(HyperLogLog.hash(new Integer(i + 50)));
+        }
+        small.merge(otherSmall);
+        assertEquals(150, small.estimate());
+    }
+
+    public void testQuantileSketchMergeUnequalSizes() throws Exception
+    {
+        int count = 100000;
+        int[] values = shuffledValues(count);
+
+        // a small sketch merges a large one, which has more levels
+        QuantileSketch small = new QuantileSketch();
+        QuantileSketch large = new QuantileSketch();
+        for(int i=0; i<10; i++)
+            small.update(count + i);
+        for(int i=0; i<count; i++)
+            large.update(values[i]);
+        small.merge(large);
+        assertEquals(count + 10, small.getCount());
+        assertEquals(0, small.getQuantile(0), 0);
+        assertEquals(count + 9, small.getQuantile(1), 0);
+        assertEquals(count*0.5, small.getQuantile(0.5), count*0.01);
+        assertEquals(count*0.9, small.getQuantile(0.9), count*0.01);
+        assertEquals(100000, large.getCount());
+
+        // a large sketch merges a small one
+        large = new QuantileSketch();
+        small = new QuantileSketch();
+        for(int i=0; i<count; i++)
+            large.update(values[i]);
+        for(int i=0; i<10; i++)
+            small.update(-1 - i);
+        large.merge(small);
+        assertEquals(count + 10, large.getCount());
+        assertEquals(-10, large.getQuantile(0), 0);
+        assertEquals(count - 1, large.getQuantile(1), 0);
+        assertEquals(count*0.5, large.getQuantile(0.5), count*0.01);
+        assertEquals(count*0.9, large.getQuantile(0.9), count*0.01);
+        assertEquals(10, small.getCount());
+    }
+
+    /**
+     * Returns the integers from 0 to count-1 in a random order.
+     */
+    private static int[] shuffledValues(int count)
+    {
+        int[] values = new int[count];
+        for(int i=0; i<count; i++)
+            values[i] = i;
+        Random random = new Random(0);
+        for(int i=count-1; i>0; i--)
+        {
+            int j = random.nextInt(i+1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
     
 }
@@ -498,6 +498,206 @@ public class FilterByRowTest extends APITestCase
 		checkQueryResult( resultIt1, resultIt2, bindingNameRow );
 	}
 	
+	/**
+	 * The top n filter is applied to the rows accepted by the other filters,
+	 * in whatever order the filters are defined.
+	 * 
+	 * @throws Exception
+	 */
+	public void testTopNWithOtherFilters( ) throws Exception
+	{
+		String[] bindingNameRow = new String[]{
+				"ROW_COL0", "ROW_COL1", "ROW_COL2", "ROW_COL3"
+		};
+		ScriptExpression[] bindingExprRow = new ScriptExpression[]{
+				new ScriptExpression( "dataSetRow.COL0", 0 ),
+				new ScriptExpression( "dataSetRow.COL1", 0 ),
+				new ScriptExpression( "dataSetRow.COL2", 0 ),
+				new ScriptExpression( "dataSetRow.COL3", 0 ),
+		};
+
+		FilterDefinition[] filterDefn = new FilterDefinition[]{
+				new FilterDefinition( new ConditionalExpression( "row.ROW_COL1",
+						ConditionalExpression.OP_GE,
+						"1" ) ),
+				new FilterDefinition( new ConditionalExpression( "row.ROW_COL0",
+						ConditionalExpression.OP_TOP_N,
+						"10" ) ),
+				new FilterDefinition( new ScriptExpression( "row.ROW_COL3 != 2" ) )
+		};
+
+		// 12 rows of col0 = 2 pass the other filters, and the first 10 of
+		// them are kept
+		List expected = new ArrayList( );
+		for ( int col1 = 1; col1 <= 2; col1++ )
+			for ( int col2 = 0; col2 <= 2; col2++ )
+				for ( int col3 = 0; col3 <= 1; col3++ )
+					expected.add( "2," + col1 + "," + col2 + "," + col3 );
+		expected = expected.subList( 0, 10 );
+
+		assertEquals( expected, getRows( filterDefn,
+				bindingNameRow,
+				bindingExprRow ) );
+	}
+
+	/**
+	 * The n of a percent filter is computed from the count of the rows
+	 * accepted by the other filters.
+	 * 
+	 * @throws Exception
+	 */
+	public void testBottomPercentWithOtherFilters( ) throws Exception
+	{
+		String[] bindingNameRow = new String[]{
+				"ROW_COL0", "ROW_COL1", "ROW_COL2", "ROW_COL3"
+		};
+		ScriptExpression[] bindingExprRow = new ScriptExpression[]{
+				new ScriptExpression( "dataSetRow.COL0", 0 ),
+				new ScriptExpression( "dataSetRow.COL1", 0 ),
+				new ScriptExpression( "dataSetRow.COL2", 0 ),
+				new ScriptExpression( "dataSetRow.COL3", 0 ),
+		};
+
+		FilterDefinition[] filterDefn = new FilterDefinition[]{
+				new FilterDefinition( new ConditionalExpression( "row.ROW_COL2",
+						ConditionalExpression.OP_BOTTOM_PERCENT,
+						"20" ) ),
+				new FilterDefinition( new ConditionalExpression( "row.ROW_COL0",
+						ConditionalExpression.OP_EQ,
+						"1" ) )
+		};
+
+		// 20 percent of the 27 rows of col0 = 1
+		List expected = new ArrayList( );
+		expected.add( "1,0,0,0" );
+		expected.add( "1,0,0,1" );
+		expected.add( "1,0,0,2" );
+		expected.add( "1,1,0,0" );
+		expected.add( "1,1,0,1" );
+
+		assertEquals( expected, getRows( filterDefn,
+				bindingNameRow,
+				bindingExprRow ) );
+	}
+
+	/**
+	 * The filters of a distinct data set are applied to the distinct rows.
+	 * 
+	 * @throws Exception
+	 */
+	public void testFiltersOnDistinctRows( ) throws Exception
+	{
+		ScriptDataSourceDesign dsource = new ScriptDataSourceDesign( "JUST as place folder" );
+		ScriptDataSetDesign dset = newDuplicateDataSet( );
+		dset.setDataSource( dsource.getName( ) );
+		dset.setDistinctValue( true );
+
+		dataEngine.defineDataSource( dsource );
+		dataEngine.defineDataSet( dset );
+
+		FilterDefinition[] topFilterDefn = new FilterDefinition[]{
+				new FilterDefinition( new ConditionalExpression( "row.ROW_V",
+						ConditionalExpression.OP_TOP_N,
+						"3" ) ),
+				new FilterDefinition( new ConditionalExpression( "row.ROW_V",
+						ConditionalExpression.OP_GE,
+						"2" ) )
+		};
+		assertEquals( toList( new String[]{
+				"7", "8", "9"
+		} ), getDistinctRows( topFilterDefn ) );
+
+		FilterDefinition[] bottomFilterDefn = new FilterDefinition[]{
+				new FilterDefinition( new ConditionalExpression( "row.ROW_V",
+						ConditionalExpression.OP_GE,
+						"2" ) ),
+				new FilterDefinition( new ConditionalExpression( "row.ROW_V",
+						ConditionalExpression.OP_BOTTOM_PERCENT,
+						"50" ) )
+		};
+		assertEquals( toList( new String[]{
+				"2", "3", "4", "5"
+		} ), getDistinctRows( bottomFilterDefn ) );
+	}
+
+	/**
+	 * Execute a query on the test table and return its rows, as the
+	 * comma-separated values of the bindings
+	 * 
+	 * @param filterDefn
+	 * @param bindingNameRow
+	 * @param bindingExprRow
+	 * @return the rows of the query
+	 * @throws Exception
+	 */
+	private List getRows( FilterDefinition[] filterDefn,
+			String[] bindingNameRow, IBaseExpression[] bindingExprRow )
+			throws Exception
+	{
+		IResultIterator resultIt = executeQuery( createQuery( null,
+				null,
+				null,
+				null,
+				null,
+				null,
+				null,
+				null,
+				filterDefn,
+				bindingNameRow,
+				bindingExprRow ) );
+		List rows = new ArrayList( );
+		while ( resultIt.next( ) )
+		{
+			StringBuffer row = new StringBuffer( );
+			for ( int i = 0; i < bindingNameRow.length; i++ )
+			{
+				if ( i > 0 )
+					row.append( ',' );
+				row.append( resultIt.getInteger( bindingNameRow[i] ) );
+			}
+			rows.add( row.toString( ) );
+		}
+		resultIt.close( );
+		return rows;
+	}
+
+	/**
+	 * Execute a query on the data set of duplicate rows and return its values
+	 * 
+	 * @param filterDefn
+	 * @return the values of the query
+	 * @throws Exception
+	 */
+	private List getDistinctRows( FilterDefinition[] filterDefn )
+			throws Exception
+	{
+		QueryDefinition rqDefn = new QueryDefinition( );
+		rqDefn.setDataSetName( "duplicate" );
+		rqDefn.addResultSetExpression( "ROW_V",
+				new ScriptExpression( "dataSetRow.V", DataType.INTEGER_TYPE ) );
+		for ( int i = 0; i < filterDefn.length; i++ )
+			rqDefn.addFilter( filterDefn[i] );
+
+		IQueryResults qr = dataEngine.prepare( rqDefn ).execute( jsScope );
+		IResultIterator ri = qr.getResultIterator( );
+		List rows = new ArrayList( );
+		while ( ri.next( ) )
+		{
+			rows.add( ri.getInteger( "ROW_V" ).toString( ) );
+		}
+		ri.close( );
+		qr.close( );
+		return rows;
+	}
+
+	private static List toList( String[] values )
+	{
+		List list = new ArrayList( );
+		for ( int i = 0; i < values.length; i++ )
+			list.add( values[i] );
+		return list;
+	}
+
 	/**
 	 * test invalid filter definition and it's error code
 	 * 
@@ -758,6 +958,23 @@ public class FilterByRowTest extends APITestCase
 		qr.close( );
 	}
 	
+	/**
+	 * @return a data set of the values 0 to 9, each of them in two rows
+	 */
+	private ScriptDataSetDesign newDuplicateDataSet( )
+	{
+		ScriptDataSetDesign dataSet = new ScriptDataSetDesign( "duplicate" );
+
+		dataSet.setOpenScript( "count=0;" );
+		dataSet.setFetchScript( "if (count==20) { return false; } else "
+				+ "{ row.V = Math.floor(count/2); count++; return true; }" );
+
+		ColumnDefinition column = new ColumnDefinition( "V" );
+		column.setDataType( DataType.INTEGER_TYPE );
+		dataSet.getResultSetHints( ).add( column );
+		return dataSet;
+	}
+
 	private ScriptDataSetDesign newDataSet( )
 	{
 		ScriptDataSetDesign dataSet = new ScriptDataSetDesign( "test" );
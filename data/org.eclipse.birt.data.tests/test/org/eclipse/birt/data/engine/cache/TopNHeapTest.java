@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.cache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ */
+
+public class TopNHeapTest extends TestCase
+{
+
+	private static final int COUNT = 1000;
+
+	public void testTop( )
+	{
+		TopNHeap heap = new TopNHeap( 10, true, null );
+		for ( int i = 0; i < COUNT; i++ )
+		{
+			heap.add( Integer.valueOf( ( i * 7 ) % COUNT ), i );
+		}
+		assertEquals( 10, heap.size( ) );
+		Object[] values = heap.getValues( );
+		for ( int i = 0; i < 10; i++ )
+		{
+			assertEquals( Integer.valueOf( COUNT - 1 - i ), values[i] );
+		}
+	}
+
+	public void testBottom( )
+	{
+		TopNHeap heap = new TopNHeap( 10, false, null );
+		for ( int i = 0; i < COUNT; i++ )
+		{
+			heap.add( Double.valueOf( ( i * 7 ) % COUNT ), i );
+		}
+		assertEquals( 10, heap.size( ) );
+		Object[] values = heap.getValues( );
+		int[] indexes = heap.getIndexes( );
+		// the value v is at the index 143 * v % COUNT, as 7 * 143 = 1001
+		int[] expected = new int[10];
+		for ( int i = 0; i < 10; i++ )
+		{
+			assertEquals( Double.valueOf( i ), values[i] );
+			expected[i] = ( i * 143 ) % COUNT;
+		}
+		Arrays.sort( expected );
+		assertTrue( Arrays.equals( expected, indexes ) );
+	}
+
+	public void testTies( )
+	{
+		// the values of the smallest indexes are kept among the equal ones
+		TopNHeap heap = new TopNHeap( 5, true, null );
+		for ( int i = 0; i < 20; i++ )
+		{
+			heap.add( Integer.valueOf( i % 2 ), i );
+		}
+		assertTrue( Arrays.equals( new int[]{
+				1, 3, 5, 7, 9
+		}, heap.getIndexes( ) ) );
+
+		heap = new TopNHeap( 5, false, null );
+		for ( int i = 19; i >= 0; i-- )
+		{
+			heap.add( Integer.valueOf( i % 2 ), i );
+		}
+		assertTrue( Arrays.equals( new int[]{
+				0, 2, 4, 6, 8
+		}, heap.getIndexes( ) ) );
+	}
+
+	public void testMixedValues( )
+	{
+		// the values which are not of the same class use the comparator
+		TopNHeap heap = new TopNHeap( 3, true, new Comparator( ) {
+
+			public int compare( Object o1, Object o2 )
+			{
+				return Double.compare( ( (Number) o1 ).doubleValue( ),
+						( (Number) o2 ).doubleValue( ) );
+			}
+		} );
+		heap.add( Integer.valueOf( 4 ), 0 );
+		heap.add( Integer.valueOf( 1 ), 1 );
+		heap.add( Double.valueOf( 2.5 ), 2 );
+		heap.add( Long.valueOf( 3 ), 3 );
+		heap.add( Integer.valueOf( 2 ), 4 );
+		assertTrue( Arrays.equals( new Object[]{
+				Integer.valueOf( 4 ), Long.valueOf( 3 ), Double.valueOf( 2.5 )
+		}, heap.getValues( ) ) );
+
+		heap.clear( );
+		assertEquals( 0, heap.size( ) );
+		heap.add( Integer.valueOf( 1 ), 0 );
+		heap.add( Integer.valueOf( 2 ), 1 );
+		assertTrue( Arrays.equals( new int[]{
+				0, 1
+		}, heap.getIndexes( ) ) );
+	}
+
+	public void testSmallStream( )
+	{
+		TopNHeap heap = new TopNHeap( 10, true, null );
+		heap.add( Integer.valueOf( 2 ), 0 );
+		heap.add( Integer.valueOf( 3 ), 1 );
+		assertEquals( 2, heap.size( ) );
+		assertTrue( Arrays.equals( new int[]{
+				0, 1
+		}, heap.getIndexes( ) ) );
+
+		heap = new TopNHeap( 0, true, null );
+		assertFalse( heap.add( Integer.valueOf( 1 ), 0 ) );
+		assertEquals( 0, heap.size( ) );
+	}
+
+	public void testSelect( )
+	{
+		// the values are selected by rounds of 7 values
+		List values = new ArrayList( );
+		for ( int i = 0; i < COUNT; i++ )
+		{
+			values.add( i % 10 == 0 ? null : Integer.valueOf( ( i * 7 ) % 100 ) );
+		}
+		for ( int n = 0; n <= COUNT; n += 50 )
+		{
+			TopNHeap heap = new TopNHeap( n, true, null );
+			for ( int i = 0; i < COUNT; i++ )
+			{
+				if ( values.get( i ) != null )
+					heap.add( values.get( i ), i );
+			}
+			int[] expected = heap.getIndexes( );
+			BasicCachedArray flags = TopNHeap.select( values,
+					n,
+					true,
+					null,
+					7,
+					System.getProperty( "java.io.tmpdir" ) ); //$NON-NLS-1$
+			assertEquals( COUNT, flags.length( ) );
+			int[] selected = new int[expected.length];
+			int count = 0;
+			for ( int i = 0; i < COUNT; i++ )
+			{
+				if ( flags.get( i ) != null )
+				{
+					assertTrue( count < selected.length );
+					selected[count++] = i;
+				}
+			}
+			assertTrue( Arrays.equals( expected, selected ) );
+		}
+	}
+
+	public void testRandomValues( )
+	{
+		Random random = new Random( 0 );
+		Double[] values = new Double[COUNT * 10];
+		TopNHeap heap = new TopNHeap( 100, false, null );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			values[i] = Double.valueOf( random.nextInt( 5000 ) );
+			heap.add( values[i], i );
+		}
+		Double[] sorted = (Double[]) values.clone( );
+		Arrays.sort( sorted );
+		Object[] selected = heap.getValues( );
+		assertEquals( 100, selected.length );
+		for ( int i = 0; i < 100; i++ )
+		{
+			assertEquals( sorted[i], selected[i] );
+		}
+	}
+}
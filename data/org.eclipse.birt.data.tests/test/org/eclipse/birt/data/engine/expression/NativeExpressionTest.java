@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.core.script.functionservice.IScriptFunctionArgument;
+import org.eclipse.birt.core.script.functionservice.IScriptFunctionContext;
+import org.eclipse.birt.core.script.functionservice.IScriptFunctionExecutor;
+import org.eclipse.birt.core.script.functionservice.impl.Category;
+import org.eclipse.birt.core.script.functionservice.impl.CategoryWrapper;
+import org.eclipse.birt.core.script.functionservice.impl.ScriptFunction;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Scriptable;
+
+/**
+ * Test case for NativeExpression
+ */
+public class NativeExpressionTest extends TestCase
+{
+
+	private ExpressionCompiler compiler;
+	private ScriptContext cx;
+	private Scriptable scope;
+	private int callCount;
+
+	/*
+	 * @see TestCase#setUp()
+	 */
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		compiler = new ExpressionCompiler( );
+		cx = new ScriptContext( );
+		scope = Context.getCurrentContext( ).initStandardObjects( );
+
+		Scriptable row = Context.getCurrentContext( ).newObject( scope );
+		row.put( "price", row, new Integer( 3 ) );
+		row.put( "qty", row, new Double( 2.5 ) );
+		row.put( "name", row, "X" );
+		row.put( "empty", row, "" );
+		row.put( "flag", row, Boolean.TRUE );
+		row.put( "none", row, null );
+		row.put( 0, row, new Integer( 7 ) );
+		scope.put( "row", scope, row );
+
+		// Counter.count( ) returns the number of calls, Counter.fail( ) fails
+		Category category = new Category( "Counter", null );
+		category.addFunction( new ScriptFunction( "count",
+				category,
+				new IScriptFunctionArgument[0],
+				"Integer",
+				null,
+				new IScriptFunctionExecutor( ) {
+
+					public Object execute( Object[] arguments,
+							IScriptFunctionContext context )
+					{
+						return new Integer( ++callCount );
+					}
+				},
+				true,
+				true,
+				false ) );
+		category.addFunction( new ScriptFunction( "fail",
+				category,
+				new IScriptFunctionArgument[0],
+				"Integer",
+				null,
+				new IScriptFunctionExecutor( ) {
+
+					public Object execute( Object[] arguments,
+							IScriptFunctionContext context )
+							throws BirtException
+					{
+						callCount++;
+						throw new BirtException( "fail" );
+					}
+				},
+				true,
+				true,
+				false ) );
+		scope.put( "Counter", scope, new CategoryWrapper( category ) );
+	}
+
+	/*
+	 * @see TestCase#tearDown()
+	 */
+	protected void tearDown( ) throws Exception
+	{
+		cx.close( );
+		super.tearDown( );
+	}
+
+	/**
+	 * Asserts that an expression is compiled to a native expression which
+	 * evaluates to the same value as Rhino.
+	 *
+	 * @param expression
+	 * @throws Exception
+	 */
+	private void assertSameResult( String expression ) throws Exception
+	{
+		NativeExpression nativeExpr = NativeExpression.compile( compiler.parse( expression,
+				Context.getCurrentContext( ) ) );
+		assertNotNull( expression, nativeExpr );
+		Object expected = JavascriptEvalUtil.convertJavascriptValue( Context.getCurrentContext( )
+				.evaluateString( scope, expression, "test", 1, null ) );
+		assertEquals( expression, expected, nativeExpr.execute( scope ) );
+	}
+
+	public void testArithmetic( ) throws Exception
+	{
+		assertSameResult( "row[\"price\"] * row[\"qty\"]" );
+		assertSameResult( "row.price + row.qty - 1" );
+		assertSameResult( "row.price / 0" );
+		assertSameResult( "row.price % 2" );
+		assertSameResult( "-row.qty" );
+		assertSameResult( "row[0] + 1" );
+		assertSameResult( "row.none + 1" );
+		assertSameResult( "row.flag + 1" );
+		assertSameResult( "row.name * 2" );
+	}
+
+	public void testConcatenation( ) throws Exception
+	{
+		assertSameResult( "row.name + row.price" );
+		assertSameResult( "row.name + row.qty + row.none" );
+		assertSameResult( "1 + 2 + row.name" );
+		assertSameResult( "row.name + 1 / 3" );
+	}
+
+	public void testComparison( ) throws Exception
+	{
+		assertSameResult( "row.price > 2" );
+		assertSameResult( "row.price <= 2.5" );
+		assertSameResult( "row.name >= \"W\"" );
+		assertSameResult( "row.name < 1" );
+		assertSameResult( "row.price == \"3\"" );
+		assertSameResult( "row.price === 3" );
+		assertSameResult( "row.price !== \"3\"" );
+		assertSameResult( "row.none == null" );
+		assertSameResult( "row.none == 0" );
+		assertSameResult( "row.flag == 1" );
+		assertSameResult( "row.empty != false" );
+	}
+
+	public void testLogical( ) throws Exception
+	{
+		assertSameResult( "row.price > 2 && row.name == \"X\"" );
+		assertSameResult( "row.none || row.name" );
+		assertSameResult( "row.empty && row.price" );
+		assertSameResult( "!row.empty" );
+		assertSameResult( "row.price > 5 ? row.name : row.qty" );
+		assertSameResult( "row.none ? 1 : 0" );
+	}
+
+	public void testUnsupported( ) throws Exception
+	{
+		assertNull( NativeExpression.compile( compiler.parse( "a = 1; a + 1",
+				Context.getCurrentContext( ) ) ) );
+		assertNull( NativeExpression.compile( compiler.parse( "Math.max( row.price, 1 ) + new Date( )",
+				Context.getCurrentContext( ) ) ) );
+		assertNull( NativeExpression.compile( compiler.parse( "row[\"1\"]",
+				Context.getCurrentContext( ) ) ) );
+
+		// a call to a function which is not a script function
+		NativeExpression nativeExpr = NativeExpression.compile( compiler.parse( "Math.max( row.price, 1 )",
+				Context.getCurrentContext( ) ) );
+		assertNotNull( nativeExpr );
+		assertSame( NativeExpression.UNSUPPORTED, nativeExpr.execute( scope ) );
+
+		// an undefined column
+		nativeExpr = NativeExpression.compile( compiler.parse( "row.unknown + 1",
+				Context.getCurrentContext( ) ) );
+		assertSame( NativeExpression.UNSUPPORTED, nativeExpr.execute( scope ) );
+	}
+
+	/**
+	 * An expression is evaluated once, either natively or by Rhino, and the
+	 * result of a function call is not an operand of a native expression.
+	 *
+	 * @throws Exception
+	 */
+	public void testSingleEvaluation( ) throws Exception
+	{
+		assertNull( NativeExpression.compile( compiler.parse( "Counter.count( ) + 1",
+				Context.getCurrentContext( ) ) ) );
+		assertNull( NativeExpression.compile( compiler.parse( "Counter.count( ) ? 1 : 0",
+				Context.getCurrentContext( ) ) ) );
+		assertNotNull( NativeExpression.compile( compiler.parse( "row.flag ? Counter.count( row.price, -row.qty ) : row.name",
+				Context.getCurrentContext( ) ) ) );
+
+		CompiledExpression expr = compiler.compile( "Counter.count( row.price )",
+				null,
+				cx );
+		assertEquals( new Integer( 1 ), expr.evaluate( cx, scope ) );
+		assertEquals( 1, callCount );
+
+		// the undefined column is found before the function is called
+		expr = compiler.compile( "Counter.count( row.unknown )", null, cx );
+		assertEquals( new Integer( 2 ), expr.evaluate( cx, scope ) );
+		assertEquals( 2, callCount );
+
+		expr = compiler.compile( "Counter.fail( row.price )", null, cx );
+		try
+		{
+			expr.evaluate( cx, scope );
+			fail( );
+		}
+		catch ( DataException e )
+		{
+		}
+		// the failed call is not evaluated again by Rhino
+		assertEquals( 3, callCount );
+
+		expr = compiler.compile( "row.flag && Counter.count( row.name )",
+				null,
+				cx );
+		assertEquals( new Integer( 4 ), expr.evaluate( cx, scope ) );
+		assertEquals( 4, callCount );
+	}
+
+	public void testFallback( ) throws Exception
+	{
+		Context.getCurrentContext( ).evaluateString( scope,
+				"row.date = new Date( 0 )",
+				"test",
+				1,
+				null );
+		CompiledExpression expr = compiler.compile( "row.date.getTime( ) + row.price",
+				null,
+				cx );
+		assertEquals( new Double( 3 ), expr.evaluate( cx, scope ) );
+		expr = compiler.compile( "row.date + row.price", null, cx );
+		assertEquals( JavascriptEvalUtil.convertJavascriptValue( Context.getCurrentContext( )
+				.evaluateString( scope, "row.date + row.price", "test", 1, null ) ),
+				expr.evaluate( cx, scope ) );
+		expr = compiler.compile( "row.price * row.qty", null, cx );
+		assertEquals( new Double( 7.5 ), expr.evaluate( cx, scope ) );
+	}
+}
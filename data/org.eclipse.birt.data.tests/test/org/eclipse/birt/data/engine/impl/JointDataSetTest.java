@@ -11,7 +11,10 @@
 package org.eclipse.birt.data.engine.impl;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
@@ -33,6 +36,7 @@ import org.eclipse.birt.data.engine.api.querydefn.ScriptExpression;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.impl.jointdataset.JoinConditionMatcher;
 import org.eclipse.birt.data.engine.impl.jointdataset.JointDataSetPopulatorFactory;
 import org.eclipse.birt.data.engine.impl.jointdataset.JointResultMetadata;
@@ -51,7 +55,11 @@ public class JointDataSetTest extends APITestCase
 	//
 	private static int CARTESIAN_POPULATOR = 0;
 	private static int BINARY_TREE_POPULATOR = 1;
+	private static int HASH_POPULATOR = 2;
 	private static boolean ADD_FETCH_LIMIT = false;
+	// the unit test memory buffer size of the hash join, in bytes
+	private static final String TEST_MEM_BUFFER_SIZE = "birt.data.engine.test.memcachesize";
+	private long hashMemoryBufferSize = 0;
 	private ScriptContext cx;
 	/*
 	 * @see org.eclipse.birt.data.engine.api.APITestCase#getDataSourceInfo()
@@ -211,6 +219,150 @@ public class JointDataSetTest extends APITestCase
 		checkOutputFile();
 	}
 	
+	/**
+	 * The hash join gives the rows of the nested loop join, whether the
+	 * secondary rows are hashed in one or several passes.
+	 * 
+	 * @throws Exception
+	 */
+	public void testInnerJoin_HASH( ) throws Exception
+	{
+		hashJoinTest( IJointDataSetDesign.INNER_JOIN );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	public void testLeftOuterJoin_HASH( ) throws Exception
+	{
+		hashJoinTest( IJointDataSetDesign.LEFT_OUTER_JOIN );
+	}
+
+	/**
+	 * 
+	 * @throws Exception
+	 */
+	public void testRightOuterJoin_HASH( ) throws Exception
+	{
+		hashJoinTest( IJointDataSetDesign.RIGHT_OUTER_JOIN );
+	}
+
+	/**
+	 * A joint data set gives the same rows when the memory buffer size is
+	 * too small for the secondary rows and they are hashed in several passes.
+	 * 
+	 * @throws Exception
+	 */
+	public void testHashJoinSpill( ) throws Exception
+	{
+		String expected = sortRows( jointDataSetTest( IJointDataSetDesign.LEFT_OUTER_JOIN,
+				null ) );
+		Map appContext = new HashMap( );
+		appContext.put( TEST_MEM_BUFFER_SIZE, "300" );
+		assertEquals( expected,
+				sortRows( jointDataSetTest( IJointDataSetDesign.LEFT_OUTER_JOIN,
+						appContext ) ) );
+		appContext.put( TEST_MEM_BUFFER_SIZE, "1" );
+		assertEquals( expected,
+				sortRows( jointDataSetTest( IJointDataSetDesign.LEFT_OUTER_JOIN,
+						appContext ) ) );
+	}
+
+	/**
+	 * Checks the hash join against the nested loop join, with the secondary
+	 * rows hashed in one pass, one row per pass and a few rows per pass.
+	 * 
+	 * @param joinType
+	 * @throws Exception
+	 */
+	private void hashJoinTest( int joinType ) throws Exception
+	{
+		String expected = sortRows( basicJoinTest( joinType, CARTESIAN_POPULATOR ) );
+		String[] memorySizes = new String[]{"0", "1", "300"};
+		try
+		{
+			for ( int i = 0; i < memorySizes.length; i++ )
+			{
+				Map appContext = new HashMap( );
+				appContext.put( TEST_MEM_BUFFER_SIZE, memorySizes[i] );
+				hashMemoryBufferSize = CacheUtil.computeMemoryBufferSize( appContext );
+				assertEquals( memorySizes[i],
+						expected,
+						sortRows( basicJoinTest( joinType, HASH_POPULATOR ) ) );
+			}
+		}
+		finally
+		{
+			hashMemoryBufferSize = 0;
+		}
+	}
+
+	/**
+	 * Returns the rows of a joint data set, without its computed columns.
+	 * 
+	 * @param joinType
+	 * @param appContext
+	 * @return
+	 * @throws Exception
+	 */
+	private String jointDataSetTest( int joinType, Map appContext )
+			throws Exception
+	{
+		OdaDataSetDesign dset1 = newDataSet( "dset1", "Select ID, CITY, STORE FROM "
+				+ this.getTestTableName( ) + " where ID > 4 and ID <> 7 and ID <> 9 order by ID asc");
+		OdaDataSetDesign dset2 = newDataSet( "dset2", "Select ID, SKU, CATEGORY, PRICE FROM "
+				+ this.getTestTableName( ) + " where ID < 20 and ID <> 10 and ID <> 13 order by ID desc");
+
+		List a = new ArrayList( );
+		a.add( new JoinCondition( new ScriptExpression( "dataSetRow.ID" ),
+				new ScriptExpression( "dataSetRow.ID" ),
+				IJoinCondition.OP_EQ ) );
+		JointDataSetDesign dset3 = new JointDataSetDesign( "dset3",
+				dset1.getName( ),
+				dset2.getName( ),
+				joinType,
+				a );
+		dataEngine.defineDataSet( dset3 );
+
+		QueryDefinition query = this.newReportQuery( dset3 );
+		IQueryResults qr = this.dataEngine.prepare( query, appContext )
+				.execute( null );
+		IResultIterator ri = ( (ResultIterator) qr.getResultIterator( ) ).getOdiResult( );
+		IResultClass resultClass = ri.getResultClass( );
+		String s = "";
+		IResultObject ro;
+		while ( ( ro = ri.getCurrentResult( ) ) != null )
+		{
+			for ( int i = 1; i <= resultClass.getFieldCount( ); i++ )
+			{
+				if ( resultClass.getFieldName( i ).indexOf( "::" ) > 0 )
+					s += ro.getFieldValue( i ) + "\t";
+			}
+			s += "\n";
+			ri.next( );
+		}
+		qr.close( );
+		return s;
+	}
+
+	/**
+	 * Sorts the lines of a join result, whose row order depends on the join
+	 * algorithm.
+	 * 
+	 * @param s
+	 * @return
+	 */
+	private static String sortRows( String s )
+	{
+		String[] rows = s.split( "\n" );
+		Arrays.sort( rows );
+		StringBuffer buffer = new StringBuffer( );
+		for ( int i = 0; i < rows.length; i++ )
+			buffer.append( rows[i] ).append( '\n' );
+		return buffer.toString( );
+	}
+
 	/**
 	 * 
 	 * @param joinType
@@ -414,6 +566,8 @@ public class JointDataSetTest extends APITestCase
 		
 		if( populateType == BINARY_TREE_POPULATOR) 
 			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
+		else if( populateType == HASH_POPULATOR )
+			populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator(it1, it2, meta, matcher, joinType, ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit, hashMemoryBufferSize);
 		else 
 			populator = JointDataSetPopulatorFactory.getCartesianJointDataSetPopulator(it1, it2, meta, matcher, joinType,  ((DataEngineImpl)this.dataEngine).getSession( ), fetchRowLimit);
 		
@@ -0,0 +1,225 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.core.util.IOUtil;
+
+public class CompressedIntSetTest extends TestCase
+{
+
+	public void testAdd( )
+	{
+		CompressedIntSet set = new CompressedIntSet( );
+		assertTrue( set.isEmpty( ) );
+		set.add( 70000 );
+		set.add( 3 );
+		set.add( 3 );
+		set.add( 65535 );
+		assertEquals( 3, set.size( ) );
+		assertTrue( set.contains( 3 ) );
+		assertTrue( set.contains( 65535 ) );
+		assertFalse( set.contains( 4 ) );
+		assertFalse( set.contains( -1 ) );
+		assertEquals( toSet( new int[]{
+				3, 65535, 70000
+		} ), toSet( set ) );
+	}
+
+	public void testOperations( ) throws IOException
+	{
+		Random random = new Random( 0 );
+		for ( int i = 0; i < 20; i++ )
+		{
+			SortedSet<Integer> expected1 = new TreeSet<Integer>( );
+			SortedSet<Integer> expected2 = new TreeSet<Integer>( );
+			CompressedIntSet set1 = randomSet( random, expected1 );
+			CompressedIntSet set2 = randomSet( random, expected2 );
+
+			SortedSet<Integer> and = new TreeSet<Integer>( expected1 );
+			and.retainAll( expected2 );
+			assertEquals( and, toSet( set1.and( set2 ) ) );
+
+			SortedSet<Integer> or = new TreeSet<Integer>( expected1 );
+			or.addAll( expected2 );
+			CompressedIntSet union = set1.or( set2 );
+			assertEquals( or, toSet( union ) );
+			assertEquals( or.size( ), union.size( ) );
+
+			SortedSet<Integer> andNot = new TreeSet<Integer>( expected1 );
+			andNot.removeAll( expected2 );
+			assertEquals( andNot, toSet( set1.andNot( set2 ) ) );
+
+			SortedSet<Integer> not = toSet( set1.not( 200000 ) );
+			assertEquals( 200000 - expected1.size( ), not.size( ) );
+			assertTrue( not.last( ) < 200000 );
+			not.retainAll( expected1 );
+			assertTrue( not.isEmpty( ) );
+
+			// the result of an operation shares containers with its operands
+			union.add( 199999 );
+			assertEquals( expected1, toSet( set1 ) );
+			assertEquals( expected2, toSet( set2 ) );
+
+			assertEquals( expected1, toSet( copy( set1 ) ) );
+		}
+	}
+
+	public void testRange( ) throws IOException
+	{
+		CompressedIntSet range = CompressedIntSet.range( 65530, 131080 );
+		assertEquals( 131080 - 65530, range.size( ) );
+		assertTrue( range.contains( 65530 ) );
+		assertTrue( range.contains( 131079 ) );
+		assertFalse( range.contains( 131080 ) );
+		range.add( 5 );
+		assertEquals( 131080 - 65530 + 1, copy( range ).size( ) );
+		assertTrue( CompressedIntSet.range( 0, 0 ).isEmpty( ) );
+	}
+
+	public void testOptimize( ) throws IOException
+	{
+		// the consecutive values of an array are written as a run
+		CompressedIntSet run = new CompressedIntSet( );
+		CompressedIntSet sparse = new CompressedIntSet( );
+		for ( int i = 0; i < 100; i++ )
+		{
+			run.add( 1000 + i );
+			sparse.add( i * 3 );
+		}
+		assertTrue( size( run ) < size( sparse ) );
+		assertEquals( 100, copy( run ).size( ) );
+		assertTrue( copy( run ).contains( 1099 ) );
+		assertEquals( size( sparse ), size( copy( sparse ) ) );
+
+		// the adjacent runs of a stream are merged, and the runs of single
+		// values become an array
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+		DataOutputStream dos = new DataOutputStream( bytes );
+		IOUtil.writeInt( dos, 2 );
+		writeRuns( dos, 0, new int[]{
+				0, 9, 10, 9
+		} );
+		writeRuns( dos, 1, new int[]{
+				0, 0, 2, 0, 4, 0, 6, 0
+		} );
+		CompressedIntSet set = CompressedIntSet.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray( ) ) ) );
+		SortedSet<Integer> expected = new TreeSet<Integer>( );
+		for ( int i = 0; i < 20; i++ )
+			expected.add( i );
+		for ( int i = 0; i < 8; i += 2 )
+			expected.add( 65536 + i );
+		assertEquals( expected, toSet( set ) );
+		CompressedIntSet optimized = copy( set );
+		assertEquals( expected, toSet( optimized ) );
+		// a run and four chars
+		assertEquals( 4 + 2 * 7 + 4 + 8, size( optimized ) );
+
+		// a dense array becomes a bitmap
+		CompressedIntSet dense = new CompressedIntSet( );
+		for ( int i = 0; i < 8000; i += 2 )
+			dense.add( i );
+		assertEquals( 4000, copy( dense ).size( ) );
+		dense = dense.or( CompressedIntSet.range( 10000, 10001 ) );
+		for ( int i = 20000; i < 40000; i += 100 )
+			dense.add( i );
+		CompressedIntSet denseCopy = copy( dense );
+		assertEquals( toSet( dense ), toSet( denseCopy ) );
+		assertEquals( 4 + 7 + 1024 * 8, size( denseCopy ) );
+	}
+
+	private static void writeRuns( DataOutputStream dos, int key, int[] runs )
+			throws IOException
+	{
+		dos.writeChar( key );
+		dos.writeByte( 2 );
+		IOUtil.writeInt( dos, runs.length / 2 );
+		for ( int i = 0; i < runs.length; i++ )
+			dos.writeChar( runs[i] );
+	}
+
+	private static int size( CompressedIntSet set ) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+		set.writeTo( new DataOutputStream( bytes ) );
+		return bytes.size( );
+	}
+
+	private static CompressedIntSet randomSet( Random random,
+			SortedSet<Integer> expected )
+	{
+		CompressedIntSet set = new CompressedIntSet( );
+		int count = random.nextInt( 3 ) == 0 ? 20 : 20000;
+		int base = random.nextInt( 100000 );
+		for ( int i = 0; i < count; i++ )
+		{
+			int value;
+			switch ( i % 3 )
+			{
+				case 0 :
+					// sparse
+					value = random.nextInt( 200000 );
+					break;
+				case 1 :
+					// dense
+					value = base + random.nextInt( 10000 );
+					break;
+				default :
+					// runs
+					value = base + 50000 + i;
+			}
+			set.add( value );
+			expected.add( value );
+		}
+		return set;
+	}
+
+	private static CompressedIntSet copy( CompressedIntSet set )
+			throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream( );
+		set.writeTo( new DataOutputStream( bytes ) );
+		return CompressedIntSet.read( new DataInputStream( new ByteArrayInputStream( bytes.toByteArray( ) ) ) );
+	}
+
+	private static SortedSet<Integer> toSet( IOrderedIntSet set )
+	{
+		SortedSet<Integer> result = new TreeSet<Integer>( );
+		int previous = -1;
+		IOrderedIntSetIterator iterator = set.iterator( );
+		while ( iterator.hasNext( ) )
+		{
+			int value = iterator.next( );
+			assertTrue( value > previous );
+			result.add( value );
+			previous = value;
+		}
+		return result;
+	}
+
+	private static SortedSet<Integer> toSet( int[] values )
+	{
+		SortedSet<Integer> result = new TreeSet<Integer>( );
+		for ( int i = 0; i < values.length; i++ )
+			result.add( values[i] );
+		return result;
+	}
+}
@@ -0,0 +1,147 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+public class HashJoinResultObjectSeekerTest extends TestCase
+{
+
+	private ResultClass resultClass;
+	private HashJoinResultObjectSeeker seeker;
+
+	public void setUp( ) throws Exception
+	{
+		List columns = new ArrayList( );
+		columns.add( new ResultFieldMetadata( 1,
+				"KEY",
+				"KEY",
+				Object.class,
+				null,
+				false ) );
+		resultClass = new ResultClass( columns );
+		seeker = new HashJoinResultObjectSeeker( new ValueMatcher( ), true );
+	}
+
+	/**
+	 * Equal probe keys of different types are hashed on their own, rather
+	 * than reusing the rows found for the previous probe key.
+	 *
+	 * @throws Exception
+	 */
+	public void testProbeKeyTypes( ) throws Exception
+	{
+		add( new Object[]{"1", "1.0", "2"} );
+
+		// a string matches the equal strings
+		assertEquals( Arrays.asList( new Object[]{"1"} ), seek( "1" ) );
+		// a number matches the strings of the same number, although the
+		// previous key is equal to it
+		assertEquals( Arrays.asList( new Object[]{"1", "1.0"} ),
+				seek( Integer.valueOf( 1 ) ) );
+		assertEquals( Arrays.asList( new Object[]{"1", "1.0"} ),
+				seek( Double.valueOf( 1 ) ) );
+		assertEquals( Arrays.asList( new Object[]{"1"} ), seek( "1" ) );
+		assertEquals( Arrays.asList( new Object[]{"2"} ), seek( "2" ) );
+	}
+
+	/**
+	 * The numbers of different types are hashed by their value.
+	 *
+	 * @throws Exception
+	 */
+	public void testNumberKeys( ) throws Exception
+	{
+		add( new Object[]{Integer.valueOf( 1 ),
+				Double.valueOf( 1 ),
+				Long.valueOf( 2 ),
+				null} );
+
+		assertEquals( Arrays.asList( new Object[]{Integer.valueOf( 1 ),
+				Double.valueOf( 1 )} ), seek( Integer.valueOf( 1 ) ) );
+		assertEquals( Arrays.asList( new Object[]{Integer.valueOf( 1 ),
+				Double.valueOf( 1 )} ), seek( Double.valueOf( 1 ) ) );
+		assertEquals( Arrays.asList( new Object[]{Long.valueOf( 2 )} ),
+				seek( "2" ) );
+		assertEquals( Arrays.asList( new Object[]{} ), seek( Integer.valueOf( 3 ) ) );
+	}
+
+	private void add( Object[] keys )
+	{
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			seeker.add( new ResultObject( resultClass, new Object[]{keys[i]} ),
+					new Object[]{keys[i]} );
+		}
+	}
+
+	private List seek( Object key ) throws DataException
+	{
+		seeker.setProbeKeys( new Object[]{key} );
+		List result = new ArrayList( );
+		IResultObject row;
+		while ( ( row = seeker.getNextMatchedResultObject( 0 ) ) != null )
+		{
+			result.add( row.getFieldValue( 1 ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Compares two strings as strings, and the other values as numbers, as
+	 * ScriptEvalUtil.compare does. A null is not equal to anything.
+	 */
+	private static class ValueMatcher implements IJoinConditionMatcher
+	{
+
+		public boolean match( ) throws DataException
+		{
+			return false;
+		}
+
+		public int compare( Object[] lObjects, Object[] rObjects )
+				throws DataException
+		{
+			for ( int i = 0; i < lObjects.length; i++ )
+			{
+				Object l = lObjects[i];
+				Object r = rObjects[i];
+				if ( l == null || r == null )
+					return l == null ? -1 : 1;
+				int result;
+				if ( l instanceof String && r instanceof String )
+					result = ( (String) l ).compareTo( (String) r );
+				else
+					result = Double.compare( Double.parseDouble( l.toString( ) ),
+							Double.parseDouble( r.toString( ) ) );
+				if ( result != 0 )
+					return result;
+			}
+			return 0;
+		}
+
+		public Object[] getCompareValue( boolean left ) throws DataException
+		{
+			return null;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+/*
+ *****************************************************************************
+ * Copyright (c) 2004, 2010 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation - initial API and implementation
+ *
+ ******************************************************************************
+ */
+
+package org.eclipse.birt.data.engine.odaconsumer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultClass;
+import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+import org.eclipse.datatools.connectivity.oda.IBlob;
+import org.eclipse.datatools.connectivity.oda.IClob;
+import org.eclipse.datatools.connectivity.oda.IResultSet;
+
+/**
+ * Tests the column readers of the ODA consumer <code>ResultSet</code> on a
+ * simulated ODA result set. For each ODA type, including null values, a
+ * fetched value must be what the typed getter returned, or null if the
+ * driver reported a null value.
+ */
+public class ColumnReaderTest extends TestCase
+{
+	private static final Class[] TYPES = {
+			Integer.class,
+			Double.class,
+			String.class,
+			BigDecimal.class,
+			java.sql.Date.class,
+			Time.class,
+			java.util.Date.class,
+			Timestamp.class,
+			IBlob.class,
+			IClob.class,
+			Boolean.class,
+			Object.class
+	};
+
+	/**
+	 * The getter which must read each of the TYPES.
+	 */
+	private static final String[] GETTERS = {
+			"getInt", //$NON-NLS-1$
+			"getDouble", //$NON-NLS-1$
+			"getString", //$NON-NLS-1$
+			"getBigDecimal", //$NON-NLS-1$
+			"getDate", //$NON-NLS-1$
+			"getTime", //$NON-NLS-1$
+			"getTimestamp", //$NON-NLS-1$
+			"getTimestamp", //$NON-NLS-1$
+			"getBlob", //$NON-NLS-1$
+			"getClob", //$NON-NLS-1$
+			"getBoolean", //$NON-NLS-1$
+			"getObject" //$NON-NLS-1$
+	};
+
+	private static final IBlob BLOB = (IBlob) createStub( IBlob.class );
+	private static final IClob CLOB = (IClob) createStub( IClob.class );
+
+	/**
+	 * Values returned by the getters of the simulated driver.
+	 */
+	private static final Object[][] VALUES = {
+			{
+					Integer.valueOf( 7 ),
+					new Double( 1.5 ),
+					"abc", //$NON-NLS-1$
+					new BigDecimal( "12.34" ), //$NON-NLS-1$
+					java.sql.Date.valueOf( "2010-01-02" ), //$NON-NLS-1$
+					Time.valueOf( "10:11:12" ), //$NON-NLS-1$
+					Timestamp.valueOf( "2010-01-02 10:11:12.5" ), //$NON-NLS-1$
+					Timestamp.valueOf( "2011-03-04 05:06:07.0" ), //$NON-NLS-1$
+					BLOB,
+					CLOB,
+					Boolean.TRUE,
+					"object" //$NON-NLS-1$
+			},
+			// same primitive values as the previous row
+			{
+					Integer.valueOf( 7 ),
+					new Double( 1.5 ),
+					"def", //$NON-NLS-1$
+					new BigDecimal( "-1" ), //$NON-NLS-1$
+					java.sql.Date.valueOf( "1999-12-31" ), //$NON-NLS-1$
+					Time.valueOf( "23:59:59" ), //$NON-NLS-1$
+					Timestamp.valueOf( "1999-12-31 23:59:59.0" ), //$NON-NLS-1$
+					Timestamp.valueOf( "2000-01-01 00:00:00.0" ), //$NON-NLS-1$
+					BLOB,
+					CLOB,
+					Boolean.FALSE,
+					Integer.valueOf( 3 )
+			},
+			// null values
+			{
+					null, null, null, null, null, null, null, null, null, null,
+					null, null
+			},
+			// values the driver reports as null all the same
+			{
+					Integer.valueOf( 7 ),
+					new Double( 1.5 ),
+					"", //$NON-NLS-1$
+					new BigDecimal( "0" ), //$NON-NLS-1$
+					java.sql.Date.valueOf( "1970-01-01" ), //$NON-NLS-1$
+					Time.valueOf( "00:00:00" ), //$NON-NLS-1$
+					Timestamp.valueOf( "1970-01-01 00:00:00.0" ), //$NON-NLS-1$
+					Timestamp.valueOf( "1970-01-01 00:00:00.0" ), //$NON-NLS-1$
+					BLOB,
+					CLOB,
+					Boolean.TRUE,
+					"" //$NON-NLS-1$
+			},
+			// primitive values after null values
+			{
+					Integer.valueOf( 0 ),
+					new Double( -0.0 ),
+					"ghi", //$NON-NLS-1$
+					new BigDecimal( "1E+3" ), //$NON-NLS-1$
+					java.sql.Date.valueOf( "2020-02-29" ), //$NON-NLS-1$
+					Time.valueOf( "12:00:00" ), //$NON-NLS-1$
+					Timestamp.valueOf( "2020-02-29 12:00:00.0" ), //$NON-NLS-1$
+					Timestamp.valueOf( "2020-02-29 12:00:00.0" ), //$NON-NLS-1$
+					BLOB,
+					CLOB,
+					Boolean.FALSE,
+					new Double( 2 )
+			}
+	};
+
+	/**
+	 * Whether the simulated driver reports the value as null.
+	 */
+	private static final boolean[] WAS_NULL = {
+			false, false, true, true, false
+	};
+
+	/**
+	 * Every ODA type is read as the typed getter returned it, and null values
+	 * are read as null.
+	 */
+	public void testReadValues( ) throws DataException
+	{
+		ResultSet resultSet = new ResultSet( createResultSet( ),
+				createResultClass( false ) );
+		for ( int row = 0; row < VALUES.length; row++ )
+		{
+			IResultObject resultObject = resultSet.fetch( );
+			assertNotNull( resultObject );
+			for ( int column = 0; column < TYPES.length; column++ )
+			{
+				Object expected = WAS_NULL[row] ? null : VALUES[row][column];
+				assertEquals( "row " + row + ", " + TYPES[column], //$NON-NLS-1$ //$NON-NLS-2$
+						expected,
+						resultObject.getFieldValue( column + 1 ) );
+			}
+		}
+		assertNull( resultSet.fetch( ) );
+	}
+
+	/**
+	 * Custom fields are not read from the driver.
+	 */
+	public void testCustomField( ) throws DataException
+	{
+		ResultSet resultSet = new ResultSet( createResultSet( ),
+				createResultClass( true ) );
+		IResultObject resultObject = resultSet.fetch( );
+		assertEquals( VALUES[0][0], resultObject.getFieldValue( 1 ) );
+		assertNull( resultObject.getFieldValue( TYPES.length + 1 ) );
+	}
+
+	private static ResultClass createResultClass( boolean withCustomField )
+			throws DataException
+	{
+		List columns = new ArrayList( );
+		for ( int i = 0; i < TYPES.length; i++ )
+		{
+			columns.add( new ResultFieldMetadata( i + 1,
+					"col" + i, //$NON-NLS-1$
+					null,
+					TYPES[i],
+					null,
+					false ) );
+		}
+		if ( withCustomField )
+		{
+			columns.add( new ResultFieldMetadata( 0,
+					"custom", //$NON-NLS-1$
+					null,
+					String.class,
+					null,
+					true ) );
+		}
+		return new ResultClass( columns );
+	}
+
+	/**
+	 * Simulates a driver which returns the VALUES through the typed getters,
+	 * with the default of the primitive type for a null value. Reading a
+	 * column with another getter than the old fetch code used fails.
+	 */
+	private static IResultSet createResultSet( )
+	{
+		InvocationHandler handler = new InvocationHandler( ) {
+
+			private int row = -1;
+			private boolean wasNull;
+
+			public Object invoke( Object proxy, Method method, Object[] args )
+					throws Throwable
+			{
+				String name = method.getName( );
+				if ( name.equals( "next" ) ) //$NON-NLS-1$
+				{
+					row++;
+					return Boolean.valueOf( row < VALUES.length );
+				}
+				if ( name.equals( "wasNull" ) ) //$NON-NLS-1$
+					return Boolean.valueOf( wasNull );
+				if ( name.equals( "getRow" ) ) //$NON-NLS-1$
+					return Integer.valueOf( row + 1 );
+				if ( name.startsWith( "get" ) //$NON-NLS-1$
+						&& args != null && args.length == 1
+						&& args[0] instanceof Integer )
+				{
+					int position = ( (Integer) args[0] ).intValue( );
+					assertEquals( GETTERS[position - 1], name );
+					Object value = VALUES[row][position - 1];
+					wasNull = WAS_NULL[row];
+					if ( value == null )
+						return defaultValue( method.getReturnType( ) );
+					return value;
+				}
+				return defaultValue( method.getReturnType( ) );
+			}
+		};
+		return (IResultSet) Proxy.newProxyInstance( IResultSet.class.getClassLoader( ),
+				new Class[]{ IResultSet.class },
+				handler );
+	}
+
+	private static Object createStub( Class type )
+	{
+		return Proxy.newProxyInstance( type.getClassLoader( ),
+				new Class[]{ type },
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args ) throws Throwable
+					{
+						if ( method.getName( ).equals( "equals" ) ) //$NON-NLS-1$
+							return Boolean.valueOf( proxy == args[0] );
+						if ( method.getName( ).equals( "hashCode" ) ) //$NON-NLS-1$
+							return Integer.valueOf( System.identityHashCode( proxy ) );
+						return defaultValue( method.getReturnType( ) );
+					}
+				} );
+	}
+
+	private static Object defaultValue( Class type )
+	{
+		if ( type == Integer.TYPE )
+			return Integer.valueOf( 0 );
+		if ( type == Double.TYPE )
+			return new Double( 0 );
+		if ( type == Boolean.TYPE )
+			return Boolean.FALSE;
+		if ( type == Long.TYPE )
+			return Long.valueOf( 0 );
+		return null;
+	}
+}
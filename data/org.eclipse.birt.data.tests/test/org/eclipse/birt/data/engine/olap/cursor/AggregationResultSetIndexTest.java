@@ -0,0 +1,190 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.cursor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.impl.aggregation.AggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.impl.dimension.Member;
+import org.eclipse.birt.data.engine.olap.data.util.BufferedStructureArray;
+import org.eclipse.birt.data.engine.olap.data.util.IDiskArray;
+
+public class AggregationResultSetIndexTest extends TestCase
+{
+
+	/**
+	 * The index finds the first row of some member values, as the walk of the
+	 * result set does, across several chunks of rows.
+	 *
+	 * @throws IOException
+	 */
+	public void testFind( ) throws IOException
+	{
+		Random random = new Random( 0 );
+		int length = AggregationResultSetIndex.CHUNK_SIZE * 2 + 100;
+		Object[][] rows = new Object[length][];
+		for ( int i = 0; i < length; i++ )
+		{
+			rows[i] = new Object[]{
+					Integer.valueOf( random.nextInt( 50 ) ),
+					"m" + random.nextInt( 50 ) //$NON-NLS-1$
+			};
+		}
+		IAggregationResultSet rs = createResultSet( rows );
+		AggregationResultSetIndex index = new AggregationResultSetIndex( rs );
+
+		// the last rows first, then the misses and the others
+		for ( int i = length - 1; i >= length - 10; i-- )
+			assertEquals( scan( rs, rows[i] ), index.find( rows[i] ) );
+		for ( int i = 0; i < 50; i++ )
+		{
+			for ( int j = 0; j <= 50; j++ )
+			{
+				Object[] values = new Object[]{
+						Integer.valueOf( i ), "m" + j //$NON-NLS-1$
+				};
+				assertEquals( scan( rs, values ), index.find( values ) );
+			}
+		}
+	}
+
+	/**
+	 * The result set stays at its position when no row matches.
+	 *
+	 * @throws IOException
+	 */
+	public void testMiss( ) throws IOException
+	{
+		IAggregationResultSet rs = createResultSet( new Object[][]{
+				{
+						Integer.valueOf( 1 ), "a" //$NON-NLS-1$
+				}, {
+						Integer.valueOf( 2 ), "b" //$NON-NLS-1$
+				}, {
+						Integer.valueOf( 1 ), "a" //$NON-NLS-1$
+				}
+		} );
+		AggregationResultSetIndex index = new AggregationResultSetIndex( rs );
+		rs.seek( 1 );
+		assertEquals( -1, index.find( new Object[]{
+				Integer.valueOf( 2 ), "a" //$NON-NLS-1$
+		} ) );
+		assertEquals( 1, rs.getPosition( ) );
+		assertEquals( 0, index.find( new Object[]{
+				Integer.valueOf( 1 ), "a" //$NON-NLS-1$
+		} ) );
+		assertEquals( -1, index.find( new Object[]{
+				null, "a" //$NON-NLS-1$
+		} ) );
+	}
+
+	/**
+	 * The values that compare equal are found, although they are not equal.
+	 *
+	 * @throws IOException
+	 */
+	public void testEqualValues( ) throws IOException
+	{
+		long time = 1360000000000L;
+		IAggregationResultSet rs = createResultSet( new Object[][]{
+				{
+						new BigDecimal( "1.5" ), new Date( time ) //$NON-NLS-1$
+				}, {
+						new BigDecimal( "1.50" ), new Date( time + 1 ) //$NON-NLS-1$
+				}
+		} );
+		AggregationResultSetIndex index = new AggregationResultSetIndex( rs );
+		assertEquals( 0, index.find( new Object[]{
+				new BigDecimal( "1.500" ), new Timestamp( time ) //$NON-NLS-1$
+		} ) );
+		assertEquals( 1, index.find( new Object[]{
+				new BigDecimal( "1.5" ), new Date( time + 1 ) //$NON-NLS-1$
+		} ) );
+	}
+
+	/**
+	 * Finds the first row of some member values by walking the result set.
+	 *
+	 * @param rs
+	 * @param values
+	 * @return
+	 * @throws IOException
+	 */
+	private static int scan( IAggregationResultSet rs, Object[] values )
+			throws IOException
+	{
+		for ( int i = 0; i < rs.length( ); i++ )
+		{
+			rs.seek( i );
+			boolean match = true;
+			for ( int j = 0; j < values.length; j++ )
+			{
+				if ( AggregationAccessor.compare( rs.getLevelKeyValue( j )[0],
+						values[j] ) != 0 )
+					match = false;
+			}
+			if ( match )
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Creates a result set of two levels with one key each.
+	 *
+	 * @param rows
+	 *            the key values of the rows
+	 * @return
+	 * @throws IOException
+	 */
+	private static IAggregationResultSet createResultSet( Object[][] rows )
+			throws IOException
+	{
+		DimLevel[] levels = new DimLevel[]{
+				new DimLevel( "dim0", "level0" ), //$NON-NLS-1$ //$NON-NLS-2$
+				new DimLevel( "dim1", "level1" ) //$NON-NLS-1$ //$NON-NLS-2$
+		};
+		IDiskArray resultRows = new BufferedStructureArray( AggregationResultRow.getCreator( ),
+				100 );
+		for ( int i = 0; i < rows.length; i++ )
+		{
+			Member[] members = new Member[levels.length];
+			for ( int j = 0; j < levels.length; j++ )
+			{
+				members[j] = new Member( );
+				members[j].setKeyValues( new Object[]{
+					rows[i][j]
+				} );
+			}
+			resultRows.add( new AggregationResultRow( members, null ) );
+		}
+		return new AggregationResultSet( new AggregationDefinition( levels,
+				new int[2],
+				null ), resultRows, new String[][]{
+				{
+					"key0" //$NON-NLS-1$
+				}, {
+					"key1" //$NON-NLS-1$
+				}
+		}, new String[2][] );
+	}
+}
@@ -14,6 +14,7 @@ package org.eclipse.birt.data.engine.olap.cursor;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -42,6 +43,7 @@ import org.eclipse.birt.data.engine.olap.data.api.cube.ICube;
 import org.eclipse.birt.data.engine.olap.impl.query.CubeQueryDefinition;
 import org.eclipse.birt.data.engine.olap.impl.query.CubeQueryExecutor;
 import org.eclipse.birt.data.engine.olap.query.view.BirtCubeView;
+import org.eclipse.birt.data.engine.olap.util.OlapExpressionUtil;
 import org.mozilla.javascript.ImporterTopLevel;
 import org.mozilla.javascript.Scriptable;
 
@@ -54,6 +56,13 @@ public class CursorModelTest extends BaseTestCase
 	private CubeUtility creator;
 	private ICube cube;
 	
+	private static final String[] COLUMN_LEVELS = new String[]{
+			"level11", "level12", "level13", "level14"
+	};
+	private static final String[] ROW_LEVELS = new String[]{
+			"level21", "level22"
+	};
+	
 	/*
 	 * @see junit.framework.TestCase#setUp()
 	 */
@@ -992,4 +1001,287 @@ public class CursorModelTest extends BaseTestCase
 				null ) );
 		this.checkOutputFile( );
 	}
+	
+	/**
+	 * with a window on the column edge
+	 * @throws Exception
+	 */
+	public void testCursorWithColumnWindow( ) throws Exception
+	{
+		CubeCursor fullCursor = createCursor( null );
+		List columns = getMembers( getColumnEdge( fullCursor ), COLUMN_LEVELS );
+		List rows = getMembers( getRowEdge( fullCursor ), ROW_LEVELS );
+		Map cells = getCells( fullCursor );
+		assertTrue( columns.size( ) > 5 );
+
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE, "2" );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE, "3" );
+		CubeCursor cursor = createCursor( appContext );
+
+		assertEquals( columns.subList( 2, 5 ),
+				getMembers( getColumnEdge( cursor ), COLUMN_LEVELS ) );
+		assertEquals( rows, getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+		checkCells( cells, getCells( cursor ), 3 * rows.size( ) + rows.size( ) );
+	}
+	
+	/**
+	 * with a window on the row edge, which is cut by the end of the edge
+	 * @throws Exception
+	 */
+	public void testCursorWithRowWindowAtEnd( ) throws Exception
+	{
+		CubeCursor fullCursor = createCursor( null );
+		List columns = getMembers( getColumnEdge( fullCursor ), COLUMN_LEVELS );
+		List rows = getMembers( getRowEdge( fullCursor ), ROW_LEVELS );
+		Map cells = getCells( fullCursor );
+		assertTrue( rows.size( ) > 2 );
+
+		// the window at the start of the edge
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE, "0" );
+		appContext.put( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE, "2" );
+		CubeCursor cursor = createCursor( appContext );
+		assertEquals( rows.subList( 0, 2 ),
+				getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+		checkCells( cells, getCells( cursor ), 2 * columns.size( ) + 2 );
+
+		// the window at the end of the edge has the remaining rows only
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE,
+				String.valueOf( rows.size( ) - 2 ) );
+		appContext.put( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE, "10" );
+		cursor = createCursor( appContext );
+		assertEquals( rows.subList( rows.size( ) - 2, rows.size( ) ),
+				getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+		assertEquals( columns,
+				getMembers( getColumnEdge( cursor ), COLUMN_LEVELS ) );
+		checkCells( cells, getCells( cursor ), 2 * columns.size( ) + 2 );
+
+		// without a limit, the window has all the rows after the offset
+		appContext.remove( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE, "1" );
+		cursor = createCursor( appContext );
+		assertEquals( rows.subList( 1, rows.size( ) ),
+				getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+
+		// a limit of zero is no limit either
+		appContext.put( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE, "0" );
+		cursor = createCursor( appContext );
+		assertEquals( rows.subList( 1, rows.size( ) ),
+				getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+	}
+	
+	/**
+	 * with empty windows on the column and row edges
+	 * @throws Exception
+	 */
+	public void testCursorWithEmptyWindow( ) throws Exception
+	{
+		CubeCursor fullCursor = createCursor( null );
+		List columns = getMembers( getColumnEdge( fullCursor ), COLUMN_LEVELS );
+		List rows = getMembers( getRowEdge( fullCursor ), ROW_LEVELS );
+		Map cells = getCells( fullCursor );
+
+		// the offset of the column window is after the last column
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE,
+				String.valueOf( columns.size( ) ) );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE, "3" );
+		CubeCursor cursor = createCursor( appContext );
+		assertTrue( getMembers( getColumnEdge( cursor ), COLUMN_LEVELS ).isEmpty( ) );
+		assertEquals( rows, getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+		checkCells( cells, getCells( cursor ), rows.size( ) );
+
+		// the offset of the row window is far after the last row
+		appContext = new HashMap( );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE,
+				String.valueOf( rows.size( ) + 100 ) );
+		cursor = createCursor( appContext );
+		assertTrue( getMembers( getRowEdge( cursor ), ROW_LEVELS ).isEmpty( ) );
+		assertEquals( columns,
+				getMembers( getColumnEdge( cursor ), COLUMN_LEVELS ) );
+		assertTrue( getCells( cursor ).isEmpty( ) );
+	}
+	
+	/**
+	 * with windows on both edges, which cut the members of the outer levels
+	 * @throws Exception
+	 */
+	public void testCursorWithNestedEdgeWindow( ) throws Exception
+	{
+		CubeCursor fullCursor = createCursor( null );
+		List columns = getMembers( getColumnEdge( fullCursor ), COLUMN_LEVELS );
+		List rows = getMembers( getRowEdge( fullCursor ), ROW_LEVELS );
+		Map cells = getCells( fullCursor );
+
+		Map appContext = new HashMap( );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE, "1" );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE, "4" );
+		appContext.put( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE, "1" );
+		appContext.put( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE, "2" );
+		CubeCursor cursor = createCursor( appContext );
+
+		assertEquals( columns.subList( 1, 5 ),
+				getMembers( getColumnEdge( cursor ), COLUMN_LEVELS ) );
+		assertEquals( rows.subList( 1, 3 ),
+				getMembers( getRowEdge( cursor ), ROW_LEVELS ) );
+		checkCells( cells, getCells( cursor ), 2 * 4 + 2 );
+		checkOuterMembers( getColumnEdge( cursor ), COLUMN_LEVELS[0], 4 );
+		checkOuterMembers( getRowEdge( cursor ), ROW_LEVELS[0], 2 );
+	}
+	
+	/**
+	 * create the cursor of the default query, with a row grand total
+	 * @param appContext
+	 * @return
+	 * @throws Exception
+	 */
+	private CubeCursor createCursor( Map appContext ) throws Exception
+	{
+		ICubeQueryDefinition cqd = creator.createQueryDefinition( );
+
+		IBinding rowGrandTotal = new Binding( "rowGrandTotal" );
+		rowGrandTotal.setAggrFunction( IBuildInAggregation.TOTAL_SUM_FUNC );
+		rowGrandTotal.setExpression( new ScriptExpression( "measure[\"measure1\"]" ) );
+		rowGrandTotal.addAggregateOn( "dimension[\"dimension5\"][\"level21\"]" );
+		rowGrandTotal.addAggregateOn( "dimension[\"dimension6\"][\"level22\"]" );
+		cqd.addBinding( rowGrandTotal );
+
+		BirtCubeView cubeView = new BirtCubeView( new CubeQueryExecutor( null,
+				cqd,
+				de.getSession( ),
+				this.scope,
+				de.getContext( ) ), cube, appContext, null );
+		return cubeView.getCubeCursor( new StopSign( ), cube );
+	}
+
+	private static EdgeCursor getColumnEdge( CubeCursor cursor )
+			throws OLAPException
+	{
+		return (EdgeCursor) cursor.getOrdinateEdge( ).get( 0 );
+	}
+
+	private static EdgeCursor getRowEdge( CubeCursor cursor )
+			throws OLAPException
+	{
+		return (EdgeCursor) cursor.getOrdinateEdge( )
+				.get( cursor.getOrdinateEdge( ).size( ) - 1 );
+	}
+
+	/**
+	 * @param edge
+	 * @param levelNames
+	 * @return the member values of each position of the edge
+	 * @throws OLAPException
+	 */
+	private static List getMembers( EdgeCursor edge, String[] levelNames )
+			throws OLAPException
+	{
+		List members = new ArrayList( );
+		edge.beforeFirst( );
+		while ( edge.next( ) )
+		{
+			members.add( getMember( edge, levelNames ) );
+		}
+		return members;
+	}
+
+	private static String getMember( EdgeCursor edge, String[] levelNames )
+			throws OLAPException
+	{
+		String member = "";
+		for ( int i = 0; i < levelNames.length; i++ )
+		{
+			DimensionCursor dimCursor = (DimensionCursor) edge.getDimensionCursor( )
+					.get( i );
+			member += dimCursor.getObject( levelNames[i] ) + "/";
+		}
+		return member;
+	}
+
+	/**
+	 * @param cursor
+	 * @return the measure of each cell and the grand total of each row, by
+	 *         their member values
+	 * @throws OLAPException
+	 */
+	private static Map getCells( CubeCursor cursor ) throws OLAPException
+	{
+		Map cells = new HashMap( );
+		EdgeCursor columnEdge = getColumnEdge( cursor );
+		EdgeCursor rowEdge = getRowEdge( cursor );
+		rowEdge.beforeFirst( );
+		while ( rowEdge.next( ) )
+		{
+			String row = getMember( rowEdge, ROW_LEVELS );
+			columnEdge.beforeFirst( );
+			while ( columnEdge.next( ) )
+			{
+				cells.put( row + "|" + getMember( columnEdge, COLUMN_LEVELS ),
+						cursor.getObject( OlapExpressionUtil.createMeasureCalculateMemeberName( "measure1" ) ) );
+			}
+			cells.put( row, cursor.getObject( "rowGrandTotal" ) );
+		}
+		return cells;
+	}
+
+	/**
+	 * check the cells of a window against the cells of the whole edges
+	 * @param expected
+	 * @param actual
+	 * @param count
+	 */
+	private static void checkCells( Map expected, Map actual, int count )
+	{
+		assertEquals( count, actual.size( ) );
+		Iterator it = actual.entrySet( ).iterator( );
+		while ( it.hasNext( ) )
+		{
+			Map.Entry entry = (Map.Entry) it.next( );
+			assertTrue( expected.containsKey( entry.getKey( ) ) );
+			assertEquals( entry.getKey( ).toString( ),
+					expected.get( entry.getKey( ) ),
+					entry.getValue( ) );
+		}
+	}
+
+	/**
+	 * check that the members of the outermost level span the positions of
+	 * the window which have their value, including a member cut by the start
+	 * of the window
+	 * @param edge
+	 * @param levelName
+	 * @param length
+	 * @throws OLAPException
+	 */
+	private static void checkOuterMembers( EdgeCursor edge, String levelName,
+			int length ) throws OLAPException
+	{
+		DimensionCursor dimCursor = (DimensionCursor) edge.getDimensionCursor( )
+				.get( 0 );
+		List values = new ArrayList( );
+		List starts = new ArrayList( );
+		List ends = new ArrayList( );
+		edge.beforeFirst( );
+		while ( edge.next( ) )
+		{
+			values.add( dimCursor.getObject( levelName ) );
+			starts.add( Long.valueOf( dimCursor.getEdgeStart( ) ) );
+			ends.add( Long.valueOf( dimCursor.getEdgeEnd( ) ) );
+		}
+		assertEquals( length, values.size( ) );
+		assertEquals( Long.valueOf( 0 ), starts.get( 0 ) );
+		assertEquals( Long.valueOf( length - 1 ), ends.get( length - 1 ) );
+		for ( int i = 0; i < length; i++ )
+		{
+			int start = ( (Long) starts.get( i ) ).intValue( );
+			int end = ( (Long) ends.get( i ) ).intValue( );
+			assertTrue( start <= i && i <= end );
+			for ( int j = 0; j < length; j++ )
+			{
+				assertEquals( j >= start && j <= end,
+						values.get( j ).equals( values.get( i ) ) );
+			}
+		}
+	}
 }
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+
+/**
+ *
+ */
+
+public class MappedFileDocumentManagerTest extends TestCase
+{
+
+	private static final String MANAGER_NAME = "mapped";
+	private String dirName;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		dirName = System.getProperty( "java.io.tmpdir" )
+				+ File.separator + "MappedFileDocumentManagerTest";
+	}
+
+	/**
+	 * Writes two interleaved objects, so that their blocks alternate in the
+	 * data file, with values spanning the block boundaries.
+	 */
+	private void createDocument( int count ) throws IOException, DataException
+	{
+		IDocumentManager manager = DocumentManagerFactory.createFileDocumentManager( dirName,
+				MANAGER_NAME );
+		manager.createDocumentObject( "first" );
+		manager.createDocumentObject( "second" );
+		IDocumentObject first = manager.openDocumentObject( "first" );
+		IDocumentObject second = manager.openDocumentObject( "second" );
+		// shift the values so they straddle the block boundaries
+		first.writeByte( 1 );
+		for ( int i = 0; i < count; i++ )
+		{
+			first.writeInt( i );
+			first.writeDouble( i / 3.0 );
+			first.writeString( "value" + i );
+			second.writeDate( new Date( i * 1000L ) );
+			second.writeBigDecimal( new BigDecimal( i ) );
+			second.writeShort( i );
+		}
+		second.writeBytes( new Bytes( new byte[]{1, 2, 3} ) );
+		first.close( );
+		second.close( );
+		manager.close( );
+	}
+
+	public void testRead( ) throws IOException, DataException
+	{
+		int count = 5000;
+		createDocument( count );
+		IDocumentManager manager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		assertTrue( manager.exist( "first" ) );
+		assertFalse( manager.exist( "third" ) );
+		assertNull( manager.openDocumentObject( "third" ) );
+
+		IDocumentObject first = manager.openDocumentObject( "first" );
+		IDocumentObject second = manager.openDocumentObject( "second" );
+		assertTrue( first.length( ) > IObjectAllocTable.BLOCK_SIZE );
+		assertEquals( 1, first.readByte( ) );
+		for ( int i = 0; i < count; i++ )
+		{
+			assertEquals( i, first.readInt( ) );
+			assertEquals( i / 3.0, first.readDouble( ), 0 );
+			assertEquals( "value" + i, first.readString( ) );
+			assertEquals( new Date( i * 1000L ), second.readDate( ) );
+			assertEquals( new BigDecimal( i ), second.readBigDecimal( ) );
+			assertEquals( (short) i, second.readShort( ) );
+		}
+		assertEquals( new Bytes( new byte[]{1, 2, 3} ), second.readBytes( ) );
+		try
+		{
+			first.readByte( );
+			fail( );
+		}
+		catch ( EOFException e )
+		{
+		}
+
+		// bulk read across the blocks
+		first.seek( 1 );
+		byte[] b = new byte[(int) first.length( ) - 1];
+		assertEquals( b.length, first.read( b, 0, b.length ) );
+		first.seek( 1 );
+		for ( int i = 0; i < b.length; i++ )
+		{
+			assertEquals( b[i], first.readByte( ) );
+		}
+		first.close( );
+		second.close( );
+		manager.close( );
+	}
+
+	public void testReadOnly( ) throws IOException, DataException
+	{
+		createDocument( 10 );
+		IDocumentManager manager = DocumentManagerFactory.loadMappedFileDocumentManager( dirName,
+				MANAGER_NAME );
+		try
+		{
+			manager.createDocumentObject( "third" );
+			fail( );
+		}
+		catch ( IOException e )
+		{
+		}
+		IDocumentObject first = manager.openDocumentObject( "first" );
+		try
+		{
+			first.writeInt( 1 );
+			fail( );
+		}
+		catch ( IOException e )
+		{
+		}
+		first.close( );
+		manager.close( );
+	}
+
+	public void testSharedMapping( ) throws IOException, DataException
+	{
+		createDocument( 10 );
+		MappedDocumentFile file1 = MappedDocumentFile.acquire( dirName,
+				MANAGER_NAME );
+		MappedDocumentFile file2 = MappedDocumentFile.acquire( dirName,
+				MANAGER_NAME );
+		assertSame( file1, file2 );
+		file1.release( );
+		file2.release( );
+
+		MappedDocumentFile file3 = MappedDocumentFile.acquire( dirName,
+				MANAGER_NAME );
+		assertNotSame( file1, file3 );
+		file3.release( );
+	}
+}
@@ -80,4 +80,65 @@ public class OrderedDiskArrayTest extends TestCase
 			assertEquals( new Integer( i ), list.get( i ) );
 		}
 	}
+	
+	public void testAddEqualObjects( )
+	{
+		// the oldest of the equal elements are kept
+		Member[] members = new Member[N];
+		for ( int i = 0; i < N; i++ )
+		{
+			members[i] = new Member( i % 10, i );
+		}
+		List list = new OrderedDiskArray( 15, true );
+		for ( int i = 0; i < N; i++ )
+		{
+			list.add( members[i] );
+		}
+		assertEquals( 15, list.size( ) );
+		for ( int i = 0; i < 5; i++ )
+		{
+			assertSame( members[48 - i * 10], list.get( i ) );
+		}
+		for ( int i = 0; i < 10; i++ )
+		{
+			assertSame( members[99 - i * 10], list.get( 5 + i ) );
+		}
+		
+		list = new OrderedDiskArray( 15, false );
+		for ( int i = 0; i < N; i++ )
+		{
+			list.add( members[i] );
+		}
+		assertEquals( 15, list.size( ) );
+		for ( int i = 0; i < 10; i++ )
+		{
+			assertSame( members[i * 10], list.get( i ) );
+		}
+		for ( int i = 0; i < 5; i++ )
+		{
+			assertSame( members[1 + i * 10], list.get( 10 + i ) );
+		}
+	}
+	
+	private static class Member implements Comparable
+	{
+		private int key;
+		private int id;
+		
+		Member( int key, int id )
+		{
+			this.key = key;
+			this.id = id;
+		}
+		
+		public int compareTo( Object o )
+		{
+			return key - ( (Member) o ).key;
+		}
+		
+		public String toString( )
+		{
+			return key + "/" + id; //$NON-NLS-1$
+		}
+	}
 }
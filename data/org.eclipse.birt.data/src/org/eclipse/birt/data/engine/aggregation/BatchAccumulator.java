@@ -0,0 +1,174 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.aggregation;
+
+import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
+import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
+import org.eclipse.birt.data.engine.api.aggregation.IBatchAccumulator;
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * An Accumulator which buffers the numeric values of the rows passed to
+ * onRow() and passes them in batches to an IBatchAccumulator. The values
+ * which can't be buffered are passed to the accumulator one by one, after
+ * the buffered values.
+ */
+public class BatchAccumulator extends Accumulator
+{
+
+	private static final int BATCH_SIZE = 1024;
+
+	private Accumulator accumulator;
+	private IBatchAccumulator batchAccumulator;
+
+	private Class valueClass;
+	private double[] values;
+	private boolean[] nulls;
+	private int count;
+
+	/**
+	 * Returns an accumulator which passes the values to the specified one in
+	 * batches, if it is able to process them, or the specified accumulator
+	 * otherwise.
+	 *
+	 * @param aggregation
+	 * @param accumulator
+	 * @return
+	 */
+	public static Accumulator wrap( IAggrFunction aggregation,
+			Accumulator accumulator )
+	{
+		// the value of a running aggregation is read after each row
+		if ( accumulator instanceof IBatchAccumulator
+				&& aggregation.getType( ) == IAggrFunction.SUMMARY_AGGR )
+			return new BatchAccumulator( accumulator );
+		return accumulator;
+	}
+
+	private BatchAccumulator( Accumulator accumulator )
+	{
+		this.accumulator = accumulator;
+		this.batchAccumulator = (IBatchAccumulator) accumulator;
+		this.values = new double[BATCH_SIZE];
+		this.nulls = new boolean[BATCH_SIZE];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.Accumulator#start()
+	 */
+	public void start( ) throws DataException
+	{
+		this.count = 0;
+		this.valueClass = null;
+		this.accumulator.start( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.Accumulator#onRow(java.lang.Object[])
+	 */
+	public void onRow( Object[] args ) throws DataException
+	{
+		if ( args == null || args.length == 0 )
+		{
+			flush( );
+			accumulator.onRow( args );
+			return;
+		}
+
+		Object value = args[0];
+		if ( value == null )
+		{
+			add( 0, true );
+		}
+		else if ( isBatchValue( value.getClass( ) ) )
+		{
+			if ( valueClass != value.getClass( ) )
+			{
+				flush( );
+				valueClass = value.getClass( );
+			}
+			add( ( (Number) value ).doubleValue( ), false );
+		}
+		else
+		{
+			flush( );
+			accumulator.onRow( args );
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.Accumulator#finish()
+	 */
+	public void finish( ) throws DataException
+	{
+		flush( );
+		this.accumulator.finish( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.api.aggregation.Accumulator#getValue()
+	 */
+	public Object getValue( ) throws DataException
+	{
+		return this.accumulator.getValue( );
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @param isNull
+	 * @throws DataException
+	 */
+	private void add( double value, boolean isNull ) throws DataException
+	{
+		values[count] = value;
+		nulls[count] = isNull;
+		count++;
+		if ( count == BATCH_SIZE )
+			flush( );
+	}
+
+	/**
+	 * Passes the buffered values to the accumulator.
+	 *
+	 * @throws DataException
+	 */
+	private void flush( ) throws DataException
+	{
+		if ( count == 0 )
+			return;
+		int batchCount = count;
+		count = 0;
+		batchAccumulator.onBatch( valueClass == null ? Double.class
+				: valueClass, values, nulls, batchCount );
+	}
+
+	/**
+	 * Returns whether the values of the specified class convert to a double
+	 * and back without loss.
+	 *
+	 * @param clazz
+	 * @return
+	 */
+	private static boolean isBatchValue( Class clazz )
+	{
+		return clazz == Double.class
+				|| clazz == Integer.class
+				|| clazz == Float.class
+				|| clazz == Short.class
+				|| clazz == Byte.class;
+	}
+}
@@ -132,6 +132,18 @@ abstract public class DataEngine
 	 */
 	public static String CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE = "org.eclipse.birt.data.engine.olap.cursor.onColumn";
 	public static String CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE = "org.eclipse.birt.data.engine.olap.cursor.onRow";
+
+	/**
+	 * The position of the first member fetched on column and row edge in cube
+	 * cursor. The edge then only contains the window of members which starts
+	 * at this position, and whose size is the fetch limit on the edge; a
+	 * longer edge no longer exceeds the fetch limit.
+	 * 
+	 * Zero or positive integer: the position of the first member.
+	 * Negative number: Disable the window on edge.
+	 */
+	public static String CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE = "org.eclipse.birt.data.engine.olap.cursor.offsetOnColumn";
+	public static String CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE = "org.eclipse.birt.data.engine.olap.cursor.offsetOnRow";
 	
 	/**
 	 * The fetch size of the member numbers for all levels.
@@ -151,6 +163,13 @@ abstract public class DataEngine
 	 */
 	public static String IN_MEMORY_CUBE_SIZE = "org.eclipse.birt.data.engine.cube.inmemory.size";
 	
+	/**
+	 * Whether the cubes materialized in the temporary folder are queried through
+	 * a read-only, memory mapped view of their files, which is shared by the
+	 * concurrent queries. Accepts true or false, the default is false.
+	 */
+	public static String MEMORY_MAPPED_CUBE = "org.eclipse.birt.data.engine.cube.memorymapped";
+	
 	/**
 	 * Creates a new instance of DataEngine, using the specified
 	 * DataEngineContext as its running environment
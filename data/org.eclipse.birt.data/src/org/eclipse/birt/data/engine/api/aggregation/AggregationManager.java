@@ -70,7 +70,9 @@ public class AggregationManager
 			"STDDEV",
 			"VARIANCE",
 			"RANK",
-			"RUNNINGSUM"
+			"RUNNINGSUM",
+			"APPROXCOUNTDISTINCT",
+			"APPROXMODE"
 	};
 
 	public static final int AGGR_TABULAR = 0;
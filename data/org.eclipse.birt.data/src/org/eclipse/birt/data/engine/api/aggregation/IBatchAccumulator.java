@@ -0,0 +1,49 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.api.aggregation;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * An Accumulator of a SUMMARY_AGGR aggregation may implement this interface
+ * to receive the numeric values of its first argument in batches of primitive
+ * doubles rather than one onRow() call per data row. It tells the Data Engine
+ * that the accumulator only uses the first argument of a row.
+ * <p>
+ * A batch holds the values of consecutive rows, which are all either null or
+ * of the same class among java.lang.Double, java.lang.Integer,
+ * java.lang.Float, java.lang.Short and java.lang.Byte, so that a value
+ * converts to a double and back without loss. The rows of other values, e.g.
+ * java.math.BigDecimal or java.util.Date, are still passed to onRow(), in the
+ * order of the rows. All the batches of a group are passed before finish() is
+ * called.
+ */
+public interface IBatchAccumulator
+{
+
+	/**
+	 * Processes the first argument of a batch of rows.
+	 *
+	 * @param valueClass
+	 *            the class of the non-null values of the batch
+	 * @param values
+	 *            the values of the rows; values[i] is meaningless if the value
+	 *            of row i is null
+	 * @param nulls
+	 *            nulls[i] is true if the value of row i is null
+	 * @param count
+	 *            the number of rows in the batch
+	 * @throws DataException
+	 */
+	public void onBatch( Class valueClass, double[] values, boolean[] nulls,
+			int count ) throws DataException;
+}
@@ -0,0 +1,371 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.cache;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects the N greatest or least values of a stream in a single pass. The
+ * values are kept in a binary heap of at most N entries whose root is the
+ * worst value kept, so that a new value is compared to the root only, and
+ * adding M values costs O(M log N) comparisons at most.
+ * <p>
+ * Each value is added along with its index in the stream. Of two equal values
+ * the one of the smaller index is preferred, so that the selection is the same
+ * as the one of a stable sort of the stream.
+ * <p>
+ * As long as all the values are of the same class among java.lang.Double,
+ * Integer, Float, Short and Byte, they are compared as primitive doubles, and
+ * with the comparator otherwise.
+ */
+public class TopNHeap
+{
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private int n;
+	private boolean isTop;
+	private Comparator comparator;
+
+	private Object[] values;
+	private int[] indexes;
+	private int size;
+
+	// the values as doubles while they are all of the class keyClass
+	private double[] keys;
+	private Class keyClass;
+	private boolean isPrimitive;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param n
+	 *            the number of values to select
+	 * @param isTop
+	 *            true to select the greatest values, false the least ones
+	 * @param comparator
+	 *            the comparator of the values, which may be null if they are
+	 *            Comparable
+	 */
+	public TopNHeap( int n, boolean isTop, Comparator comparator )
+	{
+		if ( n < 0 )
+			throw new IllegalArgumentException( "Illegal N: " + n ); //$NON-NLS-1$
+		this.n = n;
+		this.isTop = isTop;
+		this.comparator = comparator;
+		int capacity = Math.min( n, INITIAL_CAPACITY );
+		this.values = new Object[capacity];
+		this.indexes = new int[capacity];
+		this.keys = new double[capacity];
+		this.isPrimitive = true;
+	}
+
+	/**
+	 * Adds a value of the stream.
+	 *
+	 * @param value
+	 * @param index
+	 *            the index of the value in the stream
+	 * @return whether the value is among the N best ones so far
+	 */
+	public boolean add( Object value, int index )
+	{
+		double key = toKey( value );
+		if ( size < n )
+		{
+			if ( size == values.length )
+				grow( );
+			set( size, value, key, index );
+			size++;
+			siftUp( size - 1 );
+			return true;
+		}
+		if ( n == 0 || compare( value, key, index, 0 ) <= 0 )
+			return false;
+		set( 0, value, key, index );
+		siftDown( 0 );
+		return true;
+	}
+
+	/**
+	 * Returns the number of selected values.
+	 *
+	 * @return
+	 */
+	public int size( )
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the indexes of the selected values, in ascending order.
+	 *
+	 * @return
+	 */
+	public int[] getIndexes( )
+	{
+		int[] result = new int[size];
+		System.arraycopy( indexes, 0, result, 0, size );
+		Arrays.sort( result );
+		return result;
+	}
+
+	/**
+	 * Returns the selected values, from the best one to the worst one.
+	 *
+	 * @return
+	 */
+	public Object[] getValues( )
+	{
+		Integer[] positions = new Integer[size];
+		for ( int i = 0; i < size; i++ )
+			positions[i] = Integer.valueOf( i );
+		Arrays.sort( positions, new Comparator<Integer>( ) {
+
+			public int compare( Integer position1, Integer position2 )
+			{
+				return TopNHeap.this.compare( position2.intValue( ),
+						position1.intValue( ) );
+			}
+		} );
+		Object[] result = new Object[size];
+		for ( int i = 0; i < size; i++ )
+			result[i] = values[positions[i].intValue( )];
+		return result;
+	}
+
+	/**
+	 * Selects the N best values of a list with heaps of at most maxHeapSize
+	 * values, so that a large N does not hold N values in memory. Each round
+	 * scans the list and selects the best values among the ones not selected
+	 * yet. The null values are never selected.
+	 *
+	 * @param values
+	 *            the values, which may be a disk based list
+	 * @param n
+	 *            the number of values to select
+	 * @param isTop
+	 *            true to select the greatest values, false the least ones
+	 * @param comparator
+	 *            the comparator of the values
+	 * @param maxHeapSize
+	 *            the number of values selected by a round
+	 * @param tempDir
+	 *            the directory of the disk based result
+	 * @return an array of the size of the list, which holds Boolean.TRUE at
+	 *         the index of a selected value and null elsewhere
+	 */
+	public static BasicCachedArray select( List values, int n, boolean isTop,
+			Comparator comparator, int maxHeapSize, String tempDir )
+	{
+		int size = values.size( );
+		BasicCachedArray result = new BasicCachedArray( tempDir, size );
+		int selectedCount = 0;
+		while ( selectedCount < n )
+		{
+			TopNHeap heap = new TopNHeap( Math.min( n - selectedCount,
+					maxHeapSize ), isTop, comparator );
+			for ( int i = 0; i < size; i++ )
+			{
+				Object value = values.get( i );
+				if ( value != null && result.get( i ) == null )
+					heap.add( value, i );
+			}
+			int[] indexes = heap.getIndexes( );
+			for ( int i = 0; i < indexes.length; i++ )
+				result.set( indexes[i], Boolean.TRUE );
+			selectedCount += indexes.length;
+			// all the values are selected
+			if ( heap.size( ) < heap.n )
+				break;
+		}
+		return result;
+	}
+
+	/**
+	 * Removes all the values.
+	 */
+	public void clear( )
+	{
+		Arrays.fill( values, 0, size, null );
+		size = 0;
+		keyClass = null;
+		isPrimitive = true;
+	}
+
+	/**
+	 * Returns the primitive key of a value, and stops using the keys if the
+	 * value has none.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private double toKey( Object value )
+	{
+		if ( !isPrimitive )
+			return 0;
+		if ( value != null && value.getClass( ) == keyClass )
+			return ( (Number) value ).doubleValue( );
+		if ( keyClass == null && size == 0 && isPrimitiveClass( value ) )
+		{
+			keyClass = value.getClass( );
+			return ( (Number) value ).doubleValue( );
+		}
+		isPrimitive = false;
+		keyClass = null;
+		return 0;
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static boolean isPrimitiveClass( Object value )
+	{
+		return value instanceof Double
+				|| value instanceof Integer
+				|| value instanceof Float
+				|| value instanceof Short
+				|| value instanceof Byte;
+	}
+
+	/**
+	 * Compares a new value to the one at a position of the heap.
+	 *
+	 * @return a positive number if the new value is better
+	 */
+	private int compare( Object value, double key, int index, int position )
+	{
+		int result = isPrimitive ? Double.compare( key, keys[position] )
+				: compareValues( value, values[position] );
+		if ( !isTop )
+			result = -result;
+		if ( result != 0 )
+			return result;
+		return index < indexes[position] ? 1 : ( index == indexes[position]
+				? 0 : -1 );
+	}
+
+	/**
+	 * Compares the values at two positions of the heap.
+	 *
+	 * @return a positive number if the first value is better
+	 */
+	private int compare( int position1, int position2 )
+	{
+		return compare( values[position1],
+				keys[position1],
+				indexes[position1],
+				position2 );
+	}
+
+	/**
+	 *
+	 * @param value1
+	 * @param value2
+	 * @return
+	 */
+	private int compareValues( Object value1, Object value2 )
+	{
+		if ( comparator != null )
+			return comparator.compare( value1, value2 );
+		return ( (Comparable) value1 ).compareTo( value2 );
+	}
+
+	/**
+	 * Moves up a value until its parent is worse.
+	 *
+	 * @param position
+	 */
+	private void siftUp( int position )
+	{
+		while ( position > 0 )
+		{
+			int parent = ( position - 1 ) / 2;
+			if ( compare( parent, position ) <= 0 )
+				break;
+			swap( parent, position );
+			position = parent;
+		}
+	}
+
+	/**
+	 * Moves down a value until its children are better.
+	 *
+	 * @param position
+	 */
+	private void siftDown( int position )
+	{
+		while ( true )
+		{
+			int child = position * 2 + 1;
+			if ( child >= size )
+				break;
+			if ( child + 1 < size && compare( child + 1, child ) < 0 )
+				child++;
+			if ( compare( child, position ) >= 0 )
+				break;
+			swap( child, position );
+			position = child;
+		}
+	}
+
+	/**
+	 *
+	 * @param position
+	 * @param value
+	 * @param key
+	 * @param index
+	 */
+	private void set( int position, Object value, double key, int index )
+	{
+		values[position] = value;
+		keys[position] = key;
+		indexes[position] = index;
+	}
+
+	/**
+	 *
+	 * @param position1
+	 * @param position2
+	 */
+	private void swap( int position1, int position2 )
+	{
+		Object value = values[position1];
+		double key = keys[position1];
+		int index = indexes[position1];
+		set( position1, values[position2], keys[position2], indexes[position2] );
+		set( position2, value, key, index );
+	}
+
+	/**
+	 * Doubles the capacity, up to N.
+	 */
+	private void grow( )
+	{
+		int capacity = (int) Math.min( (long) n,
+				Math.max( INITIAL_CAPACITY, (long) values.length * 2 ) );
+		Object[] newValues = new Object[capacity];
+		System.arraycopy( values, 0, newValues, 0, size );
+		values = newValues;
+		int[] newIndexes = new int[capacity];
+		System.arraycopy( indexes, 0, newIndexes, 0, size );
+		indexes = newIndexes;
+		double[] newKeys = new double[capacity];
+		System.arraycopy( keys, 0, newKeys, 0, size );
+		keys = newKeys;
+	}
+}
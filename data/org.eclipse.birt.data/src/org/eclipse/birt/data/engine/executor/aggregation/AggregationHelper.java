@@ -20,6 +20,7 @@ import java.util.Set;
 
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.aggregation.BatchAccumulator;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
@@ -679,7 +680,7 @@ public class AggregationHelper implements IAggrValueHolder
 			
 			int passNum = aggregation.getNumberOfPasses( );
 			if( passNum < 2 )
-				this.accumulator = aggregation.newAccumulator();
+				this.accumulator = BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) );
 			else
 				this.cachedAcc = new ArrayList();	
 		}
@@ -694,7 +695,7 @@ public class AggregationHelper implements IAggrValueHolder
 				return this.accumulator;
 			if( cachedAcc.size() == 0 )
 			{
-				cachedAcc.add( aggregation.newAccumulator() );
+				cachedAcc.add( BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) ) );
 			}
 			return (Accumulator)cachedAcc.get(cursor);
 		}
@@ -713,7 +714,7 @@ public class AggregationHelper implements IAggrValueHolder
 				return (Accumulator)cachedAcc.get(cursor);
 			}else
 			{
-				cachedAcc.add( aggregation.newAccumulator() );
+				cachedAcc.add( BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) ) );
 				return (Accumulator)cachedAcc.get(cursor);
 			}
 		}
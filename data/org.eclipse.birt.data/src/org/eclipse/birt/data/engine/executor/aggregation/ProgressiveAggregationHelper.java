@@ -19,6 +19,7 @@ import java.util.Set;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.aggregation.BatchAccumulator;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
 import org.eclipse.birt.data.engine.api.IDataScriptEngine;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
@@ -126,7 +127,8 @@ public class ProgressiveAggregationHelper implements IProgressiveAggregationHelp
 					aggrArgs[i] = new Object[aggrInfo.getAggregation( )
 							.getParameterDefn( ).length];
 					this.aggrNames.add( this.manager.getAggrDefn( i ).getName( ) );
-					this.accumulators.add(aggrInfo.getAggregation().newAccumulator());
+					this.accumulators.add( BatchAccumulator.wrap( aggrInfo.getAggregation( ),
+							aggrInfo.getAggregation( ).newAccumulator( ) ) );
 				}
 				
 			}
@@ -34,6 +34,8 @@ class FilterCalculator
 	protected ResultSetPopulator populator;
 	protected IFilterByRow filterByRow;
 	protected DataEngineSession session;
+	// the plan of the passes of the multipass filters
+	protected FilterPassPlan passPlan;
 	/**
 	 * 
 	 * @param populator
@@ -142,6 +144,9 @@ class FilterCalculator
 		int max = populator.getQuery( ).getMaxRows( );
 
 		populator.getQuery( ).setMaxRows( 0 );
+		passPlan = FilterPassPlan.newInstance( filterByRow.getFilterList( ),
+				populator.getQuery( ).getFetchEvents( ),
+				filterByRow );
 		// Cache the current ResultSetCache instance, as after start() is called
 		// the current
 		// ResultSetCache will be overwrite.		
@@ -149,19 +154,22 @@ class FilterCalculator
 		makeFirstPassToMultiPassFilter( filterPass );
 		
 		ResultSetCache sCache = populator.getCache( );
-		//preparation pass to calculate TOPN/BottomN filter, we should not clear existing smart cache.
-		populator.setClearCacheResultSet( false );
-		
-		populator.getGroupProcessorManager( )
-			.getGroupCalculationUtil( )
-			.getGroupInformationUtil( )
-			.setLeaveGroupIndex( 0 );
-		sCache.reset( );
-		sCache.next( );
-		
-		makePreparationPassToMultiPassFilter( filterPass );
-		
-		populator.setCache( sCache );
+		if ( passPlan.needPreparationPass( ) )
+		{
+			//preparation pass to calculate TOPN/BottomN filter, we should not clear existing smart cache.
+			populator.setClearCacheResultSet( false );
+
+			populator.getGroupProcessorManager( )
+				.getGroupCalculationUtil( )
+				.getGroupInformationUtil( )
+				.setLeaveGroupIndex( 0 );
+			sCache.reset( );
+			sCache.next( );
+
+			makePreparationPassToMultiPassFilter( filterPass );
+
+			populator.setCache( sCache );
+		}
 		// Reset the smartCache and make cursor stay in first row.
 		sCache.reset( );
 		sCache.next( );
@@ -191,6 +199,7 @@ class FilterCalculator
 		}
 
 		filterPass.setSecondPassRowCount( 0 );
+		passPlan = null;
 	}
 
 	/**
@@ -213,13 +222,9 @@ class FilterCalculator
 		List<IFilterDefinition> temp = new ArrayList<IFilterDefinition>( );
 		temp.addAll( filterByRow.getFilterList( ) );
 		filterByRow.getFilterList( ).clear( );
-		for ( int i = 0; i < temp.size( ); i++ )
-		{
-			if ( !FilterUtil.isFilterNeedMultiPass( temp.get( i ) ) )
-			{
-				filterByRow.getFilterList( ).add( temp.get( i ) );
-			}
-		}
+		// the Top/Bottom N filters are evaluated here too unless they need a
+		// preparation pass
+		filterByRow.getFilterList( ).addAll( passPlan.getFirstPassFilters( ) );
 		PassUtil.pass( populator,
 				new OdiResultSetWrapper( populator.getResultIterator( ) ),
 				false );
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.executor.transform.pass;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.api.IConditionalExpression;
+import org.eclipse.birt.data.engine.api.IFilterDefinition;
+import org.eclipse.birt.data.engine.executor.transform.FilterUtil;
+import org.eclipse.birt.data.engine.impl.IFilterByRow;
+
+/**
+ * The plan of the passes which apply a list of filters with Top/Bottom N
+ * filters among them.
+ * <p>
+ * Such a list is applied in three passes: the first pass applies the other
+ * filters, the preparation pass collects the Top/Bottom N values of the
+ * remaining rows, and the second pass filters out the rows whose values are
+ * not among them. The preparation pass depends on the first pass only for the
+ * row count, which the percent filters need to compute N. Without percent
+ * filters, the Top/Bottom N values are collected in the first pass, right after
+ * the other filters have accepted a row, and the preparation pass is skipped.
+ */
+class FilterPassPlan
+{
+
+	private List<IFilterDefinition> singlePassFilters;
+	private List<IFilterDefinition> multiPassFilters;
+	private boolean needPreparationPass;
+
+	/**
+	 *
+	 * @param singlePassFilters
+	 * @param multiPassFilters
+	 * @param needPreparationPass
+	 */
+	private FilterPassPlan( List<IFilterDefinition> singlePassFilters,
+			List<IFilterDefinition> multiPassFilters,
+			boolean needPreparationPass )
+	{
+		this.singlePassFilters = singlePassFilters;
+		this.multiPassFilters = multiPassFilters;
+		this.needPreparationPass = needPreparationPass;
+	}
+
+	/**
+	 * Plans the passes of a list of filters.
+	 *
+	 * @param filters
+	 *            the filters to apply
+	 * @param fetchEvents
+	 *            the fetch events of the passes
+	 * @param filterByRow
+	 *            the fetch event which applies the filters
+	 * @return
+	 */
+	static FilterPassPlan newInstance( List<IFilterDefinition> filters,
+			List fetchEvents, IFilterByRow filterByRow )
+	{
+		List<IFilterDefinition> singlePassFilters = new ArrayList<IFilterDefinition>( );
+		List<IFilterDefinition> multiPassFilters = new ArrayList<IFilterDefinition>( );
+		boolean dependOnRowCount = false;
+		for ( int i = 0; i < filters.size( ); i++ )
+		{
+			IFilterDefinition filter = filters.get( i );
+			if ( FilterUtil.isFilterNeedMultiPass( filter ) )
+			{
+				multiPassFilters.add( filter );
+				int operator = ( (IConditionalExpression) filter.getExpression( ) ).getOperator( );
+				if ( operator == IConditionalExpression.OP_TOP_PERCENT
+						|| operator == IConditionalExpression.OP_BOTTOM_PERCENT )
+					dependOnRowCount = true;
+			}
+			else
+			{
+				singlePassFilters.add( filter );
+			}
+		}
+
+		// The rows seen by the Top/Bottom N filters in the first pass are the
+		// rows of the filtered result set only if no fetch event after the
+		// filters may still reject them.
+		boolean isLastEvent = fetchEvents != null
+				&& fetchEvents.size( ) > 0
+				&& fetchEvents.get( fetchEvents.size( ) - 1 ) == filterByRow;
+
+		return new FilterPassPlan( singlePassFilters,
+				multiPassFilters,
+				dependOnRowCount || !isLastEvent );
+	}
+
+	/**
+	 * Returns the filters to apply in the first pass. The filters which do
+	 * not need multipass come first, so that the Top/Bottom N filters are only
+	 * evaluated on the rows they accept.
+	 *
+	 * @return
+	 */
+	List<IFilterDefinition> getFirstPassFilters( )
+	{
+		if ( needPreparationPass )
+			return singlePassFilters;
+		List<IFilterDefinition> result = new ArrayList<IFilterDefinition>( singlePassFilters );
+		result.addAll( multiPassFilters );
+		return result;
+	}
+
+	/**
+	 * Returns whether a preparation pass is needed to collect the Top/Bottom N
+	 * values before the second pass.
+	 *
+	 * @return
+	 */
+	boolean needPreparationPass( )
+	{
+		return needPreparationPass;
+	}
+}
@@ -458,6 +458,8 @@ abstract class AbstractExpressionCompiler
 			CompiledExpression expr )
 	{
 		assert ( expr instanceof BytecodeExpression );
+		// the Rhino compiler transforms the tree
+		( (BytecodeExpression) expr ).setNativeExpression( NativeExpression.compile( tree ) );
 		CompilerEnvirons compilerEnv = getCompilerEnv( context );
 		Interpreter compiler = new Interpreter( );
 		Object compiledOb = compiler.compile( compilerEnv, tree, null, false );
@@ -24,6 +24,7 @@ import org.mozilla.javascript.Scriptable;
 public abstract class BytecodeExpression extends CompiledExpression
 {
 	private Script m_script;
+	private NativeExpression m_nativeExpr;
 	  
 	protected static Logger logger = Logger.getLogger( BytecodeExpression.class.getName( ) );
 	/**
@@ -38,13 +39,36 @@ public abstract class BytecodeExpression extends CompiledExpression
     }
 
 	/**
-	 * Evaluates the compiled byte code
+	 * Sets the native expression which evaluates this expression without
+	 * Rhino, if it is supported.
+	 * 
+	 * @param nativeExpr
+	 *            the native expression, or null
+	 */
+	void setNativeExpression( NativeExpression nativeExpr )
+	{
+		m_nativeExpr = nativeExpr;
+	}
+
+	/**
+	 * Evaluates the native expression if it supports the values in the scope,
+	 * and the compiled byte code otherwise. The native expression decides it
+	 * before it evaluates anything, so the expression is evaluated once.
 	 */
 	public Object evaluate( ScriptContext context, Scriptable scope ) 
 		throws DataException
 	{
 	    try
 	    {
+	    	NativeExpression nativeExpr = m_nativeExpr;
+	    	if ( nativeExpr != null )
+	    	{
+	    		Object result = nativeExpr.execute( scope );
+	    		if ( result != NativeExpression.UNSUPPORTED )
+	    			return result;
+	    		// the values are likely of the same types for the next rows
+	    		m_nativeExpr = null;
+	    	}
 	    	Object result = JavascriptEvalUtil.convertJavascriptValue(
 	    			m_script.exec( Context.getCurrentContext( ), scope ) );
 	    	return result;
@@ -0,0 +1,771 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.expression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.eclipse.birt.core.script.JavascriptEvalUtil;
+import org.eclipse.birt.core.script.functionservice.impl.CategoryWrapper;
+import org.mozilla.javascript.Context;
+import org.mozilla.javascript.Function;
+import org.mozilla.javascript.Node;
+import org.mozilla.javascript.ScriptOrFnNode;
+import org.mozilla.javascript.ScriptRuntime;
+import org.mozilla.javascript.Scriptable;
+import org.mozilla.javascript.ScriptableObject;
+import org.mozilla.javascript.Token;
+import org.mozilla.javascript.Undefined;
+
+/**
+ * A Javascript expression evaluated in Java, without the Rhino interpreter.
+ * <p>
+ * The expressions made of literals, names, property accesses such as
+ * row["x"], arithmetic, comparison and logical operators, conditional
+ * expressions and calls to the script functions of a category such as
+ * BirtStr.left( ) are compiled to a tree of this class. The operators follow
+ * the ECMAScript rules for null, string, number and boolean operands.
+ * <p>
+ * An evaluation has two phases. The names and properties the expression
+ * reads and the functions it calls are resolved first, without evaluating
+ * anything. If a value is undefined, or is not a primitive value where an
+ * operator needs one, the evaluation returns UNSUPPORTED and the expression
+ * is evaluated by Rhino instead. Otherwise the operators are evaluated on the
+ * resolved values: they can not fail, and the errors of the function calls
+ * are reported as Rhino would, so that an expression is never partly
+ * evaluated before it is given to Rhino. The result of a function call is not
+ * an operand of an operator, as its type is only known once it is called.
+ */
+abstract class NativeExpression
+{
+
+	/**
+	 * The result of an evaluation which is not supported by the native
+	 * expression.
+	 */
+	static final Object UNSUPPORTED = new Object( );
+
+	/**
+	 * The number of the values resolved for the root of a tree.
+	 */
+	private int slotCount;
+
+	/**
+	 * Resolves the values which the expression reads, and the functions it
+	 * calls.
+	 *
+	 * @param scope
+	 * @param values
+	 *            the resolved values, by slot
+	 * @return false if the expression must be evaluated by Rhino
+	 */
+	abstract boolean resolve( Scriptable scope, Object[] values );
+
+	/**
+	 * Evaluates the expression on the resolved values, without converting
+	 * the result to a Java value.
+	 *
+	 * @param scope
+	 * @param values
+	 *            the resolved values, by slot
+	 * @return the result
+	 */
+	abstract Object evaluate( Scriptable scope, Object[] values );
+
+	/**
+	 * Evaluates the expression.
+	 *
+	 * @param scope
+	 * @return the result converted to a Java value, or UNSUPPORTED if it must
+	 *         be evaluated by Rhino, in which case nothing is evaluated
+	 * @throws org.mozilla.javascript.RhinoException
+	 *             if a function call fails
+	 */
+	Object execute( Scriptable scope )
+	{
+		Object[] values = new Object[slotCount];
+		try
+		{
+			if ( !resolve( scope, values ) )
+				return UNSUPPORTED;
+		}
+		catch ( RuntimeException e )
+		{
+			// let Rhino evaluate the expression and report the error
+			return UNSUPPORTED;
+		}
+		return JavascriptEvalUtil.convertJavascriptValue( evaluate( scope,
+				values ) );
+	}
+
+	/**
+	 * Compiles the script tree of a single expression.
+	 *
+	 * @param tree
+	 *            the script tree, before it is compiled by Rhino
+	 * @return the native expression, or null if the expression is not
+	 *         supported
+	 */
+	static NativeExpression compile( ScriptOrFnNode tree )
+	{
+		if ( tree.getFunctionCount( ) > 0
+				|| tree.getFirstChild( ) == null
+				|| tree.getFirstChild( ) != tree.getLastChild( ) )
+			return null;
+		Node statement = tree.getFirstChild( );
+		if ( ( statement.getType( ) != Token.EXPR_RESULT && statement.getType( ) != Token.EXPR_VOID )
+				|| statement.getFirstChild( ) == null )
+			return null;
+		// the statement of an aggregation argument only evaluates its first
+		// child, which may still be linked to the next argument
+		Builder builder = new Builder( );
+		NativeExpression root = builder.build( statement.getFirstChild( ),
+				false );
+		if ( root != null )
+			root.slotCount = builder.slotCount;
+		return root;
+	}
+
+	/**
+	 * Builds the tree of an expression, and numbers the slots of the values
+	 * it resolves.
+	 */
+	private static class Builder
+	{
+
+		private int slotCount;
+
+		/**
+		 * @param node
+		 * @param isOperand
+		 *            whether the value is an operand of an operator, which
+		 *            must be a primitive value
+		 * @return the expression, or null if it is not supported
+		 */
+		NativeExpression build( Node node, boolean isOperand )
+		{
+			switch ( node.getType( ) )
+			{
+				case Token.NUMBER :
+					return new Constant( new Double( node.getDouble( ) ) );
+				case Token.STRING :
+					return new Constant( node.getString( ) );
+				case Token.TRUE :
+					return new Constant( Boolean.TRUE );
+				case Token.FALSE :
+					return new Constant( Boolean.FALSE );
+				case Token.NULL :
+					return new Constant( null );
+				case Token.NAME :
+				case Token.GETPROP :
+				case Token.GETELEM :
+				{
+					Reference reference = buildReference( node );
+					if ( reference == null )
+						return null;
+					return new Value( reference, slotCount++, isOperand );
+				}
+				case Token.CALL :
+					return isOperand ? null : buildCall( node );
+				case Token.NEG :
+				case Token.POS :
+				case Token.NOT :
+				{
+					NativeExpression operand = build( node.getFirstChild( ),
+							true );
+					return operand == null ? null : new Unary( node.getType( ),
+							operand );
+				}
+				case Token.ADD :
+				case Token.SUB :
+				case Token.MUL :
+				case Token.DIV :
+				case Token.MOD :
+				case Token.LT :
+				case Token.LE :
+				case Token.GT :
+				case Token.GE :
+				case Token.EQ :
+				case Token.NE :
+				case Token.SHEQ :
+				case Token.SHNE :
+				{
+					NativeExpression left = build( node.getFirstChild( ), true );
+					NativeExpression right = build( node.getLastChild( ), true );
+					if ( left == null || right == null )
+						return null;
+					return new Binary( node.getType( ), left, right );
+				}
+				case Token.AND :
+				case Token.OR :
+				{
+					// the right operand is returned as it is
+					NativeExpression left = build( node.getFirstChild( ), true );
+					NativeExpression right = build( node.getLastChild( ),
+							isOperand );
+					if ( left == null || right == null )
+						return null;
+					return new Logical( node.getType( ) == Token.AND,
+							left,
+							right );
+				}
+				case Token.HOOK :
+				{
+					Node child = node.getFirstChild( );
+					NativeExpression condition = build( child, true );
+					NativeExpression ifTrue = build( child.getNext( ),
+							isOperand );
+					NativeExpression ifFalse = build( child.getNext( )
+							.getNext( ), isOperand );
+					if ( condition == null || ifTrue == null || ifFalse == null )
+						return null;
+					return new Conditional( condition, ifTrue, ifFalse );
+				}
+				default :
+					return null;
+			}
+		}
+
+		/**
+		 * Builds a name, or a property such as row.x, row["x"] or row[0].
+		 *
+		 * @param node
+		 * @return
+		 */
+		private Reference buildReference( Node node )
+		{
+			if ( node.getType( ) == Token.NAME )
+				return new Name( node.getString( ) );
+			if ( node.getType( ) != Token.GETPROP
+					&& node.getType( ) != Token.GETELEM )
+				return null;
+			Reference object = buildReference( node.getFirstChild( ) );
+			if ( object == null )
+				return null;
+			Node key = node.getLastChild( );
+			if ( key.getType( ) == Token.STRING )
+			{
+				String name = key.getString( );
+				// Rhino takes a string such as "1" or "-1" as an index
+				if ( name.length( ) > 0
+						&& ( Character.isDigit( name.charAt( 0 ) ) || name.charAt( 0 ) == '-' ) )
+					return null;
+				return new PropertyGet( object, name, -1 );
+			}
+			if ( key.getType( ) == Token.NUMBER )
+			{
+				double index = key.getDouble( );
+				if ( index < 0
+						|| index > Integer.MAX_VALUE || index != (int) index )
+					return null;
+				return new PropertyGet( object, null, (int) index );
+			}
+			return null;
+		}
+
+		/**
+		 * Builds a call to a script function of a category, such as
+		 * BirtStr.left( row.x, 2 ). The arguments may be of any type.
+		 *
+		 * @param node
+		 * @return
+		 */
+		private NativeExpression buildCall( Node node )
+		{
+			Node target = node.getFirstChild( );
+			if ( target.getType( ) != Token.GETPROP
+					|| target.getFirstChild( ).getType( ) != Token.NAME
+					|| target.getLastChild( ).getType( ) != Token.STRING )
+				return null;
+			List arguments = new ArrayList( );
+			for ( Node arg = target.getNext( ); arg != null; arg = arg.getNext( ) )
+			{
+				NativeExpression argument = build( arg, false );
+				if ( argument == null )
+					return null;
+				arguments.add( argument );
+			}
+			int slot = slotCount;
+			// the category and the function
+			slotCount += 2;
+			return new Call( new Name( target.getFirstChild( ).getString( ) ),
+					target.getLastChild( ).getString( ),
+					(NativeExpression[]) arguments.toArray( new NativeExpression[arguments.size( )] ),
+					slot );
+		}
+	}
+
+	/**
+	 * Returns the value of a property, or UNSUPPORTED if it is undefined.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static Object checkValue( Object value )
+	{
+		if ( value == Scriptable.NOT_FOUND || value instanceof Undefined )
+			return UNSUPPORTED;
+		return value;
+	}
+
+	/**
+	 * Returns whether a value is null, a string, a number or a boolean.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static boolean isPrimitive( Object value )
+	{
+		return value == null
+				|| value instanceof String
+				|| value instanceof Number
+				|| value instanceof Boolean;
+	}
+
+	/**
+	 * The ToNumber conversion of a primitive value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static double toNumber( Object value )
+	{
+		if ( value == null )
+			return 0;
+		if ( value instanceof Number )
+			return ( (Number) value ).doubleValue( );
+		if ( value instanceof Boolean )
+			return ( (Boolean) value ).booleanValue( ) ? 1 : 0;
+		return ScriptRuntime.toNumber( (String) value );
+	}
+
+	/**
+	 * The ToString conversion of a primitive value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static String toJSString( Object value )
+	{
+		if ( value instanceof String )
+			return (String) value;
+		if ( value instanceof Number )
+			return ScriptRuntime.numberToString( ( (Number) value ).doubleValue( ),
+					10 );
+		return String.valueOf( value );
+	}
+
+	/**
+	 * The ToBoolean conversion of a primitive value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static boolean toBoolean( Object value )
+	{
+		if ( value == null )
+			return false;
+		if ( value instanceof Boolean )
+			return ( (Boolean) value ).booleanValue( );
+		if ( value instanceof String )
+			return ( (String) value ).length( ) > 0;
+		double d = ( (Number) value ).doubleValue( );
+		return d == d && d != 0;
+	}
+
+	/**
+	 * The == operator on primitive values.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private static boolean looselyEquals( Object x, Object y )
+	{
+		if ( x == null || y == null )
+			return x == y;
+		if ( x instanceof String && y instanceof String )
+			return x.equals( y );
+		if ( x instanceof Boolean && y instanceof Boolean )
+			return x.equals( y );
+		return toNumber( x ) == toNumber( y );
+	}
+
+	/**
+	 * The === operator on primitive values.
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	private static boolean strictEquals( Object x, Object y )
+	{
+		if ( x == null || y == null )
+			return x == y;
+		if ( x instanceof Number )
+			return y instanceof Number && toNumber( x ) == toNumber( y );
+		return x.getClass( ) == y.getClass( ) && x.equals( y );
+	}
+
+	/**
+	 * The x &lt; y comparison on primitive values, which is false if either
+	 * value is NaN.
+	 *
+	 * @param x
+	 * @param y
+	 * @param orEqual
+	 *            true for x &lt;= y
+	 * @return
+	 */
+	private static boolean lessThan( Object x, Object y, boolean orEqual )
+	{
+		if ( x instanceof String && y instanceof String )
+		{
+			int result = ( (String) x ).compareTo( (String) y );
+			return orEqual ? result <= 0 : result < 0;
+		}
+		double d1 = toNumber( x );
+		double d2 = toNumber( y );
+		return orEqual ? d1 <= d2 : d1 < d2;
+	}
+
+	/**
+	 * A literal.
+	 */
+	private static class Constant extends NativeExpression
+	{
+
+		private Object value;
+
+		Constant( Object value )
+		{
+			this.value = value;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			return true;
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			return value;
+		}
+	}
+
+	/**
+	 * A name or a property, which is read when the expression is resolved.
+	 */
+	private static abstract class Reference
+	{
+
+		/**
+		 * @param scope
+		 * @return the value, or UNSUPPORTED if it is undefined
+		 */
+		abstract Object read( Scriptable scope );
+	}
+
+	/**
+	 * A name, which is looked up in the scope chain.
+	 */
+	private static class Name extends Reference
+	{
+
+		private String name;
+
+		Name( String name )
+		{
+			this.name = name;
+		}
+
+		Object read( Scriptable scope )
+		{
+			for ( Scriptable s = scope; s != null; s = s.getParentScope( ) )
+			{
+				Object value = ScriptableObject.getProperty( s, name );
+				if ( value != Scriptable.NOT_FOUND )
+					return checkValue( value );
+			}
+			return UNSUPPORTED;
+		}
+	}
+
+	/**
+	 * A property of an object, given by its name or index.
+	 */
+	private static class PropertyGet extends Reference
+	{
+
+		private Reference object;
+		private String name;
+		private int index;
+
+		PropertyGet( Reference object, String name, int index )
+		{
+			this.object = object;
+			this.name = name;
+			this.index = index;
+		}
+
+		Object read( Scriptable scope )
+		{
+			Object target = object.read( scope );
+			if ( !( target instanceof Scriptable ) )
+				return UNSUPPORTED;
+			if ( name != null )
+				return checkValue( ScriptableObject.getProperty( (Scriptable) target,
+						name ) );
+			return checkValue( ScriptableObject.getProperty( (Scriptable) target,
+					index ) );
+		}
+	}
+
+	/**
+	 * The value of a name or a property in an expression.
+	 */
+	private static class Value extends NativeExpression
+	{
+
+		private Reference reference;
+		private int slot;
+		private boolean isOperand;
+
+		Value( Reference reference, int slot, boolean isOperand )
+		{
+			this.reference = reference;
+			this.slot = slot;
+			this.isOperand = isOperand;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			Object value = reference.read( scope );
+			if ( value == UNSUPPORTED || ( isOperand && !isPrimitive( value ) ) )
+				return false;
+			values[slot] = value;
+			return true;
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			return values[slot];
+		}
+	}
+
+	/**
+	 * A call to a script function of a category.
+	 */
+	private static class Call extends NativeExpression
+	{
+
+		private Name category;
+		private String functionName;
+		private NativeExpression[] arguments;
+		private int slot;
+
+		Call( Name category, String functionName,
+				NativeExpression[] arguments, int slot )
+		{
+			this.category = category;
+			this.functionName = functionName;
+			this.arguments = arguments;
+			this.slot = slot;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			Object target = category.read( scope );
+			if ( !( target instanceof CategoryWrapper ) )
+				return false;
+			Object function = ScriptableObject.getProperty( (Scriptable) target,
+					functionName );
+			if ( !( function instanceof Function ) )
+				return false;
+			values[slot] = target;
+			values[slot + 1] = function;
+			for ( int i = 0; i < arguments.length; i++ )
+			{
+				if ( !arguments[i].resolve( scope, values ) )
+					return false;
+			}
+			return true;
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			Object[] args = new Object[arguments.length];
+			for ( int i = 0; i < arguments.length; i++ )
+				args[i] = arguments[i].evaluate( scope, values );
+			return ( (Function) values[slot + 1] ).call( Context.getCurrentContext( ),
+					scope,
+					(Scriptable) values[slot],
+					args );
+		}
+	}
+
+	/**
+	 * The -x, +x and !x operators.
+	 */
+	private static class Unary extends NativeExpression
+	{
+
+		private int operator;
+		private NativeExpression operand;
+
+		Unary( int operator, NativeExpression operand )
+		{
+			this.operator = operator;
+			this.operand = operand;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			return operand.resolve( scope, values );
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			Object value = operand.evaluate( scope, values );
+			if ( operator == Token.NOT )
+				return Boolean.valueOf( !toBoolean( value ) );
+			return new Double( operator == Token.NEG ? -toNumber( value )
+					: toNumber( value ) );
+		}
+	}
+
+	/**
+	 * The arithmetic, comparison and equality operators.
+	 */
+	private static class Binary extends NativeExpression
+	{
+
+		private int operator;
+		private NativeExpression left;
+		private NativeExpression right;
+
+		Binary( int operator, NativeExpression left, NativeExpression right )
+		{
+			this.operator = operator;
+			this.left = left;
+			this.right = right;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			return left.resolve( scope, values )
+					&& right.resolve( scope, values );
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			Object x = left.evaluate( scope, values );
+			Object y = right.evaluate( scope, values );
+			switch ( operator )
+			{
+				case Token.ADD :
+					if ( x instanceof String || y instanceof String )
+						return toJSString( x ).concat( toJSString( y ) );
+					return new Double( toNumber( x ) + toNumber( y ) );
+				case Token.SUB :
+					return new Double( toNumber( x ) - toNumber( y ) );
+				case Token.MUL :
+					return new Double( toNumber( x ) * toNumber( y ) );
+				case Token.DIV :
+					return new Double( toNumber( x ) / toNumber( y ) );
+				case Token.MOD :
+					return new Double( toNumber( x ) % toNumber( y ) );
+				case Token.LT :
+					return Boolean.valueOf( lessThan( x, y, false ) );
+				case Token.LE :
+					return Boolean.valueOf( lessThan( x, y, true ) );
+				case Token.GT :
+					return Boolean.valueOf( lessThan( y, x, false ) );
+				case Token.GE :
+					return Boolean.valueOf( lessThan( y, x, true ) );
+				case Token.EQ :
+					return Boolean.valueOf( looselyEquals( x, y ) );
+				case Token.NE :
+					return Boolean.valueOf( !looselyEquals( x, y ) );
+				case Token.SHEQ :
+					return Boolean.valueOf( strictEquals( x, y ) );
+				default :
+					return Boolean.valueOf( !strictEquals( x, y ) );
+			}
+		}
+	}
+
+	/**
+	 * The &amp;&amp; and || operators, which return one of their operands.
+	 */
+	private static class Logical extends NativeExpression
+	{
+
+		private boolean isAnd;
+		private NativeExpression left;
+		private NativeExpression right;
+
+		Logical( boolean isAnd, NativeExpression left, NativeExpression right )
+		{
+			this.isAnd = isAnd;
+			this.left = left;
+			this.right = right;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			return left.resolve( scope, values )
+					&& right.resolve( scope, values );
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			Object x = left.evaluate( scope, values );
+			if ( toBoolean( x ) == isAnd )
+				return right.evaluate( scope, values );
+			return x;
+		}
+	}
+
+	/**
+	 * The conditional operator.
+	 */
+	private static class Conditional extends NativeExpression
+	{
+
+		private NativeExpression condition;
+		private NativeExpression ifTrue;
+		private NativeExpression ifFalse;
+
+		Conditional( NativeExpression condition, NativeExpression ifTrue,
+				NativeExpression ifFalse )
+		{
+			this.condition = condition;
+			this.ifTrue = ifTrue;
+			this.ifFalse = ifFalse;
+		}
+
+		boolean resolve( Scriptable scope, Object[] values )
+		{
+			return condition.resolve( scope, values )
+					&& ifTrue.resolve( scope, values )
+					&& ifFalse.resolve( scope, values );
+		}
+
+		Object evaluate( Scriptable scope, Object[] values )
+		{
+			return toBoolean( condition.evaluate( scope, values ) )
+					? ifTrue.evaluate( scope, values )
+					: ifFalse.evaluate( scope, values );
+		}
+	}
+}
@@ -41,6 +41,7 @@ import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.executor.BaseQuery;
 import org.eclipse.birt.data.engine.executor.DataSetCacheManager;
 import org.eclipse.birt.data.engine.executor.JointDataSetQuery;
+import org.eclipse.birt.data.engine.executor.cache.CacheUtil;
 import org.eclipse.birt.data.engine.executor.ResultClass;
 import org.eclipse.birt.data.engine.executor.ResultFieldMetadata;
 import org.eclipse.birt.data.engine.executor.dscache.DataSetToCache;
@@ -441,6 +442,30 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 		}
 	}
 
+	/**
+	 * Return whether the data sets are joined by hashing the rows of the
+	 * secondary data set rather than by merging two sorted data sets. The
+	 * full outer join needs the unmatched rows of both data sets, so it is
+	 * still done by merging.
+	 * 
+	 * @return
+	 */
+	private boolean isHashJoin( )
+	{
+		return dataSet.getJoinType( ) != IJointDataSetDesign.FULL_OUTER_JOIN;
+	}
+
+	/**
+	 * Return whether the primary data set, whose rows are returned in their
+	 * order, is the left one.
+	 * 
+	 * @return
+	 */
+	private boolean isPrimaryLeft( )
+	{
+		return dataSet.getJoinType( ) != IJointDataSetDesign.RIGHT_OUTER_JOIN;
+	}
+
 	/**
 	 * 
 	 * @param condition
@@ -543,11 +568,15 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 				isLeftDataSet,
 				queryDefinition );
 
-		for ( int i = 0; i < conditions.size( ); i++ )
+		// the secondary data set of a hash join needs not be sorted
+		if ( !isHashJoin( ) || isLeftDataSet == isPrimaryLeft( ) )
 		{
-			addSortToQuery( (IJoinCondition) conditions.get( i ),
-					isLeftDataSet,
-					queryDefinition );
+			for ( int i = 0; i < conditions.size( ); i++ )
+			{
+				addSortToQuery( (IJoinCondition) conditions.get( i ),
+						isLeftDataSet,
+						queryDefinition );
+			}
 		}
 
 		IPreparedQuery preparedQuery = PreparedQueryUtil.newInstance( dataEngine,
@@ -652,12 +681,21 @@ public class PreparedJointDataSourceQuery extends PreparedDataSourceQuery
 			JointResultMetadata jrm = getJointResultMetadata( left.getResultMetaData( ),
 					right.getResultMetaData( ) );
 			resultClass = jrm.getResultClass( );
-			populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
-					right.getOdiResult( ),
-					jrm,
-					matcher,
-					joinType, dataEngine.getSession( ),
-					dataSetDesign.getRowFetchLimit( ) );
+			if ( isHashJoin( ) )
+				populator = JointDataSetPopulatorFactory.getHashJoinDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ),
+						CacheUtil.computeMemoryBufferSize( appContext ) );
+			else
+				populator = JointDataSetPopulatorFactory.getBinaryTreeDataSetPopulator( left.getOdiResult( ),
+						right.getOdiResult( ),
+						jrm,
+						matcher,
+						joinType, dataEngine.getSession( ),
+						dataSetDesign.getRowFetchLimit( ) );
 			
 			DataSetCacheManager dscm = dataEngine.getSession( ).getDataSetCacheManager( );
 			dscm.setDataSourceAndDataSet( 
@@ -21,6 +21,7 @@ import java.util.logging.Logger;
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
+import org.eclipse.birt.data.engine.aggregation.BatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
 import org.eclipse.birt.data.engine.api.aggregation.IParameterDefn;
@@ -431,7 +432,7 @@ class AggregateCalculator
 			
 			int passNum = aggregation.getNumberOfPasses( );
 			if( passNum < 2 )
-				this.accumulator = aggregation.newAccumulator();
+				this.accumulator = BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) );
 			else
 				this.cachedAcc = new ArrayList();	
 		}
@@ -446,7 +447,7 @@ class AggregateCalculator
 				return this.accumulator;
 			if( cachedAcc.size() == 0 )
 			{
-				cachedAcc.add( aggregation.newAccumulator() );
+				cachedAcc.add( BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) ) );
 			}
 			return (Accumulator)cachedAcc.get(cursor);
 		}
@@ -465,7 +466,7 @@ class AggregateCalculator
 				return (Accumulator)cachedAcc.get(cursor);
 			}else
 			{
-				cachedAcc.add( aggregation.newAccumulator() );
+				cachedAcc.add( BatchAccumulator.wrap( aggregation, aggregation.newAccumulator( ) ) );
 				return (Accumulator)cachedAcc.get(cursor);
 			}
 		}
@@ -0,0 +1,1009 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.index;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+
+import org.eclipse.birt.core.util.IOUtil;
+
+/**
+ * A compressed bitmap of non-negative ints, typically the row ids of a data
+ * set index key. The ints are split by their high 16 bits into containers,
+ * each container holding the low 16 bits of its ints either as a sorted array
+ * (sparse), a bitmap (dense), or a list of runs (consecutive ints), whichever
+ * is the smallest. Sets are combined with {@link #and}, {@link #or},
+ * {@link #andNot} and {@link #not} without iterating over their ints one by
+ * one.
+ */
+public class CompressedIntSet implements IOrderedIntSet
+{
+
+	private static final int ARRAY_CONTAINER = 0;
+	private static final int BITMAP_CONTAINER = 1;
+	private static final int RUN_CONTAINER = 2;
+
+	// an array container holding more values is larger than a bitmap
+	private static final int MAX_ARRAY_SIZE = 4096;
+	private static final int BITMAP_WORDS = 1024;
+
+	private char[] keys;
+	private Container[] containers;
+	private int containerCount;
+
+	/**
+	 * Constructs an empty set.
+	 */
+	public CompressedIntSet( )
+	{
+		this( 4 );
+	}
+
+	private CompressedIntSet( int capacity )
+	{
+		this.keys = new char[capacity];
+		this.containers = new Container[capacity];
+		this.containerCount = 0;
+	}
+
+	/**
+	 * Returns the set of the ints from start, inclusive, to end, exclusive.
+	 *
+	 * @param start
+	 * @param end
+	 * @return
+	 */
+	public static CompressedIntSet range( int start, int end )
+	{
+		CompressedIntSet result = new CompressedIntSet( );
+		for ( int from = start; from < end; )
+		{
+			int key = from >>> 16;
+			int to = Math.min( end, ( key + 1 ) << 16 );
+			if ( to <= 0 )
+				to = end;
+			result.append( (char) key, new RunContainer( new char[]{
+					(char) from, (char) ( to - from - 1 )
+			}, 1 ) );
+			from = to;
+		}
+		return result;
+	}
+
+	/**
+	 * Adds an int to this set. Adding the ints in ascending order is the
+	 * fastest.
+	 *
+	 * @param value
+	 *            a non-negative int
+	 */
+	public void add( int value )
+	{
+		if ( value < 0 )
+			throw new IllegalArgumentException( String.valueOf( value ) );
+		char key = (char) ( value >>> 16 );
+		int index = containerCount > 0 && keys[containerCount - 1] == key
+				? containerCount - 1 : findKey( key );
+		if ( index >= 0 )
+		{
+			if ( containers[index].isShared )
+				containers[index] = containers[index].copy( );
+			containers[index] = containers[index].add( (char) value );
+		}
+		else
+		{
+			index = -index - 1;
+			insert( index, key, new ArrayContainer( new char[]{
+				(char) value
+			}, 1 ) );
+		}
+	}
+
+	/**
+	 * Returns whether this set contains the specified int.
+	 *
+	 * @param value
+	 * @return
+	 */
+	public boolean contains( int value )
+	{
+		if ( value < 0 )
+			return false;
+		int index = findKey( (char) ( value >>> 16 ) );
+		return index >= 0 && containers[index].contains( (char) value );
+	}
+
+	/**
+	 * Returns the intersection of this set and the specified one.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public CompressedIntSet and( CompressedIntSet other )
+	{
+		CompressedIntSet result = new CompressedIntSet( Math.max( 1,
+				Math.min( containerCount, other.containerCount ) ) );
+		int i = 0, j = 0;
+		while ( i < containerCount && j < other.containerCount )
+		{
+			if ( keys[i] < other.keys[j] )
+				i++;
+			else if ( keys[i] > other.keys[j] )
+				j++;
+			else
+			{
+				Container c = containers[i].and( other.containers[j] );
+				if ( c.cardinality( ) > 0 )
+					result.append( keys[i], c );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the union of this set and the specified one.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public CompressedIntSet or( CompressedIntSet other )
+	{
+		CompressedIntSet result = new CompressedIntSet( Math.max( 1,
+				containerCount + other.containerCount ) );
+		int i = 0, j = 0;
+		while ( i < containerCount || j < other.containerCount )
+		{
+			if ( j == other.containerCount
+					|| ( i < containerCount && keys[i] < other.keys[j] ) )
+			{
+				result.appendShared( keys[i], containers[i] );
+				i++;
+			}
+			else if ( i == containerCount || keys[i] > other.keys[j] )
+			{
+				result.appendShared( other.keys[j], other.containers[j] );
+				j++;
+			}
+			else
+			{
+				result.append( keys[i],
+						containers[i].or( other.containers[j] ) );
+				i++;
+				j++;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ints of this set which are not in the specified one.
+	 *
+	 * @param other
+	 * @return
+	 */
+	public CompressedIntSet andNot( CompressedIntSet other )
+	{
+		CompressedIntSet result = new CompressedIntSet( Math.max( 1,
+				containerCount ) );
+		int j = 0;
+		for ( int i = 0; i < containerCount; i++ )
+		{
+			while ( j < other.containerCount && other.keys[j] < keys[i] )
+				j++;
+			if ( j < other.containerCount && other.keys[j] == keys[i] )
+			{
+				Container c = containers[i].andNot( other.containers[j] );
+				if ( c.cardinality( ) > 0 )
+					result.append( keys[i], c );
+			}
+			else
+			{
+				result.appendShared( keys[i], containers[i] );
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the ints from 0 to the specified row count, exclusive, which
+	 * are not in this set.
+	 *
+	 * @param rowCount
+	 * @return
+	 */
+	public CompressedIntSet not( int rowCount )
+	{
+		return range( 0, rowCount ).andNot( this );
+	}
+
+	/**
+	 * Converts every container to its smallest representation.
+	 */
+	public void optimize( )
+	{
+		for ( int i = 0; i < containerCount; i++ )
+			containers[i] = containers[i].optimize( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#iterator()
+	 */
+	public IOrderedIntSetIterator iterator( )
+	{
+		return new IOrderedIntSetIterator( ) {
+
+			private int index = -1;
+			private ContainerIterator current;
+
+			public boolean hasNext( )
+			{
+				while ( current == null || !current.hasNext( ) )
+				{
+					if ( index + 1 >= containerCount )
+						return false;
+					index++;
+					current = containers[index].iterator( );
+				}
+				return true;
+			}
+
+			public int next( )
+			{
+				if ( !hasNext( ) )
+					throw new NoSuchElementException( );
+				return ( keys[index] << 16 ) | current.next( );
+			}
+		};
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#isEmpty()
+	 */
+	public boolean isEmpty( )
+	{
+		return containerCount == 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#size()
+	 */
+	public int size( )
+	{
+		int size = 0;
+		for ( int i = 0; i < containerCount; i++ )
+			size += containers[i].cardinality( );
+		return size;
+	}
+
+	/**
+	 * Writes this set, each container in its smallest representation.
+	 *
+	 * @param dos
+	 * @throws IOException
+	 */
+	public void writeTo( DataOutputStream dos ) throws IOException
+	{
+		optimize( );
+		IOUtil.writeInt( dos, containerCount );
+		for ( int i = 0; i < containerCount; i++ )
+		{
+			dos.writeChar( keys[i] );
+			containers[i].writeTo( dos );
+		}
+	}
+
+	/**
+	 * Reads a set written by {@link #writeTo}.
+	 *
+	 * @param dis
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompressedIntSet read( DataInputStream dis )
+			throws IOException
+	{
+		int count = IOUtil.readInt( dis );
+		CompressedIntSet result = new CompressedIntSet( Math.max( 1, count ) );
+		for ( int i = 0; i < count; i++ )
+		{
+			char key = dis.readChar( );
+			int type = dis.readByte( );
+			int length = IOUtil.readInt( dis );
+			Container c;
+			if ( type == BITMAP_CONTAINER )
+			{
+				long[] words = new long[BITMAP_WORDS];
+				for ( int w = 0; w < words.length; w++ )
+					words[w] = dis.readLong( );
+				c = new BitmapContainer( words, length );
+			}
+			else
+			{
+				int size = type == RUN_CONTAINER ? length * 2 : length;
+				char[] values = new char[size];
+				for ( int v = 0; v < size; v++ )
+					values[v] = dis.readChar( );
+				c = type == RUN_CONTAINER
+						? (Container) new RunContainer( values, length )
+						: new ArrayContainer( values, length );
+			}
+			result.append( key, c );
+		}
+		return result;
+	}
+
+	private int findKey( char key )
+	{
+		int low = 0;
+		int high = containerCount - 1;
+		while ( low <= high )
+		{
+			int middle = ( low + high ) >>> 1;
+			if ( keys[middle] < key )
+				low = middle + 1;
+			else if ( keys[middle] > key )
+				high = middle - 1;
+			else
+				return middle;
+		}
+		return -( low + 1 );
+	}
+
+	private void append( char key, Container container )
+	{
+		insert( containerCount, key, container );
+	}
+
+	/**
+	 * Appends a container of another set.
+	 */
+	private void appendShared( char key, Container container )
+	{
+		container.isShared = true;
+		insert( containerCount, key, container );
+	}
+
+	private void insert( int index, char key, Container container )
+	{
+		if ( containerCount == keys.length )
+		{
+			int capacity = keys.length * 2;
+			char[] newKeys = new char[capacity];
+			Container[] newContainers = new Container[capacity];
+			System.arraycopy( keys, 0, newKeys, 0, containerCount );
+			System.arraycopy( containers, 0, newContainers, 0, containerCount );
+			keys = newKeys;
+			containers = newContainers;
+		}
+		System.arraycopy( keys, index, keys, index + 1, containerCount - index );
+		System.arraycopy( containers,
+				index,
+				containers,
+				index + 1,
+				containerCount - index );
+		keys[index] = key;
+		containers[index] = container;
+		containerCount++;
+	}
+
+	/**
+	 * Returns the container of the smallest representation of a bitmap.
+	 *
+	 * @param words
+	 * @return
+	 */
+	private static Container fromWords( long[] words )
+	{
+		int cardinality = 0;
+		int runCount = 0;
+		long previous = 0;
+		for ( int i = 0; i < words.length; i++ )
+		{
+			long word = words[i];
+			cardinality += Long.bitCount( word );
+			// a run starts at a set bit whose lower neighbour is clear
+			runCount += Long.bitCount( word & ~( ( word << 1 ) | ( previous >>> 63 ) ) );
+			previous = word;
+		}
+
+		int type = getSmallestType( cardinality, runCount );
+		if ( type == RUN_CONTAINER )
+		{
+			char[] runs = new char[runCount * 2];
+			int w = 0;
+			long word = words[0];
+			for ( int r = 0; r < runs.length; )
+			{
+				while ( word == 0 )
+					word = words[++w];
+				int start = ( w << 6 ) + Long.numberOfTrailingZeros( word );
+				// set the bits below the start, the run ends at the first
+				// clear bit
+				word |= word - 1;
+				while ( word == -1L && w + 1 < BITMAP_WORDS )
+					word = words[++w];
+				int end;
+				if ( word == -1L )
+				{
+					end = BITMAP_WORDS * 64;
+					word = 0;
+				}
+				else
+				{
+					end = ( w << 6 ) + Long.numberOfTrailingZeros( ~word );
+					word &= word + 1;
+				}
+				runs[r++] = (char) start;
+				runs[r++] = (char) ( end - start - 1 );
+			}
+			return new RunContainer( runs, runCount );
+		}
+		if ( type == ARRAY_CONTAINER )
+		{
+			char[] values = new char[cardinality];
+			int n = 0;
+			for ( int w = 0; w < words.length; w++ )
+			{
+				long word = words[w];
+				while ( word != 0 )
+				{
+					values[n++] = (char) ( ( w << 6 ) + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+				}
+			}
+			return new ArrayContainer( values, cardinality );
+		}
+		return new BitmapContainer( words, cardinality );
+	}
+
+	/**
+	 * Returns the type of the container which takes the least space for the
+	 * specified number of values and runs of consecutive values.
+	 *
+	 * @param cardinality
+	 * @param runCount
+	 * @return
+	 */
+	private static int getSmallestType( int cardinality, int runCount )
+	{
+		int arraySize = cardinality <= MAX_ARRAY_SIZE ? cardinality * 2
+				: Integer.MAX_VALUE;
+		int runSize = runCount * 4;
+		if ( runSize < arraySize && runSize < BITMAP_WORDS * 8 )
+			return RUN_CONTAINER;
+		if ( arraySize < BITMAP_WORDS * 8 )
+			return ARRAY_CONTAINER;
+		return BITMAP_CONTAINER;
+	}
+
+	/**
+	 * An iterator over the low 16 bits of the ints of a container.
+	 */
+	private interface ContainerIterator
+	{
+
+		boolean hasNext( );
+
+		char next( );
+	}
+
+	/**
+	 * The low 16 bits of the ints sharing the same high 16 bits. All the
+	 * operations but add return a new container, and a container shared by
+	 * the result of a set operation is copied before being added to.
+	 */
+	private static abstract class Container
+	{
+
+		boolean isShared;
+
+		abstract int cardinality( );
+
+		abstract boolean contains( char value );
+
+		abstract Container add( char value );
+
+		abstract Container copy( );
+
+		abstract long[] toWords( );
+
+		abstract ContainerIterator iterator( );
+
+		abstract Container optimize( );
+
+		abstract void writeTo( DataOutputStream dos ) throws IOException;
+
+		Container and( Container other )
+		{
+			if ( other instanceof ArrayContainer )
+				return other.and( this );
+			long[] words = toWords( );
+			long[] otherWords = other.toWords( );
+			for ( int i = 0; i < words.length; i++ )
+				words[i] &= otherWords[i];
+			return fromWords( words );
+		}
+
+		Container or( Container other )
+		{
+			long[] words = toWords( );
+			long[] otherWords = other.toWords( );
+			for ( int i = 0; i < words.length; i++ )
+				words[i] |= otherWords[i];
+			return fromWords( words );
+		}
+
+		Container andNot( Container other )
+		{
+			long[] words = toWords( );
+			long[] otherWords = other.toWords( );
+			for ( int i = 0; i < words.length; i++ )
+				words[i] &= ~otherWords[i];
+			return fromWords( words );
+		}
+	}
+
+	/**
+	 * A container of a sorted array of values.
+	 */
+	private static class ArrayContainer extends Container
+	{
+
+		private char[] values;
+		private int cardinality;
+
+		ArrayContainer( char[] values, int cardinality )
+		{
+			this.values = values;
+			this.cardinality = cardinality;
+		}
+
+		int cardinality( )
+		{
+			return cardinality;
+		}
+
+		boolean contains( char value )
+		{
+			return indexOf( value ) >= 0;
+		}
+
+		private int indexOf( char value )
+		{
+			int low = 0;
+			int high = cardinality - 1;
+			while ( low <= high )
+			{
+				int middle = ( low + high ) >>> 1;
+				if ( values[middle] < value )
+					low = middle + 1;
+				else if ( values[middle] > value )
+					high = middle - 1;
+				else
+					return middle;
+			}
+			return -( low + 1 );
+		}
+
+		Container add( char value )
+		{
+			int index = cardinality > 0 && values[cardinality - 1] < value
+					? -( cardinality + 1 ) : indexOf( value );
+			if ( index >= 0 )
+				return this;
+			if ( cardinality == MAX_ARRAY_SIZE )
+				return new BitmapContainer( toWords( ), cardinality ).add( value );
+
+			index = -index - 1;
+			if ( cardinality == values.length )
+			{
+				char[] newValues = new char[Math.min( MAX_ARRAY_SIZE,
+						Math.max( 4, cardinality * 2 ) )];
+				System.arraycopy( values, 0, newValues, 0, cardinality );
+				values = newValues;
+			}
+			System.arraycopy( values, index, values, index + 1, cardinality
+					- index );
+			values[index] = value;
+			cardinality++;
+			return this;
+		}
+
+		Container copy( )
+		{
+			char[] result = new char[cardinality];
+			System.arraycopy( values, 0, result, 0, cardinality );
+			return new ArrayContainer( result, cardinality );
+		}
+
+		long[] toWords( )
+		{
+			long[] words = new long[BITMAP_WORDS];
+			for ( int i = 0; i < cardinality; i++ )
+				words[values[i] >>> 6] |= 1L << values[i];
+			return words;
+		}
+
+		Container and( Container other )
+		{
+			char[] result = new char[cardinality];
+			int n = 0;
+			if ( other instanceof ArrayContainer )
+			{
+				ArrayContainer array = (ArrayContainer) other;
+				int i = 0, j = 0;
+				while ( i < cardinality && j < array.cardinality )
+				{
+					if ( values[i] < array.values[j] )
+						i++;
+					else if ( values[i] > array.values[j] )
+						j++;
+					else
+					{
+						result[n++] = values[i];
+						i++;
+						j++;
+					}
+				}
+			}
+			else
+			{
+				for ( int i = 0; i < cardinality; i++ )
+				{
+					if ( other.contains( values[i] ) )
+						result[n++] = values[i];
+				}
+			}
+			return new ArrayContainer( result, n );
+		}
+
+		Container or( Container other )
+		{
+			if ( !( other instanceof ArrayContainer ) )
+				return super.or( other );
+			ArrayContainer array = (ArrayContainer) other;
+			char[] result = new char[cardinality + array.cardinality];
+			int n = 0;
+			int i = 0, j = 0;
+			while ( i < cardinality || j < array.cardinality )
+			{
+				if ( j == array.cardinality
+						|| ( i < cardinality && values[i] < array.values[j] ) )
+					result[n++] = values[i++];
+				else if ( i == cardinality || values[i] > array.values[j] )
+					result[n++] = array.values[j++];
+				else
+				{
+					result[n++] = values[i++];
+					j++;
+				}
+			}
+			if ( n > MAX_ARRAY_SIZE )
+				return new ArrayContainer( result, n ).optimize( );
+			return new ArrayContainer( result, n );
+		}
+
+		Container andNot( Container other )
+		{
+			char[] result = new char[cardinality];
+			int n = 0;
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				if ( !other.contains( values[i] ) )
+					result[n++] = values[i];
+			}
+			return new ArrayContainer( result, n );
+		}
+
+		ContainerIterator iterator( )
+		{
+			return new ContainerIterator( ) {
+
+				private int index = 0;
+
+				public boolean hasNext( )
+				{
+					return index < cardinality;
+				}
+
+				public char next( )
+				{
+					return values[index++];
+				}
+			};
+		}
+
+		Container optimize( )
+		{
+			int runCount = 0;
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				if ( i == 0 || values[i] != values[i - 1] + 1 )
+					runCount++;
+			}
+			int type = getSmallestType( cardinality, runCount );
+			if ( type == BITMAP_CONTAINER )
+				return new BitmapContainer( toWords( ), cardinality );
+			if ( type == ARRAY_CONTAINER )
+				return this;
+
+			char[] runs = new char[runCount * 2];
+			int r = -1;
+			for ( int i = 0; i < cardinality; i++ )
+			{
+				if ( i == 0 || values[i] != values[i - 1] + 1 )
+				{
+					r++;
+					runs[2 * r] = values[i];
+					runs[2 * r + 1] = 0;
+				}
+				else
+				{
+					runs[2 * r + 1]++;
+				}
+			}
+			return new RunContainer( runs, runCount );
+		}
+
+		void writeTo( DataOutputStream dos ) throws IOException
+		{
+			dos.writeByte( ARRAY_CONTAINER );
+			IOUtil.writeInt( dos, cardinality );
+			for ( int i = 0; i < cardinality; i++ )
+				dos.writeChar( values[i] );
+		}
+	}
+
+	/**
+	 * A container of a bitmap of 2^16 bits.
+	 */
+	private static class BitmapContainer extends Container
+	{
+
+		private long[] words;
+		private int cardinality;
+
+		BitmapContainer( long[] words, int cardinality )
+		{
+			this.words = words;
+			this.cardinality = cardinality;
+		}
+
+		int cardinality( )
+		{
+			return cardinality;
+		}
+
+		boolean contains( char value )
+		{
+			return ( words[value >>> 6] & ( 1L << value ) ) != 0;
+		}
+
+		Container add( char value )
+		{
+			if ( !contains( value ) )
+			{
+				words[value >>> 6] |= 1L << value;
+				cardinality++;
+			}
+			return this;
+		}
+
+		Container copy( )
+		{
+			return new BitmapContainer( toWords( ), cardinality );
+		}
+
+		long[] toWords( )
+		{
+			long[] result = new long[BITMAP_WORDS];
+			System.arraycopy( words, 0, result, 0, BITMAP_WORDS );
+			return result;
+		}
+
+		ContainerIterator iterator( )
+		{
+			return new ContainerIterator( ) {
+
+				private int index = 0;
+				private long word = words[0];
+
+				public boolean hasNext( )
+				{
+					while ( word == 0 )
+					{
+						if ( index + 1 >= BITMAP_WORDS )
+							return false;
+						word = words[++index];
+					}
+					return true;
+				}
+
+				public char next( )
+				{
+					hasNext( );
+					char result = (char) ( ( index << 6 ) + Long.numberOfTrailingZeros( word ) );
+					word &= word - 1;
+					return result;
+				}
+			};
+		}
+
+		Container optimize( )
+		{
+			Container result = fromWords( words );
+			// keep this container rather than one sharing its words
+			return result instanceof BitmapContainer ? this : result;
+		}
+
+		void writeTo( DataOutputStream dos ) throws IOException
+		{
+			dos.writeByte( BITMAP_CONTAINER );
+			IOUtil.writeInt( dos, cardinality );
+			for ( int i = 0; i < BITMAP_WORDS; i++ )
+				dos.writeLong( words[i] );
+		}
+	}
+
+	/**
+	 * A container of runs of consecutive values, each run being stored as
+	 * its start and its length minus one.
+	 */
+	private static class RunContainer extends Container
+	{
+
+		private char[] runs;
+		private int runCount;
+
+		RunContainer( char[] runs, int runCount )
+		{
+			this.runs = runs;
+			this.runCount = runCount;
+		}
+
+		int cardinality( )
+		{
+			int cardinality = 0;
+			for ( int i = 0; i < runCount; i++ )
+				cardinality += runs[2 * i + 1] + 1;
+			return cardinality;
+		}
+
+		boolean contains( char value )
+		{
+			int low = 0;
+			int high = runCount - 1;
+			while ( low <= high )
+			{
+				int middle = ( low + high ) >>> 1;
+				int start = runs[2 * middle];
+				if ( value < start )
+					high = middle - 1;
+				else if ( value > start + runs[2 * middle + 1] )
+					low = middle + 1;
+				else
+					return true;
+			}
+			return false;
+		}
+
+		Container add( char value )
+		{
+			if ( contains( value ) )
+				return this;
+			return new BitmapContainer( toWords( ), cardinality( ) ).add( value );
+		}
+
+		Container copy( )
+		{
+			// never modified in place
+			return this;
+		}
+
+		long[] toWords( )
+		{
+			long[] words = new long[BITMAP_WORDS];
+			for ( int i = 0; i < runCount; i++ )
+			{
+				int start = runs[2 * i];
+				int end = start + runs[2 * i + 1];
+				int startWord = start >>> 6;
+				int endWord = end >>> 6;
+				for ( int w = startWord; w <= endWord; w++ )
+				{
+					long mask = -1L;
+					if ( w == startWord )
+						mask &= -1L << start;
+					if ( w == endWord )
+						mask &= -1L >>> ( 63 - ( end & 63 ) );
+					words[w] |= mask;
+				}
+			}
+			return words;
+		}
+
+		ContainerIterator iterator( )
+		{
+			return new ContainerIterator( ) {
+
+				private int run = 0;
+				private int offset = 0;
+
+				public boolean hasNext( )
+				{
+					return run < runCount;
+				}
+
+				public char next( )
+				{
+					char result = (char) ( runs[2 * run] + offset );
+					if ( offset == runs[2 * run + 1] )
+					{
+						run++;
+						offset = 0;
+					}
+					else
+					{
+						offset++;
+					}
+					return result;
+				}
+			};
+		}
+
+		Container optimize( )
+		{
+			// the runs may be adjacent, e.g. if read from a stream
+			int mergedRunCount = 0;
+			for ( int i = 0; i < runCount; i++ )
+			{
+				if ( i == 0
+						|| runs[2 * i] != runs[2 * i - 2] + runs[2 * i - 1] + 1 )
+					mergedRunCount++;
+			}
+			int cardinality = cardinality( );
+			int type = getSmallestType( cardinality, mergedRunCount );
+			if ( type == BITMAP_CONTAINER )
+				return new BitmapContainer( toWords( ), cardinality );
+			if ( type == RUN_CONTAINER && mergedRunCount == runCount )
+				return this;
+			if ( type == RUN_CONTAINER )
+				return fromWords( toWords( ) );
+
+			char[] values = new char[cardinality];
+			int n = 0;
+			for ( int i = 0; i < runCount; i++ )
+			{
+				int start = runs[2 * i];
+				int end = start + runs[2 * i + 1];
+				for ( int value = start; value <= end; value++ )
+					values[n++] = (char) value;
+			}
+			return new ArrayContainer( values, cardinality );
+		}
+
+		void writeTo( DataOutputStream dos ) throws IOException
+		{
+			dos.writeByte( RUN_CONTAINER );
+			IOUtil.writeInt( dos, runCount );
+			for ( int i = 0; i < runCount * 2; i++ )
+				dos.writeChar( runs[i] );
+		}
+	}
+}
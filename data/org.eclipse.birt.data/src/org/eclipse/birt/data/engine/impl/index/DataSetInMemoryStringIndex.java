@@ -14,11 +14,8 @@ package org.eclipse.birt.data.engine.impl.index;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.lang.ref.SoftReference;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -38,43 +35,58 @@ public class DataSetInMemoryStringIndex extends HashMap
 		super( );
 		DataInputStream dis = new DataInputStream( indexStream );
 		int size = IOUtil.readInt( indexStream );
+		// the row ids of an index written before the bitmap format are int
+		// lists
+		boolean isBitmap = size == SerializableBirtHash.BITMAP_INDEX_VERSION;
+		if ( isBitmap )
+			size = IOUtil.readInt( dis );
 		for ( int i = 0; i < size; i++ )
 		{
 			long offset = IOUtil.readLong( dis );
 			if ( SerializableBirtHash.NULL_VALUE_OFFSET == offset )
 			{
-				super.put( null, new WrapperedValue( null,
-						IOUtil.readIntList( dis ) ) );
+				super.put( null, new WrapperedValue( null, readIndex( dis,
+						isBitmap ) ) );
 			}
 			else if ( SerializableBirtHash.NOT_HASH_VALUE_OFFSET == offset )
 			{
 				String keyValue = IOUtil.readString( dis );
 				super.put( keyValue, new WrapperedValue( keyValue,
-						IOUtil.readIntList( dis ) ) );
+						readIndex( dis, isBitmap ) ) );
 			}
 			else
 			{
 				Integer keyValue = IOUtil.readInt( dis );
 				super.put( keyValue, new WrapperedValue( valueStream,
-						IOUtil.readIntList( dis ),
+						readIndex( dis, isBitmap ),
 						offset ) );
 			}
 		}
 	}
 
-	public IOrderedIntSet getKeyIndex ( Object key, int searchType ) throws DataException
+	/**
+	 * Reads the row ids of a key.
+	 * 
+	 * @param dis
+	 * @param isBitmap
+	 * @return
+	 * @throws IOException
+	 */
+	private static CompressedIntSet readIndex( DataInputStream dis,
+			boolean isBitmap ) throws IOException
 	{
-		ArrayList fastSet = new ArrayList();
-		for( int i : this.getKeyIndex1( key, searchType) )
-		{
-			fastSet.add( i );
-		}
-		Collections.sort( fastSet );
-		
-		return new OrderedIntSet( fastSet );
+		if ( isBitmap )
+			return CompressedIntSet.read( dis );
+
+		CompressedIntSet index = new CompressedIntSet( );
+		List rowIds = IOUtil.readIntList( dis );
+		for ( int i = 0; i < rowIds.size( ); i++ )
+			index.add( ( (Integer) rowIds.get( i ) ).intValue( ) );
+		index.optimize( );
+		return index;
 	}
-	
-	public Set<Integer> getKeyIndex1( Object key, int searchType )
+
+	public IOrderedIntSet getKeyIndex( Object key, int searchType )
 			throws DataException
 	{
 		if ( searchType != IConditionalExpression.OP_EQ
@@ -85,20 +97,32 @@ public class DataSetInMemoryStringIndex extends HashMap
 		else
 		{
 			List candidate = (List) key;
-			Set<Integer> result = new HashSet<Integer>( );
+			CompressedIntSet result = new CompressedIntSet( );
 			for ( Object eachKey : candidate )
 			{
-				result.addAll( getKeyIndex( eachKey ) );
+				result = result.or( getKeyIndex( eachKey ) );
 			}
 			return result;
 		}
 	}
+	
+	public Set<Integer> getKeyIndex1( Object key, int searchType )
+			throws DataException
+	{
+		Set<Integer> result = new HashSet<Integer>( );
+		IOrderedIntSetIterator iterator = getKeyIndex( key, searchType ).iterator( );
+		while ( iterator.hasNext( ) )
+		{
+			result.add( iterator.next( ) );
+		}
+		return result;
+	}
 
-	private Set<Integer> getKeyIndex( Object key ) throws DataException
+	private CompressedIntSet getKeyIndex( Object key ) throws DataException
 	{
 		Object result = getWrappedKey( key );
 		if ( result == null )
-			return new HashSet( );
+			return new CompressedIntSet( );
 		else
 			return ( (WrapperedValue) result ).getIndex( );
 	}
@@ -155,23 +179,24 @@ public class DataSetInMemoryStringIndex extends HashMap
 
 		private long keyOffset;
 		private RAInputStream keyStream;
-		private Set index = new HashSet();
+		private CompressedIntSet index;
 		private Object keyValue;
 
-		WrapperedValue( RAInputStream keyStream, List index, long keyOffset )
+		WrapperedValue( RAInputStream keyStream, CompressedIntSet index,
+				long keyOffset )
 		{
 			this.keyOffset = keyOffset;
 			this.keyStream = keyStream;
-			this.index.addAll( index );
+			this.index = index;
 		}
 
-		WrapperedValue( String keyValue, List index )
+		WrapperedValue( String keyValue, CompressedIntSet index )
 		{
 			this.keyValue = keyValue;
-			this.index.addAll( index );
+			this.index = index;
 		}
 
-		public Set getIndex( )
+		public CompressedIntSet getIndex( )
 		{
 			return this.index;
 		}
@@ -248,64 +273,14 @@ public class DataSetInMemoryStringIndex extends HashMap
 	
 	public IOrderedIntSet getAllKeyRows( ) throws DataException
 	{
-		List arrayList = new ArrayList();
+		CompressedIntSet result = new CompressedIntSet( );
 		Object[] values = this.values( ).toArray( );
 		for( int i = 0; i < values.length; i++ )
 		{
-			Iterator iterator = ( ( WrapperedValue )values[i] ).getIndex( ).iterator( );
-			arrayList.add(  (Integer) iterator.next( ) );
+			IOrderedIntSetIterator iterator = ( ( WrapperedValue )values[i] ).getIndex( ).iterator( );
+			if ( iterator.hasNext( ) )
+				result.add( iterator.next( ) );
 		}
-		Collections.sort( arrayList );
-		return new OrderedIntSet( arrayList );
-	}
-	
-	private class OrderedIntSet implements IOrderedIntSet
-	{
-		private List values;
-		
-		public OrderedIntSet( List values )
-		{
-			this.values = values;
-		}
-		
-		/* (non-Javadoc)
-		 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#iterator()
-		 */
-		public IOrderedIntSetIterator iterator( )
-		{
-			return new IOrderedIntSetIterator(){
-
-				int i = 0;
-				public boolean hasNext( )
-				{
-					return values.size( ) <= i;
-				}
-
-				public int next( )
-				{
-					int result = (Integer) values.get( i );
-					i++;
-					return result;
-				}
-				
-			};
-		}
-
-		/* (non-Javadoc)
-		 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#isEmpty()
-		 */
-		public boolean isEmpty( )
-		{
-			return this.values.isEmpty( );
-		}
-
-		/* (non-Javadoc)
-		 * @see org.eclipse.birt.data.engine.impl.index.IOrderedIntSet#size()
-		 */
-		public int size( )
-		{
-			return this.values.size( );
-		}
-		
+		return result;
 	}
 }
@@ -23,12 +23,16 @@ import org.eclipse.birt.core.archive.RAOutputStream;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.impl.document.stream.StreamManager;
+import org.eclipse.birt.data.engine.impl.document.stream.VersionManager;
 
 public class SerializableBirtHash extends HashMap implements IIndexSerializer
 {
 
 	public static int NULL_VALUE_OFFSET = -2;
 	public static int NOT_HASH_VALUE_OFFSET = -3;
+	// written in place of the key count from VersionManager.VERSION_4_3_0_1
+	// on, the row ids of the keys are CompressedIntSets instead of int lists
+	public static final int BITMAP_INDEX_VERSION = -1;
 
 	private boolean closed = false;
 	private HashSet valueSet = new HashSet( );
@@ -91,6 +95,10 @@ public class SerializableBirtHash extends HashMap implements IIndexSerializer
 			RAOutputStream valueStream = this.manager.getOutStream( valueName );
 			DataOutputStream dis = new DataOutputStream( indexStream );
 			DataOutputStream dvs = new DataOutputStream( valueStream );
+			// the readers of older documents do not know the bitmap format
+			boolean isBitmap = this.manager.getVersion( ) >= VersionManager.VERSION_4_3_0_1;
+			if ( isBitmap )
+				IOUtil.writeInt( dis, BITMAP_INDEX_VERSION );
 			IOUtil.writeInt( dis, this.keySet( ).size( ) );
 			Iterator entryIterator = this.entrySet( ).iterator( );
 			while ( entryIterator.hasNext( ) )
@@ -100,7 +108,7 @@ public class SerializableBirtHash extends HashMap implements IIndexSerializer
 				if ( entry.getKey( ) == null )
 				{
 					IOUtil.writeLong( dis, NULL_VALUE_OFFSET );
-					IOUtil.writeIntList( dis, (List) entry.getValue( ) );
+					writeIndex( dis, (List) entry.getValue( ), isBitmap );
 					continue;
 				}
 				int hash = entry.getKey( ) == null ? 0 : entry.getKey( ).hashCode( );
@@ -108,14 +116,14 @@ public class SerializableBirtHash extends HashMap implements IIndexSerializer
 				{
 					IOUtil.writeLong( dis, valueStream.getOffset( ) );
 					IOUtil.writeInt( dis, hash );
-					IOUtil.writeIntList( dis, (List) entry.getValue( ) );
+					writeIndex( dis, (List) entry.getValue( ), isBitmap );
 					IOUtil.writeString( dvs, entry.getKey( ).toString( ) );
 				}
 				else
 				{
 					IOUtil.writeLong( dis, NOT_HASH_VALUE_OFFSET );
 					IOUtil.writeString( dis, entry.getKey( ).toString( ) );
-					IOUtil.writeIntList( dis, (List) entry.getValue( ) );
+					writeIndex( dis, (List) entry.getValue( ), isBitmap );
 				}
 			}
 			indexStream.close( );
@@ -126,4 +134,27 @@ public class SerializableBirtHash extends HashMap implements IIndexSerializer
 			throw new DataException( e.getLocalizedMessage( ), e );
 		}
 	}
+
+	/**
+	 * Writes the row ids of a key as a CompressedIntSet, or as an int list if
+	 * the document is older than the bitmap format.
+	 * 
+	 * @param dis
+	 * @param rowIds
+	 * @param isBitmap
+	 * @throws IOException
+	 */
+	private static void writeIndex( DataOutputStream dis, List rowIds,
+			boolean isBitmap ) throws IOException
+	{
+		if ( !isBitmap )
+		{
+			IOUtil.writeIntList( dis, rowIds );
+			return;
+		}
+		CompressedIntSet index = new CompressedIntSet( );
+		for ( int i = 0; i < rowIds.size( ); i++ )
+			index.add( ( (Integer) rowIds.get( i ) ).intValue( ) );
+		index.writeTo( dis );
+	}
 }
@@ -0,0 +1,374 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * This implementation of IMatchResultObjectSeeker finds the matched
+ * IResultObject instances with a hash table over the rows of the build side,
+ * so that the build side needs not be sorted on the join keys. The table is
+ * an open addressing table of int arrays: each slot holds one hash code and
+ * the chain of the rows with that hash code, in the order they were added.
+ * Since two keys of different types may be equal, e.g. an Integer and a
+ * Double, a key is hashed after being converted to the type of the build side
+ * key values, and every candidate row is checked with the join condition
+ * matcher.
+ */
+public class HashJoinResultObjectSeeker implements IMatchResultObjectSeeker
+{
+
+	// the type of the non-null build side values of a key
+	private static final int KEY_TYPE_UNKNOWN = 0;
+	private static final int KEY_TYPE_NUMBER = 1;
+	private static final int KEY_TYPE_DATE = 2;
+	private static final int KEY_TYPE_STRING = 3;
+	// mixed or other types, the key is not hashed
+	private static final int KEY_TYPE_ANY = 4;
+
+	private static final int EMPTY_SLOT = -1;
+	private static final int INITIAL_ROW_CAPACITY = 64;
+
+	private IJoinConditionMatcher matcher;
+	private boolean isBuildLeft;
+
+	private List<IResultObject> rows = new ArrayList<IResultObject>( );
+	private List<Object[]> rowKeys = new ArrayList<Object[]>( );
+	private int[] keyTypes;
+
+	// the hash table, built on the first probe
+	private boolean isIndexed;
+	private int[] slotHashes;
+	private int[] slotHeads;
+	private int[] nextRows;
+
+	// the current probe
+	private Object[] probeKeys;
+	private boolean isScanning;
+	private int candidateRow;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param matcher
+	 * @param isBuildLeft
+	 *            whether the rows of the build side come from the left data
+	 *            set
+	 */
+	public HashJoinResultObjectSeeker( IJoinConditionMatcher matcher,
+			boolean isBuildLeft )
+	{
+		this.matcher = matcher;
+		this.isBuildLeft = isBuildLeft;
+		this.candidateRow = EMPTY_SLOT;
+	}
+
+	/**
+	 * Adds a row of the build side.
+	 *
+	 * @param row
+	 * @param keys
+	 *            the values of the join keys of the row
+	 */
+	void add( IResultObject row, Object[] keys )
+	{
+		if ( keyTypes == null )
+			keyTypes = new int[keys.length];
+		for ( int i = 0; i < keys.length; i++ )
+		{
+			if ( keys[i] == null || keyTypes[i] == KEY_TYPE_ANY )
+				continue;
+			int type = getKeyType( keys[i] );
+			if ( keyTypes[i] == KEY_TYPE_UNKNOWN )
+				keyTypes[i] = type;
+			else if ( keyTypes[i] != type )
+				keyTypes[i] = KEY_TYPE_ANY;
+		}
+		rows.add( row );
+		rowKeys.add( keys );
+		isIndexed = false;
+	}
+
+	/**
+	 * Returns the number of rows of the build side.
+	 *
+	 * @return
+	 */
+	int size( )
+	{
+		return rows.size( );
+	}
+
+	/**
+	 * Removes all the rows of the build side.
+	 */
+	void clear( )
+	{
+		rows.clear( );
+		rowKeys.clear( );
+		keyTypes = null;
+		isIndexed = false;
+		slotHashes = null;
+		slotHeads = null;
+		nextRows = null;
+		probeKeys = null;
+		candidateRow = EMPTY_SLOT;
+	}
+
+	/**
+	 * Starts the seeking of the rows which match the specified join key
+	 * values of a probe side row.
+	 *
+	 * @param keys
+	 * @throws DataException
+	 */
+	void setProbeKeys( Object[] keys ) throws DataException
+	{
+		if ( !isIndexed )
+			buildIndex( );
+
+		// the keys are hashed even if they are equal to the previous ones:
+		// equal keys of different types, e.g. an Integer and a String, may
+		// not be hashed the same way
+		probeKeys = keys;
+		isScanning = false;
+		candidateRow = EMPTY_SLOT;
+		if ( rows.isEmpty( ) )
+			return;
+
+		int hash = 0;
+		for ( int i = 0; i < keys.length && !isScanning; i++ )
+		{
+			int keyHash = hashProbeKey( i, keys[i] );
+			if ( keyHash == EMPTY_SLOT )
+				isScanning = true;
+			else
+				hash = hash * 31 + keyHash;
+		}
+
+		if ( isScanning )
+		{
+			// the key can't be hashed like the build side keys, check all
+			// the rows
+			candidateRow = 0;
+		}
+		else
+		{
+			candidateRow = slotHeads[findSlot( hash )];
+		}
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#getNextMatchedResultObject(int)
+	 */
+	public IResultObject getNextMatchedResultObject( int currentPrimaryIndex )
+			throws DataException
+	{
+		while ( candidateRow != EMPTY_SLOT )
+		{
+			int row = candidateRow;
+			if ( isScanning )
+				candidateRow = row + 1 < rows.size( ) ? row + 1 : EMPTY_SLOT;
+			else
+				candidateRow = nextRows[row];
+
+			if ( matcher.compare( probeKeys, rowKeys.get( row ) ) == 0 )
+				return rows.get( row );
+		}
+		return null;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.impl.jointdataset.IMatchResultObjectSeeker#setResultIterator(org.eclipse.birt.data.engine.odi.IResultIterator)
+	 */
+	public void setResultIterator( IResultIterator ri ) throws DataException
+	{
+		clear( );
+		while ( ri.getCurrentResult( ) != null )
+		{
+			add( ri.getCurrentResult( ), matcher.getCompareValue( isBuildLeft ) );
+			ri.next( );
+		}
+	}
+
+	/**
+	 * Builds the hash table of the rows added so far.
+	 */
+	private void buildIndex( )
+	{
+		int capacity = INITIAL_ROW_CAPACITY;
+		while ( capacity < rows.size( ) * 2 )
+			capacity <<= 1;
+
+		slotHashes = new int[capacity];
+		slotHeads = new int[capacity];
+		int[] slotTails = new int[capacity];
+		Arrays.fill( slotHeads, EMPTY_SLOT );
+		nextRows = new int[rows.size( )];
+
+		for ( int row = 0; row < rows.size( ); row++ )
+		{
+			Object[] keys = rowKeys.get( row );
+			int hash = 0;
+			for ( int i = 0; i < keys.length; i++ )
+				hash = hash * 31 + hashBuildKey( i, keys[i] );
+
+			nextRows[row] = EMPTY_SLOT;
+			int slot = findSlot( hash );
+			if ( slotHeads[slot] == EMPTY_SLOT )
+			{
+				slotHashes[slot] = hash;
+				slotHeads[slot] = row;
+			}
+			else
+			{
+				nextRows[slotTails[slot]] = row;
+			}
+			slotTails[slot] = row;
+		}
+		isIndexed = true;
+	}
+
+	/**
+	 * Returns the slot of the specified hash code, or the empty slot where it
+	 * would be.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	private int findSlot( int hash )
+	{
+		int mask = slotHeads.length - 1;
+		int slot = mix( hash ) & mask;
+		while ( slotHeads[slot] != EMPTY_SLOT && slotHashes[slot] != hash )
+			slot = ( slot + 1 ) & mask;
+		return slot;
+	}
+
+	/**
+	 * Spreads the bits of a hash code, so that the codes of consecutive
+	 * integers don't fill adjacent slots.
+	 *
+	 * @param hash
+	 * @return
+	 */
+	private static int mix( int hash )
+	{
+		hash *= 0x9E3779B9;
+		return hash ^ ( hash >>> 16 );
+	}
+
+	/**
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int getKeyType( Object value )
+	{
+		if ( value instanceof Number )
+			return KEY_TYPE_NUMBER;
+		if ( value instanceof Date )
+			return KEY_TYPE_DATE;
+		if ( value instanceof String )
+			return KEY_TYPE_STRING;
+		return KEY_TYPE_ANY;
+	}
+
+	/**
+	 * Returns the hash code of a build side key value.
+	 *
+	 * @param index
+	 * @param value
+	 * @return
+	 */
+	private int hashBuildKey( int index, Object value )
+	{
+		if ( value == null || keyTypes[index] == KEY_TYPE_ANY )
+			return 0;
+		// all the non-null values have the type of the key
+		return hashValue( value );
+	}
+
+	/**
+	 * Returns the hash code of a probe side key value, or EMPTY_SLOT if it
+	 * can't be hashed like the build side values of the key.
+	 *
+	 * @param index
+	 * @param value
+	 * @return
+	 */
+	private int hashProbeKey( int index, Object value )
+	{
+		int keyType = keyTypes[index];
+		if ( value == null || keyType == KEY_TYPE_ANY )
+			return 0;
+		if ( keyType == KEY_TYPE_UNKNOWN )
+			// only null values on the build side
+			return EMPTY_SLOT;
+
+		int type = getKeyType( value );
+		if ( type == keyType )
+			return hashValue( value );
+
+		// values are converted the way ScriptEvalUtil.compare does
+		try
+		{
+			if ( keyType == KEY_TYPE_NUMBER && type == KEY_TYPE_STRING )
+				return hashValue( DataTypeUtil.toDouble( value ) );
+			if ( keyType == KEY_TYPE_DATE && type == KEY_TYPE_STRING )
+				return hashValue( DataTypeUtil.toDate( value ) );
+		}
+		catch ( BirtException e )
+		{
+			// compared as strings instead
+		}
+		return EMPTY_SLOT;
+	}
+
+	/**
+	 * Hashes a value so that the values equal to each other by
+	 * ScriptEvalUtil.compare have the same hash code, e.g. the numbers of
+	 * different types are hashed by their double value.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int hashValue( Object value )
+	{
+		long bits;
+		if ( value instanceof Number )
+		{
+			double number = ( (Number) value ).doubleValue( );
+			bits = number == 0 ? 0 : Double.doubleToLongBits( number );
+		}
+		else if ( value instanceof Date )
+		{
+			bits = ( (Date) value ).getTime( );
+		}
+		else
+		{
+			return value.hashCode( ) & 0x7FFFFFFF;
+		}
+		return (int) ( bits ^ ( bits >>> 32 ) ) & 0x7FFFFFFF;
+	}
+}
@@ -0,0 +1,392 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.impl.jointdataset;
+
+import java.util.BitSet;
+
+import org.eclipse.birt.data.engine.api.IJointDataSetDesign;
+import org.eclipse.birt.data.engine.cache.CachedList;
+import org.eclipse.birt.data.engine.cache.ICachedObject;
+import org.eclipse.birt.data.engine.cache.ICachedObjectCreator;
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.executor.ResultObject;
+import org.eclipse.birt.data.engine.executor.cache.SizeOfUtil;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
+import org.eclipse.birt.data.engine.odi.IDataSetPopulator;
+import org.eclipse.birt.data.engine.odi.IResultClass;
+import org.eclipse.birt.data.engine.odi.IResultIterator;
+import org.eclipse.birt.data.engine.odi.IResultObject;
+
+/**
+ * An implementation of IDataSetPopulator which deals with inner, left outer,
+ * and right outer joins by hashing. The rows of the secondary iterator, which
+ * needs not be sorted, are put in a HashJoinResultObjectSeeker, and the rows
+ * of the primary iterator are matched against it in their order.
+ * <p>
+ * If the secondary rows don't fit in the memory buffer size, they are hashed
+ * in several passes, each pass holding as many rows as fit in memory. The
+ * primary rows are then saved to disk during the first pass and read back by
+ * the following ones, and the unmatched primary rows of an outer join are
+ * returned by the last pass.
+ */
+public class HashJointDataSetPopulator implements IDataSetPopulator
+{
+
+	private JointResultMetadata meta;
+
+	private IResultIterator primaryIterator;
+	private IResultIterator secondaryIterator;
+	private IResultClass primaryResultClass;
+	private int joinType;
+
+	private IJoinConditionMatcher jcm;
+	private HashJoinResultObjectSeeker seeker;
+
+	private DataEngineSession session;
+	private long memoryBufferSize;
+	private SizeOfUtil sizeOfUtil;
+
+	private IResultObject curPrimaryResultObject;
+	private int curPrimaryIndex;
+	private boolean curPrimaryMatched;
+
+	private boolean beInitialized = false;
+	private boolean isLastPass;
+
+	// the primary rows saved for the passes after the first one
+	private CachedList savedPrimaryRows;
+	// the primary rows matched by the previous passes
+	private BitSet matchedPrimaryRows;
+	private boolean isFirstPass;
+
+	private int rowFetchLimit;
+	private int rowCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param left
+	 * @param right
+	 * @param meta
+	 * @param jcm
+	 * @param joinType
+	 * @param session
+	 * @param rowFetchLimit
+	 * @param memoryBufferSize
+	 *            the memory size in bytes the secondary rows may take, 0 if
+	 *            unlimited
+	 * @throws DataException
+	 */
+	public HashJointDataSetPopulator( IResultIterator left,
+			IResultIterator right, JointResultMetadata meta,
+			IJoinConditionMatcher jcm, int joinType, DataEngineSession session,
+			int rowFetchLimit, long memoryBufferSize ) throws DataException
+	{
+		assert joinType != IJointDataSetDesign.FULL_OUTER_JOIN;
+
+		this.meta = meta;
+		this.joinType = joinType;
+		this.jcm = jcm;
+		this.session = session;
+		if ( isPrimaryLeft( ) )
+		{
+			this.primaryIterator = left;
+			this.secondaryIterator = right;
+		}
+		else
+		{
+			this.primaryIterator = right;
+			this.secondaryIterator = left;
+		}
+		this.seeker = new HashJoinResultObjectSeeker( jcm, !isPrimaryLeft( ) );
+
+		this.memoryBufferSize = memoryBufferSize;
+		this.rowFetchLimit = rowFetchLimit;
+		this.rowCount = 0;
+	}
+
+	/**
+	 * Return whether primary iterator is left.
+	 *
+	 * @return
+	 */
+	private boolean isPrimaryLeft( )
+	{
+		return joinType != IJointDataSetDesign.RIGHT_OUTER_JOIN;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.odi.IDataSetPopulator#next()
+	 */
+	public IResultObject next( ) throws DataException
+	{
+		if ( this.rowFetchLimit <= 0 || this.rowCount < this.rowFetchLimit )
+		{
+			IResultObject result = doNext( );
+			if ( result != null )
+				this.rowCount++;
+			return result;
+		}
+
+		return null;
+	}
+
+	/**
+	 *
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject doNext( ) throws DataException
+	{
+		if ( !beInitialized )
+		{
+			initialize( );
+			beInitialized = true;
+		}
+
+		while ( true )
+		{
+			if ( curPrimaryResultObject == null && !fetchPrimaryObject( ) )
+			{
+				if ( !startNextPass( ) )
+					return null;
+				continue;
+			}
+
+			IResultObject secondary = seeker.getNextMatchedResultObject( curPrimaryIndex );
+			if ( secondary != null )
+			{
+				curPrimaryMatched = true;
+				return createResultObject( curPrimaryResultObject, secondary );
+			}
+
+			IResultObject primary = curPrimaryResultObject;
+			boolean isMatched = curPrimaryMatched
+					|| ( matchedPrimaryRows != null && matchedPrimaryRows.get( curPrimaryIndex ) );
+			curPrimaryResultObject = null;
+			if ( !isLastPass )
+			{
+				if ( isMatched )
+					matchedPrimaryRows.set( curPrimaryIndex );
+			}
+			else if ( !isMatched
+					&& joinType != IJointDataSetDesign.INNER_JOIN )
+			{
+				return createResultObject( primary, null );
+			}
+		}
+	}
+
+	/**
+	 * Hashes the first secondary rows.
+	 *
+	 * @throws DataException
+	 */
+	private void initialize( ) throws DataException
+	{
+		this.primaryResultClass = primaryIterator.getResultClass( );
+		this.sizeOfUtil = new SizeOfUtil( secondaryIterator.getResultClass( ) );
+		this.isFirstPass = true;
+		this.curPrimaryIndex = -1;
+		fetchSecondaryObjects( );
+		if ( !isLastPass )
+		{
+			this.savedPrimaryRows = new CachedList( session.getTempDir( ),
+					DataEngineSession.getCurrentClassLoader( ),
+					new PrimaryRowCreator( ) );
+			this.matchedPrimaryRows = new BitSet( );
+		}
+	}
+
+	/**
+	 * Hashes the secondary rows of the next pass, if any.
+	 *
+	 * @return
+	 * @throws DataException
+	 */
+	private boolean startNextPass( ) throws DataException
+	{
+		if ( isLastPass )
+		{
+			seeker.clear( );
+			if ( savedPrimaryRows != null )
+			{
+				savedPrimaryRows.close( );
+				savedPrimaryRows = null;
+			}
+			return false;
+		}
+		isFirstPass = false;
+		curPrimaryIndex = -1;
+		fetchSecondaryObjects( );
+		return true;
+	}
+
+	/**
+	 * Puts the secondary rows into the seeker, until they exceed the memory
+	 * buffer size.
+	 *
+	 * @throws DataException
+	 */
+	private void fetchSecondaryObjects( ) throws DataException
+	{
+		seeker.clear( );
+		long usedMemorySize = 0;
+		IResultObject secondary;
+		while ( ( secondary = secondaryIterator.getCurrentResult( ) ) != null )
+		{
+			if ( memoryBufferSize > 0 && seeker.size( ) > 0
+					&& usedMemorySize >= memoryBufferSize )
+				break;
+			seeker.add( secondary, jcm.getCompareValue( !isPrimaryLeft( ) ) );
+			if ( memoryBufferSize > 0 )
+				usedMemorySize += sizeOfUtil.sizeOf( secondary );
+			secondaryIterator.next( );
+		}
+		isLastPass = secondary == null;
+	}
+
+	/**
+	 * Fetch a primary object and starts the seeking of its matched secondary
+	 * objects.
+	 *
+	 * @return
+	 * @throws DataException
+	 */
+	private boolean fetchPrimaryObject( ) throws DataException
+	{
+		Object[] keys;
+		if ( isFirstPass )
+		{
+			curPrimaryResultObject = primaryIterator.getCurrentResult( );
+			if ( curPrimaryResultObject == null )
+				return false;
+			keys = jcm.getCompareValue( isPrimaryLeft( ) );
+			if ( savedPrimaryRows != null )
+				savedPrimaryRows.add( new PrimaryRow( curPrimaryResultObject,
+						keys ) );
+			primaryIterator.next( );
+		}
+		else
+		{
+			if ( curPrimaryIndex + 1 >= savedPrimaryRows.size( ) )
+				return false;
+			PrimaryRow row = (PrimaryRow) savedPrimaryRows.get( curPrimaryIndex + 1 );
+			curPrimaryResultObject = row.resultObject;
+			keys = row.keys;
+		}
+		curPrimaryIndex++;
+		curPrimaryMatched = false;
+		seeker.setProbeKeys( keys );
+		return true;
+	}
+
+	/**
+	 * Create an instance of IResultObject.
+	 *
+	 * @param primary
+	 * @param secondary
+	 * @return
+	 * @throws DataException
+	 */
+	private IResultObject createResultObject( IResultObject primary,
+			IResultObject secondary ) throws DataException
+	{
+		Object[] fields = new Object[meta.getResultClass( ).getFieldCount( )];
+		for ( int i = 1; i <= fields.length; i++ )
+		{
+			IResultObject ri = null;
+
+			if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_LEFT )
+			{
+				if ( isPrimaryLeft( ) )
+					ri = primary;
+				else
+					ri = secondary;
+			}
+			else if ( meta.getColumnSource( i ) == JointResultMetadata.COLUMN_TYPE_RIGHT )
+			{
+				if ( isPrimaryLeft( ) )
+					ri = secondary;
+				else
+					ri = primary;
+			}
+
+			fields[i - 1] = ri == null ? null
+					: ri.getFieldValue( meta.getSourceIndex( i ) );
+		}
+		return new ResultObject( meta.getResultClass( ), fields );
+	}
+
+	/**
+	 * A primary row saved to disk, along with its join key values.
+	 */
+	private class PrimaryRow implements ICachedObject
+	{
+
+		private IResultObject resultObject;
+		private Object[] keys;
+
+		PrimaryRow( IResultObject resultObject, Object[] keys )
+		{
+			this.resultObject = resultObject;
+			this.keys = keys;
+		}
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.eclipse.birt.data.engine.cache.ICachedObject#getFieldValues()
+		 */
+		public Object[] getFieldValues( )
+		{
+			int fieldCount = primaryResultClass.getFieldCount( );
+			Object[] fields = new Object[fieldCount + keys.length];
+			for ( int i = 0; i < fieldCount; i++ )
+			{
+				try
+				{
+					fields[i] = resultObject.getFieldValue( i + 1 );
+				}
+				catch ( DataException e )
+				{
+					fields[i] = null;
+				}
+			}
+			System.arraycopy( keys, 0, fields, fieldCount, keys.length );
+			return fields;
+		}
+	}
+
+	/**
+	 * A creator class implemented ICachedObjectCreator. This class is used to
+	 * create PrimaryRow object.
+	 */
+	private class PrimaryRowCreator implements ICachedObjectCreator
+	{
+
+		/*
+		 * (non-Javadoc)
+		 * @see org.eclipse.birt.data.engine.cache.ICachedObjectCreator#createInstance(java.lang.Object[])
+		 */
+		public ICachedObject createInstance( Object[] fields )
+		{
+			int fieldCount = primaryResultClass.getFieldCount( );
+			Object[] values = new Object[fieldCount];
+			Object[] keys = new Object[fields.length - fieldCount];
+			System.arraycopy( fields, 0, values, 0, fieldCount );
+			System.arraycopy( fields, fieldCount, keys, 0, keys.length );
+			return new PrimaryRow( new ResultObject( primaryResultClass, values ),
+					keys );
+		}
+	}
+}
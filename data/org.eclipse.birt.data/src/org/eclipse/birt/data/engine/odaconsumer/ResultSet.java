@@ -39,6 +39,7 @@ public class ResultSet extends ExceptionHandler
 {
 	private IResultSet m_resultSet;
 	private IResultClass m_resultClass;		// cached result class
+	private ColumnReader[] m_columnReaders;	// resolved on first fetch
 
 	// trace logging variables
 	private static String sm_className = ResultSet.class.getName();
@@ -147,65 +148,14 @@ public class ResultSet extends ExceptionHandler
 		    throwException( ex, errorCode, methodName );
 		}
 
-		int columnCount = m_resultClass.getFieldCount();
-		int[] driverPositions = 
-			( (ResultClass) m_resultClass ).getFieldDriverPositions();
-		assert( columnCount == driverPositions.length );
-		
-		Object[] fields = new Object[ columnCount ];
+		ColumnReader[] columnReaders = getColumnReaders( );
+		Object[] fields = new Object[ columnReaders.length ];
 		
-		for( int i = 1; i <= columnCount; i++ )
+		for( int i = 0; i < columnReaders.length; i++ )
 		{
-			if ( m_resultClass.isCustomField( i ) == true )
-				continue;
-			
-			Class dataType = m_resultClass.getFieldValueClass( i );
-			int driverPosition = driverPositions[i - 1];
-			Object colValue = null;
-			
-			if( dataType == Integer.class )
-			{
-				int j = getInt( driverPosition );
-				if( ! wasNull() )
-					colValue = Integer.valueOf( j ); 
-			}
-			else if( dataType == Double.class )
-			{
-				double d = getDouble( driverPosition );
-				if( ! wasNull() )
-					colValue = new Double( d );
-			}
-			else if( dataType == String.class )
-				colValue = getString( driverPosition );
-			else if( dataType == BigDecimal.class )
-				colValue = getBigDecimal( driverPosition );
-			else if( dataType == java.sql.Date.class )
-				colValue = getDate( driverPosition );
-			else if( dataType == Time.class )
-				colValue = getTime( driverPosition );
-			else if( dataType == java.util.Date.class )
-				colValue = getTimestamp( driverPosition );  // use timestamp to preserve the time portion of java.util.Date
-			else if( dataType == Timestamp.class )
-				colValue = getTimestamp( driverPosition );
-			else if( dataType == IBlob.class )
-				colValue = getBlob( driverPosition );
-			else if( dataType == IClob.class )
-				colValue = getClob( driverPosition );
-            else if( dataType == Boolean.class )
-            {
-                boolean val = getBoolean( driverPosition );
-                if( ! wasNull() )
-                    colValue = Boolean.valueOf( val );
-            }
-            else if( dataType == Object.class )
-                colValue = getObject( driverPosition );
-			else
-				assert false;
-			
-			if( wasNull( ) )
-				colValue = null;
-			
-			fields[i - 1] = colValue;
+			// custom fields have no reader
+			if( columnReaders[i] != null )
+				fields[i] = columnReaders[i].read( );
 		}
 		
 		IResultObject ret = new ResultObject( m_resultClass, fields );
@@ -216,6 +166,62 @@ public class ResultSet extends ExceptionHandler
 		return ret;
 	}
 
+	/**
+	 * Resolves the reader of each column once per result set, so that 
+	 * fetching a row doesn't look up the type of each of its values.
+	 */
+	private ColumnReader[] getColumnReaders( ) throws DataException
+	{
+		if( m_columnReaders != null )
+			return m_columnReaders;
+		
+		int columnCount = m_resultClass.getFieldCount();
+		int[] driverPositions = 
+			( (ResultClass) m_resultClass ).getFieldDriverPositions();
+		assert( columnCount == driverPositions.length );
+		
+		ColumnReader[] columnReaders = new ColumnReader[ columnCount ];
+		for( int i = 1; i <= columnCount; i++ )
+		{
+			if ( m_resultClass.isCustomField( i ) == true )
+				continue;
+			columnReaders[i - 1] = new ColumnReader( 
+					getColumnType( m_resultClass.getFieldValueClass( i ) ),
+					driverPositions[i - 1] );
+		}
+		m_columnReaders = columnReaders;
+		return m_columnReaders;
+	}
+	
+	private static int getColumnType( Class dataType )
+	{
+		if( dataType == Integer.class )
+			return ColumnReader.INT;
+		if( dataType == Double.class )
+			return ColumnReader.DOUBLE;
+		if( dataType == String.class )
+			return ColumnReader.STRING;
+		if( dataType == BigDecimal.class )
+			return ColumnReader.DECIMAL;
+		if( dataType == java.sql.Date.class )
+			return ColumnReader.DATE;
+		if( dataType == Time.class )
+			return ColumnReader.TIME;
+		// use timestamp to preserve the time portion of java.util.Date
+		if( dataType == java.util.Date.class || dataType == Timestamp.class )
+			return ColumnReader.TIMESTAMP;
+		if( dataType == IBlob.class )
+			return ColumnReader.BLOB;
+		if( dataType == IClob.class )
+			return ColumnReader.CLOB;
+		if( dataType == Boolean.class )
+			return ColumnReader.BOOLEAN;
+		if( dataType == Object.class )
+			return ColumnReader.OBJECT;
+		assert false;
+		return ColumnReader.UNKNOWN;
+	}
+	
     private int getInt( int driverPosition ) throws DataException
 	{
         final String methodName = "getInt"; //$NON-NLS-1$
@@ -455,6 +461,103 @@ public class ResultSet extends ExceptionHandler
         return false;
 	}
 
+	/**
+	 * Reads the values of one column of the result set. The last boxed 
+	 * primitive value is reused when the next row holds the same value, 
+	 * which saves an allocation for each repeated value.
+	 */
+	private final class ColumnReader
+	{
+		static final int UNKNOWN = 0;
+		static final int INT = 1;
+		static final int DOUBLE = 2;
+		static final int STRING = 3;
+		static final int DECIMAL = 4;
+		static final int DATE = 5;
+		static final int TIME = 6;
+		static final int TIMESTAMP = 7;
+		static final int BLOB = 8;
+		static final int CLOB = 9;
+		static final int BOOLEAN = 10;
+		static final int OBJECT = 11;
+		
+		private final int m_type;
+		private final int m_driverPosition;
+		private Integer m_lastInt;
+		private Double m_lastDouble;
+		
+		ColumnReader( int type, int driverPosition )
+		{
+			m_type = type;
+			m_driverPosition = driverPosition;
+		}
+		
+		Object read( ) throws DataException
+		{
+			Object value;
+			switch( m_type )
+			{
+				case INT:
+				{
+					int i = getInt( m_driverPosition );
+					if( wasNull( ) )
+						return null;
+					if( m_lastInt == null || m_lastInt.intValue( ) != i )
+						m_lastInt = Integer.valueOf( i );
+					return m_lastInt;
+				}
+				case DOUBLE:
+				{
+					double d = getDouble( m_driverPosition );
+					if( wasNull( ) )
+						return null;
+					if( m_lastDouble == null 
+							|| Double.doubleToLongBits( m_lastDouble.doubleValue( ) ) 
+								!= Double.doubleToLongBits( d ) )
+						m_lastDouble = new Double( d );
+					return m_lastDouble;
+				}
+				case BOOLEAN:
+				{
+					boolean b = getBoolean( m_driverPosition );
+					if( wasNull( ) )
+						return null;
+					return Boolean.valueOf( b );
+				}
+				case STRING:
+					value = getString( m_driverPosition );
+					break;
+				case DECIMAL:
+					value = getBigDecimal( m_driverPosition );
+					break;
+				case DATE:
+					value = getDate( m_driverPosition );
+					break;
+				case TIME:
+					value = getTime( m_driverPosition );
+					break;
+				case TIMESTAMP:
+					value = getTimestamp( m_driverPosition );
+					break;
+				case BLOB:
+					value = getBlob( m_driverPosition );
+					break;
+				case CLOB:
+					value = getClob( m_driverPosition );
+					break;
+				case OBJECT:
+					value = getObject( m_driverPosition );
+					break;
+				default:
+					return null;
+			}
+			// a null value needs no wasNull check
+			if( value != null && wasNull( ) )
+				return null;
+			return value;
+		}
+	}
+	
 	/**
 	 * Returns the current row's 1-based index position.
 	 * @return	current row's 1-based index position.
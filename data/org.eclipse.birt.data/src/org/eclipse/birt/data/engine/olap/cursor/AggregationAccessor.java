@@ -69,6 +69,8 @@ public class AggregationAccessor extends Accessor
 	private boolean dimensionPrepared = false;
 	private Map dimensionCursorMap;
 	private Map<String, Integer> aggregationResultSetIDMap;
+	private AggregationResultSetIndex[] resultSetIndexes;
+	private Map<String, DimensionCursor[]> memberCursorMap;
 
 	
 	/**
@@ -87,11 +89,13 @@ public class AggregationAccessor extends Accessor
 		this.dimensionPrepared = false;
 		this.dimensionCursorMap = new HashMap( );
 		this.aggregationResultSetIDMap = new HashMap<String, Integer>( );
+		this.memberCursorMap = new HashMap<String, DimensionCursor[]>( );
 
 		if ( result == null || result.getMeasureResult( ) == null )
 			return;
 
 		this.currentPosition = new int[this.resultSet.getMeasureResult( ).length];
+		this.resultSetIndexes = new AggregationResultSetIndex[this.resultSet.getMeasureResult( ).length];
 		// initial aggregation resultset position to 0 if possible
 		for ( int i = 0; i < this.resultSet.getMeasureResult( ).length; i++ )
 		{
@@ -273,9 +277,9 @@ public class AggregationAccessor extends Accessor
 					.getAggrName( arg0 );
 			int index = 0, aggrIndex =0;
 			IAggregationResultSet rs = null;
-			if( aggregationResultSetIDMap.containsKey( arg0 ) )
+			if( aggregationResultSetIDMap.containsKey( aggrName ) )
 			{
-				index = aggregationResultSetIDMap.get( arg0 ).intValue( );
+				index = aggregationResultSetIDMap.get( aggrName ).intValue( );
 				rs = this.resultSet.getMeasureResult( )[index].getQueryResultSet( );
 				aggrIndex = rs.getAggregationIndex( aggrName );
 			}
@@ -294,10 +298,7 @@ public class AggregationAccessor extends Accessor
 				}				
 			}
 
-			if ( synchronizedWithEdge( index,
-					rs,
-					aggrName,
-					getCurrentValueOnEdge( aggrName ) ) )
+			if ( synchronizedWithEdge( index, rs, aggrName ) )
 				return rs.getAggregationValue( aggrIndex );
 			else
 			{
@@ -347,7 +348,7 @@ public class AggregationAccessor extends Accessor
 				}				
 			}
 			
-			if ( synchronizedWithEdge( index, rs, arg0, getCurrentValueOnEdge( arg0 ) ) )
+			if ( synchronizedWithEdge( index, rs, arg0 ) )
 				return rs.getAggregationValue( aggrIndex );
 			else
 			{
@@ -365,6 +366,46 @@ public class AggregationAccessor extends Accessor
 	}
 	
 
+	/**
+	 * Moves the result set to the row of the current members on the edges.
+	 * The row is found with the index of the result set, or by walking the
+	 * result set if it is too long to be indexed.
+	 * 
+	 * @param index
+	 * @param rs
+	 * @param aggrName
+	 * @return whether the row is found
+	 * @throws OLAPException
+	 * @throws IOException
+	 * @throws DataException
+	 */
+	private boolean synchronizedWithEdge( int index, IAggregationResultSet rs,
+			String aggrName ) throws OLAPException, IOException, DataException
+	{
+		if ( rs == null
+				|| rs.length( ) <= 0
+				|| rs.length( ) > AggregationResultSetIndex.MAX_LENGTH
+				|| rs.getAllLevels( ) == null
+				|| rs.getAllLevels( ).length == 0 )
+			return synchronizedWithEdge( index,
+					rs,
+					aggrName,
+					getCurrentValueOnEdge( aggrName ) );
+
+		Object[] values = getCurrentMemberValues( aggrName, rs );
+		if ( values == null )
+			return true;
+		if ( resultSetIndexes[index] == null )
+			resultSetIndexes[index] = new AggregationResultSetIndex( rs );
+		int position = resultSetIndexes[index].find( values );
+		if ( position < 0 )
+			return false;
+		if ( rs.getPosition( ) != position )
+			rs.seek( position );
+		currentPosition[index] = position;
+		return true;
+	}
+
 	/**
 	 * 
 	 * @param aggrIndex
@@ -552,6 +593,61 @@ public class AggregationAccessor extends Accessor
 		return valueMap;
 	}
 	
+	/**
+	 * Returns the current members on the edges of the levels of a result set.
+	 * 
+	 * @param aggrName
+	 * @param rs
+	 * @return the member values in the order of the levels of the result set,
+	 *         or null if the aggregation is not on any level of the edges
+	 * @throws OLAPException
+	 */
+	private Object[] getCurrentMemberValues( String aggrName,
+			IAggregationResultSet rs ) throws OLAPException
+	{
+		if ( !this.dimensionPrepared )
+		{
+			this.prepareDimensionCursor( );
+			this.dimensionPrepared = true;
+		}
+
+		DimLevel[] levels = rs.getAllLevels( );
+		DimensionCursor[] cursors = memberCursorMap.get( aggrName );
+		if ( cursors == null && !memberCursorMap.containsKey( aggrName ) )
+		{
+			Relationship relation = (Relationship) this.relationMap.get( aggrName );
+			List edgeLevels = new ArrayList( );
+			edgeLevels.addAll( relation.getLevelListOnPage( ) );
+			edgeLevels.addAll( relation.getLevelListOnColumn( ) );
+			edgeLevels.addAll( relation.getLevelListOnRow( ) );
+			if ( !edgeLevels.isEmpty( ) )
+			{
+				cursors = new DimensionCursor[levels.length];
+				for ( int i = 0; i < edgeLevels.size( ); i++ )
+				{
+					DimLevel level = (DimLevel) edgeLevels.get( i );
+					for ( int j = 0; j < levels.length; j++ )
+					{
+						if ( level.equals( levels[j] ) )
+							cursors[j] = (DimensionCursor) dimensionCursorMap.get( UniqueNamingUtil.getUniqueName( level.getDimensionName( ),
+									level.getLevelName( ) ) );
+					}
+				}
+			}
+			memberCursorMap.put( aggrName, cursors );
+		}
+		if ( cursors == null )
+			return null;
+
+		Object[] values = new Object[levels.length];
+		for ( int i = 0; i < levels.length; i++ )
+		{
+			if ( cursors[i] != null )
+				values[i] = cursors[i].getObject( levels[i].getLevelName( ) );
+		}
+		return values;
+	}
+	
 	/**
 	 * Find the value matcher in cube cursor. Based on sort direction and
 	 * compared result, decide to move on/back along resultset.
@@ -0,0 +1,255 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.cursor;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+
+/**
+ * An index of the positions of an aggregation result set by the member values
+ * of its levels, which finds the row of a cell without walking the result set
+ * from its current position.
+ * <p>
+ * The member value of a level is its last key value. Two member values match
+ * when AggregationAccessor.compare( ) finds them equal, as in the walk. If
+ * several rows have the same member values, the first one is found.
+ * <p>
+ * The index is an open addressing hash table of the hash codes and positions
+ * of the rows, in two int arrays. The member values are not kept: the row of
+ * a matching hash code is read again to compare its values. The rows are
+ * indexed in chunks, only as far as a lookup needs.
+ */
+class AggregationResultSetIndex
+{
+
+	/**
+	 * The maximum length of a result set to index, above which the memory of
+	 * the index is not worth it.
+	 */
+	static final int MAX_LENGTH = 1000000;
+
+	/**
+	 * The number of rows indexed at a time.
+	 */
+	static final int CHUNK_SIZE = 4096;
+
+	private IAggregationResultSet rs;
+	private int length;
+	private int[] keyColumns;
+
+	// the number of rows indexed so far, from the first one
+	private int indexedCount;
+
+	// the hash codes of the rows, and their positions plus one, 0 for an
+	// empty slot
+	private int[] hashes;
+	private int[] positions;
+	private int size;
+
+	/**
+	 * @param rs
+	 *            the result set to index
+	 */
+	AggregationResultSetIndex( IAggregationResultSet rs )
+	{
+		this.rs = rs;
+		this.length = rs.length( );
+		int levelCount = rs.getAllLevels( ).length;
+		this.keyColumns = new int[levelCount];
+		for ( int i = 0; i < levelCount; i++ )
+			keyColumns[i] = rs.getLevelKeyColCount( i ) - 1;
+
+		int capacity = 16;
+		while ( capacity < Math.min( length, CHUNK_SIZE ) * 2 )
+			capacity <<= 1;
+		this.hashes = new int[capacity];
+		this.positions = new int[capacity];
+	}
+
+	/**
+	 * Returns the position of the row of some member values. The result set
+	 * may be moved to another row, but it is left at its previous position if
+	 * no row matches.
+	 *
+	 * @param values
+	 *            the member values, in the order of the levels of the result
+	 *            set
+	 * @return the position, or -1 if no row matches
+	 * @throws IOException
+	 */
+	int find( Object[] values ) throws IOException
+	{
+		int oldPosition = rs.getPosition( );
+		int hash = hash( values );
+		int position = lookup( hash, values );
+		while ( position < 0 && indexedCount < length )
+			position = indexChunk( hash, values );
+		if ( position < 0 && oldPosition >= 0 && oldPosition < length )
+			rs.seek( oldPosition );
+		return position;
+	}
+
+	/**
+	 * Returns the first indexed row of some member values.
+	 *
+	 * @param hash
+	 * @param values
+	 * @return the position, or -1 if no indexed row matches
+	 * @throws IOException
+	 */
+	private int lookup( int hash, Object[] values ) throws IOException
+	{
+		int mask = positions.length - 1;
+		int result = -1;
+		int slot = spread( hash ) & mask;
+		while ( positions[slot] != 0 )
+		{
+			int position = positions[slot] - 1;
+			if ( hashes[slot] == hash && ( result < 0 || position < result ) )
+			{
+				rs.seek( position );
+				if ( equals( getValues( ), values ) )
+					result = position;
+			}
+			slot = ( slot + 1 ) & mask;
+		}
+		return result;
+	}
+
+	/**
+	 * Indexes the next chunk of rows.
+	 *
+	 * @param hash
+	 * @param values
+	 * @return the first row of the chunk matching some member values, or -1
+	 * @throws IOException
+	 */
+	private int indexChunk( int hash, Object[] values ) throws IOException
+	{
+		int result = -1;
+		int end = Math.min( indexedCount + CHUNK_SIZE, length );
+		for ( int position = indexedCount; position < end; position++ )
+		{
+			rs.seek( position );
+			Object[] rowValues = getValues( );
+			int rowHash = hash( rowValues );
+			add( rowHash, position );
+			if ( result < 0 && rowHash == hash && equals( rowValues, values ) )
+				result = position;
+		}
+		indexedCount = end;
+		return result;
+	}
+
+	private void add( int hash, int position )
+	{
+		if ( ( size + 1 ) * 2 > positions.length )
+			rehash( positions.length * 2 );
+		int mask = positions.length - 1;
+		int slot = spread( hash ) & mask;
+		while ( positions[slot] != 0 )
+			slot = ( slot + 1 ) & mask;
+		hashes[slot] = hash;
+		positions[slot] = position + 1;
+		size++;
+	}
+
+	private void rehash( int capacity )
+	{
+		int[] oldHashes = hashes;
+		int[] oldPositions = positions;
+		hashes = new int[capacity];
+		positions = new int[capacity];
+		int mask = capacity - 1;
+		for ( int i = 0; i < oldPositions.length; i++ )
+		{
+			if ( oldPositions[i] == 0 )
+				continue;
+			int slot = spread( oldHashes[i] ) & mask;
+			while ( positions[slot] != 0 )
+				slot = ( slot + 1 ) & mask;
+			hashes[slot] = oldHashes[i];
+			positions[slot] = oldPositions[i];
+		}
+	}
+
+	/**
+	 * Returns the member values of the current row.
+	 *
+	 * @return
+	 */
+	private Object[] getValues( )
+	{
+		Object[] values = new Object[keyColumns.length];
+		for ( int i = 0; i < keyColumns.length; i++ )
+		{
+			Object[] keyValues = rs.getLevelKeyValue( i );
+			if ( keyValues != null && keyColumns[i] >= 0 )
+				values[i] = keyValues[keyColumns[i]];
+		}
+		return values;
+	}
+
+	private static boolean equals( Object[] values1, Object[] values2 )
+	{
+		if ( values1.length != values2.length )
+			return false;
+		for ( int i = 0; i < values1.length; i++ )
+		{
+			if ( AggregationAccessor.compare( values1[i], values2[i] ) != 0 )
+				return false;
+		}
+		return true;
+	}
+
+	private static int spread( int hash )
+	{
+		return hash ^ ( hash >>> 16 );
+	}
+
+	private static int hash( Object[] values )
+	{
+		int h = 1;
+		for ( int i = 0; i < values.length; i++ )
+			h = 31 * h + hash( values[i] );
+		return h;
+	}
+
+	/**
+	 * Returns a hash code which is the same for the values that compare
+	 * equal, such as 1.0 and 1.00 or a date and a timestamp.
+	 *
+	 * @param value
+	 * @return
+	 */
+	private static int hash( Object value )
+	{
+		if ( value == null )
+			return 0;
+		if ( value instanceof BigDecimal )
+		{
+			long bits = Double.doubleToLongBits( ( (BigDecimal) value ).doubleValue( ) );
+			return (int) ( bits ^ ( bits >>> 32 ) );
+		}
+		if ( value instanceof Date )
+		{
+			long time = ( (Date) value ).getTime( );
+			return (int) ( time ^ ( time >>> 32 ) );
+		}
+		if ( value instanceof Comparable )
+			return value.hashCode( );
+		return value.toString( ).hashCode( );
+	}
+}
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright (c) 2013 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.data.engine.olap.cursor;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultRow;
+import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
+import org.eclipse.birt.data.engine.olap.data.impl.AggregationDefinition;
+
+/**
+ * A window of consecutive rows of an aggregation result set. The edge cursor
+ * created on the window of an edge result set only navigates the members of
+ * the window, so that a crosstab may show a part of a very large edge without
+ * building the cursor structures of the whole edge.
+ */
+public class WindowedAggregationResultSet implements IAggregationResultSet
+{
+
+	private IAggregationResultSet rs;
+	private int offset;
+	private int length;
+
+	/**
+	 *
+	 * @param rs
+	 *            the whole result set
+	 * @param offset
+	 *            the position of the first row of the window
+	 * @param length
+	 *            the maximum number of rows of the window, or a negative
+	 *            number for all the rows after the offset
+	 * @throws IOException
+	 */
+	public WindowedAggregationResultSet( IAggregationResultSet rs, int offset,
+			int length ) throws IOException
+	{
+		assert rs != null && offset >= 0;
+		this.rs = rs;
+		this.offset = Math.min( offset, rs.length( ) );
+		int remaining = rs.length( ) - this.offset;
+		this.length = length < 0 ? remaining : Math.min( length, remaining );
+		if ( this.length > 0 )
+			rs.seek( this.offset );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet#seek(int)
+	 */
+	public void seek( int index ) throws IOException
+	{
+		if ( index < 0 || index >= length )
+			throw new IndexOutOfBoundsException( "Index: " //$NON-NLS-1$
+					+ index + ", Size: " + length ); //$NON-NLS-1$
+		rs.seek( offset + index );
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet#length()
+	 */
+	public int length( )
+	{
+		return length;
+	}
+
+	/*
+	 * @see org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet#getPosition()
+	 */
+	public int getPosition( )
+	{
+		return rs.getPosition( ) - offset;
+	}
+
+	public int getLevelCount( )
+	{
+		return rs.getLevelCount( );
+	}
+
+	public DimLevel[] getAllLevels( )
+	{
+		return rs.getAllLevels( );
+	}
+
+	public int getLevelIndex( DimLevel level )
+	{
+		return rs.getLevelIndex( level );
+	}
+
+	public int getLevelKeyColCount( int levelIndex )
+	{
+		return rs.getLevelKeyColCount( levelIndex );
+	}
+
+	public int getLevelAttributeColCount( int levelIndex )
+	{
+		return rs.getLevelAttributeColCount( levelIndex );
+	}
+
+	public int getLevelKeyDataType( DimLevel level, String keyName )
+	{
+		return rs.getLevelKeyDataType( level, keyName );
+	}
+
+	public int getLevelKeyDataType( int levelIndex, String keyName )
+	{
+		return rs.getLevelKeyDataType( levelIndex, keyName );
+	}
+
+	public int getLevelAttributeIndex( int levelIndex, String attributeName )
+	{
+		return rs.getLevelAttributeIndex( levelIndex, attributeName );
+	}
+
+	public int getLevelAttributeIndex( DimLevel level, String attributeName )
+	{
+		return rs.getLevelAttributeIndex( level, attributeName );
+	}
+
+	public int getLevelKeyIndex( int levelIndex, String keyName )
+	{
+		return rs.getLevelKeyIndex( levelIndex, keyName );
+	}
+
+	public int getLevelKeyIndex( DimLevel level, String keyName )
+	{
+		return rs.getLevelKeyIndex( level, keyName );
+	}
+
+	public String[] getLevelAttributes( int levelIndex )
+	{
+		return rs.getLevelAttributes( levelIndex );
+	}
+
+	public Object[] getLevelAttributesValue( int levelIndex )
+	{
+		return rs.getLevelAttributesValue( levelIndex );
+	}
+
+	public int getLevelAttributeDataType( DimLevel level, String attributeName )
+	{
+		return rs.getLevelAttributeDataType( level, attributeName );
+	}
+
+	public int getLevelAttributeDataType( int levelIndex, String attributeName )
+	{
+		return rs.getLevelAttributeDataType( levelIndex, attributeName );
+	}
+
+	public int getAggregationDataType( int aggregationIndex )
+			throws IOException
+	{
+		return rs.getAggregationDataType( aggregationIndex );
+	}
+
+	public Object[] getLevelKeyValue( int levelIndex )
+	{
+		return rs.getLevelKeyValue( levelIndex );
+	}
+
+	public Object getLevelAttribute( int levelIndex, int attributeIndex )
+	{
+		return rs.getLevelAttribute( levelIndex, attributeIndex );
+	}
+
+	public int getAggregationIndex( String name ) throws IOException
+	{
+		return rs.getAggregationIndex( name );
+	}
+
+	public String getAggregationName( int index )
+	{
+		return rs.getAggregationName( index );
+	}
+
+	public Object getAggregationValue( int aggregationIndex )
+			throws IOException
+	{
+		return rs.getAggregationValue( aggregationIndex );
+	}
+
+	public int getSortType( int levelIndex )
+	{
+		return rs.getSortType( levelIndex );
+	}
+
+	public IAggregationResultRow getCurrentRow( ) throws IOException
+	{
+		return rs.getCurrentRow( );
+	}
+
+	public DimLevel getLevel( int levelIndex )
+	{
+		return rs.getLevel( levelIndex );
+	}
+
+	public String getLevelKeyName( int levelIndex, int keyIndex )
+	{
+		return rs.getLevelKeyName( levelIndex, keyIndex );
+	}
+
+	public AggregationDefinition getAggregationDefinition( )
+	{
+		return rs.getAggregationDefinition( );
+	}
+
+	public String[][] getAttributeNames( )
+	{
+		return rs.getAttributeNames( );
+	}
+
+	public String[][] getKeyNames( )
+	{
+		return rs.getKeyNames( );
+	}
+
+	public int getAggregationCount( )
+	{
+		return rs.getAggregationCount( );
+	}
+
+	public String[][] getLevelKeys( )
+	{
+		return rs.getLevelKeys( );
+	}
+
+	public int[][] getLevelKeyDataType( )
+	{
+		return rs.getLevelKeyDataType( );
+	}
+
+	public String[][] getLevelAttributes( )
+	{
+		return rs.getLevelAttributes( );
+	}
+
+	public int[][] getLevelAttributeDataType( )
+	{
+		return rs.getLevelAttributeDataType( );
+	}
+
+	public int[] getSortType( )
+	{
+		return rs.getSortType( );
+	}
+
+	public int[] getAggregationDataType( )
+	{
+		return rs.getAggregationDataType( );
+	}
+
+	public void close( ) throws IOException
+	{
+		rs.close( );
+	}
+
+	public void clear( ) throws IOException
+	{
+		rs.clear( );
+	}
+}
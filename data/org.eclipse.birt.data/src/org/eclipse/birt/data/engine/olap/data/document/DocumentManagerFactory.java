@@ -141,4 +141,20 @@ public class DocumentManagerFactory
 	{
 		return FileDocumentManager.loadManager( dirName, managerName );
 	}
+
+	/**
+	 * Loads the files of a file document manager in read-only mode. The data
+	 * file is memory mapped, and the mapping is shared with the other
+	 * read-only managers of the same files.
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static public IDocumentManager loadMappedFileDocumentManager( String dirName, String managerName ) throws DataException, IOException
+	{
+		return MappedFileDocumentManager.loadManager( dirName, managerName );
+	}
 }
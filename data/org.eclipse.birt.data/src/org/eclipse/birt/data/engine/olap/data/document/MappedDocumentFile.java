@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.birt.data.engine.core.DataException;
+import org.eclipse.birt.data.engine.core.security.FileSecurity;
+import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+
+/**
+ * The read-only content of the three files written by
+ * <tt>FileDocumentManager</tt>. The object table and the allocation table are
+ * loaded in memory, the data file is memory mapped in segments, so files
+ * larger than 2GB can be mapped as well. An instance is shared by all the
+ * managers which load the same unchanged files, and is released when the
+ * last of them is closed.
+ */
+
+class MappedDocumentFile
+{
+
+	/**
+	 * Size of a mapped segment of the data file. It is a multiple of the block
+	 * size, so a block never spans two segments.
+	 */
+	static final int SEGMENT_SIZE = 1 << 30;
+
+	private static final Map<String, MappedDocumentFile> mappedFiles = new HashMap<String, MappedDocumentFile>( );
+
+	private final String key;
+	private final long dataFileLength;
+	private final long dataFileModified;
+
+	private final Map<String, ObjectEntry> objects = new HashMap<String, ObjectEntry>( );
+	private int[] allocTable;
+	private ByteBuffer[] segments;
+
+	private int refCount;
+
+	/**
+	 * Returns the shared mapping of the given files, mapping them if they are
+	 * not mapped yet or have changed since they were mapped. The caller must
+	 * call {@link #release()} once done.
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static MappedDocumentFile acquire( String dirName, String managerName )
+			throws DataException, IOException
+	{
+		File objectFile = getFile( dirName, managerName, "obj" ); //$NON-NLS-1$
+		File oatFile = getFile( dirName, managerName, "Oat" ); //$NON-NLS-1$
+		File dataFile = getFile( dirName, managerName, "data" ); //$NON-NLS-1$
+		String key = dataFile.getCanonicalPath( );
+		synchronized ( mappedFiles )
+		{
+			MappedDocumentFile file = mappedFiles.get( key );
+			if ( file == null
+					|| file.dataFileLength != dataFile.length( )
+					|| file.dataFileModified != dataFile.lastModified( ) )
+			{
+				// a stale mapping stays valid for the managers still using it
+				file = new MappedDocumentFile( key, dataFile );
+				file.load( objectFile, oatFile, dataFile );
+				mappedFiles.put( key, file );
+			}
+			file.refCount++;
+			return file;
+		}
+	}
+
+	/**
+	 * Releases the mapping. The mapped memory is reclaimed by the garbage
+	 * collector once no document object refers to it anymore.
+	 */
+	void release( )
+	{
+		synchronized ( mappedFiles )
+		{
+			if ( --refCount == 0 && mappedFiles.get( key ) == this )
+			{
+				mappedFiles.remove( key );
+			}
+		}
+	}
+
+	private MappedDocumentFile( String key, File dataFile )
+	{
+		this.key = key;
+		this.dataFileLength = dataFile.length( );
+		this.dataFileModified = dataFile.lastModified( );
+	}
+
+	private static File getFile( String dirName, String managerName,
+			String suffix ) throws DataException
+	{
+		File file = new File( dirName + File.separatorChar + managerName
+				+ suffix );
+		if ( !FileSecurity.fileExist( file ) )
+		{
+			throw new DataException( ResourceConstants.OLAPFILE_NOT_FOUND,
+					file.getAbsolutePath( ) );
+		}
+		return file;
+	}
+
+	private void load( File objectFile, File oatFile, File dataFile )
+			throws IOException
+	{
+		DataInputStream in = new DataInputStream( new BufferedInputStream( new FileInputStream( objectFile ) ) );
+		try
+		{
+			while ( true )
+			{
+				ObjectEntry entry = new ObjectEntry( );
+				entry.length = in.readLong( );
+				entry.firstBlock = in.readInt( );
+				String name = in.readUTF( );
+				if ( entry.firstBlock >= 0 )
+				{
+					objects.put( name, entry );
+				}
+			}
+		}
+		catch ( EOFException e )
+		{
+			// end of the object table
+		}
+		finally
+		{
+			in.close( );
+		}
+
+		RandomAccessFile oat = new RandomAccessFile( oatFile, "r" ); //$NON-NLS-1$
+		try
+		{
+			FileChannel channel = oat.getChannel( );
+			allocTable = new int[(int) ( channel.size( ) / 4 )];
+			channel.map( FileChannel.MapMode.READ_ONLY, 0, allocTable.length * 4L )
+					.asIntBuffer( )
+					.get( allocTable );
+		}
+		finally
+		{
+			oat.close( );
+		}
+
+		RandomAccessFile data = new RandomAccessFile( dataFile, "r" ); //$NON-NLS-1$
+		try
+		{
+			FileChannel channel = data.getChannel( );
+			long size = channel.size( );
+			segments = new ByteBuffer[(int) ( ( size + SEGMENT_SIZE - 1 ) / SEGMENT_SIZE )];
+			for ( int i = 0; i < segments.length; i++ )
+			{
+				long start = (long) i * SEGMENT_SIZE;
+				segments[i] = channel.map( FileChannel.MapMode.READ_ONLY,
+						start,
+						Math.min( SEGMENT_SIZE, size - start ) );
+			}
+		}
+		finally
+		{
+			// the mapping stays valid after the channel is closed
+			data.close( );
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return true if the named object exists
+	 */
+	boolean exist( String name )
+	{
+		return objects.containsKey( name );
+	}
+
+	/**
+	 * Opens a read-only view of the named object.
+	 *
+	 * @param name
+	 * @return the object, or null if it doesn't exist
+	 * @throws IOException
+	 */
+	MappedRandomDataAccessObject open( String name ) throws IOException
+	{
+		ObjectEntry entry = objects.get( name );
+		if ( entry == null )
+		{
+			return null;
+		}
+		int blockCount = entry.length == 0 ? 1
+				: (int) ( ( entry.length - 1 ) / IObjectAllocTable.BLOCK_SIZE ) + 1;
+		int[] blocks = new int[blockCount];
+		int block = entry.firstBlock;
+		for ( int i = 0; i < blockCount; i++ )
+		{
+			if ( block < 0 || block >= allocTable.length || ( i > 0 && block == 0 ) )
+			{
+				throw new IOException( "Corrupted document object " + name ); //$NON-NLS-1$
+			}
+			blocks[i] = block;
+			block = allocTable[block];
+		}
+		return new MappedRandomDataAccessObject( segments,
+				blocks,
+				entry.length );
+	}
+
+	/**
+	 * An entry of the object table.
+	 */
+	private static class ObjectEntry
+	{
+
+		long length;
+		int firstBlock;
+	}
+}
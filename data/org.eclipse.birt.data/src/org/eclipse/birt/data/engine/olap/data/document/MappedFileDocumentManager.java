@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.IOException;
+
+import org.eclipse.birt.data.engine.core.DataException;
+
+/**
+ * A read-only implementation of the <tt>IDocumentManager</tt> interface, for
+ * the files written by <tt>FileDocumentManager</tt>. The data file is memory
+ * mapped and the mapping is shared by all the managers loading the same
+ * files, so concurrent reports on a published cube don't each hold their own
+ * file handles and buffers.
+ */
+
+public class MappedFileDocumentManager implements IDocumentManager
+{
+
+	private MappedDocumentFile file;
+
+	/**
+	 *
+	 * @param dirName
+	 * @param managerName
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	static MappedFileDocumentManager loadManager( String dirName,
+			String managerName ) throws DataException, IOException
+	{
+		return new MappedFileDocumentManager( MappedDocumentFile.acquire( dirName,
+				managerName ) );
+	}
+
+	private MappedFileDocumentManager( MappedDocumentFile file )
+	{
+		this.file = file;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#createDocumentObject(java.lang.String)
+	 */
+	public IDocumentObject createDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		throw new IOException( "The document manager is read-only" ); //$NON-NLS-1$
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#exist(java.lang.String)
+	 */
+	public boolean exist( String documentObjectName )
+	{
+		return getFile( ).exist( documentObjectName );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#openDocumentObject(java.lang.String)
+	 */
+	public IDocumentObject openDocumentObject( String documentObjectName )
+			throws IOException
+	{
+		MappedRandomDataAccessObject object = getFile( ).open( documentObjectName );
+		if ( object == null )
+		{
+			return null;
+		}
+		return new DocumentObject( object );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IDocumentManager#close()
+	 */
+	public synchronized void close( ) throws IOException
+	{
+		if ( file != null )
+		{
+			file.release( );
+			file = null;
+		}
+	}
+
+	private synchronized MappedDocumentFile getFile( )
+	{
+		if ( file == null )
+		{
+			throw new IllegalStateException( "The document manager is closed" ); //$NON-NLS-1$
+		}
+		return file;
+	}
+}
@@ -0,0 +1,559 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2005 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.data.engine.olap.data.document;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.data.engine.olap.data.util.Bytes;
+
+/**
+ * A read-only implementation of the <tt>IRandomDataAccessObject</tt>
+ * interface, which reads the blocks of a document object straight from the
+ * memory mapped data file. Primitives which don't span two blocks are read
+ * with a single absolute get from the mapped buffer, without copying the data
+ * to a heap buffer first.
+ */
+
+public class MappedRandomDataAccessObject implements IRandomDataAccessObject
+{
+
+	private static final int BLOCK_SIZE = IObjectAllocTable.BLOCK_SIZE;
+	private static final int BLOCK_MASK = BLOCK_SIZE - 1;
+	private static final int BLOCKS_PER_SEGMENT = MappedDocumentFile.SEGMENT_SIZE
+			/ BLOCK_SIZE;
+
+	private static Logger logger = Logger.getLogger( MappedRandomDataAccessObject.class.getName( ) );
+
+	/**
+	 * The shared segments. Only the absolute get methods are used on them,
+	 * which don't change the buffer state.
+	 */
+	private final ByteBuffer[] segments;
+	/**
+	 * Views of the segments for the bulk reads, created on demand as the
+	 * relative bulk get changes the position.
+	 */
+	private final ByteBuffer[] views;
+	private final int[] blocks;
+	private final long length;
+	private long position;
+
+	MappedRandomDataAccessObject( ByteBuffer[] segments, int[] blocks,
+			long length )
+	{
+		this.segments = segments;
+		this.views = new ByteBuffer[segments.length];
+		this.blocks = blocks;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the segment holding the block of the current position.
+	 */
+	private ByteBuffer segment( )
+	{
+		return segments[blocks[(int) ( position / BLOCK_SIZE )]
+				/ BLOCKS_PER_SEGMENT];
+	}
+
+	/**
+	 * Returns the offset of the current position within its segment.
+	 */
+	private int offset( )
+	{
+		return ( blocks[(int) ( position / BLOCK_SIZE )] % BLOCKS_PER_SEGMENT )
+				* BLOCK_SIZE + (int) ( position & BLOCK_MASK );
+	}
+
+	/**
+	 * Returns whether the next n bytes exist and lie in the current block.
+	 */
+	private boolean inBlock( int n )
+	{
+		return position + n <= length
+				&& ( (int) position & BLOCK_MASK ) + n <= BLOCK_SIZE;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read()
+	 */
+	public int read( ) throws IOException
+	{
+		if ( position >= length )
+		{
+			return -1;
+		}
+		int b = segment( ).get( offset( ) ) & 0xff;
+		position++;
+		return b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[], int, int)
+	 */
+	public int read( byte[] b, int off, int len ) throws IOException
+	{
+		if ( len == 0 )
+		{
+			return 0;
+		}
+		if ( position >= length )
+		{
+			return -1;
+		}
+		len = (int) Math.min( len, length - position );
+		int read = 0;
+		while ( read < len )
+		{
+			int n = Math.min( len - read, BLOCK_SIZE
+					- ( (int) position & BLOCK_MASK ) );
+			int segmentIndex = blocks[(int) ( position / BLOCK_SIZE )]
+					/ BLOCKS_PER_SEGMENT;
+			ByteBuffer view = views[segmentIndex];
+			if ( view == null )
+			{
+				view = segments[segmentIndex].duplicate( );
+				views[segmentIndex] = view;
+			}
+			view.position( offset( ) );
+			view.get( b, off + read, n );
+			read += n;
+			position += n;
+		}
+		return len;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#read(byte[])
+	 */
+	public int read( byte[] b ) throws IOException
+	{
+		return read( b, 0, b.length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readFully(byte[])
+	 */
+	public void readFully( byte[] b ) throws IOException
+	{
+		readFully( b, 0, b.length );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readFully(byte[], int, int)
+	 */
+	public void readFully( byte[] b, int off, int len ) throws IOException
+	{
+		if ( position + len > length )
+		{
+			throw new EOFException( );
+		}
+		read( b, off, len );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#skipBytes(int)
+	 */
+	public int skipBytes( int n ) throws IOException
+	{
+		int skipped = (int) Math.max( 0, Math.min( n, length - position ) );
+		position += skipped;
+		return skipped;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readBoolean()
+	 */
+	public boolean readBoolean( ) throws IOException
+	{
+		return readByte( ) != 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readByte()
+	 */
+	public byte readByte( ) throws IOException
+	{
+		int b = read( );
+		if ( b < 0 )
+		{
+			throw new EOFException( );
+		}
+		return (byte) b;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readUnsignedByte()
+	 */
+	public int readUnsignedByte( ) throws IOException
+	{
+		return readByte( ) & 0xff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readShort()
+	 */
+	public short readShort( ) throws IOException
+	{
+		if ( inBlock( 2 ) )
+		{
+			short s = segment( ).getShort( offset( ) );
+			position += 2;
+			return s;
+		}
+		int ch1 = readUnsignedByte( );
+		int ch2 = readUnsignedByte( );
+		return (short) ( ( ch1 << 8 ) + ch2 );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readUnsignedShort()
+	 */
+	public int readUnsignedShort( ) throws IOException
+	{
+		return readShort( ) & 0xffff;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readChar()
+	 */
+	public char readChar( ) throws IOException
+	{
+		return (char) readUnsignedShort( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readInt()
+	 */
+	public int readInt( ) throws IOException
+	{
+		if ( inBlock( 4 ) )
+		{
+			int i = segment( ).getInt( offset( ) );
+			position += 4;
+			return i;
+		}
+		int ch1 = readUnsignedByte( );
+		int ch2 = readUnsignedByte( );
+		int ch3 = readUnsignedByte( );
+		int ch4 = readUnsignedByte( );
+		return ( ch1 << 24 ) | ( ch2 << 16 ) | ( ch3 << 8 ) | ch4;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readLong()
+	 */
+	public long readLong( ) throws IOException
+	{
+		if ( inBlock( 8 ) )
+		{
+			long l = segment( ).getLong( offset( ) );
+			position += 8;
+			return l;
+		}
+		return ( (long) readInt( ) << 32 ) | ( readInt( ) & 0xFFFFFFFFL );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readFloat()
+	 */
+	public float readFloat( ) throws IOException
+	{
+		return Float.intBitsToFloat( readInt( ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readDouble()
+	 */
+	public double readDouble( ) throws IOException
+	{
+		return Double.longBitsToDouble( readLong( ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readLine()
+	 */
+	public String readLine( ) throws IOException
+	{
+		StringBuffer input = new StringBuffer( );
+		int c = -1;
+		boolean eol = false;
+
+		while ( !eol )
+		{
+			switch ( c = read( ) )
+			{
+				case -1 :
+				case '\n' :
+					eol = true;
+					break;
+				case '\r' :
+					eol = true;
+					long cur = getFilePointer( );
+					if ( ( read( ) ) != '\n' )
+					{
+						seek( cur );
+					}
+					break;
+				default :
+					input.append( (char) c );
+			}
+		}
+
+		if ( ( c == -1 ) && ( input.length( ) == 0 ) )
+		{
+			return null;
+		}
+		return input.toString( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.io.DataInput#readUTF()
+	 */
+	public String readUTF( ) throws IOException
+	{
+		return DataInputStream.readUTF( this );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#readBigDecimal()
+	 */
+	public BigDecimal readBigDecimal( ) throws IOException
+	{
+		return new BigDecimal( readUTF( ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#readDate()
+	 */
+	public Date readDate( ) throws IOException
+	{
+		return new Date( readLong( ) );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#readBytes()
+	 */
+	public Bytes readBytes( ) throws IOException
+	{
+		byte[] b = new byte[readInt( )];
+		read( b, 0, b.length );
+		return new Bytes( b );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomDataAccessObject#readObject()
+	 */
+	public Object readObject( ) throws IOException
+	{
+		byte[] bytes = readBytes( ).bytesValue( );
+		final ClassLoader loader = org.eclipse.birt.data.engine.impl.DataEngineSession.getCurrentClassLoader( );
+		ObjectInputStream oo = new ObjectInputStream( new ByteArrayInputStream( bytes ) ) {
+
+			protected Class resolveClass( ObjectStreamClass desc )
+					throws IOException, ClassNotFoundException
+			{
+				return Class.forName( desc.getName( ), false, loader );
+			}
+		};
+		Object obValue = null;
+		try
+		{
+			obValue = oo.readObject( );
+		}
+		catch ( ClassNotFoundException e )
+		{
+			logger.log( Level.WARNING, "Failed to read object", e ); //$NON-NLS-1$
+		}
+		return obValue;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#getFilePointer()
+	 */
+	public long getFilePointer( ) throws IOException
+	{
+		return position;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#length()
+	 */
+	public long length( ) throws IOException
+	{
+		return length;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#seek(long)
+	 */
+	public void seek( long pos ) throws IOException
+	{
+		this.position = pos;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#close()
+	 */
+	public void close( ) throws IOException
+	{
+		// the mapping is owned by the document manager
+		position = 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#flush()
+	 */
+	public void flush( ) throws IOException
+	{
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.data.engine.olap.data.document.IRandomAccessObject#setLength(long)
+	 */
+	public void setLength( long newLength ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void write( int b ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void write( byte[] b ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void write( byte[] b, int off, int len ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeBoolean( boolean v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeByte( int v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeShort( int v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeChar( int v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeInt( int v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeLong( long v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeFloat( float v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeDouble( double v ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeBytes( String s ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeChars( String s ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeUTF( String s ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeBigDecimal( BigDecimal value ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeDate( Date value ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeBytes( Bytes b ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	public void writeObject( Object o ) throws IOException
+	{
+		throw readOnly( );
+	}
+
+	private static IOException readOnly( )
+	{
+		return new IOException( "The document object is read-only" ); //$NON-NLS-1$
+	}
+}
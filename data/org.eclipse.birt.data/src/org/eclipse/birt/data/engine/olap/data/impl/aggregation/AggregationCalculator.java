@@ -18,6 +18,7 @@ import java.util.Set;
 import java.util.logging.Logger;
 
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.aggregation.BatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
@@ -64,6 +65,8 @@ public class AggregationCalculator
 	private IDiskArray result = null;
 	private IAggregationResultRow currentResultObj = null;
 	private int[] parameterColIndex;
+	// the parameter arrays passed to the accumulators, reused for each row
+	private Object[][] accumulatorParameters;
 	private FacttableRow facttableRow;
 	private ICubeDimensionReader cubeDimensionReader;
 	private static Logger logger = Logger.getLogger( AggregationCalculator.class.getName( ) );
@@ -100,6 +103,7 @@ public class AggregationCalculator
 			this.timeFilterLevelCount = new int[aggregationFunction.length];
 			this.measureIndexes = new int[aggregationFunction.length];
 			this.parameterColIndex = new int[aggregationFunction.length];
+			this.accumulatorParameters = new Object[aggregationFunction.length][];
 				
 			for ( int i = 0; i < aggregationFunction.length; i++ )
 			{
@@ -128,7 +132,8 @@ public class AggregationCalculator
 				{
 					this.parameterColIndex[i] = -1;
 				}
-				this.accumulators[i] = aggregation.newAccumulator( );
+				this.accumulators[i] = BatchAccumulator.wrap( aggregation,
+						aggregation.newAccumulator( ) );
 				this.accumulators[i].start( );
 				final String measureName = aggregationFunction[i].getMeasureName( );
 				this.measureIndexes[i] = metaInfo.getMeasureIndex( measureName );
@@ -437,7 +442,7 @@ public class AggregationCalculator
 		Object[] parameters = null;
 		if( parameterColIndex[funcIndex] == -1 )
 		{
-			parameters = new Object[1];
+			parameters = getParameterArray( funcIndex, 1 );
 			if( measureIndexes[funcIndex] < 0 )
 			{
 				return null;
@@ -449,7 +454,7 @@ public class AggregationCalculator
 		}
 		else
 		{
-			parameters = new Object[2];
+			parameters = getParameterArray( funcIndex, 2 );
 			if( measureIndexes[funcIndex] < 0 )
 			{
 				parameters[0] = null;
@@ -463,6 +468,21 @@ public class AggregationCalculator
 		return parameters;
 	}
 	
+	/**
+	 * 
+	 * @param funcIndex
+	 * @param length
+	 * @return
+	 */
+	private Object[] getParameterArray( int funcIndex, int length )
+	{
+		if ( accumulatorParameters[funcIndex] == null )
+		{
+			accumulatorParameters[funcIndex] = new Object[length];
+		}
+		return accumulatorParameters[funcIndex];
+	}
+	
 	/**
 	 * 
 	 * @param key1
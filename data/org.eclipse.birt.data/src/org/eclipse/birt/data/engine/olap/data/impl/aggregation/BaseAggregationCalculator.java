@@ -14,6 +14,7 @@ package org.eclipse.birt.data.engine.olap.data.impl.aggregation;
 import java.io.IOException;
 
 import org.eclipse.birt.data.engine.aggregation.AggregationUtil;
+import org.eclipse.birt.data.engine.aggregation.BatchAccumulator;
 import org.eclipse.birt.data.engine.api.aggregation.Accumulator;
 import org.eclipse.birt.data.engine.api.aggregation.AggregationManager;
 import org.eclipse.birt.data.engine.api.aggregation.IAggrFunction;
@@ -116,7 +117,8 @@ public abstract class BaseAggregationCalculator implements IAggregationCalculato
 							.getMessage( ResourceConstants.UNSUPPORTED_FUNCTION )
 							+ aggregationFunctions[i].getFunctionName( ) );
 				}
-				this.accumulators[i] = aggregationFunc.newAccumulator( );
+				this.accumulators[i] = BatchAccumulator.wrap( aggregationFunc,
+						aggregationFunc.newAccumulator( ) );
 				this.accumulators[i].start( );
 			}
 		}
@@ -13,10 +13,22 @@ package org.eclipse.birt.data.engine.olap.data.util;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import org.eclipse.birt.data.engine.cache.TopNHeap;
 
 /**
  * TODO: to implement a disk based IDiskArray class which can insert element
  * randomly.
+ * <p>
+ * The elements are sorted ascending. With a max size, only the top or bottom
+ * maxSize elements are kept, the oldest ones being preserved among the equal
+ * elements. The elements are selected by a TopNHeap as they are added, and
+ * sorted only when the list is read.
  */
 
 public class OrderedDiskArray extends ArrayList implements IDiskArray
@@ -29,6 +41,12 @@ public class OrderedDiskArray extends ArrayList implements IDiskArray
 	private int maxSize = -1;
 	private boolean isTop = false;
 
+	private transient TopNHeap heap;
+	// the number of elements added so far
+	private int count = 0;
+	// whether the list is behind the heap
+	private boolean isDirty = false;
+
 	/**
 	 * 
 	 */
@@ -51,63 +69,108 @@ public class OrderedDiskArray extends ArrayList implements IDiskArray
 	{
 		if ( maxSize != 0 )
 		{
-			orderInsert( o );
+			if ( heap == null )
+			{
+				heap = new TopNHeap( maxSize < 0 ? Integer.MAX_VALUE : maxSize,
+						isTop,
+						new Comparator( ) {
+
+							public int compare( Object o1, Object o2 )
+							{
+								return CompareUtil.compare( o1, o2 );
+							}
+						} );
+			}
+			heap.add( o, count++ );
+			isDirty = true;
 			return true;
 		}
 		else
 			return false;
 	}
 
-	private void orderInsert( Object value )
+	/**
+	 * Sorts the elements kept by the heap into the list.
+	 */
+	private void sort( )
 	{
-		// search for the right insert position: the list is sorted ascending
-		int i = size( ) - 1;
-		// the break condition assures it to preserve the oldest elements
-		// If the filter is top, using ret > 0 as the break condition, otherwise
-		// if it is bottom, using ret >=0 as the break condition.
-		for ( ; i >= 0; i-- )
-		{
-			int ret = CompareUtil.compare( value, get( i ) );
-			if ( ret > 0 || !isTop && ret == 0 )// isTop&&ret>0 || !isTop&&ret>=0
-				break;
-		}
-		int pos = i + 1; // pos is the correct position should be inserted
-		if ( maxSize < 0 || size( ) < maxSize )
-		{
-			super.add( value );
-			// shift to the right insert position
-			for ( int j = size( ) - 1; j > pos; j-- )
-			{
-				Object obj = get( j - 1 );
-				set( j, obj );
-			}
-			set( pos, value );
-		}
-		else
-		{
-			if ( isTop )
-			{
-				// shift left one element: remove the littlest one
-				if ( pos > 0)
-				{
-					for ( int j = 0; j < pos - 1; j++ )
-					{
-						Object obj = get( j + 1 );
-						set( j, obj );
-					}
-					set( pos - 1, value );
-				}
-			}
-			else if ( pos < maxSize )
-			{// shift right one element: remove the greatest one
-				for ( int j = size( ) - 1; j > pos; j-- )
-				{
-					Object obj = get( j - 1 );
-					set( j, obj );
-				}
-				set( pos, value );
-			}
-		}
+		if ( !isDirty )
+			return;
+		isDirty = false;
+		super.clear( );
+		List values = Arrays.asList( heap.getValues( ) );
+		// the heap returns the best element first, and the oldest one first
+		// among the equal elements
+		if ( isTop )
+			Collections.reverse( values );
+		super.addAll( values );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#get(int)
+	 */
+	public Object get( int index )
+	{
+		sort( );
+		return super.get( index );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#size()
+	 */
+	public int size( )
+	{
+		sort( );
+		return super.size( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#isEmpty()
+	 */
+	public boolean isEmpty( )
+	{
+		return size( ) == 0;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#iterator()
+	 */
+	public Iterator iterator( )
+	{
+		sort( );
+		return super.iterator( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#toArray()
+	 */
+	public Object[] toArray( )
+	{
+		sort( );
+		return super.toArray( );
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see java.util.ArrayList#clear()
+	 */
+	public void clear( )
+	{
+		super.clear( );
+		heap = null;
+		count = 0;
+		isDirty = false;
 	}
 
 	/*
@@ -117,6 +180,6 @@ public class OrderedDiskArray extends ArrayList implements IDiskArray
 	 */
 	public void close( ) throws IOException
 	{
-		super.clear( );
+		clear( );
 	}
 }
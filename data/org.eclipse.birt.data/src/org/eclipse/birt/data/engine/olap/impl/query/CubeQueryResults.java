@@ -26,6 +26,7 @@ import javax.olap.cursor.CubeCursor;
 import org.eclipse.birt.core.data.ExpressionUtil;
 import org.eclipse.birt.core.data.IDimLevel;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.data.engine.api.DataEngine;
 import org.eclipse.birt.data.engine.api.DataEngineContext;
 import org.eclipse.birt.data.engine.api.IBaseExpression;
 import org.eclipse.birt.data.engine.api.IBaseQueryResults;
@@ -51,6 +52,7 @@ import org.eclipse.birt.data.engine.olap.data.api.IBindingValueFetcher;
 import org.eclipse.birt.data.engine.olap.data.api.cube.DocManagerMap;
 import org.eclipse.birt.data.engine.olap.data.api.cube.ICube;
 import org.eclipse.birt.data.engine.olap.data.document.CubeRADocumentManagerFactory;
+import org.eclipse.birt.data.engine.olap.data.document.DocumentManagerFactory;
 import org.eclipse.birt.data.engine.olap.data.document.IDocumentManager;
 import org.eclipse.birt.data.engine.olap.data.impl.NamingUtil;
 import org.eclipse.birt.data.engine.olap.data.impl.aggregation.BindingValueFetcher;
@@ -351,12 +353,62 @@ public class CubeQueryResults implements ICubeQueryResults
 		if ( manager != null )
 		{
 			if( manager.exist( NamingUtil.getCubeDocName( executor.getCubeQueryDefinition( ).getName( ) ) ))
+			{
+				if ( isMemoryMappedCube( ) )
+					return loadMappedDocumentManager( manager, executor );
 				return manager;
+			}
 		}
 		return CubeRADocumentManagerFactory.createRADocumentManager( executor.getCubeQueryDefinition( ).getName( ), 
 				executor.getContext( ).getDocReader( ) );
 	}
 
+	/**
+	 * Returns whether the materialized cube is read through a memory mapped
+	 * document manager.
+	 * 
+	 * @return
+	 */
+	private boolean isMemoryMappedCube( )
+	{
+		if ( appContext == null )
+			return false;
+		Object option = appContext.get( DataEngine.MEMORY_MAPPED_CUBE );
+		return option != null
+				&& Boolean.valueOf( option.toString( ) ).booleanValue( );
+	}
+
+	/**
+	 * Loads a read-only, memory mapped document manager on the files of the
+	 * given file document manager. The mapped manager is closed with the
+	 * other document managers when the data engine shuts down.
+	 * 
+	 * @param manager
+	 * @param executor
+	 * @return
+	 * @throws DataException
+	 * @throws IOException
+	 */
+	private IDocumentManager loadMappedDocumentManager(
+			IDocumentManager manager, CubeQueryExecutor executor )
+			throws DataException, IOException
+	{
+		// the mapped manager reads the files, so write out the buffered data
+		manager.flush( );
+		String engineKey = String.valueOf( executor.getSession( )
+				.getEngine( )
+				.hashCode( ) );
+		IDocumentManager mappedManager = DocumentManagerFactory.loadMappedFileDocumentManager( executor.getSession( )
+				.getTempDir( ),
+				engineKey );
+		DocManagerMap.getDocManagerMap( ).set( engineKey,
+				executor.getSession( ).getTempDir( )
+						+ engineKey + "mapped" //$NON-NLS-1$
+						+ System.identityHashCode( mappedManager ),
+				mappedManager );
+		return mappedManager;
+	}
+
 	/**
 	 * 
 	 * @param cubeName
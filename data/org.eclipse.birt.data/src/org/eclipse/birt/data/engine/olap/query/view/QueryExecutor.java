@@ -43,6 +43,7 @@ import org.eclipse.birt.data.engine.olap.api.query.ICubeQueryDefinition;
 import org.eclipse.birt.data.engine.olap.api.query.ICubeSortDefinition;
 import org.eclipse.birt.data.engine.olap.api.query.IEdgeDefinition;
 import org.eclipse.birt.data.engine.olap.api.query.ILevelDefinition;
+import org.eclipse.birt.data.engine.olap.cursor.WindowedAggregationResultSet;
 import org.eclipse.birt.data.engine.olap.data.api.CubeQueryExecutorHelper;
 import org.eclipse.birt.data.engine.olap.data.api.DimLevel;
 import org.eclipse.birt.data.engine.olap.data.api.IAggregationResultSet;
@@ -299,6 +300,7 @@ public class QueryExecutor
 			}
 		}
 		
+		rs = applyWindowSetting( view, rs );
 		return new CubeResultSet( rs, view, cubeQueryExecutorHelper );
 	}
 	
@@ -1245,7 +1247,10 @@ public class QueryExecutor
 			{
 				int limitSize = populateFetchLimitSize( cubeView.getAppContext( )
 						.get( DataEngine.CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE ) );
-				if ( limitSize > 0 && limitSize < rsArray[count].length( ) )
+				int offset = populateFetchLimitSize( cubeView.getAppContext( )
+						.get( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE ) );
+				if ( offset < 0
+						&& limitSize > 0 && limitSize < rsArray[count].length( ) )
 				{
 					throw new DataException( ResourceConstants.RESULT_LENGTH_EXCEED_COLUMN_LIMIT,
 							new Object[]{
@@ -1261,7 +1266,10 @@ public class QueryExecutor
 			{
 				int limitSize = populateFetchLimitSize( cubeView.getAppContext( )
 						.get( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE ) );
-				if ( limitSize > 0 && limitSize < rsArray[count].length( ) )
+				int offset = populateFetchLimitSize( cubeView.getAppContext( )
+						.get( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE ) );
+				if ( offset < 0
+						&& limitSize > 0 && limitSize < rsArray[count].length( ) )
 				{
 					throw new DataException( ResourceConstants.RESULT_LENGTH_EXCEED_ROW_LIMIT,
 							new Object[]{
@@ -1273,6 +1281,65 @@ public class QueryExecutor
 		}
 	}
 	
+	/**
+	 * Replaces the result sets of the edges which have a fetch offset with
+	 * the window of the fetch limit size starting at the offset. The result
+	 * sets are windowed after they are saved, so that the window of another
+	 * rendering may be fetched from the same results.
+	 * 
+	 * @param cubeView
+	 * @param rsArray
+	 * @return
+	 * @throws IOException
+	 */
+	private IAggregationResultSet[] applyWindowSetting( BirtCubeView cubeView,
+			IAggregationResultSet[] rsArray ) throws IOException
+	{
+		if ( cubeView.getAppContext( ) == null )
+			return rsArray;
+		int count = 0;
+		if ( cubeView.getColumnEdgeView( ) != null )
+		{
+			int offset = populateFetchLimitSize( cubeView.getAppContext( )
+					.get( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_COLUMN_EDGE ) );
+			if ( offset >= 0 )
+			{
+				rsArray[count] = new WindowedAggregationResultSet( rsArray[count],
+						offset,
+						populateWindowSize( cubeView.getAppContext( )
+								.get( DataEngine.CUBECURSOR_FETCH_LIMIT_ON_COLUMN_EDGE ) ) );
+			}
+			count++;
+		}
+		if ( cubeView.getRowEdgeView( ) != null )
+		{
+			int offset = populateFetchLimitSize( cubeView.getAppContext( )
+					.get( DataEngine.CUBECURSOR_FETCH_OFFSET_ON_ROW_EDGE ) );
+			if ( offset >= 0 )
+			{
+				rsArray[count] = new WindowedAggregationResultSet( rsArray[count],
+						offset,
+						populateWindowSize( cubeView.getAppContext( )
+								.get( DataEngine.CUBECUSROR_FETCH_LIMIT_ON_ROW_EDGE ) ) );
+			}
+			count++;
+		}
+		return rsArray;
+	}
+
+	/**
+	 * As the fetch limit, a window size of zero is no limit: the window has
+	 * all the members after its offset.
+	 * 
+	 * @param propValue
+	 * @return the window size, or -1 for no limit
+	 */
+	private int populateWindowSize( Object propValue )
+	{
+		int windowSize = populateFetchLimitSize( propValue );
+		return windowSize > 0 ? windowSize : -1;
+	}
+
 	/**
 	 * 
 	 * @param propValue
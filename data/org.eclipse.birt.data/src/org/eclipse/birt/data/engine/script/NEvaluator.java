@@ -1,5 +1,7 @@
 package org.eclipse.birt.data.engine.script;
 
+import java.util.Comparator;
+
 import org.eclipse.birt.core.data.DataTypeUtil;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.script.ScriptContext;
@@ -7,9 +9,12 @@ import org.eclipse.birt.core.script.ScriptExpression;
 import org.eclipse.birt.data.engine.api.IConditionalExpression;
 import org.eclipse.birt.data.engine.api.IScriptExpression;
 import org.eclipse.birt.data.engine.cache.BasicCachedArray;
+import org.eclipse.birt.data.engine.cache.BasicCachedList;
+import org.eclipse.birt.data.engine.cache.TopNHeap;
 import org.eclipse.birt.data.engine.core.DataException;
 import org.eclipse.birt.data.engine.expression.ExprEvaluateUtil;
 import org.eclipse.birt.data.engine.i18n.ResourceConstants;
+import org.eclipse.birt.data.engine.impl.DataEngineSession;
 import org.eclipse.birt.data.engine.impl.DataSetRuntime;
 import org.mozilla.javascript.Scriptable;
 
@@ -20,8 +25,19 @@ import org.mozilla.javascript.Scriptable;
  */
 public abstract class NEvaluator
 {
-	private BasicCachedArray valueList; 
-	private BasicCachedArray rowIdList;
+	// the greatest N whose values are selected in the first pass
+	private static final int MAX_HEAP_SIZE = 100000;
+
+	// the top/bottom N values of the first pass
+	private TopNHeap heap;
+	// the values of the first pass if N is greater than MAX_HEAP_SIZE
+	private BasicCachedList valueList;
+	// the ascending row ids of the top/bottom N values, in the second pass
+	private int[] rowIds;
+	// the flags of the top/bottom N rows by row id - 1, in the second pass,
+	// if N is greater than MAX_HEAP_SIZE
+	private BasicCachedArray rowIdFlags;
+	private int rowIdCursor = 0;
 	private int firstPassRowNumberCounter = 0;
 	private int secondPassRowNumberCounter = 0;
 	private int qualifiedRowCounter = 0;
@@ -155,8 +171,11 @@ public abstract class NEvaluator
 	}
 
 	/**
-	 * Do the first pass. In the first pass we maintain a value list and a row id list that will
-	 * host all top/bottom N values/rowIds so that in pass 2 we can use them to filter rows out.
+	 * Do the first pass. In the first pass we maintain a heap that will host
+	 * all top/bottom N values/rowIds so that in pass 2 we can use them to
+	 * filter rows out. If N is too large for the heap to be kept in memory,
+	 * all the values are cached on disk instead, and selected at the start of
+	 * pass 2.
 	 * @param value
 	 * @return
 	 * @throws DataException
@@ -164,70 +183,41 @@ public abstract class NEvaluator
 	private boolean doFirstPass( Object value ) throws DataException
 	{
 		firstPassRowNumberCounter++;
-		if ( valueList == null )
+		if ( N > MAX_HEAP_SIZE )
 		{
-			valueList = new BasicCachedArray( tempDir, N );
-			rowIdList = new BasicCachedArray( tempDir, N );
-			
+			if ( valueList == null )
+			{
+				valueList = new BasicCachedList( tempDir,
+						DataEngineSession.getCurrentClassLoader( ) );
+			}
+			valueList.add( value );
+			return true;
 		}
-		if ( value != null )
+		if ( heap == null )
 		{
-			populateValueListAndRowIdList( value, N );
+			heap = new TopNHeap( N, isTop( ), new ValueComparator( ) );
 		}
-		return true;
-	}
-
-	/**
-	 * @param value
-	 * @param N
-	 * @throws DataException
-	 */
-	private void populateValueListAndRowIdList( Object value, int N ) throws DataException
-	{
-		assert N>=0;
-		int activeCount = N < this.firstPassRowNumberCounter? N:this.firstPassRowNumberCounter;
-		for( int i = 0; i < activeCount; i++ )
+		if ( value != null )
 		{
-			if( valueList.get( i ) == null )
+			try
 			{
-				valueList.set( i, value);
-				rowIdList.set( i, Integer.valueOf( firstPassRowNumberCounter ) );
-				break;
+				heap.add( value, firstPassRowNumberCounter );
 			}
-			else 
+			catch ( ValueComparisonException e )
 			{
-				Object result = this.doCompare( value, valueList.get( i ) );
-				
-				try
-				{
-					// filter in
-					if ( DataTypeUtil.toBoolean( result ).booleanValue( ) == true )
-					{
-						for( int j = activeCount - 1; j > i; j--)
-						{
-							valueList.set( j, valueList.get( j - 1 ) );
-							rowIdList.set( j, rowIdList.get( j - 1 ) );
-						}
-						valueList.set( i, value );
-						rowIdList.set( i,
-								Integer.valueOf( firstPassRowNumberCounter ) );
-						break;
-					}
-				}
-				catch ( BirtException e )
-				{
-					throw DataException.wrap(e);
-				}
+				throw e.getWrappedException( );
 			}
 		}
+		return true;
 	}
-	
+
 	/**
 	 * Do the second pass
 	 * @param N
 	 * @return
+	 * @throws DataException
 	 */
-	private boolean doSecondPass( )
+	private boolean doSecondPass( ) throws DataException
 	{
 		secondPassRowNumberCounter++;
 		if( secondPassRowNumberCounter > this.filterPassController.getSecondPassRowCount() )
@@ -235,22 +225,56 @@ public abstract class NEvaluator
 		else
 			this.secondPassRowNumberCounter = this.filterPassController.getSecondPassRowCount();
 		
-		if ( qualifiedRowCounter < N )
+		if ( rowIds == null && rowIdFlags == null )
 		{
-			for ( int i = 0; i < N; i++ )
+			if ( valueList != null )
 			{
-				int rowId = 0;
-				if( rowIdList.get( i )!=null)
+				try
 				{
-					rowId = ((Integer)rowIdList.get( i )).intValue( );
+					rowIdFlags = TopNHeap.select( valueList,
+							N,
+							isTop( ),
+							new ValueComparator( ),
+							MAX_HEAP_SIZE,
+							tempDir );
 				}
-				if ( rowId == secondPassRowNumberCounter )
+				catch ( ValueComparisonException e )
 				{
-					qualifiedRowCounter++;
-					reset( );
-					return true;
-
+					throw e.getWrappedException( );
 				}
+				valueList = null;
+			}
+			else
+			{
+				rowIds = heap == null ? new int[0] : heap.getIndexes( );
+			}
+			rowIdCursor = 0;
+			heap = null;
+		}
+		if ( qualifiedRowCounter < N && rowIdFlags != null )
+		{
+			if ( secondPassRowNumberCounter <= rowIdFlags.length( )
+					&& rowIdFlags.get( secondPassRowNumberCounter - 1 ) != null )
+			{
+				qualifiedRowCounter++;
+				reset( );
+				return true;
+			}
+			return false;
+		}
+		else if ( qualifiedRowCounter < N )
+		{
+			// the row ids are ascending, as are the row numbers of the pass
+			while ( rowIdCursor < rowIds.length
+					&& rowIds[rowIdCursor] < secondPassRowNumberCounter )
+				rowIdCursor++;
+			if ( rowIdCursor < rowIds.length
+					&& rowIds[rowIdCursor] == secondPassRowNumberCounter )
+			{
+				rowIdCursor++;
+				qualifiedRowCounter++;
+				reset( );
+				return true;
 			}
 			return false;
 		}
@@ -281,11 +305,61 @@ public abstract class NEvaluator
 		firstPassRowNumberCounter = 0;
 		secondPassRowNumberCounter = 0;
 		qualifiedRowCounter = 0;
-		rowIdList = null;
+		heap = null;
 		valueList = null;
+		rowIds = null;
+		rowIdFlags = null;
+		rowIdCursor = 0;
 		N = -1;
 	}
-	protected abstract Object doCompare( Object value1, Object value2 ) throws DataException;
+
+	/**
+	 * Whether the greatest values are selected rather than the least ones.
+	 * 
+	 * @return
+	 */
+	protected abstract boolean isTop( );
+
+	/**
+	 * The comparator of the operand values, which wraps the comparison errors
+	 * in ValueComparisonException.
+	 */
+	private static class ValueComparator implements Comparator
+	{
+
+		public int compare( Object value1, Object value2 )
+		{
+			try
+			{
+				return ScriptEvalUtil.compare( value1, value2 );
+			}
+			catch ( DataException e )
+			{
+				throw new ValueComparisonException( e );
+			}
+		}
+	}
+
+	/**
+	 * The exception which carries a comparison error out of the heap.
+	 */
+	private static class ValueComparisonException extends RuntimeException
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		private DataException wrapped;
+
+		ValueComparisonException( DataException e )
+		{
+			this.wrapped = e;
+		}
+
+		DataException getWrappedException( )
+		{
+			return wrapped;
+		}
+	}
 }
 
 /**
@@ -294,9 +368,9 @@ public abstract class NEvaluator
  */
 class TopNEvaluator extends NEvaluator
 {
-	protected Object doCompare( Object value1, Object value2 ) throws DataException
+	protected boolean isTop( )
 	{
-		return ScriptEvalUtil.evalConditionalExpr( value1, IConditionalExpression.OP_GT, value2, null);
+		return true;
 	}
 }
 
@@ -306,8 +380,8 @@ class TopNEvaluator extends NEvaluator
  */
 class BottomNEvaluator extends NEvaluator
 {
-	protected Object doCompare( Object value1, Object value2 ) throws DataException
+	protected boolean isTop( )
 	{
-		return ScriptEvalUtil.evalConditionalExpr( value1, IConditionalExpression.OP_LT, value2, null);
+		return false;
 	}
 }
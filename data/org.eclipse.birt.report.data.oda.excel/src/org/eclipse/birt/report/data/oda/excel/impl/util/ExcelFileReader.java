@@ -10,128 +10,124 @@
   *    Actuate Corporation - more efficient xlsx processing;
   *         support of timestamp, datetime, time, and date data types
   *    Actuate Corporation - support defining an Excel input file path or URI as part of the data source definition
+  *    Actuate Corporation - stream the rows of xlsx and xls worksheets
   *******************************************************************************/
 
 package org.eclipse.birt.report.data.oda.excel.impl.util;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
 
-import org.apache.poi.hssf.usermodel.HSSFDateUtil;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
 import org.eclipse.birt.report.data.oda.excel.ExcelODAConstants;
 import org.eclipse.birt.report.data.oda.excel.impl.i18n.Messages;
 import org.eclipse.datatools.connectivity.oda.OdaException;
 import org.xml.sax.SAXException;
 
-import com.ibm.icu.text.SimpleDateFormat;
-
+/**
+ * Reads the rows of the selected worksheets of a workbook one at a time. The
+ * worksheets are parsed as the rows are read, so the memory used doesn't
+ * depend on the size of the workbook. A workbook which is not a local file is
+ * copied to a temporary file first.
+ */
 public class ExcelFileReader {
 
-	private InputStream fis;
+	private static Logger logger = Logger.getLogger( ExcelFileReader.class.getName( ) );
+
+	private static final byte[] ZIP_HEADER = {'P', 'K', 3, 4};
+
+	private Object source;
 	private String fileExtension;
 	private List<String> workSheetList;
-	LinkedHashMap<String, String> xlsxWorkSheetList;
+	private Map<String, String> xlsxSheetRidNameMap;
 	private int currentSheetIndex = 0;
 
-	private Workbook workBook;
-	private Sheet sheet;
-	private FormulaEvaluator formulaEvaluator;
+	private File file;
+	private boolean isTempFile;
+	private XlsxFileReader xlsxReader;
+	private XlsFileReader xlsReader;
+	private SheetReader sheetReader;
 
 	private boolean isInitialised;
 
-	private int maxRowsInAllSheet;
-	private int maxRowsInThisSheet;
+	private int maxRowsInAllSheet = -1;
 	private int currentRowIndex = 0;
 	private int maxColumnIndex = 0;
-	private int xlsxRowsToRead;
-	private XlsxRowCallBack callback;
-	private XlsxFileReader xlsxread;
-	Map<String, String> xlsxSheetRidNameMap;
-    private SimpleDateFormat sdf;  
-	public void setCurrentRowIndex(int currentRowIndex) {
-		this.currentRowIndex = currentRowIndex;
+
+	/**
+	 * Moves to a row of the selected worksheets. Going back means reading the
+	 * worksheets again from their first row.
+	 * 
+	 * @param currentRowIndex
+	 * @throws IOException
+	 * @throws OdaException
+	 */
+	public void setCurrentRowIndex(int currentRowIndex) throws IOException,
+			OdaException {
+		if (!isInitialised || currentRowIndex == this.currentRowIndex)
+			return;
+		if (currentRowIndex < this.currentRowIndex) {
+			closeSheet();
+			currentSheetIndex = 0;
+			this.currentRowIndex = 0;
+			openSheet();
+		}
+		while (this.currentRowIndex < currentRowIndex && readLine() != null)
+			continue;
 	}
 
 	public void setMaxColumnIndex(int maxColumnIndex) {
 		this.maxColumnIndex = maxColumnIndex;
 	}
 
-	public ExcelFileReader(InputStream fis, String fileExtension,
-			List<String> sheetNameList, int rowsToRead) {
-		this.fis = fis;
+	/**
+	 * @param source
+	 *            the File or URI of the workbook
+	 * @param fileExtension
+	 * @param sheetNameList
+	 */
+	public ExcelFileReader(Object source, String fileExtension,
+			List<String> sheetNameList) {
+		this.source = source;
 		this.fileExtension = fileExtension;
 		this.workSheetList = sheetNameList;
-		this.xlsxRowsToRead = rowsToRead;
-		sdf = new SimpleDateFormat( );
 	}
 
-	public boolean checkXlsEndOfRows(){
-		for(int cnt=currentRowIndex+1; cnt<= (currentRowIndex + ExcelODAConstants.BLANK_LOOK_AHEAD); cnt++){
-			Row row = sheet.getRow(cnt);
-			if (row != null) {
-				if (maxColumnIndex == 0)
-					maxColumnIndex = row.getLastCellNum();
-
-				for (short colIx = 0; colIx < maxColumnIndex; colIx++) {
-					Cell cell = row.getCell(colIx);
-					String cellVal = getCellValue(cell);
-					if( cell != null && cellVal != null &&!ExcelODAConstants.EMPTY_STRING.equals( cellVal ) ){
-						return false;
-					}
-				}
-			}			
-		}
-		return true;
-	}
-	
 	public List<String> readLine() throws IOException, OdaException {
 		if (!isInitialised)
 			initialise();
 
-		if (currentRowIndex >= maxRowsInThisSheet) {
+		List<String> rowData = null;
+		while (sheetReader != null && (rowData = sheetReader.readRow()) == null) {
 			if (!initialiseNextSheet())
 				return null;
 		}
-		List<String> rowData = new ArrayList<String>();
-		if (isXlsFile(fileExtension)) {
-			Row row = sheet.getRow(currentRowIndex);
-			if (row != null) {
-				if (maxColumnIndex == 0)
-					maxColumnIndex = row.getLastCellNum();
-
-				boolean blankRow = true;
-				for (short colIx = 0; colIx < maxColumnIndex; colIx++) {
-					Cell cell = row.getCell(colIx);
-					String cellVal = getCellValue(cell);
-					if( cell != null && cellVal != null && !cellVal.equals( ExcelODAConstants.EMPTY_STRING ) ){
-						blankRow = false;
-					}
-					rowData.add(cellVal);
-				}
-				if( blankRow ){
-					if( checkXlsEndOfRows() )return null;
-				}
+		if (rowData == null)
+			return null;
 
-			} else {
-				return null;
-			}
-		} else if (isXlsxFile(fileExtension)){
-			rowData = callback.getRow(currentRowIndex);
+		if (isXlsFile(fileExtension)) {
+			if (maxColumnIndex == 0)
+				maxColumnIndex = rowData.size();
+			while (rowData.size() > maxColumnIndex)
+				rowData.remove(rowData.size() - 1);
+			while (rowData.size() < maxColumnIndex)
+				rowData.add(ExcelODAConstants.EMPTY_STRING);
 		}
 
 		currentRowIndex++;
@@ -139,79 +135,129 @@ public class ExcelFileReader {
 
 	}
 
+	/**
+	 * Releases the workbook. Reading a row afterwards opens the workbook again
+	 * and starts from the first row.
+	 * 
+	 * @throws IOException
+	 */
 	public void close() throws IOException {
-		this.fis.close();
+		try {
+			closeSheet();
+			if (xlsxReader != null)
+				xlsxReader.close();
+			if (xlsReader != null)
+				xlsReader.close();
+		} finally {
+			xlsxReader = null;
+			xlsReader = null;
+			if (isTempFile)
+				file.delete();
+			file = null;
+			isTempFile = false;
+			isInitialised = false;
+			currentSheetIndex = 0;
+			currentRowIndex = 0;
+		}
 	}
 
 	private void initialise() throws IOException, OdaException {
 		try {
+			openFile();
 			if (isXlsxFile(fileExtension)) {
-				xlsxread = new XlsxFileReader(fis);
-				callback = new XlsxRowCallBack();
-				xlsxSheetRidNameMap = xlsxread.getSheetNames();
-
-				for (String sheetName : workSheetList) {
-					String rid = xlsxSheetRidNameMap.get(sheetName);
-					if (rid == null)
-						throw new OdaException(
-								Messages.getString("invalid_sheet_name")); //$NON-NLS-1$
-
-					xlsxread.processSheet(rid, callback, this.xlsxRowsToRead);
-					maxRowsInAllSheet = callback.getMaxRowsInSheet();
-					maxRowsInThisSheet = callback.getMaxRowsInSheet();
-				}
-
+				xlsxReader = new XlsxFileReader(file);
+				xlsxSheetRidNameMap = xlsxReader.getSheetNames();
 			} else if ( isXlsFile( fileExtension ) ){
-
-				if( workBook == null){
-					workBook = new HSSFWorkbook(fis);
-				}
-				formulaEvaluator = workBook.getCreationHelper()
-						.createFormulaEvaluator();
-				workBook.setMissingCellPolicy(Row.RETURN_NULL_AND_BLANK);
-				sheet = workBook.getSheet(workSheetList.get(currentSheetIndex));
-				if (sheet == null)
-					throw new OdaException(
-							Messages.getString("invalid_sheet_name")); 
-				maxRowsInThisSheet = sheet.getPhysicalNumberOfRows();
-
-				for (String sheetName : workSheetList) {
-					Sheet localSheet = workBook.getSheet(sheetName);
-					maxRowsInAllSheet += localSheet.getPhysicalNumberOfRows();
-				}
+				xlsReader = new XlsFileReader(file);
 			}
 			isInitialised = true;
-		} catch (NullPointerException e) {
-			throw new OdaException(e);
+			currentSheetIndex = 0;
+			currentRowIndex = 0;
+			openSheet();
 		} catch (OpenXML4JException e) {
+			close();
 			throw new OdaException(e);
 		} catch (SAXException e) {
-			if( e.getMessage().equalsIgnoreCase( XlsxFileReader.ROW_LIMIT_REACHED_EX_MSG ) ){
-				maxRowsInThisSheet = callback.getMaxRowsInSheet();
-				isInitialised = true;
-			}else{
-				throw new OdaException(e);
+			close();
+			throw new OdaException(e);
+		} catch (IOException e) {
+			close();
+			throw e;
+		} catch (OdaException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Finds the file of the workbook, or copies the workbook to a temporary
+	 * file if it is not a local file.
+	 * 
+	 * @throws IOException
+	 */
+	private void openFile() throws IOException {
+		file = ResourceLocatorUtil.getFile(source);
+		if (file != null)
+			return;
+		file = File.createTempFile("birtexcel", "." + fileExtension); //$NON-NLS-1$ //$NON-NLS-2$
+		isTempFile = true;
+		InputStream in = ResourceLocatorUtil.getURIStream(source);
+		if (in == null)
+			throw new FileNotFoundException(String.valueOf(source));
+		try {
+			OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+			try {
+				byte[] buffer = new byte[8192];
+				int count;
+				while ((count = in.read(buffer)) != -1)
+					out.write(buffer, 0, count);
+			} finally {
+				out.close();
 			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private void openSheet() throws IOException, OdaException {
+		String sheetName = workSheetList.get(currentSheetIndex);
+		sheetReader = openSheetReader(sheetName);
+		if (sheetReader == null)
+			throw new OdaException(Messages.getFormattedString(
+					"invalid_sheet_name", new Object[]{sheetName})); //$NON-NLS-1$
+	}
+
+	private SheetReader openSheetReader(String sheetName) throws IOException,
+			OdaException {
+		try {
+			if (xlsxReader != null) {
+				String rid = xlsxSheetRidNameMap.get(sheetName);
+				return rid == null ? null : xlsxReader.openSheet(rid);
+			} else if (xlsReader != null) {
+				return xlsReader.openSheet(sheetName);
+			}
+			return null;
+		} catch (OpenXML4JException e) {
+			throw new OdaException(e);
+		} catch (XMLStreamException e) {
+			throw new OdaException(e);
+		}
+	}
+
+	private void closeSheet() throws IOException {
+		if (sheetReader != null) {
+			SheetReader reader = sheetReader;
+			sheetReader = null;
+			reader.close();
 		}
 	}
 
 	private boolean initialiseNextSheet() throws IOException, OdaException {
+		closeSheet();
 		if (workSheetList.size() <= ++currentSheetIndex) {
 			return false;
 		}
-		if (isXlsxFile(fileExtension)) {
-			return false;
-		} else if ( isXlsFile( fileExtension ) ){
-			do {
-				sheet = workBook.getSheet(workSheetList.get(currentSheetIndex));
-				maxRowsInThisSheet = sheet.getPhysicalNumberOfRows();
-			} while (maxRowsInThisSheet == 0
-					&& (workSheetList.size() < ++currentSheetIndex));
-		}
-		if (maxRowsInThisSheet == 0)
-			return false;
-
-		currentRowIndex = 0;
+		openSheet();
 		return true;
 	}
 
@@ -229,93 +275,71 @@ public class ExcelFileReader {
 		return getExtensionName( uri );
 	}
 
+	/**
+	 * Tells the format of a workbook from its first bytes: a xlsx workbook is
+	 * a zip package, anything else is assumed to be a xls document.
+	 * 
+	 * @param uri
+	 * @return
+	 */
 	public static String getExtensionName( Object uri )
 	{
-		InputStream xlsxIs = null;
-		InputStream xlsIs = null;
+		InputStream is = null;
 		try
 		{
-			xlsxIs = ResourceLocatorUtil.getURIStream( uri );
-			new XlsxFileReader( xlsxIs );
+			is = ResourceLocatorUtil.getURIStream( uri );
+			if ( is == null )
+				return ExcelODAConstants.UNSUPPORT_FORMAT;
+			for ( int i = 0; i < ZIP_HEADER.length; i++ )
+			{
+				if ( is.read( ) != ZIP_HEADER[i] )
+					return ExcelODAConstants.XLS_FORMAT;
+			}
 			return ExcelODAConstants.XLSX_FORMAT;
 		}
 		catch ( Exception e )
 		{
-			try {
-				xlsIs = ResourceLocatorUtil.getURIStream( uri );
-				
-				//This is expensive.  If not an xlsx document assume it is a xls doc
-				//new HSSFWorkbook(xlsIs);
-				return ExcelODAConstants.XLS_FORMAT;
-			} catch (Exception e1) {
-			}
-
+			return ExcelODAConstants.UNSUPPORT_FORMAT;
 		}
 		finally
 		{
 			try {
-				if (xlsIs != null)
-				{
-					xlsIs.close();
-				}
-				if ( xlsxIs != null)
+				if ( is != null)
 				{
-					xlsxIs.close();
+					is.close();
 				}
 			} catch (IOException e) {
-				// TODO Auto-generated catch block
-				e.printStackTrace();
+				logger.log( Level.FINE, e.getMessage( ), e );
 			}
 		}
-		return ExcelODAConstants.UNSUPPORT_FORMAT;
-	}
-
-	public String getCellValue(Cell cell) {
-		if (cell == null)
-			return ExcelODAConstants.EMPTY_STRING;
-
-		if (cell.getCellType() == Cell.CELL_TYPE_FORMULA) {
-			return resolveFormula(cell);
-		}
-
-		if (cell.getCellType() == Cell.CELL_TYPE_NUMERIC) {
-			if(	HSSFDateUtil.isCellDateFormatted(cell) ){		
-				Date myjavadate =  HSSFDateUtil.getJavaDate(cell.getNumericCellValue());
-				return sdf.format( myjavadate );
-			}
-			return ((Double) cell.getNumericCellValue()).toString();
-		}
-
-		return cell.toString();
-	}
-
-	private String resolveFormula(Cell cell) {
-		if (formulaEvaluator == null)
-			return cell.toString();
-		switch (formulaEvaluator.evaluateFormulaCell(cell)) {
-		case Cell.CELL_TYPE_BOOLEAN:
-			return ((Boolean) cell.getBooleanCellValue()).toString();
-
-		case Cell.CELL_TYPE_NUMERIC:
-			if (org.apache.poi.ss.usermodel.DateUtil.isCellDateFormatted(cell) ){
-				//need to check for nulls
-				//double myexdate = org.apache.poi.ss.usermodel.DateUtil.getExcelDate(cell.getDateCellValue());
-				Date myjavadate = org.apache.poi.ss.usermodel.DateUtil.getJavaDate(cell.getNumericCellValue());
-				return sdf.format( myjavadate );
-			}
-			return ((Double) cell.getNumericCellValue()).toString();
-
-		case Cell.CELL_TYPE_STRING:
-			return cell.getStringCellValue();
-
-		default:
-			return null;
-		}
 	}
 
+	/**
+	 * Returns the number of rows of the selected worksheets, which are read
+	 * once to count them.
+	 * 
+	 * @return
+	 * @throws IOException
+	 * @throws OdaException
+	 */
 	public int getMaxRows() throws IOException, OdaException {
 		if (!isInitialised)
 			initialise();
+		if (maxRowsInAllSheet < 0) {
+			int count = 0;
+			for (String sheetName : workSheetList) {
+				SheetReader reader = openSheetReader(sheetName);
+				if (reader == null)
+					continue;
+				try {
+					while (reader.readRow() != null)
+						count++;
+				} finally {
+					reader.close();
+				}
+			}
+			maxRowsInAllSheet = count;
+		}
 		return maxRowsInAllSheet;
 	}
 
@@ -329,17 +353,22 @@ public class ExcelFileReader {
 			// using uri, we may not know the extension name of the file.
 			if (isXlsxFile(extension)) {
 				XlsxFileReader poiRdr = new XlsxFileReader(fis);
-				
-				LinkedHashMap<String, String> lxlsxWorkSheetList  = poiRdr.getSheetNames();
-				for (Map.Entry<String, String> entry : lxlsxWorkSheetList
-						.entrySet()) {
-					sheetNames.add(entry.getKey());
+				try {
+					LinkedHashMap<String, String> lxlsxWorkSheetList  = poiRdr.getSheetNames();
+					for (Map.Entry<String, String> entry : lxlsxWorkSheetList
+							.entrySet()) {
+						sheetNames.add(entry.getKey());
+					}
+				} finally {
+					poiRdr.close();
 				}
 			} else if ( isXlsFile( extension ) ){
 				//Only called in design env
-				HSSFWorkbook lworkBook = new HSSFWorkbook(fis);
-				for (int i = 0; i < lworkBook.getNumberOfSheets(); i++) {
-					sheetNames.add(lworkBook.getSheetName(i));
+				XlsFileReader xlsRdr = new XlsFileReader(new BufferedInputStream(fis));
+				try {
+					sheetNames.addAll(xlsRdr.getSheetNames());
+				} finally {
+					xlsRdr.close();
 				}
 			}
 		} catch (FileNotFoundException e) {
@@ -347,8 +376,7 @@ public class ExcelFileReader {
 		} catch (IOException e) {
 			// do nothing
 		} catch (Exception e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			logger.log( Level.WARNING, e.getMessage( ), e );
 		}
 		finally
 		{
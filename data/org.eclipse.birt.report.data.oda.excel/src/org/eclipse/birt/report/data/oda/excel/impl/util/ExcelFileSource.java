@@ -285,13 +285,12 @@ public class ExcelFileSource {
 			List<String[]> v = fetchQueriedDataFromFileToList();
 			return copyDataFromListToTwoDimensionArray(v);
 		} catch (IOException e) {
+			close();
 			throw new OdaException(e);
-		} finally {
-			try {
-				excelFileReader.close();
-			} catch (IOException e) {
-				//
-			}
+		} catch (OdaException e) {
+			// the reader stays open between two fetches, as it streams the rows
+			close();
+			throw e;
 		}
 	}
 
@@ -475,7 +474,7 @@ public class ExcelFileSource {
 		return excelFileReader.readLine();
 	}
 
-	public void resetRowCounter(){
+	public void resetRowCounter() throws OdaException, IOException {
 		
 		if( this.excelFileReader != null)
 		this.excelFileReader.setCurrentRowIndex(0);
@@ -491,8 +490,8 @@ public class ExcelFileSource {
 		if( isReaderInitialised )
 		    return;
 		this.fileExtension = ExcelFileReader.getExtensionName( uri );
-		this.excelFileReader = new ExcelFileReader(ResourceLocatorUtil.getURIStream( uri ), this.fileExtension,
-				this.sheetNameList, this.statementMaxRows);
+		this.excelFileReader = new ExcelFileReader(uri, this.fileExtension,
+				this.sheetNameList);
 		isReaderInitialised = true;
 
 	}
@@ -119,6 +119,31 @@ public class ResourceLocatorUtil
 		}
 	}
 
+	/**
+	 * Returns the local file of a File or a file URI, null if the resource is
+	 * not a local file.
+	 */
+	public static File getFile( Object obj )
+	{
+		if ( obj instanceof File )
+		{
+			return (File) obj;
+		}
+		else if ( obj instanceof URI
+				&& "file".equalsIgnoreCase( ( (URI) obj ).getScheme( ) ) ) //$NON-NLS-1$
+		{
+			try
+			{
+				return new File( (URI) obj );
+			}
+			catch ( IllegalArgumentException e )
+			{
+				// not a hierarchical file URI, read it as a stream
+			}
+		}
+		return null;
+	}
+
 	public static InputStream getURIStream( Object obj ) throws IOException
 	{
 		if ( obj instanceof File )
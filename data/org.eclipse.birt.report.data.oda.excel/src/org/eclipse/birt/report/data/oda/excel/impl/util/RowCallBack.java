@@ -1,17 +0,0 @@
-/*******************************************************************************
-  * Copyright (c) 2012 Megha Nidhi Dahal.
-  * All rights reserved. This program and the accompanying materials
-  * are made available under the terms of the Eclipse Public License v1.0
-  * which accompanies this distribution, and is available at
-  * http://www.eclipse.org/legal/epl-v10.html
-  *
-  * Contributors:
-  *    Megha Nidhi Dahal - initial API and implementation and/or initial documentation
-  *******************************************************************************/
-package org.eclipse.birt.report.data.oda.excel.impl.util;
-
-import java.util.List;
-
-public interface RowCallBack {
-	void handleRow(List<Object> values);
-}
@@ -0,0 +1,36 @@
+/*******************************************************************************
+  * Copyright (c) 2012 Actuate Corporation.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    Actuate Corporation - initial API and implementation
+  *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.excel.impl.util;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * Reads the rows of one worksheet as they are requested, without holding the
+ * rest of the worksheet in memory.
+ */
+interface SheetReader {
+
+	/**
+	 * Reads the next row of the worksheet.
+	 * 
+	 * @return the cell values of the row, the cells missing in the row are
+	 *         empty strings; null at the end of the worksheet
+	 * @throws IOException
+	 * @throws OdaException
+	 */
+	List<String> readRow() throws IOException, OdaException;
+
+	void close() throws IOException;
+}
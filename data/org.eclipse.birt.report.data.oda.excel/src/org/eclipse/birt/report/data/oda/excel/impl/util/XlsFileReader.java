@@ -0,0 +1,207 @@
+/*******************************************************************************
+  * Copyright (c) 2012 Actuate Corporation.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    Actuate Corporation - initial API and implementation
+  *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.excel.impl.util;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.eclipse.birt.report.data.oda.excel.ExcelODAConstants;
+
+/**
+ * Reads xls workbooks at the record level instead of building a HSSFWorkbook.
+ * The workbook globals (sheets, shared strings and formats) are read when the
+ * workbook is opened, the cells of a worksheet are read as its rows are
+ * requested.
+ */
+public class XlsFileReader {
+
+	private static final String[] WORKBOOK_DIR_ENTRY_NAMES = {
+			"Workbook", //$NON-NLS-1$
+			"WORKBOOK" //$NON-NLS-1$
+	};
+
+	final private NPOIFSFileSystem fs;
+
+	private List<BoundSheetRecord> sheets = new ArrayList<BoundSheetRecord>();
+	private SSTRecord sst;
+	private Map<Integer, String> formats = new HashMap<Integer, String>();
+	private List<Integer> xfFormats = new ArrayList<Integer>();
+	private Boolean[] dateXfs;
+
+	/**
+	 * Opens the workbook of a file, the file is read as its records are
+	 * needed.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 */
+	public XlsFileReader(File file) throws IOException {
+		fs = new NPOIFSFileSystem(file);
+		init();
+	}
+
+	/**
+	 * Opens the workbook of a stream, the stream is read in memory.
+	 * 
+	 * @param stream
+	 * @throws IOException
+	 */
+	public XlsFileReader(InputStream stream) throws IOException {
+		fs = new NPOIFSFileSystem(stream);
+		init();
+	}
+
+	private void init() throws IOException {
+		try {
+			readGlobals();
+		} catch (IOException e) {
+			close();
+			throw e;
+		} catch (RuntimeException e) {
+			close();
+			throw e;
+		}
+	}
+
+	InputStream openWorkbookStream() throws IOException {
+		DirectoryNode root = fs.getRoot();
+		for (int i = 0; i < WORKBOOK_DIR_ENTRY_NAMES.length; i++) {
+			if (root.hasEntry(WORKBOOK_DIR_ENTRY_NAMES[i]))
+				return root.createDocumentInputStream(WORKBOOK_DIR_ENTRY_NAMES[i]);
+		}
+		throw new FileNotFoundException(WORKBOOK_DIR_ENTRY_NAMES[0]);
+	}
+
+	private void readGlobals() throws IOException {
+		InputStream stream = openWorkbookStream();
+		try {
+			RecordFactoryInputStream records = new RecordFactoryInputStream(
+					stream, false);
+			Record record;
+			while ((record = records.nextRecord()) != null) {
+				switch (record.getSid()) {
+				case BoundSheetRecord.sid:
+					sheets.add((BoundSheetRecord) record);
+					break;
+				case SSTRecord.sid:
+					sst = (SSTRecord) record;
+					break;
+				case FormatRecord.sid:
+					FormatRecord format = (FormatRecord) record;
+					formats.put(Integer.valueOf(format.getIndexCode()),
+							format.getFormatString());
+					break;
+				case ExtendedFormatRecord.sid:
+					xfFormats.add(Integer.valueOf(((ExtendedFormatRecord) record).getFormatIndex()));
+					break;
+				case EOFRecord.sid:
+					// end of the workbook globals
+					dateXfs = new Boolean[xfFormats.size()];
+					return;
+				}
+			}
+			dateXfs = new Boolean[xfFormats.size()];
+		} finally {
+			stream.close();
+		}
+	}
+
+	public List<String> getSheetNames() {
+		List<String> names = new ArrayList<String>(sheets.size());
+		for (BoundSheetRecord sheet : sheets)
+			names.add(sheet.getSheetname());
+		return names;
+	}
+
+	/**
+	 * Opens a worksheet, whose records are then read as its rows are read.
+	 * 
+	 * @param sheetName
+	 * @return null if the workbook has no such worksheet
+	 * @throws IOException
+	 */
+	SheetReader openSheet(String sheetName) throws IOException {
+		for (BoundSheetRecord sheet : sheets) {
+			if (sheet.getSheetname().equals(sheetName)) {
+				InputStream stream = openWorkbookStream();
+				try {
+					skipFully(stream, sheet.getPositionOfBof());
+					return new XlsSheetReader(this, stream);
+				} catch (IOException e) {
+					stream.close();
+					throw e;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static void skipFully(InputStream stream, long count)
+			throws IOException {
+		while (count > 0) {
+			long skipped = stream.skip(count);
+			if (skipped <= 0)
+				throw new IOException("Unexpected end of workbook stream"); //$NON-NLS-1$
+			count -= skipped;
+		}
+	}
+
+	String getSharedString(int index) {
+		if (sst == null || index < 0 || index >= sst.getNumUniqueStrings())
+			return ExcelODAConstants.EMPTY_STRING;
+		return sst.getString(index).getString();
+	}
+
+	/**
+	 * Tells whether the cells of an extended format hold dates. The result is
+	 * cached per format, as the cells of a column usually share a few ones.
+	 * 
+	 * @param xfIndex
+	 * @return
+	 */
+	boolean isDateFormat(int xfIndex) {
+		if (xfIndex < 0 || xfIndex >= dateXfs.length)
+			return false;
+		Boolean isDate = dateXfs[xfIndex];
+		if (isDate == null) {
+			int formatIndex = xfFormats.get(xfIndex).intValue();
+			String formatString = formats.get(Integer.valueOf(formatIndex));
+			if (formatString == null)
+				formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+			isDate = Boolean.valueOf(formatString != null
+					&& DateUtil.isADateFormat(formatIndex, formatString));
+			dateXfs[xfIndex] = isDate;
+		}
+		return isDate.booleanValue();
+	}
+
+	public void close() throws IOException {
+		fs.close();
+	}
+}
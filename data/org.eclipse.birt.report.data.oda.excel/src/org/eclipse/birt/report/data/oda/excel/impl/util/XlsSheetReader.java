@@ -0,0 +1,227 @@
+/*******************************************************************************
+  * Copyright (c) 2012 Actuate Corporation.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    Actuate Corporation - initial API and implementation
+  *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.excel.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.SharedValueRecordBase;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.eclipse.birt.report.data.oda.excel.ExcelODAConstants;
+
+import com.ibm.icu.text.SimpleDateFormat;
+
+/**
+ * Pulls the rows of a xls worksheet from its cell records. A blank row is
+ * returned as an empty list, the worksheet ends when no value follows in the
+ * next {@link ExcelODAConstants#BLANK_LOOK_AHEAD} rows.
+ */
+class XlsSheetReader implements SheetReader {
+
+	final private XlsFileReader file;
+	final private InputStream stream;
+	final private RecordFactoryInputStream records;
+	private SimpleDateFormat sdf;
+
+	private int bofDepth;
+	private boolean endOfSheet;
+
+	// the 0-based index of the row to return next
+	private int rowIndex;
+
+	// the next row holding a value, read ahead to find the blank rows
+	private List<String> nextRow;
+	private int nextRowIndex;
+
+	// the last cell read
+	private boolean hasCell;
+	private int cellRow;
+	private int cellColumn;
+	private String cellValue;
+
+	XlsSheetReader(XlsFileReader file, InputStream stream) {
+		this.file = file;
+		this.stream = stream;
+		this.records = new RecordFactoryInputStream(stream, false);
+		this.sdf = new SimpleDateFormat();
+	}
+
+	public List<String> readRow() throws IOException {
+		if (nextRow == null)
+			readNextRow();
+		if (nextRow != null && nextRowIndex == rowIndex) {
+			List<String> row = nextRow;
+			nextRow = null;
+			rowIndex++;
+			return row;
+		}
+		if (nextRow == null
+				|| nextRowIndex - rowIndex > ExcelODAConstants.BLANK_LOOK_AHEAD)
+			return null;
+		rowIndex++;
+		return new ArrayList<String>();
+	}
+
+	/**
+	 * Reads the cells of the next row which holds a value.
+	 */
+	private void readNextRow() {
+		List<String> row = null;
+		int index = -1;
+		boolean blank = true;
+		while (hasCell || nextCell()) {
+			if (row != null && cellRow != index) {
+				if (!blank)
+					break;
+				row = null;
+			}
+			hasCell = false;
+			if (row == null) {
+				row = new ArrayList<String>();
+				index = cellRow;
+				blank = true;
+			}
+			while (row.size() <= cellColumn)
+				row.add(ExcelODAConstants.EMPTY_STRING);
+			row.set(cellColumn, cellValue);
+			if (cellValue.length() > 0)
+				blank = false;
+		}
+		if (row != null && !blank) {
+			nextRow = row;
+			nextRowIndex = index;
+		}
+	}
+
+	/**
+	 * Reads the next cell of the worksheet.
+	 * 
+	 * @return false at the end of the worksheet
+	 */
+	private boolean nextCell() {
+		Record record;
+		while (!endOfSheet && (record = records.nextRecord()) != null) {
+			switch (record.getSid()) {
+			case BOFRecord.sid:
+				bofDepth++;
+				break;
+			case EOFRecord.sid:
+				if (--bofDepth <= 0)
+					endOfSheet = true;
+				break;
+			default:
+				// skip the cells of embedded charts
+				if (bofDepth == 1 && readCell(record)) {
+					hasCell = true;
+					return true;
+				}
+			}
+		}
+		endOfSheet = true;
+		return false;
+	}
+
+	private boolean readCell(Record record) {
+		switch (record.getSid()) {
+		case NumberRecord.sid:
+			NumberRecord number = (NumberRecord) record;
+			setCell(number.getRow(), number.getColumn(), formatNumber(
+					number.getValue(), number.getXFIndex()));
+			return true;
+		case LabelSSTRecord.sid:
+			LabelSSTRecord label = (LabelSSTRecord) record;
+			setCell(label.getRow(), label.getColumn(),
+					file.getSharedString(label.getSSTIndex()));
+			return true;
+		case LabelRecord.sid:
+			LabelRecord oldLabel = (LabelRecord) record;
+			setCell(oldLabel.getRow(), oldLabel.getColumn(), oldLabel.getValue());
+			return true;
+		case BoolErrRecord.sid:
+			BoolErrRecord boolErr = (BoolErrRecord) record;
+			setCell(boolErr.getRow(), boolErr.getColumn(),
+					boolErr.isBoolean() ? String.valueOf(boolErr.getBooleanValue())
+							: ExcelODAConstants.EMPTY_STRING);
+			return true;
+		case FormulaRecord.sid:
+			FormulaRecord formula = (FormulaRecord) record;
+			setCell(formula.getRow(), formula.getColumn(), getFormulaValue(formula));
+			return true;
+		case BlankRecord.sid:
+			BlankRecord blank = (BlankRecord) record;
+			setCell(blank.getRow(), blank.getColumn(), ExcelODAConstants.EMPTY_STRING);
+			return true;
+		case MulBlankRecord.sid:
+			MulBlankRecord mulBlank = (MulBlankRecord) record;
+			setCell(mulBlank.getRow(), mulBlank.getLastColumn(),
+					ExcelODAConstants.EMPTY_STRING);
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	private void setCell(int row, int column, String value) {
+		cellRow = row;
+		cellColumn = column;
+		cellValue = value == null ? ExcelODAConstants.EMPTY_STRING : value;
+	}
+
+	/**
+	 * Returns the value cached with a formula when the workbook was saved.
+	 */
+	private String getFormulaValue(FormulaRecord formula) {
+		switch (formula.getCachedResultType()) {
+		case Cell.CELL_TYPE_NUMERIC:
+			return formatNumber(formula.getValue(), formula.getXFIndex());
+		case Cell.CELL_TYPE_BOOLEAN:
+			return String.valueOf(formula.getCachedBooleanValue());
+		case Cell.CELL_TYPE_STRING:
+			// the string value follows the formula and its shared values
+			Record record;
+			while ((record = records.nextRecord()) instanceof SharedValueRecordBase)
+				continue;
+			if (record instanceof StringRecord)
+				return ((StringRecord) record).getString();
+			if (record == null || record instanceof EOFRecord)
+				endOfSheet = true;
+			return ExcelODAConstants.EMPTY_STRING;
+		default:
+			return ExcelODAConstants.EMPTY_STRING;
+		}
+	}
+
+	private String formatNumber(double value, short xfIndex) {
+		if (file.isDateFormat(xfIndex) && DateUtil.isValidExcelDate(value))
+			return sdf.format(DateUtil.getJavaDate(value));
+		return Double.toString(value);
+	}
+
+	public void close() throws IOException {
+		stream.close();
+	}
+}
@@ -10,26 +10,37 @@
   *    Actuate Corporation - more efficient xlsx processing;
   *         support of timestamp, datetime, time, and date data types
   *    Actuate Corporation - support defining an Excel input file path or URI as part of the data source definition
+  *    Actuate Corporation - stream the rows of xlsx and xls worksheets
   *******************************************************************************/
 
 package org.eclipse.birt.report.data.oda.excel.impl.util;
 
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
-import org.apache.poi.xssf.model.SharedStringsTable;
 import org.apache.poi.xssf.model.StylesTable;
 import org.apache.poi.xssf.usermodel.XSSFCellStyle;
-import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.eclipse.birt.report.data.oda.excel.ExcelODAConstants;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
@@ -39,31 +50,44 @@ import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.helpers.XMLReaderFactory;
 
-import com.ibm.icu.text.SimpleDateFormat;
-
 public class XlsxFileReader {
     final static String PARSER_CLASS_NAME = "org.apache.xerces.parsers.SAXParser"; //$NON-NLS-1$
-    final static String ROW_LIMIT_REACHED_EX_MSG = "Row Limit Reached"; //$NON-NLS-1$
 
+    private static final Pattern ESCAPED_CHARACTER = Pattern.compile("_x([0-9A-Fa-f]{4})_"); //$NON-NLS-1$
+
+    final private OPCPackage pkg;
     final private XSSFReader reader;
+    private XMLInputFactory xmlInputFactory;
 
-	enum cDataType {
-		BOOL,
-		DATE,
-		DATETIME,
-		FORMULA,
-		SSTINDEX,
-		TIME,
-		NUMBER,
-		STATIC
-	}
+    // loaded when the first shared string cell is read
+    private List<String> sharedStrings;
+    private StylesTable styles;
+    private Map<Integer, Boolean> dateStyles = new HashMap<Integer, Boolean>();
 
 	public XlsxFileReader(InputStream fis) throws IOException,
 			OpenXML4JException {
-		OPCPackage pkg = OPCPackage.open(fis);
+		pkg = OPCPackage.open(fis);
 		reader = new XSSFReader(pkg);
 	}
 
+	/**
+	 * Opens the workbook in read only mode. Its parts are read from the file
+	 * as they are needed instead of being loaded in memory.
+	 * 
+	 * @param file
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 */
+	public XlsxFileReader(File file) throws IOException, OpenXML4JException {
+		pkg = OPCPackage.open(file.getPath(), PackageAccess.READ);
+		try {
+			reader = new XSSFReader(pkg);
+		} catch (OpenXML4JException e) {
+			pkg.revert();
+			throw e;
+		}
+	}
+
 	public LinkedHashMap<String, String> getSheetNames()
 			throws InvalidFormatException, IOException, SAXException {
 		BufferedInputStream wbData = new BufferedInputStream(reader.getWorkbookData());
@@ -79,205 +103,159 @@ public class XlsxFileReader {
 		return sheetMap;
 	}
 
-	public void processSheet(String rid, XlsxRowCallBack callback, int xlsxRowsToRead)
-			throws InvalidFormatException, IOException, SAXException {
-		SharedStringsTable sst = reader.getSharedStringsTable();
-		StylesTable st = reader.getStylesTable();
-
-		XMLReader parser = fetchSheetParser(st, sst, callback, xlsxRowsToRead);
-		BufferedInputStream sheet = new BufferedInputStream(reader.getSheet(rid));
+	/**
+	 * Opens a worksheet, whose rows are then parsed as they are read.
+	 * 
+	 * @param rid
+	 *            the relationship id of the worksheet
+	 * @return
+	 * @throws InvalidFormatException
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 */
+	SheetReader openSheet(String rid) throws InvalidFormatException,
+			IOException, XMLStreamException {
+		InputStream sheet = new BufferedInputStream(reader.getSheet(rid));
 		try {
-			InputSource sheetSource = new InputSource(sheet);
-			parser.parse(sheetSource);
-		} finally {
-			if (sheet != null)
-				sheet.close();
+			return new XlsxSheetReader(this, sheet);
+		} catch (XMLStreamException e) {
+			sheet.close();
+			throw e;
 		}
 	}
 
-	private XMLReader fetchSheetParser(StylesTable st, SharedStringsTable sst,
-			XlsxRowCallBack callback, int xlsxRowsToRead) throws SAXException {
-		XMLReader parser = XMLReaderFactory
-				.createXMLReader( PARSER_CLASS_NAME );
-		ContentHandler handler = new SheetHandler(st, sst, callback, xlsxRowsToRead);
-		parser.setContentHandler(handler);
-		return parser;
-	}
-
-	private XMLReader fetchWorkbookParser(LinkedHashMap<String, String> sheetMap)
-			throws SAXException {
-		XMLReader parser = XMLReaderFactory
-				.createXMLReader( PARSER_CLASS_NAME );
-		ContentHandler handler = new WorkbookHandler(sheetMap);
-		parser.setContentHandler(handler);
-		return parser;
+	XMLStreamReader createXMLStreamReader(InputStream stream)
+			throws XMLStreamException {
+		if (xmlInputFactory == null) {
+			xmlInputFactory = XMLInputFactory.newInstance();
+			xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING,
+					Boolean.TRUE);
+		}
+		return xmlInputFactory.createXMLStreamReader(stream);
 	}
 
 	/**
-	 * See org.xml.sax.helpers.DefaultHandler javadocs
+	 * Returns an entry of the shared strings table. The table is kept as plain
+	 * strings, which takes far less memory than the rich text entries of the
+	 * POI SharedStringsTable.
+	 * 
+	 * @param index
+	 * @return
+	 * @throws IOException
+	 * @throws XMLStreamException
+	 * @throws InvalidFormatException
 	 */
-	private static class SheetHandler extends DefaultHandler {
-
-		private cDataType cellDataType;
-        private int columnCount =1;
-		final private SharedStringsTable sst;
-		final private StylesTable st;
-		final private XlsxRowCallBack callback;
-		private String lastContents;
-		private ArrayList<Object> values;
-		private int currentColumn = 0;
-		private int xlsxRowsToRead=0;
-		private int currentXlsxRowNumber = 0;
-        private SimpleDateFormat sdf; 
-		
-		private SheetHandler(StylesTable st, SharedStringsTable sst, XlsxRowCallBack callback, int xlsxRowsToRead) {
-			this.sst = sst;
-			this.st = st;
-			this.callback = callback;
-			values = new ArrayList<Object>();
-			this.cellDataType = cDataType.NUMBER;
-			this.xlsxRowsToRead = xlsxRowsToRead;
-			sdf = new SimpleDateFormat( );
-		}
-
-		public void startElement(String uri, String localName, String qName,
-				Attributes attributes) throws SAXException {
-			if (qName.equals("c")) {
-				String vCellType = attributes.getValue("t");
-				String cellS = attributes.getValue("s");
-				if ("b".equals(vCellType))
-					cellDataType = cDataType.BOOL;
-				else if ("e".equals(vCellType))
-					cellDataType = cDataType.FORMULA;
-				else if ("s".equals(vCellType))
-					cellDataType = cDataType.SSTINDEX;
-				else if("str".equals(vCellType))
-					cellDataType =  cDataType.STATIC;
-		        else if (cellS != null) {
-		              //number with formatting or date
-		            int styleIndex = Integer.parseInt(cellS);
-		            XSSFCellStyle style = st.getStyleAt(styleIndex);
-		            short formatIndex = style.getDataFormat();
-		            String formatString = style.getDataFormatString();
-
-		            if (formatString == null)
-		                   formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
-
-					if (org.apache.poi.ss.usermodel.DateUtil.isADateFormat(
-							formatIndex, formatString) ) {
-		            	cellDataType =  cDataType.DATETIME;
-		            }else{
-		            	cellDataType = cDataType.NUMBER;
-		            }
-		        }
-				else
-					cellDataType = cDataType.NUMBER;
-
-                String r = attributes.getValue("r");
-
-                currentColumn = getColumnNumber( r );
-                //expand the number of columns if needed in existing rows
-                if( currentColumn+1 > columnCount){
-                	callback.columnExpansion(currentColumn+1);
-                	
-                	//clean up current row
-                	int newvals = (currentColumn+1) - columnCount;
-                	for( int ii=0; ii<newvals;ii++){
-                		values.add(ExcelODAConstants.EMPTY_STRING);
-                	}               	
-                	
-            		columnCount = currentColumn+1;
-                }
-
-			}
+	String getSharedString(int index) throws IOException,
+			XMLStreamException, InvalidFormatException {
+		if (sharedStrings == null)
+			sharedStrings = loadSharedStrings();
+		if (index < 0 || index >= sharedStrings.size())
+			return ExcelODAConstants.EMPTY_STRING;
+		return sharedStrings.get(index);
+	}
 
-			//empty cells are not in the xml so we have
-			//create them in the row
-			if (qName.equals("row")) {
-				for( int i=0;i<columnCount; i++){
-					values.add(i, ExcelODAConstants.EMPTY_STRING);
+	private List<String> loadSharedStrings() throws IOException,
+			XMLStreamException, InvalidFormatException {
+		List<String> strings = new ArrayList<String>();
+		InputStream data = reader.getSharedStringsData();
+		if (data == null)
+			return strings;
+		data = new BufferedInputStream(data);
+		try {
+			XMLStreamReader xml = createXMLStreamReader(data);
+			StringBuilder text = null;
+			boolean phonetic = false;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("si".equals(name)) //$NON-NLS-1$
+						text = new StringBuilder();
+					else if ("rPh".equals(name)) //$NON-NLS-1$
+						phonetic = true;
+					else if ("t".equals(name) && text != null && !phonetic) //$NON-NLS-1$
+						text.append(xml.getElementText());
+				} else if (event == XMLStreamConstants.END_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("si".equals(name)) { //$NON-NLS-1$
+						strings.add(decode(text.toString()));
+						text = null;
+					} else if ("rPh".equals(name)) //$NON-NLS-1$
+						phonetic = false;
 				}
 			}
-			lastContents = ExcelODAConstants.EMPTY_STRING;
+			xml.close();
+		} finally {
+			data.close();
 		}
+		return strings;
+	}
 
-		public void endElement(String uri, String localName, String name)
-				throws SAXException {
-			if (name.equals("row")) {
-				callback.handleRow(values);
-				values.clear();
-				currentColumn = -1;
-				currentXlsxRowNumber++;
-				if( xlsxRowsToRead > 0 ){
-					if( currentXlsxRowNumber > xlsxRowsToRead){
-						 throw new SAXException( ROW_LIMIT_REACHED_EX_MSG );
-					}
-				}
-				return;
-			} else if (name.equals("c")) {
-				cellDataType = cDataType.NUMBER;
-				return;
-			} else if (name.equals("v")) {
-
-				String val = ExcelODAConstants.EMPTY_STRING;
-
-				// Process the last contents as required.
-				// Do now, as characters() may be called more than once
-				if (cellDataType == cDataType.SSTINDEX) {
-					int idx;
-					idx = Integer.parseInt(lastContents);
-					val = new XSSFRichTextString(sst.getEntryAt(idx))
-							.toString();
-				} else if (cellDataType == cDataType.STATIC
-						|| cellDataType == cDataType.NUMBER) {
-					val = lastContents;
-				}else if( cellDataType == cDataType.DATETIME || cellDataType == cDataType.DATE || cellDataType == cDataType.TIME ){
-
-					Date myjavadate = org.apache.poi.ss.usermodel.DateUtil.getJavaDate(Double.parseDouble(lastContents));
-					val = sdf.format( myjavadate );
-				}else if( cellDataType == cDataType.BOOL ){
-					if( lastContents.compareTo("1") == 0){
-						Boolean mybool = new Boolean(true);
-						val = mybool.toString();
-					}else if( lastContents.compareTo("0") == 0 ){
-						Boolean mybool = new Boolean(false);
-						val = mybool.toString();
-					}
-				}
-
-				// v => contents of a cell
-				if (val != null) {
-					if( currentColumn != -1){
-						values.remove(currentColumn);
-						values.add(currentColumn, val);
-					}
-				}
+	/**
+	 * Tells whether the cells of a style hold dates. The result is cached per
+	 * style, as the cells of a column usually share a few styles.
+	 * 
+	 * @param styleIndex
+	 * @return
+	 * @throws IOException
+	 * @throws InvalidFormatException
+	 */
+	boolean isDateStyle(int styleIndex) throws IOException,
+			InvalidFormatException {
+		Integer key = Integer.valueOf(styleIndex);
+		Boolean isDate = dateStyles.get(key);
+		if (isDate == null) {
+			if (styles == null)
+				styles = reader.getStylesTable();
+			XSSFCellStyle style = styles == null ? null : styles.getStyleAt(styleIndex);
+			if (style == null) {
+				isDate = Boolean.FALSE;
+			} else {
+				short formatIndex = style.getDataFormat();
+				String formatString = style.getDataFormatString();
+				if (formatString == null)
+					formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+				isDate = Boolean.valueOf(formatString != null
+						&& DateUtil.isADateFormat(formatIndex, formatString));
 			}
+			dateStyles.put(key, isDate);
 		}
+		return isDate.booleanValue();
+	}
 
-		public void characters(char[] ch, int start, int length)
-				throws SAXException {
-			lastContents += new String(ch, start, length);
+	/**
+	 * Decodes the characters escaped as _xHHHH_ in strings.
+	 * 
+	 * @param value
+	 * @return
+	 */
+	static String decode(String value) {
+		if (value.indexOf("_x") < 0) //$NON-NLS-1$
+			return value;
+		Matcher m = ESCAPED_CHARACTER.matcher(value);
+		StringBuffer buf = new StringBuffer();
+		while (m.find()) {
+			char c = (char) Integer.parseInt(m.group(1), 16);
+			m.appendReplacement(buf, Matcher.quoteReplacement(String.valueOf(c)));
 		}
+		m.appendTail(buf);
+		return buf.toString();
+	}
 
-		private int getColumnNumber(String colname) {
-			int tmpcol = 0;
-			String drpNumber = colname;
-			for (int ch = 0; ch < colname.length(); ++ch) {
-				if (!Character.isLetter(colname.charAt(ch))) {
-					drpNumber = colname.substring(0, ch);
-					break;
-				}
-			}
-
-			int sum = 0;
-			for (int ii = 0; ii < drpNumber.length(); ii++) {
-				tmpcol = (drpNumber.charAt(ii) - 'A') + 1;
-				sum = sum * 26 + tmpcol;
-			}
-			return sum - 1;
+	/**
+	 * Releases the workbook, without saving it.
+	 */
+	public void close() {
+		pkg.revert();
+	}
 
-		}
+	private XMLReader fetchWorkbookParser(LinkedHashMap<String, String> sheetMap)
+			throws SAXException {
+		XMLReader parser = XMLReaderFactory
+				.createXMLReader( PARSER_CLASS_NAME );
+		ContentHandler handler = new WorkbookHandler(sheetMap);
+		parser.setContentHandler(handler);
+		return parser;
 	}
 
 	/**
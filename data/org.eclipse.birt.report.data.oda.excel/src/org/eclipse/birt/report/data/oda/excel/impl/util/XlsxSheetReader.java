@@ -0,0 +1,190 @@
+/*******************************************************************************
+  * Copyright (c) 2012 Actuate Corporation.
+  * All rights reserved. This program and the accompanying materials
+  * are made available under the terms of the Eclipse Public License v1.0
+  * which accompanies this distribution, and is available at
+  * http://www.eclipse.org/legal/epl-v10.html
+  *
+  * Contributors:
+  *    Actuate Corporation - initial API and implementation
+  *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.excel.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.eclipse.birt.report.data.oda.excel.ExcelODAConstants;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+import com.ibm.icu.text.SimpleDateFormat;
+
+/**
+ * Pulls the rows of a xlsx worksheet from its XML part with a StAX parser, so
+ * that only the row being read is held in memory.
+ */
+class XlsxSheetReader implements SheetReader {
+
+	final private XlsxFileReader file;
+	final private InputStream stream;
+	final private XMLStreamReader xml;
+	private SimpleDateFormat sdf;
+
+	// the number of values of a row, taken from the dimension of the
+	// worksheet and expanded by the cells found beyond it
+	private int columnCount = 1;
+	private int currentColumn = -1;
+
+	XlsxSheetReader(XlsxFileReader file, InputStream stream)
+			throws XMLStreamException {
+		this.file = file;
+		this.stream = stream;
+		this.xml = file.createXMLStreamReader(stream);
+		this.sdf = new SimpleDateFormat();
+	}
+
+	public List<String> readRow() throws IOException, OdaException {
+		try {
+			List<String> values = null;
+			while (xml.hasNext()) {
+				int event = xml.next();
+				if (event == XMLStreamConstants.START_ELEMENT) {
+					String name = xml.getLocalName();
+					if ("c".equals(name) && values != null) { //$NON-NLS-1$
+						readCell(values);
+					} else if ("row".equals(name)) { //$NON-NLS-1$
+						// empty cells are not in the xml so we have
+						// create them in the row
+						values = new ArrayList<String>(columnCount);
+						currentColumn = -1;
+						for (int i = 0; i < columnCount; i++)
+							values.add(ExcelODAConstants.EMPTY_STRING);
+					} else if ("dimension".equals(name)) { //$NON-NLS-1$
+						columnCount = Math.max(columnCount,
+								getDimensionColumnCount(xml.getAttributeValue(null, "ref"))); //$NON-NLS-1$
+					}
+				} else if (event == XMLStreamConstants.END_ELEMENT
+						&& values != null && "row".equals(xml.getLocalName())) { //$NON-NLS-1$
+					return values;
+				}
+			}
+			return null;
+		} catch (XMLStreamException e) {
+			throw new OdaException(e);
+		} catch (InvalidFormatException e) {
+			throw new OdaException(e);
+		}
+	}
+
+	private void readCell(List<String> values) throws XMLStreamException,
+			IOException, InvalidFormatException {
+		String type = xml.getAttributeValue(null, "t"); //$NON-NLS-1$
+		String style = xml.getAttributeValue(null, "s"); //$NON-NLS-1$
+		String ref = xml.getAttributeValue(null, "r"); //$NON-NLS-1$
+		// the reference may be left out, the cell then follows the previous one
+		int column = ref != null ? getColumnNumber(ref) : -1;
+		if (column < 0)
+			column = currentColumn + 1;
+		currentColumn = column;
+
+		String contents = null;
+		StringBuilder inlineText = null;
+		boolean phonetic = false;
+		while (xml.hasNext()) {
+			int event = xml.next();
+			if (event == XMLStreamConstants.START_ELEMENT) {
+				String name = xml.getLocalName();
+				if ("v".equals(name)) //$NON-NLS-1$
+					contents = xml.getElementText();
+				else if ("is".equals(name)) //$NON-NLS-1$
+					inlineText = new StringBuilder();
+				else if ("rPh".equals(name)) //$NON-NLS-1$
+					phonetic = true;
+				else if ("t".equals(name) && inlineText != null && !phonetic) //$NON-NLS-1$
+					inlineText.append(xml.getElementText());
+			} else if (event == XMLStreamConstants.END_ELEMENT) {
+				String name = xml.getLocalName();
+				if ("c".equals(name)) //$NON-NLS-1$
+					break;
+				if ("rPh".equals(name)) //$NON-NLS-1$
+					phonetic = false;
+			}
+		}
+
+		String value;
+		if (inlineText != null)
+			value = XlsxFileReader.decode(inlineText.toString());
+		else
+			value = getValue(type, style, contents);
+
+		//expand the number of columns if needed
+		while (values.size() <= column)
+			values.add(ExcelODAConstants.EMPTY_STRING);
+		columnCount = Math.max(columnCount, values.size());
+		values.set(column, value);
+	}
+
+	private String getValue(String type, String style, String contents)
+			throws IOException, XMLStreamException, InvalidFormatException {
+		if (contents == null)
+			return ExcelODAConstants.EMPTY_STRING;
+		if ("s".equals(type)) //$NON-NLS-1$
+			return file.getSharedString(Integer.parseInt(contents.trim()));
+		if ("str".equals(type)) //$NON-NLS-1$
+			return contents;
+		if ("b".equals(type)) { //$NON-NLS-1$
+			if ("1".equals(contents)) //$NON-NLS-1$
+				return Boolean.TRUE.toString();
+			if ("0".equals(contents)) //$NON-NLS-1$
+				return Boolean.FALSE.toString();
+			return ExcelODAConstants.EMPTY_STRING;
+		}
+		if ("e".equals(type)) //$NON-NLS-1$
+			return ExcelODAConstants.EMPTY_STRING;
+
+		//number with formatting or date
+		if (style != null && file.isDateStyle(Integer.parseInt(style))) {
+			return sdf.format(DateUtil.getJavaDate(Double.parseDouble(contents)));
+		}
+		return contents;
+	}
+
+	/**
+	 * Returns the number of columns of a dimension reference like "A1:F100".
+	 */
+	private static int getDimensionColumnCount(String ref) {
+		if (ref == null)
+			return 0;
+		int separator = ref.indexOf(':');
+		return getColumnNumber(separator < 0 ? ref : ref.substring(separator + 1)) + 1;
+	}
+
+	private static int getColumnNumber(String colname) {
+		int sum = 0;
+		for (int ii = 0; ii < colname.length(); ii++) {
+			char ch = colname.charAt(ii);
+			if (!Character.isLetter(ch))
+				break;
+			sum = sum * 26 + (Character.toUpperCase(ch) - 'A') + 1;
+		}
+		return sum - 1;
+	}
+
+	public void close() throws IOException {
+		try {
+			xml.close();
+		} catch (XMLStreamException e) {
+			// the stream is closed below anyway
+		} finally {
+			stream.close();
+		}
+	}
+}
@@ -31,7 +31,9 @@ public class AllTests
 		//CallStatement cannot be found.
 		//suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.CallStatementTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.ConnectionTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.ConnectionPoolManagerTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.DataSourceMetaDataTest.class );
+		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.FetchSizeEstimatorTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.JDBCExceptionTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.LogConfigurationTest.class );
 		suite.addTestSuite( org.eclipse.birt.report.data.oda.jdbc.OdaJdbcDriverTest.class );
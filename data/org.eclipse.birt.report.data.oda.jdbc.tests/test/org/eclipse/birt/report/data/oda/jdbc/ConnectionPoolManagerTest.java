@@ -0,0 +1,327 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.data.oda.jdbc.Connection.Constants;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * Tests the built-in connection pool against fake physical connections.
+ */
+public class ConnectionPoolManagerTest extends TestCase
+{
+
+	private static final String URL = "jdbc:test:db";
+
+	private List<FakeConnection> physicalConnections;
+	private ConnectionPoolManager manager;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		physicalConnections = new ArrayList<FakeConnection>( );
+		manager = new ConnectionPoolManager( ) {
+
+			java.sql.Connection connect( String driverClass, String url,
+					Properties props, Collection<String> driverClassPath )
+					throws SQLException, OdaException
+			{
+				assertNull( props.getProperty( Constants.CONNECTION_POOL_ENABLED ) );
+				FakeConnection handler = new FakeConnection( );
+				physicalConnections.add( handler );
+				return (java.sql.Connection) Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+						new Class[]{
+							java.sql.Connection.class
+						},
+						handler );
+			}
+		};
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		manager.close( );
+		super.tearDown( );
+	}
+
+	private Properties getProperties( String user )
+	{
+		Properties props = new Properties( );
+		props.setProperty( "user", user );
+		props.setProperty( Constants.CONNECTION_POOL_ENABLED, "true" );
+		props.setProperty( Constants.CONNECTION_POOL_MAX_ACTIVE, "2" );
+		props.setProperty( Constants.CONNECTION_POOL_MAX_WAIT, "10" );
+		return props;
+	}
+
+	private java.sql.Connection getConnection( Properties props )
+			throws SQLException, OdaException
+	{
+		return manager.getConnection( "test.Driver", URL, props, null, null );
+	}
+
+	public void testDisabled( ) throws SQLException, OdaException
+	{
+		Properties props = new Properties( );
+		props.setProperty( "user", "a" );
+		assertNull( getConnection( props ) );
+		assertEquals( 0, physicalConnections.size( ) );
+	}
+
+	public void testReuse( ) throws SQLException, OdaException
+	{
+		java.sql.Connection conn = getConnection( getProperties( "a" ) );
+		conn.setAutoCommit( false );
+		conn.close( );
+		assertTrue( conn.isClosed( ) );
+		assertFalse( physicalConnections.get( 0 ).closed );
+		// the borrower's changes are rolled back and reverted
+		assertEquals( 1, physicalConnections.get( 0 ).rollbackCount );
+		assertTrue( physicalConnections.get( 0 ).autoCommit );
+
+		java.sql.Connection conn2 = getConnection( getProperties( "a" ) );
+		assertNotSame( conn, conn2 );
+		assertEquals( 1, physicalConnections.size( ) );
+		try
+		{
+			conn.createStatement( );
+			fail( );
+		}
+		catch ( SQLException e )
+		{
+		}
+
+		// other credentials get their own pool
+		java.sql.Connection conn3 = getConnection( getProperties( "b" ) );
+		assertEquals( 2, physicalConnections.size( ) );
+		conn2.close( );
+		conn3.close( );
+
+		List<ConnectionPoolStatistics> stats = manager.getStatistics( );
+		assertEquals( 2, stats.size( ) );
+		long borrowCount = 0;
+		for ( int i = 0; i < stats.size( ); i++ )
+		{
+			assertEquals( 0, stats.get( i ).getActiveCount( ) );
+			assertEquals( 1, stats.get( i ).getIdleCount( ) );
+			borrowCount += stats.get( i ).getBorrowCount( );
+		}
+		assertEquals( 3, borrowCount );
+	}
+
+	public void testMaxWait( ) throws SQLException, OdaException
+	{
+		java.sql.Connection conn1 = getConnection( getProperties( "a" ) );
+		getConnection( getProperties( "a" ) );
+		try
+		{
+			getConnection( getProperties( "a" ) );
+			fail( );
+		}
+		catch ( JDBCException e )
+		{
+		}
+		assertEquals( 1, manager.getStatistics( ).get( 0 ).getTimeoutCount( ) );
+		conn1.close( );
+		assertNotNull( getConnection( getProperties( "a" ) ) );
+		assertEquals( 2, physicalConnections.size( ) );
+	}
+
+	public void testValidation( ) throws SQLException, OdaException
+	{
+		getConnection( getProperties( "a" ) ).close( );
+		physicalConnections.get( 0 ).closed = true;
+		getConnection( getProperties( "a" ) );
+		assertEquals( 2, physicalConnections.size( ) );
+		assertEquals( 1,
+				manager.getStatistics( ).get( 0 ).getValidationFailureCount( ) );
+	}
+
+	public void testIdleEviction( ) throws SQLException, OdaException
+	{
+		Properties props = getProperties( "a" );
+		props.setProperty( Constants.CONNECTION_POOL_IDLE_TIMEOUT, "0" );
+		props.setProperty( Constants.CONNECTION_POOL_LEAK_TIMEOUT, "1" );
+		java.sql.Connection conn = getConnection( props );
+		getConnection( props ).close( );
+		try
+		{
+			Thread.sleep( 20 );
+		}
+		catch ( InterruptedException e )
+		{
+		}
+		manager.evict( );
+		assertTrue( physicalConnections.get( 1 ).closed );
+		assertFalse( physicalConnections.get( 0 ).closed );
+		ConnectionPoolStatistics stats = manager.getStatistics( ).get( 0 );
+		assertEquals( 0, stats.getIdleCount( ) );
+		assertEquals( 1, stats.getLeakCount( ) );
+		conn.close( );
+	}
+
+	public void testStatementCache( ) throws SQLException, OdaException
+	{
+		Properties props = getProperties( "a" );
+		props.setProperty( Constants.CONNECTION_POOL_STATEMENT_CACHE_SIZE, "1" );
+		java.sql.Connection conn = getConnection( props );
+		PreparedStatement stmt = conn.prepareStatement( "select 1" );
+		assertSame( conn, stmt.getConnection( ) );
+		stmt.setMaxRows( 5 );
+		stmt.close( );
+		assertTrue( stmt.isClosed( ) );
+		try
+		{
+			stmt.executeQuery( );
+			fail( );
+		}
+		catch ( SQLException e )
+		{
+		}
+		FakeConnection physical = physicalConnections.get( 0 );
+		assertEquals( 1, physical.statements.size( ) );
+		FakeStatement cached = physical.statements.get( 0 );
+		assertFalse( cached.closed );
+		assertEquals( 0, cached.maxRows );
+		assertEquals( 1, cached.clearParametersCount );
+
+		// the same SQL text reuses the statement, unless it is in use
+		PreparedStatement stmt2 = conn.prepareStatement( "select 1" );
+		PreparedStatement stmt3 = conn.prepareStatement( "select 1" );
+		assertEquals( 2, physical.statements.size( ) );
+		stmt3.close( );
+		assertTrue( physical.statements.get( 1 ).closed );
+
+		// the least recently used statement is evicted, and closed once it
+		// is not in use anymore
+		conn.prepareStatement( "select 2" ).close( );
+		assertFalse( cached.closed );
+		stmt2.close( );
+		assertTrue( cached.closed );
+		PreparedStatement stmt4 = conn.prepareStatement( "select 3" );
+		assertTrue( physical.statements.get( 2 ).closed );
+
+		// statements left open are released when the connection is returned
+		conn.close( );
+		assertTrue( stmt4.isClosed( ) );
+		assertFalse( physical.statements.get( 3 ).closed );
+		assertEquals( 1, physical.statements.get( 3 ).clearParametersCount );
+	}
+
+	/**
+	 * A fake physical connection, which only tracks its state.
+	 */
+	private static class FakeConnection implements InvocationHandler
+	{
+
+		boolean closed;
+		boolean autoCommit = true;
+		int rollbackCount;
+		List<FakeStatement> statements = new ArrayList<FakeStatement>( );
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "close".equals( name ) )
+			{
+				closed = true;
+			}
+			else if ( "isClosed".equals( name ) )
+			{
+				return Boolean.valueOf( closed );
+			}
+			else if ( "getAutoCommit".equals( name ) )
+			{
+				return Boolean.valueOf( autoCommit );
+			}
+			else if ( "setAutoCommit".equals( name ) )
+			{
+				autoCommit = ( (Boolean) args[0] ).booleanValue( );
+			}
+			else if ( "rollback".equals( name ) )
+			{
+				rollbackCount++;
+			}
+			else if ( "getTransactionIsolation".equals( name ) )
+			{
+				return Integer.valueOf( java.sql.Connection.TRANSACTION_READ_COMMITTED );
+			}
+			else if ( "prepareStatement".equals( name ) )
+			{
+				FakeStatement statement = new FakeStatement( );
+				statements.add( statement );
+				return Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+						new Class[]{
+							PreparedStatement.class
+						},
+						statement );
+			}
+			else if ( "toString".equals( name ) )
+			{
+				return "FakeConnection";
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * A fake physical prepared statement, which only tracks its state.
+	 */
+	private static class FakeStatement implements InvocationHandler
+	{
+
+		boolean closed;
+		int maxRows;
+		int clearParametersCount;
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "close".equals( name ) )
+			{
+				closed = true;
+			}
+			else if ( "setMaxRows".equals( name ) )
+			{
+				maxRows = ( (Integer) args[0] ).intValue( );
+			}
+			else if ( "getMaxRows".equals( name ) )
+			{
+				return Integer.valueOf( maxRows );
+			}
+			else if ( "getFetchSize".equals( name )
+					|| "getQueryTimeout".equals( name ) )
+			{
+				return Integer.valueOf( 0 );
+			}
+			else if ( "clearParameters".equals( name ) )
+			{
+				clearParametersCount++;
+			}
+			return null;
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Types;
+
+import junit.framework.TestCase;
+
+import org.eclipse.datatools.connectivity.oda.IResultSetMetaData;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+public class FetchSizeEstimatorTest extends TestCase
+{
+
+	private IResultSetMetaData getMetaData( final int[] types,
+			final int[] sizes )
+	{
+		return (IResultSetMetaData) Proxy.newProxyInstance( getClass( ).getClassLoader( ),
+				new Class[]{
+					IResultSetMetaData.class
+				},
+				new InvocationHandler( ) {
+
+					public Object invoke( Object proxy, Method method,
+							Object[] args ) throws Throwable
+					{
+						String name = method.getName( );
+						if ( "getColumnCount".equals( name ) )
+						{
+							return Integer.valueOf( types.length );
+						}
+						int index = ( (Integer) args[0] ).intValue( ) - 1;
+						if ( "getColumnType".equals( name ) )
+						{
+							return Integer.valueOf( types[index] );
+						}
+						if ( "getColumnDisplayLength".equals( name ) )
+						{
+							return Integer.valueOf( sizes[index] );
+						}
+						return null;
+					}
+				} );
+	}
+
+	public void testRowWidth( ) throws OdaException
+	{
+		IResultSetMetaData metadata = getMetaData( new int[]{
+				Types.INTEGER, Types.DECIMAL, Types.TIMESTAMP, Types.VARCHAR,
+				Types.CLOB
+		}, new int[]{
+				10, 20, 20, 100, 0
+		} );
+		assertEquals( 8 + 22 + 16 + 200 + 8000,
+				FetchSizeEstimator.getRowWidth( metadata ) );
+	}
+
+	public void testEstimate( ) throws OdaException
+	{
+		IResultSetMetaData narrow = getMetaData( new int[]{
+			Types.INTEGER
+		}, new int[]{
+			10
+		} );
+		assertEquals( FetchSizeEstimator.MAX_FETCH_SIZE,
+				FetchSizeEstimator.estimate( narrow, 4 * 1024 * 1024 ) );
+
+		IResultSetMetaData wide = getMetaData( new int[]{
+				Types.VARCHAR, Types.VARCHAR
+		}, new int[]{
+				1024, 1024
+		} );
+		assertEquals( 1024, FetchSizeEstimator.estimate( wide, 4 * 1024 * 1024 ) );
+		assertEquals( FetchSizeEstimator.MIN_FETCH_SIZE,
+				FetchSizeEstimator.estimate( wide, 1024 ) );
+	}
+}
@@ -52,6 +52,7 @@ public class ResourceConstants
 	public final static String CONN_ROLLBACK_ERROR = "odajdbc.ConnRollbackError";
 	
 	public final static String CONN_GET_ERROR = "odajdbc.GetConnectionError";
+	public final static String CONN_POOL_TIMEOUT = "odajdbc.ConnectionPoolTimeout";
 
 	public final static String MAX_STATEMENTS_CANNOT_GET = "odajdbc.CannotGetMaxStatements";
 	public final static String MAX_CONNECTION_CANNOT_GET = "odajdbc.CannotGetMaxConnections";
@@ -191,6 +191,7 @@ public class Connection implements IConnection
 		// Copy connProperties to props; skip property starting with
 		// "oda"; those are properties read by this driver
 		Properties props = new Properties( );
+		Properties poolProps = new Properties( );
 		for ( Enumeration enumeration = connProperties.propertyNames( ); enumeration.hasMoreElements( ); )
 		{
 			String propName = (String) enumeration.nextElement( );
@@ -199,6 +200,11 @@ public class Connection implements IConnection
 				props.setProperty( propName,
 						connProperties.getProperty( propName ) );
 			}
+			else if ( propName.startsWith( Constants.CONNECTION_POOL_PREFIX ) )
+			{
+				poolProps.setProperty( propName,
+						connProperties.getProperty( propName ) );
+			}
 		}
 
 		// Read user name and password
@@ -215,33 +221,34 @@ public class Connection implements IConnection
 			if ( ( jndiNameUrl == null || jndiNameUrl.trim( ).length( ) == 0 )
 					&& ConnectionPoolFactory.getInstance( ) != null )
 			{
+				// the pool settings are passed along with the driver properties
+				Properties pooledProps = new Properties( );
+				pooledProps.putAll( props );
+				pooledProps.putAll( poolProps );
 				jdbcConn = ConnectionPoolFactory.getInstance( )
 						.getConnection( driverClass,
 								url,
-								props,
+								pooledProps,
 								getDriverClassPath( ),
 								this.appContext );
 				populateConnectionProp( );
 				logger.log(Level.FINE, "JDBC connection success : " + jdbcConn );
 			}
 		}
-		catch ( Exception e )
+		catch ( SQLException e )
 		{
-			if( e instanceof SQLException )
-			{
-				SQLException e1 = (SQLException)e;
-				logger.log( Level.SEVERE,
-						"JDBC connection throws exception: Error Code "
-								+ e1.getErrorCode( ) + " Message:"
-								+ e1.getLocalizedMessage( ) );
-				//First try to identify the authorization info. 28000 is xOpen standard for login failure
-				if( "28000".equals( e1.getSQLState( )))
-					throw new JDBCException( ResourceConstants.CONN_CANNOT_GET, e1 );
-			}
-			else
-			{
-				logger.log( Level.SEVERE, "JDBC connection throws exception: " + e.getLocalizedMessage( ) );
-			}
+			// a pooled connection is not retried unpooled, the pool has
+			// already failed to connect with the same settings
+			logger.log( Level.SEVERE,
+					"JDBC connection throws exception: Error Code "
+							+ e.getErrorCode( ) + " Message:"
+							+ e.getLocalizedMessage( ) );
+			throw new JDBCException( ResourceConstants.CONN_CANNOT_GET, e );
+		}
+		catch ( OdaException e )
+		{
+			logger.log( Level.SEVERE, "JDBC connection throws exception: " + e.getLocalizedMessage( ) );
+			throw e;
 		}
 		try
 		{
@@ -601,6 +608,17 @@ public class Connection implements IConnection
 		public static final String CONNECTION_PROPERTIES_STR = "connectionProperties";
 		public static final String ODAResourceIdentiers = "odaResourceIdentifiers";
 		
+		/** Connection pool settings; the pool is used only if enabled */
+		public static final String CONNECTION_POOL_PREFIX = "odaConnectionPool";
+		public static final String CONNECTION_POOL_ENABLED = "odaConnectionPoolEnabled";
+		public static final String CONNECTION_POOL_MAX_ACTIVE = "odaConnectionPoolMaxActive";
+		public static final String CONNECTION_POOL_MAX_IDLE = "odaConnectionPoolMaxIdle";
+		public static final String CONNECTION_POOL_MAX_WAIT = "odaConnectionPoolMaxWait";
+		public static final String CONNECTION_POOL_IDLE_TIMEOUT = "odaConnectionPoolIdleTimeout";
+		public static final String CONNECTION_POOL_LEAK_TIMEOUT = "odaConnectionPoolLeakTimeout";
+		public static final String CONNECTION_POOL_VALIDATION_QUERY = "odaConnectionPoolValidationQuery";
+		public static final String CONNECTION_POOL_STATEMENT_CACHE_SIZE = "odaConnectionPoolStatementCacheSize";
+		
 		public static int getIsolationMode( String value )
 		{
 			if( value == null )
@@ -0,0 +1,562 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.i18n.ResourceConstants;
+import org.eclipse.birt.report.data.oda.jdbc.Connection.Constants;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * A pool of the physical connections opened with the same driver class, url,
+ * connection properties and driver class path. The connections handed out are
+ * proxies which return the physical connection to the pool when they are
+ * closed, and which prepare the statements through the statement cache of
+ * the physical connection.
+ */
+class ConnectionPool
+{
+
+	private static Logger logger = Logger.getLogger( ConnectionPool.class.getName( ) );
+
+	private ConnectionPoolManager manager;
+	private String driverClass;
+	private String url;
+	private Properties props;
+	private Collection<String> driverClassPath;
+
+	private int maxActive;
+	private int maxIdle;
+	private long maxWait;
+	private long idleTimeout;
+	private long leakTimeout;
+	private String validationQuery;
+	private int statementCacheSize;
+
+	/** the idle connections, the most recently returned first */
+	private LinkedList<PooledConnection> idleConnections = new LinkedList<PooledConnection>( );
+	private Set<PooledConnectionHandler> borrowedConnections = new HashSet<PooledConnectionHandler>( );
+	/** borrowed connections plus the ones being opened or validated */
+	private int activeCount;
+	private boolean closed;
+
+	private long borrowCount;
+	private long createCount;
+	private long destroyCount;
+	private long validationFailureCount;
+	private long timeoutCount;
+	private long leakCount;
+
+	ConnectionPool( ConnectionPoolManager manager, String driverClass,
+			String url, Properties props, Collection<String> driverClassPath,
+			Properties poolProps )
+	{
+		this.manager = manager;
+		this.driverClass = driverClass;
+		this.url = url;
+		this.props = props;
+		this.driverClassPath = driverClassPath;
+		this.maxActive = (int) getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_MAX_ACTIVE,
+				ConnectionPoolManager.DEFAULT_MAX_ACTIVE );
+		this.maxIdle = (int) getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_MAX_IDLE,
+				ConnectionPoolManager.DEFAULT_MAX_IDLE );
+		this.maxWait = getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_MAX_WAIT,
+				ConnectionPoolManager.DEFAULT_MAX_WAIT );
+		this.idleTimeout = getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_IDLE_TIMEOUT,
+				ConnectionPoolManager.DEFAULT_IDLE_TIMEOUT );
+		this.leakTimeout = getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_LEAK_TIMEOUT,
+				ConnectionPoolManager.DEFAULT_LEAK_TIMEOUT );
+		this.statementCacheSize = (int) getLongProperty( poolProps,
+				Constants.CONNECTION_POOL_STATEMENT_CACHE_SIZE,
+				ConnectionPoolManager.DEFAULT_STATEMENT_CACHE_SIZE );
+		this.validationQuery = poolProps.getProperty( Constants.CONNECTION_POOL_VALIDATION_QUERY );
+		if ( this.validationQuery != null
+				&& this.validationQuery.trim( ).length( ) == 0 )
+		{
+			this.validationQuery = null;
+		}
+	}
+
+	private static long getLongProperty( Properties poolProps, String name,
+			long defaultValue )
+	{
+		String value = poolProps.getProperty( name );
+		if ( value == null || value.trim( ).length( ) == 0 )
+		{
+			return defaultValue;
+		}
+		try
+		{
+			return Long.parseLong( value.trim( ) );
+		}
+		catch ( NumberFormatException e )
+		{
+			logger.log( Level.WARNING, "Invalid value of connection property " //$NON-NLS-1$
+					+ name + ": " + value ); //$NON-NLS-1$
+			return defaultValue;
+		}
+	}
+
+	/**
+	 * Borrows a connection, waiting at most the max wait time when all the
+	 * connections are in use. A negative max wait time waits indefinitely.
+	 *
+	 * @return
+	 * @throws SQLException
+	 * @throws OdaException
+	 */
+	java.sql.Connection borrow( ) throws SQLException, OdaException
+	{
+		long deadline = System.currentTimeMillis( ) + maxWait;
+		while ( true )
+		{
+			PooledConnection idle = null;
+			synchronized ( this )
+			{
+				if ( closed )
+				{
+					throw new SQLException( "The connection pool is closed" ); //$NON-NLS-1$
+				}
+				if ( !idleConnections.isEmpty( ) )
+				{
+					idle = idleConnections.removeFirst( );
+				}
+				else if ( activeCount >= maxActive )
+				{
+					long wait = deadline - System.currentTimeMillis( );
+					if ( maxWait >= 0 && wait <= 0 )
+					{
+						timeoutCount++;
+						throw new JDBCException( ResourceConstants.CONN_POOL_TIMEOUT,
+								null,
+								Long.valueOf( maxWait ) );
+					}
+					try
+					{
+						wait( maxWait >= 0 ? wait : 0 );
+					}
+					catch ( InterruptedException e )
+					{
+						Thread.currentThread( ).interrupt( );
+						throw new SQLException( "Interrupted while waiting for a pooled connection" ); //$NON-NLS-1$
+					}
+					continue;
+				}
+				activeCount++;
+			}
+
+			PooledConnection pooled = null;
+			try
+			{
+				if ( idle != null )
+				{
+					if ( validate( idle.connection ) )
+					{
+						pooled = idle;
+					}
+					else
+					{
+						synchronized ( this )
+						{
+							validationFailureCount++;
+						}
+						destroy( idle );
+						continue;
+					}
+				}
+				else
+				{
+					pooled = new PooledConnection( manager.connect( driverClass,
+							url,
+							props,
+							driverClassPath ), statementCacheSize );
+					synchronized ( this )
+					{
+						createCount++;
+					}
+				}
+			}
+			finally
+			{
+				if ( pooled == null )
+				{
+					// give the slot back when the connection couldn't be used
+					synchronized ( this )
+					{
+						activeCount--;
+						notifyAll( );
+					}
+				}
+			}
+			try
+			{
+				return wrap( pooled );
+			}
+			catch ( SQLException e )
+			{
+				destroy( pooled );
+				synchronized ( this )
+				{
+					activeCount--;
+					notifyAll( );
+				}
+				throw e;
+			}
+		}
+	}
+
+	private java.sql.Connection wrap( PooledConnection pooled )
+			throws SQLException
+	{
+		PooledConnectionHandler handler = new PooledConnectionHandler( pooled );
+		synchronized ( this )
+		{
+			borrowedConnections.add( handler );
+			borrowCount++;
+		}
+		return (java.sql.Connection) Proxy.newProxyInstance( ConnectionPool.class.getClassLoader( ),
+				new Class[]{
+					java.sql.Connection.class
+				},
+				handler );
+	}
+
+	/**
+	 * Returns a borrowed connection to the pool.
+	 *
+	 * @param handler
+	 */
+	private void release( PooledConnectionHandler handler )
+	{
+		PooledConnection pooled = handler.pooled;
+		pooled.statementCache.releaseAll( );
+		boolean reusable = reset( handler );
+		synchronized ( this )
+		{
+			borrowedConnections.remove( handler );
+			activeCount--;
+			if ( reusable && !closed && idleConnections.size( ) < maxIdle )
+			{
+				pooled.idleSince = System.currentTimeMillis( );
+				idleConnections.addFirst( pooled );
+				pooled = null;
+			}
+			notifyAll( );
+		}
+		if ( pooled != null )
+		{
+			destroy( pooled );
+		}
+	}
+
+	/**
+	 * Restores the state the connection had when it was opened, so the next
+	 * borrower doesn't see the changes of the previous one.
+	 *
+	 * @param handler
+	 * @return false if the connection can't be reused
+	 */
+	private boolean reset( PooledConnectionHandler handler )
+	{
+		java.sql.Connection physical = handler.pooled.connection;
+		try
+		{
+			if ( physical.isClosed( ) )
+			{
+				return false;
+			}
+			if ( !physical.getAutoCommit( ) )
+			{
+				physical.rollback( );
+			}
+			if ( physical.getAutoCommit( ) != handler.autoCommit )
+			{
+				physical.setAutoCommit( handler.autoCommit );
+			}
+			if ( physical.getTransactionIsolation( ) != handler.isolation )
+			{
+				physical.setTransactionIsolation( handler.isolation );
+			}
+			physical.clearWarnings( );
+			return true;
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Discard pooled connection: " //$NON-NLS-1$
+					+ e.getLocalizedMessage( ) );
+			return false;
+		}
+	}
+
+	private boolean validate( java.sql.Connection physical )
+	{
+		try
+		{
+			if ( physical.isClosed( ) )
+			{
+				return false;
+			}
+			if ( validationQuery != null )
+			{
+				Statement stmt = physical.createStatement( );
+				try
+				{
+					stmt.execute( validationQuery );
+				}
+				finally
+				{
+					stmt.close( );
+				}
+			}
+			return true;
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Pooled connection validation failed: " //$NON-NLS-1$
+					+ e.getLocalizedMessage( ) );
+			return false;
+		}
+	}
+
+	private void destroy( PooledConnection pooled )
+	{
+		synchronized ( this )
+		{
+			destroyCount++;
+		}
+		pooled.statementCache.close( );
+		try
+		{
+			pooled.connection.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Failed to close pooled connection: " //$NON-NLS-1$
+					+ e.getLocalizedMessage( ) );
+		}
+	}
+
+	/**
+	 * Closes the idle connections which timed out and logs the borrowed
+	 * connections which exceeded the leak timeout.
+	 */
+	void evict( )
+	{
+		long now = System.currentTimeMillis( );
+		List<PooledConnection> expired = new ArrayList<PooledConnection>( );
+		synchronized ( this )
+		{
+			if ( idleTimeout >= 0 )
+			{
+				// the oldest ones are at the end
+				while ( !idleConnections.isEmpty( )
+						&& now - idleConnections.getLast( ).idleSince > idleTimeout )
+				{
+					expired.add( idleConnections.removeLast( ) );
+				}
+			}
+			if ( leakTimeout > 0 )
+			{
+				for ( Iterator<PooledConnectionHandler> it = borrowedConnections.iterator( ); it.hasNext( ); )
+				{
+					PooledConnectionHandler handler = it.next( );
+					if ( !handler.leakReported
+							&& now - handler.borrowTime > leakTimeout )
+					{
+						handler.leakReported = true;
+						leakCount++;
+						logger.log( Level.WARNING,
+								"Pooled connection for url: " //$NON-NLS-1$
+										+ LogUtil.encryptURL( url )
+										+ " has not been closed for " //$NON-NLS-1$
+										+ ( now - handler.borrowTime )
+										+ " ms. It was borrowed at:", //$NON-NLS-1$
+								handler.borrowStack );
+					}
+				}
+			}
+		}
+		for ( int i = 0; i < expired.size( ); i++ )
+		{
+			destroy( expired.get( i ) );
+		}
+	}
+
+	/**
+	 * Closes the idle connections. The borrowed ones are closed when they are
+	 * returned.
+	 */
+	void close( )
+	{
+		List<PooledConnection> toClose;
+		synchronized ( this )
+		{
+			closed = true;
+			toClose = new ArrayList<PooledConnection>( idleConnections );
+			idleConnections.clear( );
+			notifyAll( );
+		}
+		for ( int i = 0; i < toClose.size( ); i++ )
+		{
+			destroy( toClose.get( i ) );
+		}
+	}
+
+	synchronized ConnectionPoolStatistics getStatistics( )
+	{
+		return new ConnectionPoolStatistics( LogUtil.encryptURL( url ),
+				props.getProperty( JDBCDriverManager.JDBC_USER_PROP_NAME ),
+				borrowedConnections.size( ),
+				idleConnections.size( ),
+				borrowCount,
+				createCount,
+				destroyCount,
+				validationFailureCount,
+				timeoutCount,
+				leakCount );
+	}
+
+	/**
+	 * A physical connection along with its prepared statements.
+	 */
+	private static class PooledConnection
+	{
+
+		java.sql.Connection connection;
+		PreparedStatementCache statementCache;
+		long idleSince;
+
+		PooledConnection( java.sql.Connection connection,
+				int statementCacheSize )
+		{
+			this.connection = connection;
+			this.statementCache = new PreparedStatementCache( connection,
+					statementCacheSize );
+		}
+	}
+
+	/**
+	 * The invocation handler of the connections handed out: closing returns
+	 * the physical connection to the pool, the other calls are delegated to
+	 * it.
+	 */
+	private class PooledConnectionHandler implements InvocationHandler
+	{
+
+		PooledConnection pooled;
+		java.sql.Connection physical;
+		boolean autoCommit;
+		int isolation;
+		long borrowTime;
+		Throwable borrowStack;
+		boolean leakReported;
+		private boolean released;
+
+		PooledConnectionHandler( PooledConnection pooled ) throws SQLException
+		{
+			this.pooled = pooled;
+			this.physical = pooled.connection;
+			this.autoCommit = physical.getAutoCommit( );
+			this.isolation = physical.getTransactionIsolation( );
+			this.borrowTime = System.currentTimeMillis( );
+			if ( leakTimeout > 0 )
+			{
+				this.borrowStack = new Throwable( );
+			}
+		}
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			if ( "close".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+			{
+				synchronized ( this )
+				{
+					if ( released )
+					{
+						return null;
+					}
+					released = true;
+				}
+				release( this );
+				return null;
+			}
+			if ( "isClosed".equals( name ) && method.getParameterTypes( ).length == 0 ) //$NON-NLS-1$
+			{
+				synchronized ( this )
+				{
+					if ( released )
+					{
+						return Boolean.TRUE;
+					}
+				}
+				return Boolean.valueOf( physical.isClosed( ) );
+			}
+			if ( method.getDeclaringClass( ) == Object.class )
+			{
+				if ( "equals".equals( name ) ) //$NON-NLS-1$
+				{
+					return Boolean.valueOf( proxy == args[0] );
+				}
+				if ( "hashCode".equals( name ) ) //$NON-NLS-1$
+				{
+					return Integer.valueOf( System.identityHashCode( proxy ) );
+				}
+				if ( "toString".equals( name ) ) //$NON-NLS-1$
+				{
+					return "Pooled " + physical; //$NON-NLS-1$
+				}
+			}
+			synchronized ( this )
+			{
+				if ( released )
+				{
+					throw new SQLException( "The connection is closed" ); //$NON-NLS-1$
+				}
+			}
+			if ( "prepareStatement".equals( name ) && args.length == 1 ) //$NON-NLS-1$
+			{
+				return pooled.statementCache.prepare( (java.sql.Connection) proxy,
+						(String) args[0] );
+			}
+			try
+			{
+				return method.invoke( physical, args );
+			}
+			catch ( InvocationTargetException e )
+			{
+				throw e.getTargetException( );
+			}
+		}
+	}
+}
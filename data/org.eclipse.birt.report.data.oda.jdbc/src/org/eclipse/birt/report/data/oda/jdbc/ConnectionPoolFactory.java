@@ -13,10 +13,12 @@ package org.eclipse.birt.report.data.oda.jdbc;
 class ConnectionPoolFactory
 {
 
-	private static IConnectionPoolManager mgr_instance;
+	private static volatile IConnectionPoolManager mgr_instance;
 
 	/**
-	 * get the connection manager instance
+	 * get the connection manager instance. A connection pool manager shipped
+	 * as <code>org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager</code>
+	 * takes precedence over the built-in one.
 	 * 
 	 * @return
 	 */
@@ -26,31 +28,50 @@ class ConnectionPoolFactory
 		{
 			synchronized ( ConnectionPoolFactory.class )
 			{
-				Class clazz;
-				try
+				if ( mgr_instance == null )
 				{
-					clazz = Class.forName( "org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager" );
-				}
-				catch ( ClassNotFoundException e )
-				{
-					return null;
-				}
-				if ( IConnectionPoolManager.class.isAssignableFrom( clazz ) )
-				{
-					try
-					{
-						mgr_instance = (IConnectionPoolManager) ( clazz.newInstance( ) );
-					}
-					catch ( InstantiationException e )
-					{
-					}
-					catch ( IllegalAccessException e )
-					{
-					}
+					mgr_instance = createInstance( );
 				}
 			}
 		}
 
 		return mgr_instance;
 	}
+
+	private static IConnectionPoolManager createInstance( )
+	{
+		try
+		{
+			Class clazz = Class.forName( "org.eclipse.birt.report.data.oda.jdbc.connectionpool.ConnectionPoolManager" );
+			if ( IConnectionPoolManager.class.isAssignableFrom( clazz ) )
+			{
+				return (IConnectionPoolManager) ( clazz.newInstance( ) );
+			}
+		}
+		catch ( ClassNotFoundException e )
+		{
+		}
+		catch ( InstantiationException e )
+		{
+		}
+		catch ( IllegalAccessException e )
+		{
+		}
+		return new ConnectionPoolManager( );
+	}
+
+	/**
+	 * Closes the built-in connection pool manager, if it is in use.
+	 */
+	static void close( )
+	{
+		synchronized ( ConnectionPoolFactory.class )
+		{
+			if ( mgr_instance instanceof ConnectionPoolManager )
+			{
+				( (ConnectionPoolManager) mgr_instance ).close( );
+				mgr_instance = null;
+			}
+		}
+	}
 }
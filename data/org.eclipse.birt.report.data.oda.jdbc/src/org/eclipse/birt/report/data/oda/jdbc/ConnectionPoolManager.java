@@ -0,0 +1,241 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.eclipse.birt.report.data.oda.jdbc.Connection.Constants;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * The built-in connection pool manager. It keeps one pool per driver class,
+ * url, connection properties (including the user and password) and driver
+ * class path.
+ * <p>
+ * Pooling is turned on per data source with the
+ * <code>odaConnectionPoolEnabled</code> connection property, the other
+ * <code>odaConnectionPool*</code> properties defined in
+ * {@link Connection.Constants} configure the pool. They are read when the
+ * pool is created. If pooling is not turned on, {@link #getConnection} returns
+ * null and the caller opens a physical connection itself.
+ * <p>
+ * Closing a pooled connection returns it to its pool. An idle connection is
+ * validated when it is borrowed, and evicted once it stayed idle longer than
+ * the idle timeout. A connection borrowed longer than the leak timeout is
+ * logged along with the stack trace of its borrower. Each physical connection
+ * caches its prepared statements by SQL text, so the same query run again on a
+ * pooled connection isn't prepared anew.
+ */
+public class ConnectionPoolManager implements IConnectionPoolManager
+{
+
+	/** Default maximum number of connections borrowed from one pool. */
+	public static final int DEFAULT_MAX_ACTIVE = 8;
+
+	/** Default maximum number of idle connections kept by one pool. */
+	public static final int DEFAULT_MAX_IDLE = 8;
+
+	/** Default time to wait for a free connection, in milliseconds. */
+	public static final long DEFAULT_MAX_WAIT = 30000;
+
+	/** Default time an idle connection is kept, in milliseconds. */
+	public static final long DEFAULT_IDLE_TIMEOUT = 300000;
+
+	/** Default time after which a borrowed connection is reported as leaked. */
+	public static final long DEFAULT_LEAK_TIMEOUT = 600000;
+
+	/** Default number of prepared statements cached per connection. */
+	public static final int DEFAULT_STATEMENT_CACHE_SIZE = 20;
+
+	/** Interval between two runs of the idle connection eviction. */
+	static final long EVICTION_INTERVAL = 30000;
+
+	private static Logger logger = Logger.getLogger( ConnectionPoolManager.class.getName( ) );
+
+	private Map<List<Object>, ConnectionPool> pools = new HashMap<List<Object>, ConnectionPool>( );
+	private Timer evictionTimer;
+
+	/*
+	 * (non-Javadoc)
+	 * @see org.eclipse.birt.report.data.oda.jdbc.IConnectionPoolManager#getConnection(java.lang.String, java.lang.String, java.util.Properties, java.util.Collection, java.util.Map)
+	 */
+	public java.sql.Connection getConnection( String driverClass, String url,
+			Properties connectionProps, Collection<String> driverClassPath,
+			Map appContext ) throws SQLException, OdaException
+	{
+		Properties poolProps = new Properties( );
+		Properties props = new Properties( );
+		if ( connectionProps != null )
+		{
+			for ( Enumeration enumeration = connectionProps.propertyNames( ); enumeration.hasMoreElements( ); )
+			{
+				String propName = (String) enumeration.nextElement( );
+				if ( propName.startsWith( Constants.CONNECTION_POOL_PREFIX ) )
+				{
+					poolProps.setProperty( propName,
+							connectionProps.getProperty( propName ) );
+				}
+				else
+				{
+					props.setProperty( propName,
+							connectionProps.getProperty( propName ) );
+				}
+			}
+		}
+		if ( !Boolean.valueOf( poolProps.getProperty( Constants.CONNECTION_POOL_ENABLED ) )
+				.booleanValue( ) )
+		{
+			return null;
+		}
+
+		List<Object> key = Arrays.asList( new Object[]{
+				driverClass,
+				url,
+				new HashMap<Object, Object>( props ),
+				driverClassPath == null ? null
+						: new ArrayList<String>( driverClassPath )
+		} );
+		ConnectionPool pool;
+		synchronized ( this )
+		{
+			pool = pools.get( key );
+			if ( pool == null )
+			{
+				pool = new ConnectionPool( this,
+						driverClass,
+						url,
+						props,
+						driverClassPath,
+						poolProps );
+				pools.put( key, pool );
+				startEviction( );
+				logger.log( Level.FINE, "Created connection pool for url: " //$NON-NLS-1$
+						+ LogUtil.encryptURL( url ) );
+			}
+		}
+		return pool.borrow( );
+	}
+
+	/**
+	 * Opens a physical connection for a pool.
+	 *
+	 * @param driverClass
+	 * @param url
+	 * @param props
+	 * @param driverClassPath
+	 * @return
+	 * @throws SQLException
+	 * @throws OdaException
+	 */
+	java.sql.Connection connect( String driverClass, String url,
+			Properties props, Collection<String> driverClassPath )
+			throws SQLException, OdaException
+	{
+		return JDBCDriverManager.getInstance( ).getConnection( driverClass,
+				url,
+				null,
+				props,
+				driverClassPath );
+	}
+
+	/**
+	 * Returns a snapshot of the statistics of all the pools.
+	 *
+	 * @return
+	 */
+	public synchronized List<ConnectionPoolStatistics> getStatistics( )
+	{
+		List<ConnectionPoolStatistics> result = new ArrayList<ConnectionPoolStatistics>( );
+		for ( Iterator<ConnectionPool> it = pools.values( ).iterator( ); it.hasNext( ); )
+		{
+			result.add( it.next( ).getStatistics( ) );
+		}
+		return result;
+	}
+
+	/**
+	 * Evicts the idle connections which timed out and reports the leaked
+	 * connections of all the pools.
+	 */
+	void evict( )
+	{
+		List<ConnectionPool> toEvict;
+		synchronized ( this )
+		{
+			toEvict = new ArrayList<ConnectionPool>( pools.values( ) );
+		}
+		for ( int i = 0; i < toEvict.size( ); i++ )
+		{
+			toEvict.get( i ).evict( );
+		}
+	}
+
+	/**
+	 * Closes all the pools. The idle connections are closed at once, the
+	 * borrowed ones are closed when they are returned.
+	 */
+	public void close( )
+	{
+		List<ConnectionPool> toClose;
+		synchronized ( this )
+		{
+			toClose = new ArrayList<ConnectionPool>( pools.values( ) );
+			pools.clear( );
+			if ( evictionTimer != null )
+			{
+				evictionTimer.cancel( );
+				evictionTimer = null;
+			}
+		}
+		for ( int i = 0; i < toClose.size( ); i++ )
+		{
+			toClose.get( i ).close( );
+		}
+	}
+
+	private void startEviction( )
+	{
+		if ( evictionTimer != null )
+		{
+			return;
+		}
+		evictionTimer = new Timer( true );
+		evictionTimer.schedule( new TimerTask( ) {
+
+			public void run( )
+			{
+				try
+				{
+					evict( );
+				}
+				catch ( RuntimeException e )
+				{
+					logger.log( Level.WARNING,
+							"Connection pool eviction failed", //$NON-NLS-1$
+							e );
+				}
+			}
+		}, EVICTION_INTERVAL, EVICTION_INTERVAL );
+	}
+}
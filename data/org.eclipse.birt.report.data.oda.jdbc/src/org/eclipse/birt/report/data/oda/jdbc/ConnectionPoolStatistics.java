@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.data.oda.jdbc;
+
+/**
+ * A snapshot of the statistics of one connection pool.
+ */
+public class ConnectionPoolStatistics
+{
+
+	private String url;
+	private String user;
+	private int activeCount;
+	private int idleCount;
+	private long borrowCount;
+	private long createCount;
+	private long destroyCount;
+	private long validationFailureCount;
+	private long timeoutCount;
+	private long leakCount;
+
+	ConnectionPoolStatistics( String url, String user, int activeCount,
+			int idleCount, long borrowCount, long createCount,
+			long destroyCount, long validationFailureCount, long timeoutCount,
+			long leakCount )
+	{
+		this.url = url;
+		this.user = user;
+		this.activeCount = activeCount;
+		this.idleCount = idleCount;
+		this.borrowCount = borrowCount;
+		this.createCount = createCount;
+		this.destroyCount = destroyCount;
+		this.validationFailureCount = validationFailureCount;
+		this.timeoutCount = timeoutCount;
+		this.leakCount = leakCount;
+	}
+
+	/**
+	 * @return the url of the pool, with its password masked
+	 */
+	public String getUrl( )
+	{
+		return url;
+	}
+
+	/**
+	 * @return the user of the pool, or null
+	 */
+	public String getUser( )
+	{
+		return user;
+	}
+
+	/**
+	 * @return the number of borrowed connections
+	 */
+	public int getActiveCount( )
+	{
+		return activeCount;
+	}
+
+	/**
+	 * @return the number of idle connections
+	 */
+	public int getIdleCount( )
+	{
+		return idleCount;
+	}
+
+	/**
+	 * @return the number of times a connection was borrowed
+	 */
+	public long getBorrowCount( )
+	{
+		return borrowCount;
+	}
+
+	/**
+	 * @return the number of physical connections opened
+	 */
+	public long getCreateCount( )
+	{
+		return createCount;
+	}
+
+	/**
+	 * @return the number of physical connections closed
+	 */
+	public long getDestroyCount( )
+	{
+		return destroyCount;
+	}
+
+	/**
+	 * @return the number of idle connections which failed the validation
+	 */
+	public long getValidationFailureCount( )
+	{
+		return validationFailureCount;
+	}
+
+	/**
+	 * @return the number of borrowers which timed out waiting for a connection
+	 */
+	public long getTimeoutCount( )
+	{
+		return timeoutCount;
+	}
+
+	/**
+	 * @return the number of connections reported as leaked
+	 */
+	public long getLeakCount( )
+	{
+		return leakCount;
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString( )
+	{
+		return "url=" + url //$NON-NLS-1$
+				+ "; user=" + ( user == null ? "" : user ) //$NON-NLS-1$ //$NON-NLS-2$
+				+ "; active=" + activeCount //$NON-NLS-1$
+				+ "; idle=" + idleCount //$NON-NLS-1$
+				+ "; borrowed=" + borrowCount //$NON-NLS-1$
+				+ "; created=" + createCount //$NON-NLS-1$
+				+ "; destroyed=" + destroyCount //$NON-NLS-1$
+				+ "; validationFailures=" + validationFailureCount //$NON-NLS-1$
+				+ "; timeouts=" + timeoutCount //$NON-NLS-1$
+				+ "; leaks=" + leakCount; //$NON-NLS-1$
+	}
+}
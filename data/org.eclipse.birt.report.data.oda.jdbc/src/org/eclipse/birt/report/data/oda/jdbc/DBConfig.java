@@ -33,7 +33,10 @@ public class DBConfig
 	public static final int IGNORE_UNIMPORTANT_EXCEPTION = 3;
 	public static final int TRY_COMMIT_THEN_CLOSE = 4;
 	public static final int SET_COMMIT_TO_FALSE = 5;
+	public static final int USE_DRIVER_FETCH_SIZE = 6;
+	public static final long DEFAULT_FETCH_MEMORY_TARGET = 4 * 1024 * 1024;
 	private HashMap<Integer, Set<String>> driverPolicy = null;
+	private long fetchMemoryTarget = DEFAULT_FETCH_MEMORY_TARGET;
 	private volatile static DBConfig config = null;
 
 	public static DBConfig getInstance( )
@@ -87,6 +90,27 @@ public class DBConfig
 		driverPolicy.get(policy).add(driverName.toUpperCase());
 	}
 	
+	/**
+	 * Returns the memory, in bytes, one fetch of rows should take when the
+	 * fetch size is derived from the row width.
+	 * 
+	 * @return
+	 */
+	public long getFetchMemoryTarget( )
+	{
+		return fetchMemoryTarget;
+	}
+	
+	/**
+	 * 
+	 * @param memoryTarget
+	 */
+	public void setFetchMemoryTarget( long memoryTarget )
+	{
+		if( memoryTarget > 0 )
+			fetchMemoryTarget = memoryTarget;
+	}
+	
 	/**
 	 * 
 	 * @return
@@ -111,6 +135,8 @@ class SaxParser extends DefaultHandler
 	private static final String POLICY = "Policy";
 	private static final String NAME = "name";
 	private static final String DRIVER = "Driver";
+	private static final String FETCH_SIZE = "FetchSize";
+	private static final String MEMORY_TARGET = "memoryTarget";
 	private int currentPolicy = DBConfig.DEFAULT_POLICY;
 	private DBConfig dbConfig;
 	
@@ -138,6 +164,16 @@ class SaxParser extends DefaultHandler
 			dbConfig.putPolicy( atts.getValue( NAME ),
 					currentPolicy );
 		}
+		else if ( elementName.equals( FETCH_SIZE ) )
+		{
+			try
+			{
+				dbConfig.setFetchMemoryTarget( Long.parseLong( atts.getValue( MEMORY_TARGET ) ) );
+			}
+			catch ( NumberFormatException e )
+			{
+			}
+		}
 		else if ( elementName.equals( POLICY ) )
 		{
 			String type = atts.getValue( TYPE );
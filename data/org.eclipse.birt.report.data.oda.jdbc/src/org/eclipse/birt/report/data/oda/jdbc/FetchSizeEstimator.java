@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.sql.Types;
+
+import org.eclipse.datatools.connectivity.oda.IResultSetMetaData;
+import org.eclipse.datatools.connectivity.oda.OdaException;
+
+/**
+ * Derives the fetch size of a query from the width of its rows, so that one
+ * fetch takes about a given amount of memory: narrow rows are fetched in large
+ * batches, wide rows in small ones.
+ */
+class FetchSizeEstimator
+{
+
+	/** the fetch size used before the result set metadata is known */
+	static final int DEFAULT_FETCH_SIZE = 10000;
+
+	static final int MIN_FETCH_SIZE = 10;
+	static final int MAX_FETCH_SIZE = 10000;
+
+	/** width assumed for the character and binary columns of unknown size */
+	private static final int MAX_VARIABLE_WIDTH = 4000;
+
+	private FetchSizeEstimator( )
+	{
+	}
+
+	/**
+	 * @param metadata
+	 * @param memoryTarget
+	 *            the memory, in bytes, one fetch should take
+	 * @return
+	 * @throws OdaException
+	 */
+	static int estimate( IResultSetMetaData metadata, long memoryTarget )
+			throws OdaException
+	{
+		long rowWidth = getRowWidth( metadata );
+		long fetchSize = rowWidth <= 0 ? MAX_FETCH_SIZE : memoryTarget
+				/ rowWidth;
+		return (int) Math.max( MIN_FETCH_SIZE, Math.min( MAX_FETCH_SIZE,
+				fetchSize ) );
+	}
+
+	/**
+	 * Estimates the width in bytes of a fetched row.
+	 *
+	 * @param metadata
+	 * @return
+	 * @throws OdaException
+	 */
+	static long getRowWidth( IResultSetMetaData metadata ) throws OdaException
+	{
+		long width = 0;
+		int count = metadata.getColumnCount( );
+		for ( int i = 1; i <= count; i++ )
+		{
+			width += getColumnWidth( metadata, i );
+		}
+		return width;
+	}
+
+	private static int getColumnWidth( IResultSetMetaData metadata, int index )
+			throws OdaException
+	{
+		switch ( metadata.getColumnType( index ) )
+		{
+			case Types.BIT :
+			case Types.BOOLEAN :
+			case Types.TINYINT :
+			case Types.SMALLINT :
+			case Types.INTEGER :
+			case Types.BIGINT :
+			case Types.REAL :
+			case Types.FLOAT :
+			case Types.DOUBLE :
+				return 8;
+			case Types.NUMERIC :
+			case Types.DECIMAL :
+				return 22;
+			case Types.DATE :
+			case Types.TIME :
+			case Types.TIMESTAMP :
+				return 16;
+			case Types.CHAR :
+			case Types.VARCHAR :
+			case Types.LONGVARCHAR :
+			case Types.CLOB :
+				// two bytes per character
+				return 2 * getVariableWidth( metadata, index );
+			case Types.BINARY :
+			case Types.VARBINARY :
+			case Types.LONGVARBINARY :
+			case Types.BLOB :
+				return getVariableWidth( metadata, index );
+			default :
+				return 16;
+		}
+	}
+
+	private static int getVariableWidth( IResultSetMetaData metadata,
+			int index )
+	{
+		int size;
+		try
+		{
+			size = metadata.getColumnDisplayLength( index );
+		}
+		catch ( OdaException e )
+		{
+			size = 0;
+		}
+		if ( size <= 0 || size > MAX_VARIABLE_WIDTH )
+		{
+			return MAX_VARIABLE_WIDTH;
+		}
+		return size;
+	}
+}
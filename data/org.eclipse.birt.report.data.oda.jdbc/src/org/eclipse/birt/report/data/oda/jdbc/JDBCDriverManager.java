@@ -139,6 +139,8 @@ public class JDBCDriverManager
 	 */
 	public void close()
 	{
+		ConnectionPoolFactory.close( );
+
 		if( this.extraDriverLoader != null )
 		{
 			this.extraDriverLoader.close();
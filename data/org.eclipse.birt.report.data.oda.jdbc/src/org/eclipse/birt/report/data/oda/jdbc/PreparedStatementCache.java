@@ -0,0 +1,355 @@
+/*******************************************************************************
+ * Copyright (c) 2004, 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.data.oda.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The prepared statements of one pooled physical connection, keyed by their
+ * SQL text. Closing a statement handed out by the cache clears its parameters
+ * and settings and keeps it for the next preparation of the same SQL text, the
+ * least recently used statements are closed once the cache is full.
+ */
+class PreparedStatementCache
+{
+
+	private static Logger logger = Logger.getLogger( PreparedStatementCache.class.getName( ) );
+
+	private java.sql.Connection physical;
+	private int maxSize;
+
+	/** the idle and in use cached statements, in access order */
+	private LinkedHashMap<String, CachedStatement> cache = new LinkedHashMap<String, CachedStatement>( 16,
+			0.75f,
+			true );
+	/** all the statements handed out and not closed yet */
+	private Set<StatementProxyHandler> openStatements = new HashSet<StatementProxyHandler>( );
+
+	private long hitCount;
+	private long missCount;
+
+	PreparedStatementCache( java.sql.Connection physical, int maxSize )
+	{
+		this.physical = physical;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns a prepared statement for the SQL text, reusing the cached one if
+	 * it is not in use.
+	 *
+	 * @param connection
+	 *            the connection handed out, returned by getConnection() of
+	 *            the statement
+	 * @param sql
+	 * @return
+	 * @throws SQLException
+	 */
+	synchronized PreparedStatement prepare( java.sql.Connection connection,
+			String sql ) throws SQLException
+	{
+		CachedStatement entry = cache.get( sql );
+		if ( entry != null && !entry.inUse )
+		{
+			hitCount++;
+		}
+		else
+		{
+			missCount++;
+			boolean cacheable = entry == null && maxSize > 0;
+			PreparedStatement statement = physical.prepareStatement( sql );
+			try
+			{
+				entry = new CachedStatement( statement, sql, cacheable );
+			}
+			catch ( SQLException e )
+			{
+				closeQuietly( statement );
+				throw e;
+			}
+			if ( cacheable )
+			{
+				cache.put( sql, entry );
+				evict( );
+			}
+		}
+		entry.inUse = true;
+		StatementProxyHandler proxyHandler = new StatementProxyHandler( entry,
+				connection );
+		openStatements.add( proxyHandler );
+		return (PreparedStatement) Proxy.newProxyInstance( PreparedStatementCache.class.getClassLoader( ),
+				new Class[]{
+					PreparedStatement.class
+				},
+				proxyHandler );
+	}
+
+	private void evict( )
+	{
+		Iterator<CachedStatement> it = cache.values( ).iterator( );
+		while ( cache.size( ) > maxSize && it.hasNext( ) )
+		{
+			CachedStatement eldest = it.next( );
+			it.remove( );
+			eldest.cached = false;
+			if ( !eldest.inUse )
+			{
+				closeQuietly( eldest.statement );
+			}
+		}
+	}
+
+	/**
+	 * Returns a statement to the cache, or closes it if it is not cached or
+	 * can't be reset.
+	 *
+	 * @param proxyHandler
+	 */
+	private synchronized void release( StatementProxyHandler proxyHandler )
+	{
+		CachedStatement entry = proxyHandler.entry;
+		proxyHandler.closed = true;
+		openStatements.remove( proxyHandler );
+		entry.inUse = false;
+		if ( entry.cached && entry.reset( ) )
+		{
+			return;
+		}
+		if ( entry.cached )
+		{
+			cache.remove( entry.sql );
+			entry.cached = false;
+		}
+		closeQuietly( entry.statement );
+	}
+
+	/**
+	 * Closes the statements the borrower of the connection left open, when
+	 * the connection is returned to the pool.
+	 */
+	synchronized void releaseAll( )
+	{
+		List<StatementProxyHandler> open = new ArrayList<StatementProxyHandler>( openStatements );
+		for ( int i = 0; i < open.size( ); i++ )
+		{
+			release( open.get( i ) );
+		}
+	}
+
+	/**
+	 * Closes all the statements, when the physical connection is closed.
+	 */
+	synchronized void close( )
+	{
+		for ( Iterator<CachedStatement> it = cache.values( ).iterator( ); it.hasNext( ); )
+		{
+			closeQuietly( it.next( ).statement );
+		}
+		for ( Iterator<StatementProxyHandler> it = openStatements.iterator( ); it.hasNext( ); )
+		{
+			StatementProxyHandler proxyHandler = it.next( );
+			proxyHandler.closed = true;
+			closeQuietly( proxyHandler.entry.statement );
+		}
+		cache.clear( );
+		openStatements.clear( );
+	}
+
+	synchronized long getHitCount( )
+	{
+		return hitCount;
+	}
+
+	synchronized long getMissCount( )
+	{
+		return missCount;
+	}
+
+	synchronized int size( )
+	{
+		return cache.size( );
+	}
+
+	private static void closeQuietly( java.sql.Statement statement )
+	{
+		try
+		{
+			statement.close( );
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Failed to close cached statement: " //$NON-NLS-1$
+					+ e.getLocalizedMessage( ) );
+		}
+	}
+
+	/**
+	 * A physical prepared statement along with the settings it had when it was
+	 * prepared.
+	 */
+	private static class CachedStatement
+	{
+
+		PreparedStatement statement;
+		String sql;
+		boolean cached;
+		boolean inUse;
+		ResultSet resultSet;
+
+		private int maxRows;
+		private int fetchSize;
+		private int queryTimeout;
+
+		CachedStatement( PreparedStatement statement, String sql,
+				boolean cached ) throws SQLException
+		{
+			this.statement = statement;
+			this.sql = sql;
+			this.cached = cached;
+			if ( cached )
+			{
+				this.maxRows = statement.getMaxRows( );
+				this.fetchSize = statement.getFetchSize( );
+				this.queryTimeout = statement.getQueryTimeout( );
+			}
+		}
+
+		/**
+		 * Restores the statement as it was prepared.
+		 *
+		 * @return false if the statement can't be reused
+		 */
+		boolean reset( )
+		{
+			try
+			{
+				if ( resultSet != null )
+				{
+					resultSet.close( );
+					resultSet = null;
+				}
+				statement.clearParameters( );
+				statement.clearWarnings( );
+				if ( statement.getMaxRows( ) != maxRows )
+				{
+					statement.setMaxRows( maxRows );
+				}
+				if ( statement.getFetchSize( ) != fetchSize )
+				{
+					statement.setFetchSize( fetchSize );
+				}
+				if ( statement.getQueryTimeout( ) != queryTimeout )
+				{
+					statement.setQueryTimeout( queryTimeout );
+				}
+				return true;
+			}
+			catch ( SQLException e )
+			{
+				logger.log( Level.FINE, "Discard cached statement: " //$NON-NLS-1$
+						+ e.getLocalizedMessage( ) );
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * The invocation handler of one statement handed out.
+	 */
+	private class StatementProxyHandler implements InvocationHandler
+	{
+
+		CachedStatement entry;
+		boolean closed;
+		private java.sql.Connection connection;
+
+		StatementProxyHandler( CachedStatement entry,
+				java.sql.Connection connection )
+		{
+			this.entry = entry;
+			this.connection = connection;
+		}
+
+		public Object invoke( Object proxy, Method method, Object[] args )
+				throws Throwable
+		{
+			String name = method.getName( );
+			int argCount = method.getParameterTypes( ).length;
+			if ( method.getDeclaringClass( ) == Object.class )
+			{
+				if ( "equals".equals( name ) ) //$NON-NLS-1$
+				{
+					return Boolean.valueOf( proxy == args[0] );
+				}
+				if ( "hashCode".equals( name ) ) //$NON-NLS-1$
+				{
+					return Integer.valueOf( System.identityHashCode( proxy ) );
+				}
+				if ( "toString".equals( name ) ) //$NON-NLS-1$
+				{
+					return "Cached " + entry.statement; //$NON-NLS-1$
+				}
+			}
+			synchronized ( PreparedStatementCache.this )
+			{
+				if ( "close".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+				{
+					if ( !closed )
+					{
+						release( this );
+					}
+					return null;
+				}
+				if ( "isClosed".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+				{
+					return Boolean.valueOf( closed );
+				}
+				if ( closed )
+				{
+					throw new SQLException( "The statement is closed" ); //$NON-NLS-1$
+				}
+				if ( "getConnection".equals( name ) && argCount == 0 ) //$NON-NLS-1$
+				{
+					return connection;
+				}
+			}
+			Object result;
+			try
+			{
+				result = method.invoke( entry.statement, args );
+			}
+			catch ( InvocationTargetException e )
+			{
+				throw e.getTargetException( );
+			}
+			if ( result instanceof ResultSet )
+			{
+				// closed when the statement is returned to the cache
+				entry.resultSet = (ResultSet) result;
+			}
+			return result;
+		}
+	}
+}
@@ -60,6 +60,9 @@ public class Statement implements IQuery
 	private IResultSet cachedResultSet;
 	private QuerySpecification querySpec;
 	
+	/** indicates if the fetch size is to be derived from the result set metadata */
+	private boolean adaptiveFetchSize = false;
+	
 	/**
 	 * assertNull(Object o)
 	 * 
@@ -123,6 +126,7 @@ public class Statement implements IQuery
 			// Clear any cached result set or metadata
 			this.cachedResultMetaData = null;
 			this.cachedResultSet = null;
+			this.adaptiveFetchSize = false;
 			
 			/*
 			 * call the JDBC Connection.prepareStatement(String) method to get
@@ -185,16 +189,21 @@ public class Statement implements IQuery
 					// when Javascript gets involved in calculating the property
 					// value
 					double rows = Double.parseDouble(value);
-					// We do not honor the fetch size > 10000.
-					if( rows > 10000 )
-						rows = 10000;
+					this.adaptiveFetchSize = false;
 					this.preStat.setFetchSize((int) rows);
 
 				} 
-				else 
+				else if ( !DBConfig.getInstance( )
+						.qualifyPolicy( this.conn.getMetaData( ).getDriverName( ),
+								DBConfig.USE_DRIVER_FETCH_SIZE ) )
 				{
-					//Default Set to 10000. This will slowdown MsSql,MySql,Postgress performance while enhance Oracle performance.
-					this.preStat.setFetchSize(10000);
+					// A large fetch size slows down MsSql and MySql, which keep
+					// their own default. For the other drivers the fetch size
+					// is derived from the row width once the result set
+					// metadata is known. Postgres needs it too, as its default
+					// of 0 reads the whole result instead of using a cursor.
+					this.adaptiveFetchSize = true;
+					this.preStat.setFetchSize( FetchSizeEstimator.DEFAULT_FETCH_SIZE );
 				}
 			} 
 			catch (SQLException e) 
@@ -202,7 +211,7 @@ public class Statement implements IQuery
 				// This is not an essential property; log and ignore error if
 				// driver doesn't
 				// support query timeout
-				logger.log(Level.FINE, "Statement.setQueryTimeout failed", e);
+				logger.log(Level.FINE, "Statement.setFetchSize failed", e);
 			}
 		}
 		else if ( name.equals( ConnectionProfileProperty.PROFILE_NAME_PROP_KEY )
@@ -473,8 +482,21 @@ public class Statement implements IQuery
 				}
 				maxRowsUpToDate = true;
 			}
+			if ( adaptiveFetchSize && cachedResultMetaData != null )
+			{
+				// the metadata is known before the execution, so even the
+				// first fetch uses the adaptive size
+				applyAdaptiveFetchSize( cachedResultMetaData, null );
+			}
 			/* redirect the call to JDBC preparedStatement.executeQuery() */
-			return new ResultSet( this.conn, this.preStat.executeQuery( ) );
+			java.sql.ResultSet jrs = this.preStat.executeQuery( );
+			if ( adaptiveFetchSize && jrs != null )
+			{
+				// otherwise the metadata of the result set is used for the
+				// fetches after the first one
+				applyAdaptiveFetchSize( null, jrs );
+			}
+			return new ResultSet( this.conn, jrs );
 		}
 		catch ( SQLException e )
 		{
@@ -482,6 +504,50 @@ public class Statement implements IQuery
 		}
 	}
 
+	/**
+	 * Sets the fetch size so that one fetch takes about the memory target of
+	 * DBConfig, according to the width of the rows. The size is set on the
+	 * statement, for its next executions, and on the result set if given.
+	 * 
+	 * @param metadata
+	 *            the metadata, or null to use the one of the result set
+	 * @param rs
+	 *            the executed result set, or null
+	 */
+	private void applyAdaptiveFetchSize( IResultSetMetaData metadata,
+			java.sql.ResultSet rs )
+	{
+		adaptiveFetchSize = false;
+		try
+		{
+			if ( metadata == null )
+			{
+				java.sql.ResultSetMetaData rsMeta = rs.getMetaData( );
+				if ( rsMeta == null )
+				{
+					return;
+				}
+				metadata = new ResultSetMetaData( rsMeta );
+			}
+			int fetchSize = FetchSizeEstimator.estimate( metadata,
+					DBConfig.getInstance( ).getFetchMemoryTarget( ) );
+			this.preStat.setFetchSize( fetchSize );
+			if ( rs != null )
+			{
+				rs.setFetchSize( fetchSize );
+			}
+			logger.log( Level.FINER, "Adaptive fetch size: " + fetchSize ); //$NON-NLS-1$
+		}
+		catch ( OdaException e )
+		{
+			logger.log( Level.FINE, "Statement.setFetchSize failed", e ); //$NON-NLS-1$
+		}
+		catch ( SQLException e )
+		{
+			logger.log( Level.FINE, "Statement.setFetchSize failed", e ); //$NON-NLS-1$
+		}
+	}
+
 	/*
 	 * TODO: used by junit tests only;
 	 * to be removed after update of tests
@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataType;
+
+import junit.framework.TestCase;
+
+public class ColumnarWriterTest extends TestCase
+{
+	private static final String[] NAMES = {
+			"bool", "int", "double", "decimal", "string", "date", "sqlDate", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+			"binary" //$NON-NLS-1$
+	};
+
+	private static final String[] LABELS = {
+			"Bool", null, "Double", "Decimal", "String", "Date", "SQL date", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+			"Binary" //$NON-NLS-1$
+	};
+
+	private static final int[] TYPES = {
+			DataType.BOOLEAN_TYPE,
+			DataType.INTEGER_TYPE,
+			DataType.DOUBLE_TYPE,
+			DataType.DECIMAL_TYPE,
+			DataType.STRING_TYPE,
+			DataType.DATE_TYPE,
+			DataType.SQL_DATE_TYPE,
+			DataType.BINARY_TYPE
+	};
+
+	public void testRoundTrip( ) throws Exception
+	{
+		subtestRoundTrip( 1000, 64, -1 );
+		subtestRoundTrip( 1000, 64, 0 );
+		subtestRoundTrip( 3, 1, 9 );
+		subtestRoundTrip( 0, 16, -1 );
+	}
+
+	public void testSchema( ) throws Exception
+	{
+		ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( write( 0,
+				8,
+				-1 ) ) );
+		assertTrue( Arrays.equals( NAMES, reader.getColumnNames( ) ) );
+		assertEquals( "", reader.getColumnLabels( )[1] ); //$NON-NLS-1$
+		assertEquals( "SQL date", reader.getColumnLabels( )[6] ); //$NON-NLS-1$
+		assertTrue( Arrays.equals( TYPES, reader.getColumnTypes( ) ) );
+	}
+
+	public void testConversion( ) throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ColumnarWriter writer = new ColumnarWriter( out, new String[]{
+				"int", "string" //$NON-NLS-1$ //$NON-NLS-2$
+		}, null, new int[]{
+				DataType.INTEGER_TYPE, DataType.JAVA_OBJECT_TYPE
+		}, 10, -1 );
+		writer.setValue( 0, Long.valueOf( 42 ) );
+		writer.setValue( 1, Integer.valueOf( 7 ) );
+		writer.endRow( );
+		writer.close( );
+
+		ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( out.toByteArray( ) ) );
+		assertEquals( 1, reader.nextBatch( ) );
+		assertEquals( Integer.valueOf( 42 ), reader.getValue( 0, 0 ) );
+		assertEquals( "7", reader.getValue( 1, 0 ) ); //$NON-NLS-1$
+	}
+
+	public void testGrowingBatches( ) throws Exception
+	{
+		char[] chars = new char[2000];
+		Arrays.fill( chars, 'y' );
+		String large = new String( chars );
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ColumnarWriter writer = new ColumnarWriter( out, new String[]{
+			"string" //$NON-NLS-1$
+		}, null, new int[]{
+			DataType.STRING_TYPE
+		}, 4, -1 );
+		for ( int i = 0; i < 8; i++ )
+		{
+			writer.setValue( 0, i < 4 ? "x" : large ); //$NON-NLS-1$
+			writer.endRow( );
+		}
+		writer.close( );
+
+		// the second batch holds more data than the first one
+		ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( out.toByteArray( ) ) );
+		assertEquals( 4, reader.nextBatch( ) );
+		for ( int i = 0; i < 4; i++ )
+		{
+			assertEquals( "x", reader.getValue( 0, i ) ); //$NON-NLS-1$
+		}
+		assertEquals( 4, reader.nextBatch( ) );
+		for ( int i = 0; i < 4; i++ )
+		{
+			assertEquals( large, reader.getValue( 0, i ) );
+		}
+		assertEquals( 0, reader.nextBatch( ) );
+	}
+
+	public void testInvalidStream( ) throws Exception
+	{
+		try
+		{
+			new ColumnarReader( new ByteArrayInputStream( "BCOX\0\0\0\1".getBytes( "ISO-8859-1" ) ) ); //$NON-NLS-1$ //$NON-NLS-2$
+			fail( );
+		}
+		catch ( java.io.IOException e )
+		{
+		}
+	}
+
+	private void subtestRoundTrip( int rowCount, int batchSize,
+			int compressionLevel ) throws Exception
+	{
+		ColumnarReader reader = new ColumnarReader( new ByteArrayInputStream( write( rowCount,
+				batchSize,
+				compressionLevel ) ) );
+		int row = 0;
+		int batchRows;
+		while ( ( batchRows = reader.nextBatch( ) ) > 0 )
+		{
+			assertTrue( batchRows <= batchSize );
+			for ( int i = 0; i < batchRows; i++ )
+			{
+				Object[] expected = getRow( row++ );
+				for ( int j = 0; j < NAMES.length; j++ )
+				{
+					Object value = reader.getValue( j, i );
+					if ( expected[j] instanceof byte[] )
+					{
+						assertTrue( Arrays.equals( (byte[]) expected[j],
+								(byte[]) value ) );
+					}
+					else
+					{
+						assertEquals( "row " + row + " column " + j, //$NON-NLS-1$ //$NON-NLS-2$
+								expected[j],
+								value );
+					}
+				}
+			}
+		}
+		assertEquals( rowCount, row );
+		assertEquals( rowCount, reader.getTotalRowCount( ) );
+		assertEquals( 0, reader.nextBatch( ) );
+	}
+
+	private byte[] write( int rowCount, int batchSize, int compressionLevel )
+			throws Exception
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		ColumnarWriter writer = new ColumnarWriter( out,
+				NAMES,
+				LABELS,
+				TYPES,
+				batchSize,
+				compressionLevel );
+		for ( int i = 0; i < rowCount; i++ )
+		{
+			Object[] values = getRow( i );
+			for ( int j = 0; j < values.length; j++ )
+			{
+				writer.setValue( j, values[j] );
+			}
+			writer.endRow( );
+		}
+		writer.close( );
+		return out.toByteArray( );
+	}
+
+	private Object[] getRow( int i )
+	{
+		if ( i % 7 == 3 )
+		{
+			// all nulls
+			return new Object[NAMES.length];
+		}
+		return new Object[]{
+				Boolean.valueOf( i % 2 == 0 ),
+				Integer.valueOf( i - 500 ),
+				Double.valueOf( i / 3.0 ),
+				new BigDecimal( "12345678901234567890.123" ).add( BigDecimal.valueOf( i ) ), //$NON-NLS-1$
+				i % 5 == 0 ? "" : "value \u00e9\u4e2d\ud83d\ude00 " + i, //$NON-NLS-1$ //$NON-NLS-2$
+				new Date( 1000000000000L + i * 3600000L ),
+				new java.sql.Date( 1000000000000L - i * 86400000L ),
+				new byte[]{(byte) i, (byte) ( i >> 8 ), -1}
+		};
+	}
+}
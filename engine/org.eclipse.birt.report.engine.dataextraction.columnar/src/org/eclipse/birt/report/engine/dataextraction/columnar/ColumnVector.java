@@ -0,0 +1,435 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.util.Date;
+
+import org.eclipse.birt.core.data.DataType;
+import org.eclipse.birt.core.data.DataTypeUtil;
+import org.eclipse.birt.core.exception.BirtException;
+
+/**
+ * The values of one column within a record batch, laid out as described in
+ * {@link ColumnarFormat}. The buffers are allocated once for the batch size
+ * and reused by every batch.
+ */
+class ColumnVector
+{
+
+	private static final String UTF_8 = "UTF-8"; //$NON-NLS-1$
+
+	private final int dataType;
+	private final byte physicalType;
+	private final int width;
+
+	private byte[] validity;
+	/**
+	 * Values of the fixed width types.
+	 */
+	private byte[] values;
+	/**
+	 * Offsets of the variable width types, rowCount + 1 entries.
+	 */
+	private int[] offsets;
+	/**
+	 * Data of the variable width types.
+	 */
+	private byte[] data;
+	private int dataLength;
+
+	private int rowCount;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param dataType
+	 *            one of the {@link DataType} constants
+	 * @param capacity
+	 *            number of rows of a batch
+	 */
+	ColumnVector( int dataType, int capacity )
+	{
+		this.dataType = dataType;
+		this.physicalType = ColumnarFormat.getPhysicalType( dataType );
+		this.width = ColumnarFormat.getWidth( physicalType );
+		ensureCapacity( capacity );
+	}
+
+	int getDataType( )
+	{
+		return dataType;
+	}
+
+	byte getPhysicalType( )
+	{
+		return physicalType;
+	}
+
+	int getRowCount( )
+	{
+		return rowCount;
+	}
+
+	/**
+	 * Clears the vector for the next batch.
+	 */
+	void reset( )
+	{
+		for ( int i = ( rowCount + 7 ) / 8 - 1; i >= 0; i-- )
+		{
+			validity[i] = 0;
+		}
+		rowCount = 0;
+		dataLength = 0;
+	}
+
+	/**
+	 * Appends a value, converting it to the column type if needed.
+	 *
+	 * @param value
+	 *            value, may be null
+	 * @throws BirtException
+	 *             if the value can't be converted
+	 */
+	void add( Object value ) throws BirtException
+	{
+		int row = rowCount;
+		if ( value != null )
+		{
+			validity[row >> 3] |= 1 << ( row & 7 );
+		}
+		switch ( physicalType )
+		{
+			case ColumnarFormat.TYPE_BOOLEAN :
+				values[row] = (byte) ( value != null && toBoolean( value ) ? 1 : 0 );
+				break;
+			case ColumnarFormat.TYPE_INT32 :
+				putInt( values, row * 4, value == null ? 0 : toInt( value ) );
+				break;
+			case ColumnarFormat.TYPE_FLOAT64 :
+				putLong( values,
+						row * 8,
+						value == null ? 0 : Double.doubleToLongBits( toDouble( value ) ) );
+				break;
+			case ColumnarFormat.TYPE_TIMESTAMP :
+				putLong( values, row * 8, value == null ? 0 : toTime( value ) );
+				break;
+			case ColumnarFormat.TYPE_BINARY :
+				if ( value != null )
+				{
+					byte[] bytes = value instanceof byte[]
+							? (byte[]) value
+							: DataTypeUtil.toBytes( value );
+					if ( bytes != null )
+					{
+						ensureData( bytes.length );
+						System.arraycopy( bytes, 0, data, dataLength, bytes.length );
+						dataLength += bytes.length;
+					}
+				}
+				offsets[row + 1] = dataLength;
+				break;
+			case ColumnarFormat.TYPE_DECIMAL :
+				if ( value != null )
+				{
+					BigDecimal decimal = value instanceof BigDecimal
+							? (BigDecimal) value
+							: DataTypeUtil.toBigDecimal( value );
+					appendUTF8( decimal.toString( ) );
+				}
+				offsets[row + 1] = dataLength;
+				break;
+			default :
+				if ( value != null )
+				{
+					appendUTF8( value instanceof String
+							? (String) value
+							: DataTypeUtil.toLocaleNeutralString( value ) );
+				}
+				offsets[row + 1] = dataLength;
+				break;
+		}
+		rowCount++;
+	}
+
+	/**
+	 * @return the number of bytes of the encoded vector
+	 */
+	int getLength( )
+	{
+		int length = ( rowCount + 7 ) / 8;
+		if ( width > 0 )
+		{
+			return length + rowCount * width;
+		}
+		return length + ( rowCount + 1 ) * 4 + dataLength;
+	}
+
+	/**
+	 * Encodes the vector.
+	 *
+	 * @param buffer
+	 *            target buffer, at least {@link #getLength()} long
+	 */
+	void encode( byte[] buffer )
+	{
+		int bitmapLength = ( rowCount + 7 ) / 8;
+		System.arraycopy( validity, 0, buffer, 0, bitmapLength );
+		int pos = bitmapLength;
+		if ( width > 0 )
+		{
+			System.arraycopy( values, 0, buffer, pos, rowCount * width );
+			return;
+		}
+		for ( int i = 0; i <= rowCount; i++ )
+		{
+			putInt( buffer, pos, offsets[i] );
+			pos += 4;
+		}
+		System.arraycopy( data, 0, buffer, pos, dataLength );
+	}
+
+	/**
+	 * Loads an encoded vector.
+	 *
+	 * @param buffer
+	 *            encoded vector
+	 * @param rows
+	 *            number of rows of the batch
+	 */
+	void decode( byte[] buffer, int rows )
+	{
+		ensureCapacity( rows );
+		rowCount = rows;
+		int bitmapLength = ( rows + 7 ) / 8;
+		System.arraycopy( buffer, 0, validity, 0, bitmapLength );
+		int pos = bitmapLength;
+		if ( width > 0 )
+		{
+			System.arraycopy( buffer, pos, values, 0, rows * width );
+			return;
+		}
+		for ( int i = 0; i <= rows; i++ )
+		{
+			offsets[i] = getInt( buffer, pos );
+			pos += 4;
+		}
+		// the data of the previous batch is dropped, not copied
+		dataLength = 0;
+		ensureData( offsets[rows] );
+		dataLength = offsets[rows];
+		System.arraycopy( buffer, pos, data, 0, dataLength );
+	}
+
+	/**
+	 * Returns the value of a row of a decoded vector.
+	 *
+	 * @param row
+	 *            row index within the batch
+	 * @return the value, or null
+	 */
+	Object getValue( int row )
+	{
+		if ( ( validity[row >> 3] & ( 1 << ( row & 7 ) ) ) == 0 )
+		{
+			return null;
+		}
+		switch ( physicalType )
+		{
+			case ColumnarFormat.TYPE_BOOLEAN :
+				return Boolean.valueOf( values[row] != 0 );
+			case ColumnarFormat.TYPE_INT32 :
+				return Integer.valueOf( getInt( values, row * 4 ) );
+			case ColumnarFormat.TYPE_FLOAT64 :
+				return Double.valueOf( Double.longBitsToDouble( getLong( values,
+						row * 8 ) ) );
+			case ColumnarFormat.TYPE_TIMESTAMP :
+				long time = getLong( values, row * 8 );
+				if ( dataType == DataType.SQL_DATE_TYPE )
+				{
+					return new java.sql.Date( time );
+				}
+				if ( dataType == DataType.SQL_TIME_TYPE )
+				{
+					return new java.sql.Time( time );
+				}
+				return new Date( time );
+			case ColumnarFormat.TYPE_BINARY :
+				byte[] bytes = new byte[offsets[row + 1] - offsets[row]];
+				System.arraycopy( data, offsets[row], bytes, 0, bytes.length );
+				return bytes;
+			case ColumnarFormat.TYPE_DECIMAL :
+				return new BigDecimal( getString( row ) );
+			default :
+				return getString( row );
+		}
+	}
+
+	private String getString( int row )
+	{
+		try
+		{
+			return new String( data, offsets[row], offsets[row + 1]
+					- offsets[row], UTF_8 );
+		}
+		catch ( UnsupportedEncodingException e )
+		{
+			// UTF-8 is always supported
+			throw new IllegalStateException( e.getMessage( ) );
+		}
+	}
+
+	private void ensureCapacity( int capacity )
+	{
+		int bitmapLength = ( capacity + 7 ) / 8;
+		if ( validity == null || validity.length < bitmapLength )
+		{
+			validity = new byte[bitmapLength];
+		}
+		if ( width > 0 )
+		{
+			if ( values == null || values.length < capacity * width )
+			{
+				values = new byte[capacity * width];
+			}
+		}
+		else if ( offsets == null || offsets.length < capacity + 1 )
+		{
+			offsets = new int[capacity + 1];
+		}
+	}
+
+	private void ensureData( int length )
+	{
+		int required = dataLength + length;
+		if ( data == null )
+		{
+			data = new byte[Math.max( required, 1024 )];
+		}
+		else if ( data.length < required )
+		{
+			byte[] newData = new byte[Math.max( required, data.length * 2 )];
+			System.arraycopy( data, 0, newData, 0, dataLength );
+			data = newData;
+		}
+	}
+
+	/**
+	 * Appends the UTF-8 bytes of the string to the data.
+	 */
+	private void appendUTF8( String s )
+	{
+		int length = s.length( );
+		// a char never takes more than 3 bytes, surrogate pairs take 4
+		ensureData( length * 3 );
+		byte[] d = data;
+		int pos = dataLength;
+		for ( int i = 0; i < length; i++ )
+		{
+			char c = s.charAt( i );
+			if ( c < 0x80 )
+			{
+				d[pos++] = (byte) c;
+			}
+			else if ( c < 0x800 )
+			{
+				d[pos++] = (byte) ( 0xC0 | ( c >> 6 ) );
+				d[pos++] = (byte) ( 0x80 | ( c & 0x3F ) );
+			}
+			else if ( Character.isHighSurrogate( c ) && i + 1 < length
+					&& Character.isLowSurrogate( s.charAt( i + 1 ) ) )
+			{
+				int cp = Character.toCodePoint( c, s.charAt( ++i ) );
+				d[pos++] = (byte) ( 0xF0 | ( cp >> 18 ) );
+				d[pos++] = (byte) ( 0x80 | ( ( cp >> 12 ) & 0x3F ) );
+				d[pos++] = (byte) ( 0x80 | ( ( cp >> 6 ) & 0x3F ) );
+				d[pos++] = (byte) ( 0x80 | ( cp & 0x3F ) );
+			}
+			else if ( Character.isHighSurrogate( c )
+					|| Character.isLowSurrogate( c ) )
+			{
+				// unpaired surrogate, as String.getBytes( ) does
+				d[pos++] = '?';
+			}
+			else
+			{
+				d[pos++] = (byte) ( 0xE0 | ( c >> 12 ) );
+				d[pos++] = (byte) ( 0x80 | ( ( c >> 6 ) & 0x3F ) );
+				d[pos++] = (byte) ( 0x80 | ( c & 0x3F ) );
+			}
+		}
+		dataLength = pos;
+	}
+
+	private static boolean toBoolean( Object value ) throws BirtException
+	{
+		if ( value instanceof Boolean )
+		{
+			return ( (Boolean) value ).booleanValue( );
+		}
+		return DataTypeUtil.toBoolean( value ).booleanValue( );
+	}
+
+	private static int toInt( Object value ) throws BirtException
+	{
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).intValue( );
+		}
+		return DataTypeUtil.toInteger( value ).intValue( );
+	}
+
+	private static double toDouble( Object value ) throws BirtException
+	{
+		if ( value instanceof Number )
+		{
+			return ( (Number) value ).doubleValue( );
+		}
+		return DataTypeUtil.toDouble( value ).doubleValue( );
+	}
+
+	private static long toTime( Object value ) throws BirtException
+	{
+		if ( value instanceof Date )
+		{
+			return ( (Date) value ).getTime( );
+		}
+		return DataTypeUtil.toDate( value ).getTime( );
+	}
+
+	static void putInt( byte[] b, int pos, int v )
+	{
+		b[pos] = (byte) ( v >>> 24 );
+		b[pos + 1] = (byte) ( v >>> 16 );
+		b[pos + 2] = (byte) ( v >>> 8 );
+		b[pos + 3] = (byte) v;
+	}
+
+	static void putLong( byte[] b, int pos, long v )
+	{
+		putInt( b, pos, (int) ( v >>> 32 ) );
+		putInt( b, pos + 4, (int) v );
+	}
+
+	static int getInt( byte[] b, int pos )
+	{
+		return ( b[pos] << 24 ) | ( ( b[pos + 1] & 0xFF ) << 16 )
+				| ( ( b[pos + 2] & 0xFF ) << 8 ) | ( b[pos + 3] & 0xFF );
+	}
+
+	static long getLong( byte[] b, int pos )
+	{
+		return ( (long) getInt( b, pos ) << 32 )
+				| ( getInt( b, pos + 4 ) & 0xFFFFFFFFL );
+	}
+}
@@ -0,0 +1,187 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.IDataExtractionOption;
+import org.eclipse.birt.report.engine.api.IDataIterator;
+import org.eclipse.birt.report.engine.api.IExtractionResults;
+import org.eclipse.birt.report.engine.api.IResultMetaData;
+import org.eclipse.birt.report.engine.api.script.IReportContext;
+import org.eclipse.birt.report.engine.dataextraction.ColumnarDataExtractionOption;
+import org.eclipse.birt.report.engine.dataextraction.IColumnarDataExtractionOption;
+import org.eclipse.birt.report.engine.dataextraction.i18n.Messages;
+import org.eclipse.birt.report.engine.dataextraction.impl.CommonDataExtractionImpl;
+
+/**
+ * Implements the logic to extract data in the columnar binary format. The
+ * values keep the data types of the result set instead of being formatted, so
+ * the locale, time zone and format options don't apply.
+ */
+public class ColumnarDataExtractionImpl extends CommonDataExtractionImpl
+{
+	public static final String PLUGIN_ID = "org.eclipse.birt.report.engine.dataextraction.columnar"; //$NON-NLS-1$
+
+	private OutputStream outputStream;
+	private String[] selectedColumnNames;
+	private int batchSize;
+	private int compressionLevel;
+
+	/**
+	 * @see org.eclipse.birt.report.engine.extension.IDataExtractionExtension#initialize(org.eclipse.birt.report.engine.api.script.IReportContext,
+	 *      org.eclipse.birt.report.engine.api.IDataExtractionOption)
+	 */
+	public void initialize( IReportContext context, IDataExtractionOption options )
+			throws BirtException
+	{
+		super.initialize( context, options );
+		initColumnarOptions( options );
+	}
+
+	/**
+	 * Initializes the columnar options based on the data extraction option.
+	 * If the passed option doesn't contain columnar options, use default
+	 * values.
+	 * @param option options
+	 */
+	private void initColumnarOptions( IDataExtractionOption options )
+	{
+		this.outputStream = options.getOutputStream( );
+		IColumnarDataExtractionOption columnarOptions;
+		if ( options instanceof IColumnarDataExtractionOption )
+		{
+			columnarOptions = (IColumnarDataExtractionOption) options;
+		}
+		else
+		{
+			columnarOptions = new ColumnarDataExtractionOption( options.getOptions( ) );
+		}
+
+		batchSize = columnarOptions.getBatchSize( );
+		if ( batchSize <= 0 )
+		{
+			batchSize = IColumnarDataExtractionOption.DEFAULT_BATCH_SIZE;
+		}
+		compressionLevel = columnarOptions.getCompressionLevel( );
+		if ( compressionLevel < -1 || compressionLevel > 9 )
+		{
+			compressionLevel = -1;
+		}
+		selectedColumnNames = columnarOptions.getSelectedColumns( );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.extension.IDataExtractionExtension#output(org.eclipse.birt.report.engine.api.IExtractionResults)
+	 */
+	public void output( IExtractionResults results ) throws BirtException
+	{
+		if ( results == null )
+		{
+			throw new BirtException( PLUGIN_ID,
+					Messages.getString( "exception.dataextraction.no_extraction_result_error" ), //$NON-NLS-1$
+					(ResourceBundle) null );
+		}
+		try
+		{
+			IResultMetaData metaData = results.getResultMetaData( );
+			int[] columnIndexes = getColumnIndexes( metaData );
+			int columnCount = columnIndexes.length;
+			String[] columnNames = new String[columnCount];
+			String[] columnLabels = new String[columnCount];
+			int[] columnTypes = new int[columnCount];
+			for ( int i = 0; i < columnCount; i++ )
+			{
+				columnNames[i] = metaData.getColumnName( columnIndexes[i] );
+				columnLabels[i] = metaData.getColumnLabel( columnIndexes[i] );
+				columnTypes[i] = metaData.getColumnType( columnIndexes[i] );
+			}
+
+			ColumnarWriter writer = new ColumnarWriter( outputStream,
+					columnNames,
+					columnLabels,
+					columnTypes,
+					batchSize,
+					compressionLevel );
+			try
+			{
+				// the extraction results have a single iterator, which
+				// nextResultIterator() keeps returning
+				IDataIterator iData = results.nextResultIterator( );
+				if ( iData != null && columnCount > 0 )
+				{
+					while ( iData.next( ) )
+					{
+						for ( int i = 0; i < columnCount; i++ )
+						{
+							writer.setValue( i,
+									iData.getValue( columnNames[i] ) );
+						}
+						writer.endRow( );
+					}
+				}
+			}
+			finally
+			{
+				writer.close( );
+			}
+		}
+		catch ( Exception e )
+		{
+			throw new BirtException( PLUGIN_ID,
+					Messages.getString( "exception.dataextraction.exception_occured" ), //$NON-NLS-1$
+					(ResourceBundle) null,
+					e );
+		}
+	}
+
+	/**
+	 * Returns the meta data indexes of the selected columns, or of all the
+	 * columns if no column is selected. Unknown selected columns are ignored.
+	 */
+	private int[] getColumnIndexes( IResultMetaData metaData )
+			throws BirtException
+	{
+		int count = metaData.getColumnCount( );
+		List<Integer> indexes = new ArrayList<Integer>( );
+		if ( selectedColumnNames == null || selectedColumnNames.length <= 0 )
+		{
+			for ( int i = 0; i < count; i++ )
+			{
+				indexes.add( i );
+			}
+		}
+		else
+		{
+			for ( int i = 0; i < selectedColumnNames.length; i++ )
+			{
+				for ( int j = 0; j < count; j++ )
+				{
+					if ( selectedColumnNames[i].equals( metaData.getColumnName( j ) ) )
+					{
+						indexes.add( j );
+						break;
+					}
+				}
+			}
+		}
+		int[] result = new int[indexes.size( )];
+		for ( int i = 0; i < result.length; i++ )
+		{
+			result[i] = indexes.get( i ).intValue( );
+		}
+		return result;
+	}
+}
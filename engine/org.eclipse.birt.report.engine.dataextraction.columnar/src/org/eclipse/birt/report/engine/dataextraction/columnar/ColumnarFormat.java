@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import org.eclipse.birt.core.data.DataType;
+
+/**
+ * Constants of the columnar binary format. All numbers are big endian.
+ *
+ * <pre>
+ * file    := MAGIC version:int schema batch* end
+ * schema  := columnCount:int column*
+ * column  := name:utf label:utf birtType:int physicalType:byte
+ * batch   := rowCount:int block[columnCount]
+ * block   := codec:byte rawLength:int storedLength:int bytes[storedLength]
+ * end     := 0:int totalRowCount:long
+ * </pre>
+ *
+ * Strings in the schema use the modified UTF-8 encoding of
+ * <code>DataOutput.writeUTF</code>, a label may be empty. A block holds one
+ * column of a batch. Once decoded according to its codec, it starts with a
+ * validity bitmap of <code>(rowCount + 7) / 8</code> bytes, where bit
+ * <code>i % 8</code> of byte <code>i / 8</code> is set when row
+ * <code>i</code> isn't null, followed by the values of all the rows, null
+ * rows included:
+ * <ul>
+ * <li>{@link #TYPE_BOOLEAN}: one byte per row, 0 or 1.</li>
+ * <li>{@link #TYPE_INT32}: four bytes per row.</li>
+ * <li>{@link #TYPE_FLOAT64}: eight bytes IEEE 754 per row.</li>
+ * <li>{@link #TYPE_TIMESTAMP}: eight bytes per row, milliseconds since
+ * 1970-01-01T00:00:00Z.</li>
+ * <li>{@link #TYPE_STRING}, {@link #TYPE_DECIMAL} and {@link #TYPE_BINARY}:
+ * <code>rowCount + 1</code> four bytes offsets, followed by the data of all
+ * the rows. The value of row <code>i</code> lies between the offsets
+ * <code>i</code> and <code>i + 1</code>. Strings and decimals are encoded in
+ * UTF-8, a decimal is the text of <code>BigDecimal.toString()</code>.</li>
+ * </ul>
+ */
+public final class ColumnarFormat
+{
+
+	/**
+	 * Leading bytes of the format.
+	 */
+	public static final byte[] MAGIC = {'B', 'C', 'O', 'L'};
+
+	/**
+	 * Current version of the format.
+	 */
+	public static final int VERSION = 1;
+
+	public static final byte TYPE_BOOLEAN = 1;
+	public static final byte TYPE_INT32 = 2;
+	public static final byte TYPE_FLOAT64 = 3;
+	public static final byte TYPE_DECIMAL = 4;
+	public static final byte TYPE_STRING = 5;
+	public static final byte TYPE_TIMESTAMP = 6;
+	public static final byte TYPE_BINARY = 7;
+
+	/**
+	 * The block is stored as is.
+	 */
+	public static final byte CODEC_NONE = 0;
+
+	/**
+	 * The block is compressed with the zlib deflate format.
+	 */
+	public static final byte CODEC_DEFLATE = 1;
+
+	private ColumnarFormat( )
+	{
+	}
+
+	/**
+	 * Returns the physical type storing the values of the given data type.
+	 * Types without a binary representation are stored as their locale
+	 * neutral string.
+	 *
+	 * @param dataType
+	 *            one of the {@link DataType} constants
+	 * @return physical type
+	 */
+	public static byte getPhysicalType( int dataType )
+	{
+		switch ( dataType )
+		{
+			case DataType.BOOLEAN_TYPE :
+				return TYPE_BOOLEAN;
+			case DataType.INTEGER_TYPE :
+				return TYPE_INT32;
+			case DataType.DOUBLE_TYPE :
+				return TYPE_FLOAT64;
+			case DataType.DECIMAL_TYPE :
+				return TYPE_DECIMAL;
+			case DataType.DATE_TYPE :
+			case DataType.SQL_DATE_TYPE :
+			case DataType.SQL_TIME_TYPE :
+				return TYPE_TIMESTAMP;
+			case DataType.BLOB_TYPE :
+			case DataType.BINARY_TYPE :
+				return TYPE_BINARY;
+			default :
+				return TYPE_STRING;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of a value of a fixed width type.
+	 *
+	 * @param physicalType
+	 *            physical type
+	 * @return value width, or 0 for the variable width types
+	 */
+	public static int getWidth( byte physicalType )
+	{
+		switch ( physicalType )
+		{
+			case TYPE_BOOLEAN :
+				return 1;
+			case TYPE_INT32 :
+				return 4;
+			case TYPE_FLOAT64 :
+			case TYPE_TIMESTAMP :
+				return 8;
+			default :
+				return 0;
+		}
+	}
+}
@@ -0,0 +1,209 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Reads the columnar binary format written by {@link ColumnarWriter}, one
+ * record batch at a time.
+ */
+public class ColumnarReader
+{
+
+	private final DataInputStream in;
+	private final String[] names;
+	private final String[] labels;
+	private final int[] types;
+	private final ColumnVector[] columns;
+	private final Inflater inflater = new Inflater( );
+
+	private byte[] rawBuffer = new byte[0];
+	private byte[] compressedBuffer = new byte[0];
+
+	private int batchRowCount;
+	private long totalRowCount = -1;
+
+	/**
+	 * Creates a reader and reads the schema.
+	 *
+	 * @param in
+	 *            input stream, which is not closed by the reader
+	 * @throws IOException
+	 *             if the stream isn't in the columnar format
+	 */
+	public ColumnarReader( InputStream in ) throws IOException
+	{
+		this.in = new DataInputStream( new BufferedInputStream( in ) );
+		byte[] magic = new byte[ColumnarFormat.MAGIC.length];
+		this.in.readFully( magic );
+		for ( int i = 0; i < magic.length; i++ )
+		{
+			if ( magic[i] != ColumnarFormat.MAGIC[i] )
+			{
+				throw new IOException( "Not a columnar data stream" ); //$NON-NLS-1$
+			}
+		}
+		int version = this.in.readInt( );
+		if ( version != ColumnarFormat.VERSION )
+		{
+			throw new IOException( "Unsupported columnar format version " //$NON-NLS-1$
+					+ version );
+		}
+		int count = this.in.readInt( );
+		names = new String[count];
+		labels = new String[count];
+		types = new int[count];
+		columns = new ColumnVector[count];
+		for ( int i = 0; i < count; i++ )
+		{
+			names[i] = this.in.readUTF( );
+			labels[i] = this.in.readUTF( );
+			types[i] = this.in.readInt( );
+			// the physical type follows from the data type
+			this.in.readByte( );
+			columns[i] = new ColumnVector( types[i], 0 );
+		}
+	}
+
+	/**
+	 * @return the column names
+	 */
+	public String[] getColumnNames( )
+	{
+		return names;
+	}
+
+	/**
+	 * @return the column labels
+	 */
+	public String[] getColumnLabels( )
+	{
+		return labels;
+	}
+
+	/**
+	 * @return the column data types
+	 */
+	public int[] getColumnTypes( )
+	{
+		return types;
+	}
+
+	/**
+	 * Reads the next record batch.
+	 *
+	 * @return the number of rows of the batch, or 0 at the end of the stream
+	 * @throws IOException
+	 */
+	public int nextBatch( ) throws IOException
+	{
+		if ( totalRowCount >= 0 )
+		{
+			return 0;
+		}
+		batchRowCount = in.readInt( );
+		if ( batchRowCount == 0 )
+		{
+			totalRowCount = in.readLong( );
+			inflater.end( );
+			return 0;
+		}
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			readBlock( );
+			columns[i].decode( rawBuffer, batchRowCount );
+		}
+		return batchRowCount;
+	}
+
+	/**
+	 * Returns a value of the current batch.
+	 *
+	 * @param column
+	 *            column index
+	 * @param row
+	 *            row index within the batch
+	 * @return the value, or null
+	 */
+	public Object getValue( int column, int row )
+	{
+		if ( row < 0 || row >= batchRowCount )
+		{
+			throw new IndexOutOfBoundsException( String.valueOf( row ) );
+		}
+		return columns[column].getValue( row );
+	}
+
+	/**
+	 * @return the total number of rows, or -1 if the end of the stream hasn't
+	 *         been read yet
+	 */
+	public long getTotalRowCount( )
+	{
+		return totalRowCount;
+	}
+
+	private void readBlock( ) throws IOException
+	{
+		byte codec = in.readByte( );
+		int length = in.readInt( );
+		int storedLength = in.readInt( );
+		if ( rawBuffer.length < length )
+		{
+			rawBuffer = new byte[length];
+		}
+		if ( codec == ColumnarFormat.CODEC_NONE )
+		{
+			in.readFully( rawBuffer, 0, length );
+			return;
+		}
+		if ( codec != ColumnarFormat.CODEC_DEFLATE )
+		{
+			throw new IOException( "Unknown codec " + codec ); //$NON-NLS-1$
+		}
+		if ( compressedBuffer.length < storedLength )
+		{
+			compressedBuffer = new byte[storedLength];
+		}
+		in.readFully( compressedBuffer, 0, storedLength );
+		inflater.reset( );
+		inflater.setInput( compressedBuffer, 0, storedLength );
+		try
+		{
+			int inflated = 0;
+			while ( inflated < length && !inflater.finished( ) )
+			{
+				int n = inflater.inflate( rawBuffer, inflated, length - inflated );
+				if ( n == 0 && ( inflater.needsInput( ) || inflater.needsDictionary( ) ) )
+				{
+					break;
+				}
+				inflated += n;
+			}
+			if ( inflated != length )
+			{
+				throw new IOException( "Corrupted block" ); //$NON-NLS-1$
+			}
+		}
+		catch ( DataFormatException e )
+		{
+			IOException ioe = new IOException( e.getMessage( ) );
+			ioe.initCause( e );
+			throw ioe;
+		}
+	}
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.columnar;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+
+import org.eclipse.birt.core.exception.BirtException;
+
+/**
+ * Writes rows in the columnar binary format described in
+ * {@link ColumnarFormat}. The values are buffered column by column and
+ * written as a record batch every <code>batchSize</code> rows, so the memory
+ * used doesn't depend on the size of the result set.
+ * <p>
+ * Usage: set the values of a row with {@link #setValue(int, Object)}, call
+ * {@link #endRow()}, and call {@link #close()} after the last row.
+ */
+public class ColumnarWriter
+{
+
+	private final DataOutputStream out;
+	private final int batchSize;
+	private final ColumnVector[] columns;
+	private final Object[] row;
+	private final Deflater deflater;
+
+	private byte[] rawBuffer = new byte[0];
+	private byte[] compressedBuffer = new byte[0];
+
+	private int batchRowCount;
+	private long totalRowCount;
+
+	/**
+	 * Creates a writer and writes the schema.
+	 *
+	 * @param out
+	 *            output stream, which is not closed by the writer
+	 * @param names
+	 *            column names
+	 * @param labels
+	 *            column labels, may contain null values
+	 * @param types
+	 *            column data types, the {@link org.eclipse.birt.core.data.DataType}
+	 *            constants
+	 * @param batchSize
+	 *            number of rows per record batch
+	 * @param compressionLevel
+	 *            deflate level, 0 stores the blocks uncompressed and -1 uses
+	 *            the default level
+	 * @throws IOException
+	 */
+	public ColumnarWriter( OutputStream out, String[] names, String[] labels,
+			int[] types, int batchSize, int compressionLevel )
+			throws IOException
+	{
+		this.out = new DataOutputStream( new BufferedOutputStream( out ) );
+		this.batchSize = Math.max( 1, batchSize );
+		this.columns = new ColumnVector[names.length];
+		this.row = new Object[names.length];
+		for ( int i = 0; i < names.length; i++ )
+		{
+			columns[i] = new ColumnVector( types[i], this.batchSize );
+		}
+		this.deflater = compressionLevel == 0 ? null
+				: new Deflater( compressionLevel );
+		writeSchema( names, labels, types );
+	}
+
+	/**
+	 * Sets a value of the current row.
+	 *
+	 * @param column
+	 *            column index
+	 * @param value
+	 *            the value, may be null
+	 */
+	public void setValue( int column, Object value )
+	{
+		row[column] = value;
+	}
+
+	/**
+	 * Appends the current row to the batch, and writes the batch once it is
+	 * full.
+	 *
+	 * @throws BirtException
+	 *             if a value can't be converted to its column type
+	 * @throws IOException
+	 */
+	public void endRow( ) throws BirtException, IOException
+	{
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			columns[i].add( row[i] );
+			row[i] = null;
+		}
+		batchRowCount++;
+		if ( batchRowCount == batchSize )
+		{
+			writeBatch( );
+		}
+	}
+
+	/**
+	 * Writes the pending rows and the end of the stream, and flushes the
+	 * output stream.
+	 *
+	 * @throws IOException
+	 */
+	public void close( ) throws IOException
+	{
+		try
+		{
+			if ( batchRowCount > 0 )
+			{
+				writeBatch( );
+			}
+			out.writeInt( 0 );
+			out.writeLong( totalRowCount );
+			out.flush( );
+		}
+		finally
+		{
+			if ( deflater != null )
+			{
+				deflater.end( );
+			}
+		}
+	}
+
+	private void writeSchema( String[] names, String[] labels, int[] types )
+			throws IOException
+	{
+		out.write( ColumnarFormat.MAGIC );
+		out.writeInt( ColumnarFormat.VERSION );
+		out.writeInt( names.length );
+		for ( int i = 0; i < names.length; i++ )
+		{
+			out.writeUTF( names[i] );
+			out.writeUTF( labels == null || labels[i] == null ? "" //$NON-NLS-1$
+					: labels[i] );
+			out.writeInt( types[i] );
+			out.writeByte( columns[i].getPhysicalType( ) );
+		}
+	}
+
+	private void writeBatch( ) throws IOException
+	{
+		out.writeInt( batchRowCount );
+		for ( int i = 0; i < columns.length; i++ )
+		{
+			ColumnVector column = columns[i];
+			int length = column.getLength( );
+			if ( rawBuffer.length < length )
+			{
+				rawBuffer = new byte[length];
+			}
+			column.encode( rawBuffer );
+			column.reset( );
+			writeBlock( length );
+		}
+		totalRowCount += batchRowCount;
+		batchRowCount = 0;
+	}
+
+	/**
+	 * Writes a block, compressed unless compression doesn't make it smaller.
+	 */
+	private void writeBlock( int length ) throws IOException
+	{
+		if ( deflater != null )
+		{
+			if ( compressedBuffer.length < length )
+			{
+				compressedBuffer = new byte[length];
+			}
+			deflater.reset( );
+			deflater.setInput( rawBuffer, 0, length );
+			deflater.finish( );
+			int compressedLength = 0;
+			while ( !deflater.finished( )
+					&& compressedLength < compressedBuffer.length )
+			{
+				compressedLength += deflater.deflate( compressedBuffer,
+						compressedLength,
+						compressedBuffer.length - compressedLength );
+			}
+			if ( deflater.finished( ) && compressedLength < length )
+			{
+				out.writeByte( ColumnarFormat.CODEC_DEFLATE );
+				out.writeInt( length );
+				out.writeInt( compressedLength );
+				out.write( compressedBuffer, 0, compressedLength );
+				return;
+			}
+		}
+		out.writeByte( ColumnarFormat.CODEC_NONE );
+		out.writeInt( length );
+		out.writeInt( length );
+		out.write( rawBuffer, 0, length );
+	}
+}
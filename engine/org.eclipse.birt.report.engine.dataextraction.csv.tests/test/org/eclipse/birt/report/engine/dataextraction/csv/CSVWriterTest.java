@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright (c) 2008 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.csv;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.eclipse.birt.report.engine.dataextraction.ICSVDataExtractionOption;
+
+import junit.framework.TestCase;
+
+public class CSVWriterTest extends TestCase
+{
+	private static final String UTF8 = "UTF-8"; //$NON-NLS-1$
+
+	private static final String[] VALUES = {
+			null, "", "abc", "123", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			"\"abcd\"", "a\"bc\"d", "ab\ncd", " abcd", "abcd\t", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+			"ab,cd", "ab|cd", "ab;cd", "ab\tcd", "\u00e9\u4e2d\ud83d\ude00" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	};
+
+	private static final String[] SEPARATORS = {
+			ICSVDataExtractionOption.SEPARATOR_COMMA,
+			ICSVDataExtractionOption.SEPARATOR_PIPE,
+			ICSVDataExtractionOption.SEPARATOR_SEMICOLON,
+			ICSVDataExtractionOption.SEPARATOR_TAB
+	};
+
+	public void testRowsMatchCSVUtil( ) throws IOException
+	{
+		for ( int i = 0; i < SEPARATORS.length; i++ )
+		{
+			String sep = SEPARATORS[i];
+			assertEquals( CSVUtil.makeCSVRow( VALUES, sep, false ),
+					writeRow( VALUES, sep, false, CSVWriter.DEFAULT_BUFFER_SIZE ) );
+			assertEquals( CSVUtil.makeCSVRow( VALUES, sep, true ),
+					writeRow( VALUES, sep, true, CSVWriter.DEFAULT_BUFFER_SIZE ) );
+		}
+	}
+
+	public void testSmallBuffer( ) throws IOException
+	{
+		// the smallest buffer forces values and surrogate pairs to be split
+		// across encoder calls
+		String sep = ICSVDataExtractionOption.SEPARATOR_COMMA;
+		StringBuffer expected = new StringBuffer( );
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		CSVWriter writer = new CSVWriter( out, UTF8, sep, false, 1 );
+		for ( int i = 0; i < 100; i++ )
+		{
+			expected.append( CSVUtil.makeCSVRow( VALUES, sep, false ) );
+			writer.writeRow( VALUES );
+		}
+		writer.flush( );
+		assertEquals( expected.toString( ), out.toString( UTF8 ) );
+	}
+
+	public void testWriteLong( ) throws IOException
+	{
+		long[] values = {
+				0, 7, -7, 10, 1234567890L, -1234567890L, Long.MAX_VALUE,
+				Long.MIN_VALUE
+		};
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		CSVWriter writer = new CSVWriter( out, UTF8, ",", false, 1 ); //$NON-NLS-1$
+		StringBuffer expected = new StringBuffer( );
+		for ( int i = 0; i < values.length; i++ )
+		{
+			if ( i > 0 )
+			{
+				expected.append( ',' );
+			}
+			expected.append( values[i] );
+			writer.writeLong( values[i] );
+		}
+		writer.writeNull( );
+		writer.endRow( );
+		writer.flush( );
+		expected.append( ",\n" ); //$NON-NLS-1$
+		assertEquals( expected.toString( ), out.toString( UTF8 ) );
+	}
+
+	public void testUnmappableCharacters( ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		CSVWriter writer = new CSVWriter( out, "ISO-8859-1", ",", false ); //$NON-NLS-1$ //$NON-NLS-2$
+		writer.writeRow( new String[]{"a\u4e2db"} ); //$NON-NLS-1$
+		writer.flush( );
+		assertEquals( new String( "a\u4e2db\n".getBytes( "ISO-8859-1" ), //$NON-NLS-1$ //$NON-NLS-2$
+				"ISO-8859-1" ), //$NON-NLS-1$
+				out.toString( "ISO-8859-1" ) ); //$NON-NLS-1$
+	}
+
+	private String writeRow( String[] values, String sep, boolean addCR,
+			int bufferSize ) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream( );
+		CSVWriter writer = new CSVWriter( out, UTF8, sep, addCR, bufferSize );
+		writer.writeRow( values );
+		writer.flush( );
+		return out.toString( UTF8 );
+	}
+}
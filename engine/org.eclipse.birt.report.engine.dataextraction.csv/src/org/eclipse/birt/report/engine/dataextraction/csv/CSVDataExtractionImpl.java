@@ -10,9 +10,7 @@
  *******************************************************************************/
 package org.eclipse.birt.report.engine.dataextraction.csv;
 
-import java.io.IOException;
 import java.io.OutputStream;
-import java.io.UnsupportedEncodingException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,6 +20,8 @@ import java.util.ResourceBundle;
 
 import org.eclipse.birt.core.data.DataType;
 import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.core.format.IFormatter;
+import org.eclipse.birt.core.format.LocaleNeutralFormatter;
 import org.eclipse.birt.report.engine.api.IDataExtractionOption;
 import org.eclipse.birt.report.engine.api.IDataIterator;
 import org.eclipse.birt.report.engine.api.IExtractionResults;
@@ -169,18 +169,20 @@ public class CSVDataExtractionImpl extends CommonDataExtractionImpl
 				iData = results.nextResultIterator( );
 				if ( iData != null && columnNames.length > 0 )
 				{
+					CSVWriter writer = new CSVWriter( outputStream,
+							encoding,
+							sep,
+							addCR );
 					if ( isExportColumnHeader )
 					{
 						if ( ( columnLocalizeOption & ICommonDataExtractionOption.OPTION_COLUMN_NAME ) != 0 )
 						{
-							output( CSVUtil.makeCSVRow( columnNames, sep, addCR ) );
+							writer.writeRow( columnNames );
 						}
 
 						if ( ( columnLocalizeOption & ICommonDataExtractionOption.OPTION_COLUMN_DISPLAY_NAME ) != 0 )
 						{
-							output( CSVUtil.makeCSVRow( columnLabels,
-									sep,
-									addCR ) );
+							writer.writeRow( columnLabels );
 						}
 					}
 
@@ -188,28 +190,48 @@ public class CSVDataExtractionImpl extends CommonDataExtractionImpl
 					// Column data type
 					if ( isExportDataType )
 					{
-						output( makeDataTypesRow( columnTypes ) );
+						writer.writeRow( makeDataTypesRow( columnTypes ) );
 					}
 					
 					// Data
-					String[] values = new String[columnNames.length];
+					int columnCount = columnNames.length;
 					createFormatters( columnNames, columnTypes );
+					IFormatter[] formatters = new IFormatter[columnCount];
+					boolean[] skipped = new boolean[columnCount];
+					boolean[] neutral = new boolean[columnCount];
+					boolean plainNumbers = isPlainNumberSeparator( );
+					for ( int i = 0; i < columnCount; i++ )
+					{
+						formatters[i] = getFormatter( i );
+						skipped[i] = columnTypes[i] == DataType.BLOB_TYPE
+								|| columnTypes[i] == DataType.BINARY_TYPE;
+						neutral[i] = plainNumbers
+								&& formatters[i] instanceof LocaleNeutralFormatter;
+					}
 					while ( iData.next( ) )
 					{
-						for ( int i = 0; i < columnNames.length; i++ )
+						for ( int i = 0; i < columnCount; i++ )
 						{
-							if ( columnTypes[i] != DataType.BLOB_TYPE && columnTypes[i] != DataType.BINARY_TYPE  )
+							Object value = skipped[i] ? null
+									: iData.getValue( columnNames[i] );
+							if ( value == null )
+							{
+								writer.writeNull( );
+							}
+							else if ( neutral[i] && isIntegral( value ) )
 							{
-								values[i] = getStringValue( iData, columnNames, i );
+								// locale neutral integers are written
+								// without an intermediate string
+								writer.writeLong( ( (Number) value ).longValue( ) );
 							}
 							else
 							{
-								values[i] = null;
+								writer.writeValue( formatters[i].formatValue( value ) );
 							}
 						}
-						
-						output( CSVUtil.makeCSVRow( values, sep, addCR ) );
+						writer.endRow( );
 					}
+					writer.flush( );
 				}
 			}
 		}
@@ -223,18 +245,46 @@ public class CSVDataExtractionImpl extends CommonDataExtractionImpl
 	}
 
 	/**
-	 * Creates a CSV-row containing the data type names of the given types array.
+	 * Creates a row containing the data type names of the given types array.
 	 * @param types column typee array
-	 * @return CSV-row containing the data type names the result set
+	 * @return row containing the data type names the result set
 	 */
-	private String makeDataTypesRow( int[] types )
+	private String[] makeDataTypesRow( int[] types )
 	{
 		String[] values = new String[types.length];
 		for ( int i = 0; i < types.length; i++ )
 		{
 			values[i] = DataType.getName( types[i] );
 		}
-		return CSVUtil.makeCSVRow( values, sep, addCR );
+		return values;
+	}
+
+	/**
+	 * Returns whether integers can be written without checking whether they
+	 * need to be quoted, which is the case unless the separator contains a
+	 * digit or a minus sign.
+	 */
+	private boolean isPlainNumberSeparator( )
+	{
+		for ( int i = 0; i < sep.length( ); i++ )
+		{
+			char c = sep.charAt( i );
+			if ( c == '-' || Character.isDigit( c ) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns whether the value is an integral number whose locale neutral
+	 * format is its decimal representation.
+	 */
+	private static boolean isIntegral( Object value )
+	{
+		return value instanceof Integer || value instanceof Long
+				|| value instanceof Short || value instanceof Byte;
 	}
 	
 	/**
@@ -273,16 +323,4 @@ public class CSVDataExtractionImpl extends CommonDataExtractionImpl
 		}
 		return types;
 	}
-
-	/**
-	 * Outputs a given String to the output stream using the configured
-	 * encoding.
-	 * @param s string to output
-	 * @throws IOException
-	 * @throws UnsupportedEncodingException
-	 */
-	private void output( String s ) throws IOException, UnsupportedEncodingException
-	{
-		outputStream.write( s.getBytes( encoding ) );
-	}
 }
@@ -0,0 +1,344 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+package org.eclipse.birt.report.engine.dataextraction.csv;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Streaming CSV writer. The values are quoted directly into a reusable
+ * character buffer, which is encoded with a single charset encoder into a
+ * reusable byte buffer, so writing a value doesn't allocate any intermediate
+ * string or byte array. The quoting rules are the ones of
+ * {@link CSVUtil#quoteCSVValue(String, String)}.
+ */
+public class CSVWriter
+{
+
+	/**
+	 * Default size of the character and the byte buffer.
+	 */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Smallest buffer size, large enough for any long value.
+	 */
+	private static final int MIN_BUFFER_SIZE = 32;
+
+	private static final char QUOTE = '"';
+
+	private final OutputStream out;
+	private final CharsetEncoder encoder;
+	private final String sep;
+	private final boolean addCR;
+
+	private final char[] chars;
+	private final CharBuffer charBuffer;
+	private final ByteBuffer byteBuffer;
+
+	/**
+	 * Number of characters pending in the character buffer.
+	 */
+	private int count;
+
+	/**
+	 * Whether the next value is the first one of the row.
+	 */
+	private boolean firstValue = true;
+
+	/**
+	 * Creates a writer with the default buffer size.
+	 *
+	 * @param out
+	 *            output stream
+	 * @param encoding
+	 *            charset name
+	 * @param sep
+	 *            CSV separator
+	 * @param addCR
+	 *            whether the rows end with CR LF instead of LF
+	 */
+	public CSVWriter( OutputStream out, String encoding, String sep,
+			boolean addCR )
+	{
+		this( out, encoding, sep, addCR, DEFAULT_BUFFER_SIZE );
+	}
+
+	/**
+	 * Creates a writer.
+	 *
+	 * @param out
+	 *            output stream
+	 * @param encoding
+	 *            charset name
+	 * @param sep
+	 *            CSV separator
+	 * @param addCR
+	 *            whether the rows end with CR LF instead of LF
+	 * @param bufferSize
+	 *            number of characters buffered before encoding
+	 */
+	public CSVWriter( OutputStream out, String encoding, String sep,
+			boolean addCR, int bufferSize )
+	{
+		this.out = out;
+		this.sep = sep;
+		this.addCR = addCR;
+		// replace unmappable characters, as String.getBytes( ) does
+		this.encoder = Charset.forName( encoding )
+				.newEncoder( )
+				.onMalformedInput( CodingErrorAction.REPLACE )
+				.onUnmappableCharacter( CodingErrorAction.REPLACE );
+		this.chars = new char[Math.max( bufferSize, MIN_BUFFER_SIZE )];
+		this.charBuffer = CharBuffer.wrap( chars );
+		// the encoded bytes are written to a stream, so a heap buffer with a
+		// backing array avoids copying out of a direct buffer
+		this.byteBuffer = ByteBuffer.allocate( Math.max( (int) ( chars.length * encoder.maxBytesPerChar( ) ),
+				16 ) );
+	}
+
+	/**
+	 * Writes a value, quoted as needed. A null value is written as an empty
+	 * field.
+	 *
+	 * @param value
+	 *            value to write
+	 * @throws IOException
+	 */
+	public void writeValue( String value ) throws IOException
+	{
+		writeSeparator( );
+		if ( value == null )
+		{
+			return;
+		}
+		int length = value.length( );
+		if ( length == 0 )
+		{
+			append( QUOTE );
+			append( QUOTE );
+			return;
+		}
+		if ( !needQuote( value ) )
+		{
+			append( value, 0, length );
+			return;
+		}
+		append( QUOTE );
+		int start = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			if ( value.charAt( i ) == QUOTE )
+			{
+				// double the quote
+				append( value, start, i + 1 );
+				start = i;
+			}
+		}
+		append( value, start, length );
+		append( QUOTE );
+	}
+
+	/**
+	 * Writes an integral value in locale neutral format.
+	 *
+	 * @param value
+	 *            value to write
+	 * @throws IOException
+	 */
+	public void writeLong( long value ) throws IOException
+	{
+		writeSeparator( );
+		if ( value == Long.MIN_VALUE )
+		{
+			String s = Long.toString( value );
+			append( s, 0, s.length( ) );
+			return;
+		}
+		if ( value < 0 )
+		{
+			append( '-' );
+			value = -value;
+		}
+		// at most 19 digits
+		if ( chars.length - count < 19 )
+		{
+			flushChars( false );
+		}
+		int digits = 1;
+		for ( long v = value / 10; v > 0; v /= 10 )
+		{
+			digits++;
+		}
+		int pos = count + digits;
+		do
+		{
+			chars[--pos] = (char) ( '0' + (int) ( value % 10 ) );
+			value /= 10;
+		} while ( value > 0 );
+		count += digits;
+	}
+
+	/**
+	 * Writes an empty field.
+	 *
+	 * @throws IOException
+	 */
+	public void writeNull( ) throws IOException
+	{
+		writeSeparator( );
+	}
+
+	/**
+	 * Terminates the current row.
+	 *
+	 * @throws IOException
+	 */
+	public void endRow( ) throws IOException
+	{
+		if ( addCR )
+		{
+			append( '\r' );
+		}
+		append( '\n' );
+		firstValue = true;
+	}
+
+	/**
+	 * Writes a complete row.
+	 *
+	 * @param values
+	 *            values of the columns
+	 * @throws IOException
+	 */
+	public void writeRow( String[] values ) throws IOException
+	{
+		for ( int i = 0; i < values.length; i++ )
+		{
+			writeValue( values[i] );
+		}
+		endRow( );
+	}
+
+	/**
+	 * Encodes all pending characters and flushes them to the output stream.
+	 * The writer must not be used afterwards, the output stream is not
+	 * closed.
+	 *
+	 * @throws IOException
+	 */
+	public void flush( ) throws IOException
+	{
+		flushChars( true );
+		CoderResult result;
+		do
+		{
+			result = encoder.flush( byteBuffer );
+			writeBytes( );
+		} while ( result.isOverflow( ) );
+		out.flush( );
+	}
+
+	/**
+	 * Returns whether the value must be quoted.
+	 */
+	private boolean needQuote( String value )
+	{
+		char first = value.charAt( 0 );
+		char last = value.charAt( value.length( ) - 1 );
+		return first == ' ' || first == '\t' || last == ' ' || last == '\t'
+				|| value.indexOf( QUOTE ) != -1 || value.indexOf( '\n' ) != -1
+				|| value.indexOf( sep ) != -1;
+	}
+
+	private void writeSeparator( ) throws IOException
+	{
+		if ( firstValue )
+		{
+			firstValue = false;
+		}
+		else
+		{
+			append( sep, 0, sep.length( ) );
+		}
+	}
+
+	private void append( char c ) throws IOException
+	{
+		if ( count == chars.length )
+		{
+			flushChars( false );
+		}
+		chars[count++] = c;
+	}
+
+	private void append( String s, int start, int end ) throws IOException
+	{
+		while ( start < end )
+		{
+			if ( count == chars.length )
+			{
+				flushChars( false );
+			}
+			int n = Math.min( end - start, chars.length - count );
+			s.getChars( start, start + n, chars, count );
+			count += n;
+			start += n;
+		}
+	}
+
+	/**
+	 * Encodes the pending characters. A trailing high surrogate is kept in the
+	 * buffer unless this is the end of the input.
+	 */
+	private void flushChars( boolean endOfInput ) throws IOException
+	{
+		charBuffer.limit( count );
+		charBuffer.position( 0 );
+		CoderResult result;
+		do
+		{
+			result = encoder.encode( charBuffer, byteBuffer, endOfInput );
+			if ( result.isError( ) )
+			{
+				result.throwException( );
+			}
+			writeBytes( );
+		} while ( result.isOverflow( ) );
+
+		int remaining = charBuffer.remaining( );
+		if ( remaining > 0 )
+		{
+			System.arraycopy( chars,
+					charBuffer.position( ),
+					chars,
+					0,
+					remaining );
+		}
+		count = remaining;
+		charBuffer.clear( );
+	}
+
+	private void writeBytes( ) throws IOException
+	{
+		if ( byteBuffer.position( ) > 0 )
+		{
+			out.write( byteBuffer.array( ), 0, byteBuffer.position( ) );
+			byteBuffer.clear( );
+		}
+	}
+}
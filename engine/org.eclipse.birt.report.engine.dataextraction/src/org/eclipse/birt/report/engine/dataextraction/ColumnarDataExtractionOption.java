@@ -0,0 +1,68 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.dataextraction;
+
+import java.util.Map;
+
+
+
+/**
+ * Extends Data Extraction options for the columnar binary format
+ * 
+ */
+public class ColumnarDataExtractionOption extends CommonDataExtractionOption
+		implements
+			IColumnarDataExtractionOption
+{
+
+	public ColumnarDataExtractionOption( )
+	{
+		super( );
+	}
+
+	public ColumnarDataExtractionOption( Map options )
+	{
+		super( options );	
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IColumnarDataExtractionOption#getBatchSize()
+	 */
+	public int getBatchSize( )
+	{
+		return getIntOption( BATCH_SIZE, DEFAULT_BATCH_SIZE );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IColumnarDataExtractionOption#setBatchSize(int)
+	 */
+	public void setBatchSize( int batchSize )
+	{
+		setOption( BATCH_SIZE, batchSize );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IColumnarDataExtractionOption#getCompressionLevel()
+	 */
+	public int getCompressionLevel( )
+	{
+		return getIntOption( COMPRESSION_LEVEL, -1 );
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.dataextraction.IColumnarDataExtractionOption#setCompressionLevel(int)
+	 */
+	public void setCompressionLevel( int level )
+	{
+		setOption( COMPRESSION_LEVEL, level );
+	}
+}
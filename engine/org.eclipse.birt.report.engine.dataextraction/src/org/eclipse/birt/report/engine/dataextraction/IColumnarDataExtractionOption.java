@@ -0,0 +1,67 @@
+/*******************************************************************************
+ * Copyright (c) 2004 Actuate Corporation.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *  Actuate Corporation  - initial API and implementation
+ *******************************************************************************/
+
+package org.eclipse.birt.report.engine.dataextraction;
+
+
+/**
+ * Extends Data Extraction options for the columnar binary format
+ * 
+ */
+public interface IColumnarDataExtractionOption
+		extends
+			ICommonDataExtractionOption
+{
+
+	/**
+	 * Default number of rows per record batch.
+	 */
+	public static final int DEFAULT_BATCH_SIZE = 8192;
+
+	/**
+	 * the number of rows per record batch
+	 */
+	public static final String BATCH_SIZE = "BatchSize"; //$NON-NLS-1$
+
+	/**
+	 * the deflate compression level of the column blocks, from 0 (no
+	 * compression) to 9. The default is the deflater default level.
+	 */
+	public static final String COMPRESSION_LEVEL = "CompressionLevel"; //$NON-NLS-1$
+
+	/**
+	 * Sets the number of rows per record batch
+	 * 
+	 * @param batchSize
+	 */
+	void setBatchSize( int batchSize );
+
+	/**
+	 * Returns the number of rows per record batch
+	 * 
+	 * @return int
+	 */
+	int getBatchSize( );
+
+	/**
+	 * Sets the compression level
+	 * 
+	 * @param level
+	 */
+	void setCompressionLevel( int level );
+
+	/**
+	 * Returns the compression level, or -1 for the default level
+	 * 
+	 * @return int
+	 */
+	int getCompressionLevel( );
+}
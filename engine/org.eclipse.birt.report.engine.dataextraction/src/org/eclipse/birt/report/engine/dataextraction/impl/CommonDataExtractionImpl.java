@@ -229,6 +229,19 @@ public class CommonDataExtractionImpl extends DataExtractionExtensionBase
 		}
 	}
 	
+	/**
+	 * Returns the formatter created by
+	 * {@link #createFormatters(String[], int[])} for the given column.
+	 * 
+	 * @param index
+	 *            column index in the array of the selected columns
+	 * @return value formatter
+	 */
+	protected IFormatter getFormatter( int index )
+	{
+		return valueFormatters[index];
+	}
+
 	private boolean isColumnLocaleNeutral( String[] columnNames, int colIndex )
 	{
 		boolean isLocaleNeutral = false;
@@ -20,6 +20,9 @@ import java.util.Map;
 
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.EngineCase;
+import org.eclipse.birt.report.engine.api.DataID;
+import org.eclipse.birt.report.engine.api.DataSetID;
+import org.eclipse.birt.report.engine.api.InstanceID;
 import org.eclipse.birt.report.engine.content.impl.ActionContent;
 import org.eclipse.birt.report.engine.content.impl.CellContent;
 import org.eclipse.birt.report.engine.content.impl.Column;
@@ -34,7 +37,10 @@ import org.eclipse.birt.report.engine.content.impl.RowContent;
 import org.eclipse.birt.report.engine.content.impl.TableBandContent;
 import org.eclipse.birt.report.engine.content.impl.TableContent;
 import org.eclipse.birt.report.engine.content.impl.TextContent;
+import org.eclipse.birt.report.engine.internal.document.DocumentExtension;
+import org.eclipse.birt.report.engine.internal.document.v3.ReportContentReaderV3;
 import org.eclipse.birt.report.engine.ir.DimensionType;
+import org.eclipse.birt.report.engine.toc.ByteArrayRAInputStream;
 
 /**
  * 
@@ -43,7 +49,7 @@ import org.eclipse.birt.report.engine.ir.DimensionType;
 public class ReportContentReaderAndWriterTest extends EngineCase
 {
 
-	protected final int VERSION_1 = 1;
+	protected final int VERSION_2 = 2;
 
 	protected ReportContent reportContent = new ReportContent( );
 
@@ -372,6 +378,79 @@ public class ReportContentReaderAndWriterTest extends EngineCase
 		}
 	}
 
+	public void testInstanceID( ) throws Exception
+	{
+		DataSetID dataSet = new DataSetID( new DataSetID( "ds" ), 3, "query" );
+		InstanceID[] ids = new InstanceID[]{
+				new InstanceID( null, 12, 34, null ),
+				new InstanceID( null, -1, 34, new DataID( dataSet, 5 ) ),
+				new InstanceID( null, 12, 34, new DataID( dataSet, "cell" ) ),
+				new InstanceID( null, 12, 34, new DataID( null, 5 ) )};
+		for ( int i = 0; i < ids.length; i++ )
+		{
+			TextContent src = createTextContent( );
+			src.setText( "text\u4e2d" + i );
+			src.setInstanceID( ids[i] );
+			TextContent tgt = (TextContent) doRead( doWrite( src ) );
+			assertEquals( ids[i].toString( ), tgt.getInstanceID( ).toString( ) );
+			assertEquals( src.getText( ), tgt.getText( ) );
+		}
+	}
+
+	/**
+	 * a content stream of VERSION_1, as it is in the existing documents: a
+	 * report and a text content with a name, an instance id and a text.
+	 */
+	protected static final byte[] VERSION_1_STREAM = new byte[]{
+			// version
+			0, 0, 0, 1,
+			// index entry of the report: parent, next and first child
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			// size and type of the report
+			0, 0, 0, 4, 0, 0, 0, 0,
+			// index entry of the text at offset 32
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			-1, -1, -1, -1, -1, -1, -1, -1,
+			// size and type of the text
+			0, 0, 0, 48, 0, 0, 0, 11,
+			// name: "name"
+			0, 0, 0, 0, 0, 9, 0, 4, 'n', 'a', 'm', 'e',
+			// instance id: "/12.34(ds:5)"
+			0, 9, 0, 0, 0, 9, 0, 12, '/', '1', '2', '.', '3', '4', '(', 'd',
+			's', ':', '5', ')',
+			// text: "text"
+			4, 76, 0, 0, 0, 9, 0, 4, 't', 'e', 'x', 't'};
+
+	public void testReadVersion1( ) throws Exception
+	{
+		ReportContentReaderV3 reader = new ReportContentReaderV3(
+				new ReportContent( ), new ByteArrayRAInputStream(
+						VERSION_1_STREAM ), null );
+		try
+		{
+			assertFalse( reader.isEmpty( ) );
+			assertEquals( 32, reader.getRoot( ) );
+			TextContent text = (TextContent) reader.readContent( 32 );
+			assertEquals( "name", text.getName( ) );
+			assertEquals( "/12.34(ds:5)", text.getInstanceID( ).toString( ) );
+			assertEquals( 12, text.getInstanceID( ).getUniqueID( ) );
+			assertEquals( 5, text.getInstanceID( ).getDataID( ).getRowID( ) );
+			assertEquals( "text", text.getText( ) );
+			DocumentExtension docExt = (DocumentExtension) text
+					.getExtension( IContent.DOCUMENT_EXTENSION );
+			assertEquals( -1, docExt.getParent( ) );
+			assertEquals( -1, docExt.getNext( ) );
+			assertEquals( -1, docExt.getFirstChild( ) );
+		}
+		finally
+		{
+			reader.close( );
+		}
+	}
+
 	protected byte[] doWrite( IContent content ) throws Exception
 	{
 		ByteArrayOutputStream out = new ByteArrayOutputStream( );
@@ -388,13 +467,13 @@ public class ReportContentReaderAndWriterTest extends EngineCase
 		DataInputStream oi = new DataInputStream( in );
 		Object object = new Object( );
 		int contentType = IOUtil.readInt( oi );
-		int version = VERSION_1;
+		int version = VERSION_2;
 		switch ( contentType )
 		{
 			case IContent.CELL_CONTENT :
 				CellContent cellContent = (CellContent) reportContent
 						.createCellContent( );
-				cellContent.setVersion( VERSION_1 );
+				cellContent.setVersion( VERSION_2 );
 				cellContent.readContent( oi, null );
 				object = cellContent;
 				break;
@@ -490,6 +490,34 @@ public class EngineConfig extends PlatformConfig implements IEngineConfig
 		return 0;
 	}
 
+	/**
+	 * Set the compression of the streams of the report documents generated by
+	 * the run tasks. BEST_SPEED compresses the streams with a fast LZ codec,
+	 * BEST_COMPRESSION with deflate. The default is NO_COMPRESSION.
+	 * 
+	 * @param mode
+	 *            the compression mode
+	 */
+	public void setDocumentCompression( CompressionMode mode )
+	{
+		setProperty( DOCUMENT_COMPRESSION, mode );
+	}
+
+	/**
+	 * Get the compression of the streams of the report documents
+	 * 
+	 * @return the compression mode
+	 */
+	public CompressionMode getDocumentCompression( )
+	{
+		Object mode = getProperty( DOCUMENT_COMPRESSION );
+		if ( mode instanceof CompressionMode )
+		{
+			return (CompressionMode) mode;
+		}
+		return CompressionMode.NO_COMPRESSION;
+	}
+
 	/**
 	 * Sets default emitter for an output format.
 	 * 
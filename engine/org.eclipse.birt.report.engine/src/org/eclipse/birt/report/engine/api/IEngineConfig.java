@@ -64,4 +64,10 @@ public interface IEngineConfig extends IPlatformConfig
 	 * The max rows per query
 	 */
 	static final String MAX_ROWS_PER_QUERY = "maxRowsPerQuery";
+
+	/**
+	 * the compression of the streams of the report documents, a
+	 * CompressionMode
+	 */
+	static final String DOCUMENT_COMPRESSION = "documentCompression"; //$NON-NLS-1$
 }
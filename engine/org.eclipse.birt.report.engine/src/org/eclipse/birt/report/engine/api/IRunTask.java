@@ -72,6 +72,15 @@ public interface IRunTask extends IEngineTask
 	 */
 	public void enableProgressiveViewing( boolean enable );
 
+	/**
+	 * set the compression of the streams of the report document, which
+	 * overrides the document compression of the engine configuration.
+	 * 
+	 * @param mode
+	 *            the compression mode
+	 */
+	public void setDocumentCompression( CompressionMode mode );
+
 	/**
 	 * set report document. This archive takes precedence over a report document
 	 * name
@@ -29,6 +29,7 @@ import java.util.logging.Logger;
 
 import org.eclipse.birt.core.archive.IDocArchiveReader;
 import org.eclipse.birt.core.archive.RAInputStream;
+import org.eclipse.birt.core.archive.compression.CompressedArchiveReader;
 import org.eclipse.birt.core.script.ParameterAttribute;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.api.EngineException;
@@ -163,6 +164,10 @@ public class ReportDocumentReader
 	{
 		this.engine = engine;
 		this.archive = archive;
+		if ( CompressedArchiveReader.isCompressed( archive ) )
+		{
+			this.archive = new CompressedArchiveReader( archive );
+		}
 		this.systemId = systemId;
 		this.sharedArchive = sharedArchive;
 		this.moduleOptions = new HashMap( );
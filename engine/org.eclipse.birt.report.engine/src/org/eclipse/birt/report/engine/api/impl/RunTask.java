@@ -22,6 +22,10 @@ import org.eclipse.birt.core.archive.FolderArchiveWriter;
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.compound.ArchiveWriter;
 import org.eclipse.birt.core.archive.compound.IArchiveFile;
+import org.eclipse.birt.core.archive.compression.CompressedArchiveWriter;
+import org.eclipse.birt.core.archive.compression.DeflateCodec;
+import org.eclipse.birt.core.archive.compression.LZCodec;
+import org.eclipse.birt.report.engine.api.CompressionMode;
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.api.IEngineTask;
 import org.eclipse.birt.report.engine.api.IProgressMonitor;
@@ -52,6 +56,7 @@ public class RunTask extends AbstractRunTask implements IRunTask
 	private ReportDocumentWriter writer;
 	private ReportDocumentBuilder documentBuilder;
 	private IArchiveFile archive;
+	private CompressionMode documentCompression;
 
 	/**
 	 * @param engine
@@ -150,6 +155,29 @@ public class RunTask extends AbstractRunTask implements IRunTask
 		}
 	}
 
+	/**
+	 * Wraps the archive writer to compress the streams of the document if a
+	 * document compression is set.
+	 */
+	private void compressArchive( )
+	{
+		CompressionMode mode = documentCompression;
+		if ( mode == null )
+		{
+			mode = engine.getConfig( ).getDocumentCompression( );
+		}
+		if ( mode == CompressionMode.BEST_SPEED )
+		{
+			archiveWriter = new CompressedArchiveWriter( archiveWriter,
+					new LZCodec( ) );
+		}
+		else if ( mode == CompressionMode.BEST_COMPRESSION )
+		{
+			archiveWriter = new CompressedArchiveWriter( archiveWriter,
+					new DeflateCodec( ) );
+		}
+	}
+
 	private void openReportDocument( ) throws EngineException
 	{
 		try
@@ -158,6 +186,7 @@ public class RunTask extends AbstractRunTask implements IRunTask
 			{
 				openArchive( );
 			}
+			compressArchive( );
 			String[] exts = executionContext.getEngineExtensions( );
 			writer = new ReportDocumentWriter( engine, archiveWriter, exts );
 			executionContext.setReportDocWriter( writer );
@@ -369,6 +398,11 @@ public class RunTask extends AbstractRunTask implements IRunTask
 		executionContext.enableProgressiveViewing( enabled );
 	}
 
+	public void setDocumentCompression( CompressionMode mode )
+	{
+		this.documentCompression = mode;
+	}
+
 	public void setReportDocument( IArchiveFile archive )
 	{
 		this.archive = archive;
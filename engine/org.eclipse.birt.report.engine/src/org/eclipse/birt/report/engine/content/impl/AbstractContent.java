@@ -20,6 +20,8 @@ import java.util.Map;
 
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.core.util.IOUtil;
+import org.eclipse.birt.report.engine.api.DataID;
+import org.eclipse.birt.report.engine.api.DataSetID;
 import org.eclipse.birt.report.engine.api.InstanceID;
 import org.eclipse.birt.report.engine.api.impl.QueryUtil;
 import org.eclipse.birt.report.engine.content.IContent;
@@ -583,6 +585,11 @@ abstract public class AbstractContent extends AbstractElement
 	 */
 	static final protected int VERSION_0 = 0;
 	static final protected int VERSION_1 = 1;
+	/**
+	 * the strings and ints are written in variable length and the instance id
+	 * is written in binary.
+	 */
+	static final protected int VERSION_2 = 2;
 
 	final static short FIELD_NONE = -1;
 	final static short FIELD_NAME = 0;
@@ -603,12 +610,19 @@ abstract public class AbstractContent extends AbstractElement
 	final static short FIELD_USER_PROPERTIES = 14;
 	final static short FIELD_EXTENSIONS = 15;
 
+	/**
+	 * the kinds of the data id of an instance id in VERSION_2.
+	 */
+	final static int INSTANCE_ID_NO_DATA = 0;
+	final static int INSTANCE_ID_ROW = 1;
+	final static int INSTANCE_ID_CELL = 2;
+
 	protected void writeFields( DataOutputStream out ) throws IOException
 	{
 		if ( name != null )
 		{
 			IOUtil.writeShort( out, FIELD_NAME );
-			IOUtil.writeString( out, name );
+			writeString( out, name );
 		}
 		if ( x != null )
 		{
@@ -638,12 +652,12 @@ abstract public class AbstractContent extends AbstractElement
 		if ( bookmark != null )
 		{
 			IOUtil.writeShort( out, FIELD_BOOKMARK );
-			IOUtil.writeString( out, bookmark );
+			writeString( out, bookmark );
 		}
 		if ( helpText != null )
 		{
 			IOUtil.writeShort( out, FIELD_HELPTEXT );
-			IOUtil.writeString( out, helpText );
+			writeString( out, helpText );
 		}
 		if ( inlineStyle != null )
 		{
@@ -656,7 +670,7 @@ abstract public class AbstractContent extends AbstractElement
 		if ( instanceId != null )
 		{
 			IOUtil.writeShort( out, FIELD_INSTANCE_ID );
-			IOUtil.writeString( out, instanceId.toString( ) );
+			writeInstanceID( out, instanceId );
 		}
 		if ( toc != null )
 		{
@@ -666,7 +680,7 @@ abstract public class AbstractContent extends AbstractElement
 		if ( acl != null )
 		{
 			IOUtil.writeShort( out, FIELD_ACL );
-			IOUtil.writeObject( out, acl );
+			writeString( out, acl );
 		}
 		if ( userProperties != null && userProperties.size( ) > 0 )
 		{
@@ -720,7 +734,7 @@ abstract public class AbstractContent extends AbstractElement
 		switch ( filedId )
 		{
 			case FIELD_NAME :
-				name = IOUtil.readString( in );
+				name = readString( version, in );
 				break;
 			case FIELD_X :
 				x = new DimensionType( );
@@ -742,10 +756,10 @@ abstract public class AbstractContent extends AbstractElement
 				hyperlink = action;
 				break;
 			case FIELD_BOOKMARK :
-				bookmark = IOUtil.readString( in );
+				bookmark = readString( version, in );
 				break;
 			case FIELD_HELPTEXT :
-				helpText = IOUtil.readString( in );
+				helpText = readString( version, in );
 				break;
 			case FIELD_INLINESTYLE_VERSION_0 :
 				String styleCssText = IOUtil.readString( in );
@@ -767,14 +781,13 @@ abstract public class AbstractContent extends AbstractElement
 				}
 				break;
 			case FIELD_INSTANCE_ID :
-				String value = IOUtil.readString( in );
-				instanceId = InstanceID.parse( value );
+				instanceId = readInstanceID( version, in );
 				break;
 			case FIELD_TOC :
 				toc = IOUtil.readObject( in, loader );
 				break;
 			case FIELD_ACL :
-				acl = IOUtil.readString( in );
+				acl = readString( version, in );
 				break;
 			case FIELD_USER_PROPERTIES :
 				userProperties = (Map<String, Object>) IOUtil.readMap( in );
@@ -838,10 +851,121 @@ abstract public class AbstractContent extends AbstractElement
 		return style;
 	}
 
+	/**
+	 * Writes a string field in the format of the current version.
+	 */
+	protected void writeString( DataOutputStream out, String value )
+			throws IOException
+	{
+		IOUtil.writeVarString( out, value );
+	}
+
+	/**
+	 * Reads a string field written in the format of the version.
+	 */
+	protected String readString( int version, DataInputStream in )
+			throws IOException
+	{
+		if ( version >= VERSION_2 )
+		{
+			return IOUtil.readVarString( in );
+		}
+		return IOUtil.readString( in );
+	}
+
+	/**
+	 * Writes an int field in the format of the current version.
+	 */
+	protected void writeInt( DataOutputStream out, int value )
+			throws IOException
+	{
+		IOUtil.writeVarInt( out, value );
+	}
+
+	/**
+	 * Reads an int field written in the format of the version.
+	 */
+	protected int readInt( int version, DataInputStream in )
+			throws IOException
+	{
+		if ( version >= VERSION_2 )
+		{
+			return IOUtil.readVarInt( in );
+		}
+		return IOUtil.readInt( in );
+	}
+
+	/**
+	 * Writes the last segment of the instance id, as the string of
+	 * InstanceID.toString( ) does, but with the ids in binary.
+	 */
+	private void writeInstanceID( DataOutputStream out, InstanceID id )
+			throws IOException
+	{
+		// the ids are -1 if they are not set
+		IOUtil.writeVarLong( out, id.getUniqueID( ) + 1 );
+		IOUtil.writeVarLong( out, id.getComponentID( ) + 1 );
+		DataID dataId = id.getDataID( );
+		if ( dataId == null )
+		{
+			out.writeByte( INSTANCE_ID_NO_DATA );
+			return;
+		}
+		DataSetID dataSet = dataId.getDataSetID( );
+		if ( dataId.getRowID( ) != -1 )
+		{
+			out.writeByte( INSTANCE_ID_ROW );
+			writeString( out, dataSet == null ? null : dataSet.toString( ) );
+			IOUtil.writeVarLong( out, dataId.getRowID( ) );
+		}
+		else
+		{
+			out.writeByte( INSTANCE_ID_CELL );
+			writeString( out, dataSet == null ? null : dataSet.toString( ) );
+			writeString( out, dataId.getCellID( ) );
+		}
+	}
+
+	private InstanceID readInstanceID( int version, DataInputStream in )
+			throws IOException
+	{
+		if ( version < VERSION_2 )
+		{
+			return InstanceID.parse( IOUtil.readString( in ) );
+		}
+		long uid = IOUtil.readVarLong( in ) - 1;
+		long designId = IOUtil.readVarLong( in ) - 1;
+		DataID dataId = null;
+		int type = in.readByte( );
+		if ( type != INSTANCE_ID_NO_DATA )
+		{
+			String dataSetText = readString( version, in );
+			DataSetID dataSet = dataSetText == null ? null : DataSetID
+					.parse( dataSetText );
+			if ( type == INSTANCE_ID_ROW )
+			{
+				dataId = new DataID( dataSet, IOUtil.readVarLong( in ) );
+			}
+			else if ( type == INSTANCE_ID_CELL )
+			{
+				dataId = new DataID( dataSet, readString( version, in ) );
+			}
+			else
+			{
+				throw new IOException( "Invalid instance id type " + type ); //$NON-NLS-1$
+			}
+		}
+		return new InstanceID( null, uid, designId, dataId );
+	}
+
 	public void readContent( DataInputStream in, ClassLoader loader )
 			throws IOException
 	{
-		if ( this.version == VERSION_1 )
+		if ( this.version == VERSION_2 )
+		{
+			readContentV2( in, loader );
+		}
+		else if ( this.version == VERSION_1 )
 		{
 			readContentV1( in, loader );
 		}
@@ -880,6 +1004,19 @@ abstract public class AbstractContent extends AbstractElement
 		}
 	}
 
+	protected void readContentV2( DataInputStream in, ClassLoader loader )
+			throws IOException
+	{
+		while ( in.available( ) > 0 )
+		{
+			int filedId = IOUtil.readShort( in );
+			readField( VERSION_2, filedId, in, loader );
+		}
+	}
+
+	/**
+	 * Writes the fields of the content in the format of VERSION_2.
+	 */
 	public void writeContent( DataOutputStream out ) throws IOException
 	{
 		writeFields( out );
@@ -298,17 +298,17 @@ public class CellContent extends AbstractContent implements ICellContent
 		if ( rowSpan != -1 )
 		{
 			IOUtil.writeShort( out, FIELD_ROW_SPAN );
-			IOUtil.writeInt( out, rowSpan );
+			writeInt( out, rowSpan );
 		}
 		if ( colSpan != -1 )
 		{
 			IOUtil.writeShort( out, FIELD_COL_SPAN );
-			IOUtil.writeInt( out, colSpan );
+			writeInt( out, colSpan );
 		}
 		if ( column != -1 )
 		{
 			IOUtil.writeShort( out, FIELD_COLUMN );
-			IOUtil.writeInt( out, column );
+			writeInt( out, column );
 		}
 		if ( displayGroupIcon != null )
 		{
@@ -318,17 +318,17 @@ public class CellContent extends AbstractContent implements ICellContent
 		if ( drop != null )
 		{
 			IOUtil.writeShort( out, FIELD_DROP );
-			IOUtil.writeString( out, drop );
+			writeString( out, drop );
 		}
 		if ( headers != null )
 		{
 			IOUtil.writeShort( out, FIELD_HEADERS );
-			IOUtil.writeString( out, headers );
+			writeString( out, headers );
 		}
 		if ( scope != null )
 		{
 			IOUtil.writeShort( out, FIELD_SCOPE );
-			IOUtil.writeString( out, scope );
+			writeString( out, scope );
 		}
 		if ( repeatContent )
 		{
@@ -338,11 +338,11 @@ public class CellContent extends AbstractContent implements ICellContent
 		if ( diagonalNumber > 0 )
 		{
 			IOUtil.writeShort( out, FIELD_DIAGONAL_NUMBER );
-			IOUtil.writeInt( out, diagonalNumber );
+			writeInt( out, diagonalNumber );
 			if ( diagonalStyle != null )
 			{
 				IOUtil.writeShort( out, FIELD_DIAGONAL_STYLE );
-				IOUtil.writeString( out, diagonalStyle );
+				writeString( out, diagonalStyle );
 			}
 			if ( diagonalWidth != null )
 			{
@@ -352,17 +352,17 @@ public class CellContent extends AbstractContent implements ICellContent
 			if ( diagonalColor != null )
 			{
 				IOUtil.writeShort( out, FIELD_DIAGONAL_COLOR );
-				IOUtil.writeString( out, diagonalColor );
+				writeString( out, diagonalColor );
 			}
 		}
 		if ( antidiagonalNumber > 0 )
 		{
 			IOUtil.writeShort( out, FIELD_ANTIDIAGONAL_NUMBER );
-			IOUtil.writeInt( out, antidiagonalNumber );
+			writeInt( out, antidiagonalNumber );
 			if ( antidiagonalStyle != null )
 			{
 				IOUtil.writeShort( out, FIELD_ANTIDIAGONAL_STYLE );
-				IOUtil.writeString( out, antidiagonalStyle );
+				writeString( out, antidiagonalStyle );
 			}
 			if ( antidiagonalWidth != null )
 			{
@@ -372,7 +372,7 @@ public class CellContent extends AbstractContent implements ICellContent
 			if ( antidiagonalColor != null )
 			{
 				IOUtil.writeShort( out, FIELD_ANTIDIAGONAL_COLOR );
-				IOUtil.writeString( out, antidiagonalColor );
+				writeString( out, antidiagonalColor );
 			}
 		}
 	}
@@ -383,13 +383,13 @@ public class CellContent extends AbstractContent implements ICellContent
 		switch ( filedId )
 		{
 			case FIELD_ROW_SPAN :
-				rowSpan = IOUtil.readInt( in );
+				rowSpan = readInt( version, in );
 				break;
 			case FIELD_COL_SPAN :
-				colSpan = IOUtil.readInt( in );
+				colSpan = readInt( version, in );
 				break;
 			case FIELD_COLUMN :
-				column = IOUtil.readInt( in );
+				column = readInt( version, in );
 				break;
 			case FIELD_START_OF_GROUP :
 				IOUtil.readBool( in );
@@ -398,42 +398,42 @@ public class CellContent extends AbstractContent implements ICellContent
 				displayGroupIcon = Boolean.valueOf( IOUtil.readBool( in ) );
 				break;
 			case FIELD_DROP :
-				drop = IOUtil.readString( in );
+				drop = readString( version, in );
 				break;
 			case FIELD_HEADERS :
-				headers = IOUtil.readString( in );
+				headers = readString( version, in );
 				break;
 			case FIELD_SCOPE :
-				scope = IOUtil.readString( in );
+				scope = readString( version, in );
 				break;
 			case FIELD_REPEAT_CONTENT :
 				repeatContent = IOUtil.readBool( in );
 				break;
 			case FIELD_DIAGONAL_NUMBER :
-				diagonalNumber = IOUtil.readInt( in );
+				diagonalNumber = readInt( version, in );
 				break;
 			case FIELD_DIAGONAL_STYLE :
-				diagonalStyle = IOUtil.readString( in );
+				diagonalStyle = readString( version, in );
 				break;
 			case FIELD_DIAGONAL_WIDTH :
 				diagonalWidth = new DimensionType( );
 				diagonalWidth.readObject( in );
 				break;
 			case FIELD_DIAGONAL_COLOR :
-				diagonalColor = IOUtil.readString( in );
+				diagonalColor = readString( version, in );
 				break;
 			case FIELD_ANTIDIAGONAL_NUMBER :
-				antidiagonalNumber = IOUtil.readInt( in );
+				antidiagonalNumber = readInt( version, in );
 				break;
 			case FIELD_ANTIDIAGONAL_STYLE :
-				antidiagonalStyle = IOUtil.readString( in );
+				antidiagonalStyle = readString( version, in );
 				break;
 			case FIELD_ANTIDIAGONAL_WIDTH :
 				antidiagonalWidth = new DimensionType( );
 				antidiagonalWidth.readObject( in );
 				break;
 			case FIELD_ANTIDIAGONAL_COLOR :
-				antidiagonalColor = IOUtil.readString( in );
+				antidiagonalColor = readString( version, in );
 				break;
 			default :
 				super.readField( version, filedId, in, loader );
@@ -152,17 +152,17 @@ public class DataContent extends TextContent implements IDataContent
 		if ( labelText != null )
 		{
 			IOUtil.writeShort( out, FIELD_LAVELTEXT );
-			IOUtil.writeString( out, labelText );
+			writeString( out, labelText );
 		}
 		if ( labelKey != null )
 		{
 			IOUtil.writeShort( out, FIELD_LABELKEY );
-			IOUtil.writeString( out, labelKey );
+			writeString( out, labelKey );
 		}
 		if ( helpKey != null )
 		{
 			IOUtil.writeShort( out, FIELD_HELPKEY );
-			IOUtil.writeString( out, helpKey );
+			writeString( out, helpKey );
 		}
 	}
 
@@ -200,13 +200,13 @@ public class DataContent extends TextContent implements IDataContent
 				value = IOUtil.readObject( in, loader );
 				break;
 			case FIELD_LAVELTEXT :
-				labelText = IOUtil.readString( in );
+				labelText = readString( version, in );
 				break;
 			case FIELD_LABELKEY :
-				labelKey = IOUtil.readString( in );
+				labelKey = readString( version, in );
 				break;
 			case FIELD_HELPKEY :
-				helpKey = IOUtil.readString( in );
+				helpKey = readString( version, in );
 				break;
 			default :
 				super.readField( version, filedId, in, loader );
@@ -143,17 +143,17 @@ public class LabelContent extends TextContent implements ILabelContent
 		if ( helpTextKey != null )
 		{
 			IOUtil.writeShort( out, FIELD_HELPTEXTKEY );
-			IOUtil.writeString( out, helpTextKey );
+			writeString( out, helpTextKey );
 		}
 		if ( labelText != null )
 		{
 			IOUtil.writeShort( out, FIELD_LABELTEXT );
-			IOUtil.writeString( out, labelText );
+			writeString( out, labelText );
 		}
 		if ( labelTextKey != null )
 		{
 			IOUtil.writeShort( out, FIELD_LABELTEXTKEY );
-			IOUtil.writeString( out, labelTextKey );
+			writeString( out, labelTextKey );
 		}
 	}
 
@@ -178,13 +178,13 @@ public class LabelContent extends TextContent implements ILabelContent
 		switch ( filedId )
 		{
 			case FIELD_HELPTEXTKEY :
-				helpTextKey = IOUtil.readString( in );
+				helpTextKey = readString( version, in );
 				break;
 			case FIELD_LABELTEXT :
-				labelText = IOUtil.readString( in );
+				labelText = readString( version, in );
 				break;
 			case FIELD_LABELTEXTKEY :
-				labelTextKey = IOUtil.readString( in );
+				labelTextKey = readString( version, in );
 				break;
 			default :
 				super.readField( version, filedId, in, loader );
@@ -107,12 +107,12 @@ public class RowContent extends AbstractContent implements IRowContent
 		if ( rowID != -1 )
 		{
 			IOUtil.writeShort( out,  FIELD_ROWID );
-			IOUtil.writeInt( out,  rowID );
+			writeInt( out, rowID );
 		}
 		if ( groupId != null )
 		{
 			IOUtil.writeShort( out,  FIELD_ROW_GROUPID );
-			IOUtil.writeString( out,  groupId );
+			writeString( out, groupId );
 		}
 	}
 
@@ -127,16 +127,16 @@ public class RowContent extends AbstractContent implements IRowContent
 		switch ( filedId )
 		{
 			case FIELD_ROWID :
-				rowID = IOUtil.readInt(in);
+				rowID = readInt( version, in );
 				break;
 			case FIELD_ROWTYPE :
-				IOUtil.readInt(in);
+				readInt( version, in );
 				break;
 			case FIELD_ROW_GROUPLEVEL :
-				IOUtil.readInt(in);
+				readInt( version, in );
 				break;
 			case FIELD_ROW_GROUPID :
-				groupId = IOUtil.readString( in );
+				groupId = readString( version, in );
 				break;
 			default :
 				super.readField( version, filedId, in, loader );
@@ -115,7 +115,7 @@ public class TextContent extends AbstractContent implements ITextContent
 		if ( text != null )
 		{
 			IOUtil.writeShort( out, FIELD_TEXT );
-			IOUtil.writeString( out, text );
+			writeString( out, text );
 		}
 	}
 
@@ -125,7 +125,7 @@ public class TextContent extends AbstractContent implements ITextContent
 		switch ( filedId )
 		{
 			case FIELD_TEXT :
-				text = IOUtil.readString( in );
+				text = readString( version, in );
 				break;
 			default :
 				super.readField( version, filedId, in, loader );
@@ -10,12 +10,6 @@
  *******************************************************************************/
 package org.eclipse.birt.report.engine.executor;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInput;
-import java.io.DataInputStream;
-import java.io.DataOutput;
-import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -28,9 +22,9 @@ import java.util.UUID;
 
 import org.eclipse.birt.core.btree.BTree;
 import org.eclipse.birt.core.btree.BTreeOption;
-import org.eclipse.birt.core.btree.BTreeSerializer;
-import org.eclipse.birt.core.btree.BTreeUtils;
 import org.eclipse.birt.core.btree.FileBTreeFile;
+import org.eclipse.birt.core.btree.IntegerSerializer;
+import org.eclipse.birt.core.btree.StringSerializer;
 import org.eclipse.birt.report.engine.api.EngineException;
 
 public class BookmarkManager
@@ -84,43 +78,6 @@ public class BookmarkManager
 		return "_recreated__bookmark__" + ( ++sequenceID );
 	}
 
-	static private class StringSerializer implements BTreeSerializer<String>
-	{
-
-		public byte[] getBytes( String object ) throws IOException
-		{
-			ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
-			DataOutput oo = new DataOutputStream( out );
-			oo.writeUTF( object );
-			return out.toByteArray( );
-		}
-
-		public String getObject( byte[] bytes ) throws IOException,
-				ClassNotFoundException
-		{
-			DataInput input = new DataInputStream( new ByteArrayInputStream(
-					bytes ) );
-			return input.readUTF( );
-		}
-	}
-
-	static private class IntegerSerializer implements BTreeSerializer<Integer>
-	{
-
-		public byte[] getBytes( Integer object ) throws IOException
-		{
-			byte[] bytes = new byte[4];
-			BTreeUtils.integerToBytes( object.intValue( ), bytes );
-			return bytes;
-		}
-
-		public Integer getObject( byte[] bytes ) throws IOException,
-				ClassNotFoundException
-		{
-			return new Integer( BTreeUtils.bytesToInteger( bytes ) );
-		}
-	}
-
 	private class BookmarkHashSet
 	{
 
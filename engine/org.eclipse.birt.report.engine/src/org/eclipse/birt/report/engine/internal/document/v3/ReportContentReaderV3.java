@@ -17,6 +17,7 @@ import java.io.IOException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.eclipse.birt.core.archive.ArchiveUtil;
 import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.content.IContent;
@@ -43,6 +44,7 @@ public class ReportContentReaderV3
 
 	protected final static int VERSION_0 = 0;
 	protected final static int VERSION_1 = 1;
+	protected final static int VERSION_2 = 2;
 	protected final static int VERSION_SIZE = 4;
 
 	/**
@@ -55,7 +57,18 @@ public class ReportContentReaderV3
 	protected boolean isEmpty = false;
 
 	protected ClassLoader loader;
-	
+
+	/**
+	 * the buffer of the index entry and the data of the content which is
+	 * read, reused by all the contents. A content larger than
+	 * MAX_BUFFER_SIZE is read into its own array, so that the reader does not
+	 * keep the memory of the largest content it has read.
+	 */
+	private static final int MAX_BUFFER_SIZE = 64 * 1024;
+	private byte[] buffer = new byte[256];
+	private RecordInputStream record = new RecordInputStream( );
+	private DataInputStream recordStream = new DataInputStream( record );
+
 	public ReportContentReaderV3( ReportContent reportContent,
 			RAInputStream stream, ClassLoader loader ) throws IOException
 	{
@@ -71,7 +84,7 @@ public class ReportContentReaderV3
 			{
 				version = VERSION_0;
 			}
-			else if ( version == VERSION_1 )
+			else if ( version == VERSION_1 || version == VERSION_2 )
 			{
 				if ( length == 4 )
 				{
@@ -126,14 +139,12 @@ public class ReportContentReaderV3
 		int size = stream.readInt( );
 		if ( size != -1 ) // -1 means it is the first
 		{
-			byte[] buffer = new byte[size];
-			stream.readFully( buffer, 0, size );
-			DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
-					buffer ) );
-			int contentType = IOUtil.readInt( oi );
+			DataInputStream oi = readRecord( size );
+			int contentType = readContentType( oi );
 			if ( contentType == IContent.REPORT_CONTENT )
 			{
 				reportContent.readContent( oi, loader );
+				record.setBuffer( buffer, 0 );
 				offset += INDEX_ENTRY_SIZE_V1 + 4 + size;
 				rootOffset = offset;
 			}
@@ -155,18 +166,15 @@ public class ReportContentReaderV3
 		{
 			stream.seek( offset );
 		}
-		else if ( VERSION_1 == version )
+		else
 		{
 			stream.seek( VERSION_SIZE + offset );
 		}
 
 		int size = stream.readInt( );
-		byte[] buffer = new byte[size];
-		stream.readFully( buffer, 0, size );
-		DataInputStream oi = new DataInputStream( new ByteArrayInputStream(
-				buffer ) );
+		DataInputStream oi = readRecord( size );
 		AbstractContent object = null;
-		int contentType = IOUtil.readInt( oi );
+		int contentType = readContentType( oi );
 		switch ( contentType )
 		{
 			case IContent.CELL_CONTENT :
@@ -224,9 +232,49 @@ public class ReportContentReaderV3
 		}
 		object.setVersion( version );
 		object.readContent( oi, loader );
+		// release the array of a large content
+		record.setBuffer( buffer, 0 );
 		return object;
 	}
 
+	/**
+	 * read the data of a content into the buffer.
+	 * 
+	 * @param size
+	 *            the size of the data
+	 * @return the input stream of the data
+	 */
+	private DataInputStream readRecord( int size ) throws IOException
+	{
+		if ( size < 0 )
+		{
+			throw new IOException( "Invalid content size:" + size );
+		}
+		byte[] data = buffer;
+		if ( size > MAX_BUFFER_SIZE )
+		{
+			data = new byte[size];
+		}
+		else if ( size > buffer.length )
+		{
+			buffer = new byte[Math.min( Math.max( size, buffer.length * 2 ),
+					MAX_BUFFER_SIZE )];
+			data = buffer;
+		}
+		stream.readFully( data, 0, size );
+		record.setBuffer( data, size );
+		return recordStream;
+	}
+
+	private int readContentType( DataInputStream oi ) throws IOException
+	{
+		if ( version == VERSION_2 )
+		{
+			return IOUtil.readVarInt( oi );
+		}
+		return IOUtil.readInt( oi );
+	}
+
 	/**
 	 * read the content object out from the input stream in the curretn offset.
 	 * After call this methods, the offset is position to the next element in
@@ -283,7 +331,7 @@ public class ReportContentReaderV3
 		{
 			return readContentV0( index );
 		}
-		else if ( VERSION_1 == version )
+		else if ( VERSION_1 == version || VERSION_2 == version )
 		{
 			return readContentV1( index );
 		}
@@ -326,7 +374,7 @@ public class ReportContentReaderV3
 		{
 			return readDocumentExtensionV0( index );
 		}
-		else if ( VERSION_1 == version )
+		else if ( VERSION_1 == version || VERSION_2 == version )
 		{
 			return readDocumentExtensionV1( index );
 		}
@@ -357,9 +405,10 @@ public class ReportContentReaderV3
 			throws IOException
 	{
 		stream.seek( VERSION_SIZE + index );
-		long parent = stream.readLong( );
-		long next = stream.readLong( );
-		long child = stream.readLong( );
+		stream.readFully( buffer, 0, INDEX_ENTRY_SIZE_V1 );
+		long parent = ArchiveUtil.bytesToLong( buffer, 0 );
+		long next = ArchiveUtil.bytesToLong( buffer, 8 );
+		long child = ArchiveUtil.bytesToLong( buffer, 16 );
 		DocumentExtension docExt = new DocumentExtension( index );
 		docExt.setParent( parent );
 		docExt.setNext( next );
@@ -422,4 +471,25 @@ public class ReportContentReaderV3
 			dumpContent( level, next );
 		}
 	}
+
+	/**
+	 * an input stream of the data in the buffer, which is reset to read the
+	 * next content instead of being created again.
+	 */
+	private static class RecordInputStream extends ByteArrayInputStream
+	{
+
+		RecordInputStream( )
+		{
+			super( new byte[0] );
+		}
+
+		void setBuffer( byte[] buffer, int length )
+		{
+			this.buf = buffer;
+			this.pos = 0;
+			this.mark = 0;
+			this.count = length;
+		}
+	}
 }
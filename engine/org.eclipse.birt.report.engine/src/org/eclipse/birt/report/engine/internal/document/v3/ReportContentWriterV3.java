@@ -54,7 +54,7 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	{
 		cntStream = writer.createRandomAccessStream( name );
 		// write the version information
-		cntStream.writeInt( VERSION_1 );
+		cntStream.writeInt( VERSION_2 );
 		cntOffset = 0;
 		rootOffset = -1;
 	}
@@ -117,15 +117,14 @@ public class ReportContentWriterV3 implements IReportContentWriter
 		
 		// get the byte[] of the content
 		buffer.reset( );
-		IOUtil.writeInt( bufferStream, content.getContentType( ) );
+		IOUtil.writeVarInt( bufferStream, content.getContentType( ) );
 		content.writeContent( bufferStream );
 		bufferStream.flush( );
-		byte[] values = buffer.toByteArray( );
 		// write the content out as: length, data
 		cntStream.seek( cntOffset + VERSION_SIZE );
-		cntStream.writeInt( values.length );
-		cntStream.write( values );
-		cntOffset = cntOffset + 4 + values.length;
+		cntStream.writeInt( buffer.size( ) );
+		buffer.writeTo( cntStream );
+		cntOffset = cntOffset + 4 + buffer.size( );
 		
 		DocumentExtension docExt = (DocumentExtension) content
 				.getExtension( IContent.DOCUMENT_EXTENSION );
@@ -146,15 +145,14 @@ public class ReportContentWriterV3 implements IReportContentWriter
 
 		// get the byte[] of the content
 		buffer.reset( );
-		IOUtil.writeInt( bufferStream, IContent.REPORT_CONTENT );
+		IOUtil.writeVarInt( bufferStream, IContent.REPORT_CONTENT );
 		report.writeContent( bufferStream );
 		bufferStream.flush( );
-		byte[] values = buffer.toByteArray( );
 		// write the content out as: length, data
 		cntStream.seek( cntOffset + VERSION_SIZE );
-		cntStream.writeInt( values.length );
-		cntStream.write( values );
-		cntOffset = cntOffset + 4 + values.length;
+		cntStream.writeInt( buffer.size( ) );
+		buffer.writeTo( cntStream );
+		cntOffset = cntOffset + 4 + buffer.size( );
 
 		return cntOffset;
 	}
@@ -197,6 +195,13 @@ public class ReportContentWriterV3 implements IReportContentWriter
 	final static int VERSION_SIZE = 4;
 	
 	protected final static int VERSION_1 = 1;
+
+	/**
+	 * the contents are written in the compact format of
+	 * AbstractContent.VERSION_2, and the type of a content is a variable
+	 * length int.
+	 */
+	protected final static int VERSION_2 = 2;
 	
 	/**
 	 * There is a content start from the offset, which parent start from
@@ -27,6 +27,8 @@ import org.eclipse.birt.core.btree.BTree;
 import org.eclipse.birt.core.btree.BTreeFile;
 import org.eclipse.birt.core.btree.BTreeOption;
 import org.eclipse.birt.core.btree.BTreeSerializer;
+import org.eclipse.birt.core.btree.BTreeUtils;
+import org.eclipse.birt.core.btree.StringSerializer;
 import org.eclipse.birt.report.engine.content.impl.BookmarkContent;
 
 class BTreeMap extends BTree<String, Object>
@@ -95,26 +97,6 @@ class BTreeMap extends BTree<String, Object>
 		super.close( );
 	}
 
-	static private class StringSerializer implements BTreeSerializer<String>
-	{
-
-		public byte[] getBytes( String object ) throws IOException
-		{
-			ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
-			DataOutput oo = new DataOutputStream( out );
-			oo.writeUTF( object );
-			return out.toByteArray( );
-		}
-
-		public String getObject( byte[] bytes ) throws IOException,
-				ClassNotFoundException
-		{
-			DataInput input = new DataInputStream( new ByteArrayInputStream(
-					bytes ) );
-			return input.readUTF( );
-		}
-	}
-
 	static private class ObjectSerializer implements BTreeSerializer<Object>
 	{
 
@@ -127,13 +109,15 @@ class BTreeMap extends BTree<String, Object>
 
 		public byte[] getBytes( Object object ) throws IOException
 		{
-			ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
-			DataOutput oo = new DataOutputStream( out );
 			if ( valueType == LONG_VALUE )
 			{
-				oo.writeLong( ( (Long) object ).longValue( ) );
+				byte[] bytes = new byte[8];
+				BTreeUtils.longToBytes( ( (Long) object ).longValue( ), bytes );
+				return bytes;
 			}
-			else if ( valueType == BOOKMARK_VALUE )
+			ByteArrayOutputStream out = new ByteArrayOutputStream( 1024 );
+			DataOutput oo = new DataOutputStream( out );
+			if ( valueType == BOOKMARK_VALUE )
 			{
 				( (BookmarkContent) object ).writeStream( oo );
 			}
@@ -143,14 +127,14 @@ class BTreeMap extends BTree<String, Object>
 		public Object getObject( byte[] bytes ) throws IOException,
 				ClassNotFoundException
 		{
-			DataInput input = new DataInputStream( new ByteArrayInputStream(
-					bytes ) );
 			if ( valueType == LONG_VALUE )
 			{
-				return Long.valueOf( input.readLong( ) );
+				return Long.valueOf( BTreeUtils.bytesToLong( bytes ) );
 			}
 			else if ( valueType == BOOKMARK_VALUE )
 			{
+				DataInput input = new DataInputStream(
+						new ByteArrayInputStream( bytes ) );
 				BookmarkContent content = new BookmarkContent( );
 				content.readStream( input );
 				return content;
@@ -11,6 +11,7 @@
 
 package org.eclipse.birt.report.engine.internal.index.v2;
 
+import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -19,23 +20,41 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.PriorityQueue;
 
 import org.eclipse.birt.core.archive.IDocArchiveWriter;
+import org.eclipse.birt.core.archive.RAInputStream;
 import org.eclipse.birt.core.archive.RAOutputStream;
+import org.eclipse.birt.core.btree.BTreeBuilder;
 import org.eclipse.birt.core.util.IOUtil;
 import org.eclipse.birt.report.engine.content.impl.BookmarkContent;
 
+/**
+ * Writes an index of a report document.
+ * <p>
+ * The entries are kept in memory and saved inline if there are few of them.
+ * Otherwise every MAX_INLINE_INDEX_ENTRY entries are sorted and saved into a
+ * temporary run stream, and the runs are merged into a btree when the writer
+ * is closed. The btree is loaded bottom up by a BTreeBuilder, as the merged
+ * entries are sorted. If several runs have the same key, the entry of the
+ * last run is kept.
+ */
 public class IndexWriter implements IndexConstants
 {
 
 	public static int MAX_INLINE_INDEX_ENTRY = MAX_INLINE_ENTIRES;
 
+	static final String RUN_STREAM_SUFFIX = ".run"; //$NON-NLS-1$
+
 	IDocArchiveWriter archive;
 	String name;
 
 	int type;
 	HashMap<String, Object> inlineMap;
-	BTreeMap btree;
+	/**
+	 * the names of the run streams
+	 */
+	ArrayList<String> runs;
 
 	int entrySize;
 
@@ -54,7 +73,7 @@ public class IndexWriter implements IndexConstants
 		}
 		if ( inlineMap.size( ) >= MAX_INLINE_INDEX_ENTRY )
 		{
-			flushBtree( );
+			writeRun( );
 			inlineMap.clear( );
 		}
 		if ( !inlineMap.containsKey( key ) )
@@ -73,7 +92,7 @@ public class IndexWriter implements IndexConstants
 		}
 		if ( inlineMap.size( ) >= MAX_INLINE_INDEX_ENTRY )
 		{
-			flushBtree( );
+			writeRun( );
 			inlineMap.clear( );
 		}
 		if ( !inlineMap.containsKey( bookmark ) )
@@ -85,7 +104,7 @@ public class IndexWriter implements IndexConstants
 
 	void close( ) throws IOException
 	{
-		if ( btree == null )
+		if ( runs == null )
 		{
 			RAOutputStream stream = archive.createOutputStream( name );
 			try
@@ -123,18 +142,25 @@ public class IndexWriter implements IndexConstants
 				stream.close( );
 			}
 		}
-		if ( btree != null )
+		else
 		{
-			flushBtree( );
-			btree.close( );
+			if ( !inlineMap.isEmpty( ) )
+			{
+				writeRun( );
+				inlineMap.clear( );
+			}
+			mergeRuns( );
 		}
 	}
 
-	protected void flushBtree( ) throws IOException
+	/**
+	 * save the entries in memory into a run stream, sorted by the keys.
+	 */
+	protected void writeRun( ) throws IOException
 	{
-		if ( btree == null )
+		if ( runs == null )
 		{
-			btree = BTreeMap.createTreeMap( archive, name, type );
+			runs = new ArrayList<String>( );
 		}
 		ArrayList<Map.Entry<String, Object>> entries = new ArrayList<Map.Entry<String, Object>>(
 				inlineMap.entrySet( ) );
@@ -148,9 +174,150 @@ public class IndexWriter implements IndexConstants
 					}
 				} );
 
-		for ( Map.Entry<String, Object> entry : entries )
+		String runName = name + RUN_STREAM_SUFFIX + runs.size( );
+		runs.add( runName );
+		RAOutputStream stream = archive.createOutputStream( runName );
+		try
+		{
+			DataOutputStream output = new DataOutputStream( stream );
+			IOUtil.writeInt( output, entries.size( ) );
+			for ( Map.Entry<String, Object> entry : entries )
+			{
+				IOUtil.writeString( output, entry.getKey( ) );
+				if ( type == BTreeMap.LONG_VALUE )
+				{
+					IOUtil.writeLong( output, (Long) entry.getValue( ) );
+				}
+				else if ( type == BTreeMap.BOOKMARK_VALUE )
+				{
+					( (BookmarkContent) entry.getValue( ) )
+							.writeStream( output );
+				}
+			}
+		}
+		finally
+		{
+			stream.close( );
+		}
+	}
+
+	/**
+	 * merge the run streams into the btree and remove them.
+	 */
+	protected void mergeRuns( ) throws IOException
+	{
+		PriorityQueue<RunReader> queue = new PriorityQueue<RunReader>(
+				runs.size( ) );
+		try
+		{
+			for ( int i = 0; i < runs.size( ); i++ )
+			{
+				RunReader reader = new RunReader( i, archive
+						.getInputStream( runs.get( i ) ) );
+				if ( reader.next( ) )
+				{
+					queue.add( reader );
+				}
+				else
+				{
+					reader.close( );
+				}
+			}
+
+			BTreeMap btree = BTreeMap.createTreeMap( archive, name, type );
+			try
+			{
+				BTreeBuilder<String, Object> builder = btree.createBuilder( );
+				while ( !queue.isEmpty( ) )
+				{
+					RunReader reader = queue.poll( );
+					builder.append( reader.key, reader.value );
+					if ( reader.next( ) )
+					{
+						queue.add( reader );
+					}
+					else
+					{
+						reader.close( );
+					}
+				}
+			}
+			finally
+			{
+				btree.close( );
+			}
+		}
+		finally
+		{
+			for ( RunReader reader : queue )
+			{
+				reader.close( );
+			}
+			for ( String run : runs )
+			{
+				archive.dropStream( run );
+			}
+			runs = null;
+		}
+	}
+
+	/**
+	 * reads the entries of a run stream. The readers are ordered by their
+	 * current keys, then by the order of the runs.
+	 */
+	private class RunReader implements Comparable<RunReader>
+	{
+
+		int index;
+		RAInputStream stream;
+		DataInputStream input;
+		int remain;
+
+		String key;
+		Object value;
+
+		RunReader( int index, RAInputStream stream ) throws IOException
+		{
+			this.index = index;
+			this.stream = stream;
+			this.input = new DataInputStream( stream );
+			this.remain = IOUtil.readInt( input );
+		}
+
+		boolean next( ) throws IOException
+		{
+			if ( remain <= 0 )
+			{
+				return false;
+			}
+			remain--;
+			key = IOUtil.readString( input );
+			if ( type == BTreeMap.LONG_VALUE )
+			{
+				value = Long.valueOf( IOUtil.readLong( input ) );
+			}
+			else if ( type == BTreeMap.BOOKMARK_VALUE )
+			{
+				BookmarkContent bookmark = new BookmarkContent( );
+				bookmark.readStream( input );
+				value = bookmark;
+			}
+			return true;
+		}
+
+		public int compareTo( RunReader o )
+		{
+			int result = key.compareTo( o.key );
+			if ( result != 0 )
+			{
+				return result;
+			}
+			return index - o.index;
+		}
+
+		void close( ) throws IOException
 		{
-			btree.insert( entry.getKey( ), entry.getValue( ) );
+			stream.close( );
 		}
 	}
 }
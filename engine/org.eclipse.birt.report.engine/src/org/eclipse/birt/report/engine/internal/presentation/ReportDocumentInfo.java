@@ -22,6 +22,7 @@ import org.eclipse.birt.core.archive.IDocArchiveWriter;
 import org.eclipse.birt.core.archive.compound.ArchiveReader;
 import org.eclipse.birt.core.archive.compound.ArchiveWriter;
 import org.eclipse.birt.core.archive.compound.IArchiveFile;
+import org.eclipse.birt.core.archive.compression.CompressedArchiveWriter;
 import org.eclipse.birt.core.exception.BirtException;
 import org.eclipse.birt.report.engine.api.EngineException;
 import org.eclipse.birt.report.engine.api.IReportDocument;
@@ -88,6 +89,20 @@ public class ReportDocumentInfo implements IReportDocumentInfo
 			}
 		}
 		IDocArchiveWriter arcWriter = writer.getArchive( );
+		if ( arcWriter instanceof CompressedArchiveWriter )
+		{
+			// the document reader decompresses the streams of the archive
+			try
+			{
+				( (CompressedArchiveWriter) arcWriter ).flushStreams( );
+			}
+			catch ( IOException ex )
+			{
+				throw new EngineException(
+						MessageConstants.REPORT_DOCUMENT_OPEN_ERROR, ex );
+			}
+			arcWriter = ( (CompressedArchiveWriter) arcWriter ).getWriter( );
+		}
 		if ( arcWriter instanceof ArchiveWriter )
 		{
 			IArchiveFile archive = ( (ArchiveWriter) arcWriter )
@@ -0,0 +1,244 @@
+/*************************************************************************************
+ * Copyright (c) 2004 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.viewer.service;
+
+import java.io.File;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.engine.api.IRunTask;
+import org.eclipse.birt.report.service.job.ReportJob;
+import org.eclipse.birt.report.service.job.ReportJobManager;
+
+/**
+ * TestCases for ReportJobManager.
+ * <p>
+ * The report runs are simulated by a run task which just creates the
+ * document file, optionally waiting until it is cancelled.
+ */
+public class ReportJobManagerTest extends TestCase
+{
+
+	private static final String OWNER = "session1"; //$NON-NLS-1$
+
+	private static final String OTHER_OWNER = "session2"; //$NON-NLS-1$
+
+	private static final String DESIGN = "test.rptdesign"; //$NON-NLS-1$
+
+	private ReportJobManager manager;
+
+	private File document;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		manager = new ReportJobManager( 1, 60000L );
+		document = File.createTempFile( "job", ".rptdocument" ); //$NON-NLS-1$ //$NON-NLS-2$
+		document.delete( );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		manager.close( );
+		document.delete( );
+		super.tearDown( );
+	}
+
+	/**
+	 * A submitted job runs to completion and can be looked up by its owner.
+	 */
+	public void testSubmit( ) throws Exception
+	{
+		ReportJob job = manager.submit( DESIGN,
+				document.getPath( ),
+				true,
+				OWNER,
+				createRunTask( false ),
+				null );
+		assertNotNull( job.getId( ) );
+		assertEquals( DESIGN, job.getReportDesignName( ) );
+		assertEquals( document.getPath( ), job.getDocumentName( ) );
+
+		waitForJob( job );
+		assertEquals( ReportJob.STATUS_COMPLETE, job.getStatus( ) );
+		assertEquals( "complete", job.getStatusName( ) ); //$NON-NLS-1$
+		assertTrue( job.getFinishTime( ) > 0 );
+		assertTrue( job.getErrors( ).isEmpty( ) );
+		assertTrue( document.exists( ) );
+
+		assertSame( job, manager.getJob( job.getId( ), OWNER ) );
+		assertNull( manager.getJob( "unknown", OWNER ) ); //$NON-NLS-1$
+		assertNull( manager.getJob( null, OWNER ) );
+	}
+
+	/**
+	 * Only the session which submitted a job can access or cancel it.
+	 */
+	public void testOwnership( ) throws Exception
+	{
+		ReportJob job = manager.submit( DESIGN,
+				document.getPath( ),
+				true,
+				OWNER,
+				createRunTask( false ),
+				null );
+		waitForJob( job );
+
+		assertNull( manager.getJob( job.getId( ), OTHER_OWNER ) );
+		assertNull( manager.getJob( job.getId( ), null ) );
+		assertNull( manager.removeJob( job.getId( ), OTHER_OWNER ) );
+		assertTrue( document.exists( ) );
+
+		assertSame( job, manager.removeJob( job.getId( ), OWNER ) );
+		assertNull( manager.getJob( job.getId( ), OWNER ) );
+		assertFalse( document.exists( ) );
+	}
+
+	/**
+	 * Cancelling a running job stops its run task.
+	 */
+	public void testCancel( ) throws Exception
+	{
+		ReportJob job = manager.submit( DESIGN,
+				document.getPath( ),
+				true,
+				OWNER,
+				createRunTask( true ),
+				null );
+		long timeout = System.currentTimeMillis( ) + 10000;
+		while ( job.getStatus( ) == ReportJob.STATUS_QUEUED
+				&& System.currentTimeMillis( ) < timeout )
+		{
+			Thread.sleep( 10 );
+		}
+		assertEquals( ReportJob.STATUS_RUNNING, job.getStatus( ) );
+
+		job.cancel( );
+		waitForJob( job );
+		assertEquals( ReportJob.STATUS_CANCELLED, job.getStatus( ) );
+		assertFalse( document.exists( ) );
+	}
+
+	/**
+	 * A document named by the user is never deleted with the job.
+	 */
+	public void testUserDocument( ) throws Exception
+	{
+		ReportJob job = manager.submit( DESIGN,
+				document.getPath( ),
+				false,
+				OWNER,
+				createRunTask( false ),
+				null );
+		waitForJob( job );
+		assertFalse( job.isTemporaryDocument( ) );
+
+		assertSame( job, manager.removeJob( job.getId( ), OWNER ) );
+		assertTrue( document.exists( ) );
+	}
+
+	/**
+	 * Finished jobs are discarded after the job timeout, also when their
+	 * status is asked for.
+	 */
+	public void testExpiry( ) throws Exception
+	{
+		manager.close( );
+		manager = new ReportJobManager( 1, 50L );
+
+		ReportJob job = manager.submit( DESIGN,
+				document.getPath( ),
+				true,
+				OWNER,
+				createRunTask( false ),
+				null );
+		waitForJob( job );
+		assertTrue( document.exists( ) );
+
+		Thread.sleep( 200 );
+		assertNull( manager.getJob( job.getId( ), OWNER ) );
+		assertFalse( document.exists( ) );
+	}
+
+	private void waitForJob( ReportJob job ) throws InterruptedException
+	{
+		long timeout = System.currentTimeMillis( ) + 10000;
+		while ( !job.isDone( ) && System.currentTimeMillis( ) < timeout )
+		{
+			Thread.sleep( 10 );
+		}
+		assertTrue( job.isDone( ) );
+	}
+
+	/**
+	 * Creates a run task which writes an empty document.
+	 * 
+	 * @param block
+	 *            true if the run only ends when the task is cancelled
+	 */
+	private IRunTask createRunTask( final boolean block )
+	{
+		InvocationHandler handler = new InvocationHandler( ) {
+
+			private final CountDownLatch cancelled = new CountDownLatch( 1 );
+
+			private volatile int status = IRunTask.STATUS_NOT_STARTED;
+
+			public Object invoke( Object proxy, Method method, Object[] args )
+					throws Throwable
+			{
+				String name = method.getName( );
+				if ( "run".equals( name ) ) //$NON-NLS-1$
+				{
+					status = IRunTask.STATUS_RUNNING;
+					new File( (String) args[0] ).createNewFile( );
+					if ( block )
+					{
+						cancelled.await( 10, TimeUnit.SECONDS );
+					}
+					status = cancelled.getCount( ) == 0
+							? IRunTask.STATUS_CANCELLED
+							: IRunTask.STATUS_SUCCEEDED;
+				}
+				else if ( "cancel".equals( name ) ) //$NON-NLS-1$
+				{
+					cancelled.countDown( );
+				}
+				else if ( "getStatus".equals( name ) ) //$NON-NLS-1$
+				{
+					return Integer.valueOf( status );
+				}
+				else if ( "getErrors".equals( name ) ) //$NON-NLS-1$
+				{
+					return new ArrayList( );
+				}
+				else if ( method.getReturnType( ) == Boolean.TYPE )
+				{
+					return Boolean.FALSE;
+				}
+				else if ( method.getReturnType( ) == Integer.TYPE )
+				{
+					return Integer.valueOf( 0 );
+				}
+				return null;
+			}
+		};
+		return (IRunTask) Proxy.newProxyInstance( IRunTask.class
+				.getClassLoader( ), new Class[]{IRunTask.class}, handler );
+	}
+}
@@ -0,0 +1,162 @@
+/*************************************************************************************
+ * Copyright (c) 2004 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.viewer.session;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+
+import org.eclipse.birt.report.exception.ViewerException;
+import org.eclipse.birt.report.session.IViewingSession;
+import org.eclipse.birt.report.session.ViewingCache;
+import org.eclipse.birt.report.session.ViewingSessionConfig;
+import org.eclipse.birt.report.session.ViewingSessionManager;
+import org.eclipse.birt.report.session.ViewingSessionConfig.ViewingSessionPolicy;
+
+/**
+ * TestCases for the session eviction of ViewingSessionManager.
+ * <p>
+ * Sessions in use are locked, they must neither be invalidated nor dropped
+ * from the manager when the oldest or the expired sessions are evicted.
+ */
+public class ViewingSessionManagerTest extends TestCase
+{
+
+	private static final String HTTP_SESSION_ID = "httpSession"; //$NON-NLS-1$
+
+	private File cacheFolder;
+
+	private ViewingSessionConfig config;
+
+	protected void setUp( ) throws Exception
+	{
+		super.setUp( );
+		cacheFolder = File.createTempFile( "viewingCache", "" ); //$NON-NLS-1$ //$NON-NLS-2$
+		cacheFolder.delete( );
+		cacheFolder.mkdirs( );
+
+		config = new ViewingSessionConfig( );
+		config.setMaximumSessionCount( 2 );
+		config.setMaxSessionCountPolicy( ViewingSessionPolicy.SESSION_POLICY_DISCARD_OLDEST );
+	}
+
+	protected void tearDown( ) throws Exception
+	{
+		cacheFolder.delete( );
+		super.tearDown( );
+	}
+
+	/**
+	 * The least recently used session is evicted when the maximum session
+	 * count is reached.
+	 */
+	public void testEvictOldestUnlocked( ) throws Exception
+	{
+		ViewingSessionManager manager = createManager( );
+		IViewingSession first = createSession( manager );
+		IViewingSession second = createSession( manager );
+		IViewingSession third = createSession( manager );
+
+		assertTrue( first.isExpired( ) );
+		assertNull( manager.getSession( first.getId( ) ) );
+		assertSame( second, manager.getSession( second.getId( ) ) );
+		assertSame( third, manager.getSession( third.getId( ) ) );
+	}
+
+	/**
+	 * A locked session is skipped, the oldest unlocked session is evicted
+	 * instead.
+	 */
+	public void testEvictOldestLocked( ) throws Exception
+	{
+		ViewingSessionManager manager = createManager( );
+		IViewingSession first = createSession( manager );
+		IViewingSession second = createSession( manager );
+		first.lock( );
+
+		IViewingSession third = createSession( manager );
+		assertFalse( first.isExpired( ) );
+		assertSame( first, manager.getSession( first.getId( ) ) );
+		assertTrue( second.isExpired( ) );
+		assertNull( manager.getSession( second.getId( ) ) );
+		assertSame( third, manager.getSession( third.getId( ) ) );
+
+		first.unlock( );
+	}
+
+	/**
+	 * No session is created while all the sessions are locked.
+	 */
+	public void testEvictAllLocked( ) throws Exception
+	{
+		ViewingSessionManager manager = createManager( );
+		IViewingSession first = createSession( manager );
+		IViewingSession second = createSession( manager );
+		first.lock( );
+		second.lock( );
+
+		try
+		{
+			createSession( manager );
+			fail( );
+		}
+		catch ( ViewerException e )
+		{
+		}
+		assertFalse( first.isExpired( ) );
+		assertFalse( second.isExpired( ) );
+		assertSame( first, manager.getSession( first.getId( ) ) );
+		assertSame( second, manager.getSession( second.getId( ) ) );
+	}
+
+	/**
+	 * Timed out sessions are cleaned up, unless they are locked.
+	 */
+	public void testCleanupExpired( ) throws Exception
+	{
+		config.setMaximumSessionCount( 0 );
+		config.setSessionTimeout( 1 );
+		ViewingSessionManager manager = createManager( );
+		IViewingSession first = createSession( manager );
+		first.lock( );
+		IViewingSession second = createSession( manager );
+
+		Thread.sleep( 1100 );
+		IViewingSession third = createSession( manager );
+		assertFalse( first.isExpired( ) );
+		assertSame( first, manager.getSession( first.getId( ) ) );
+		assertTrue( second.isExpired( ) );
+		assertNull( manager.getSession( second.getId( ) ) );
+		assertFalse( third.isExpired( ) );
+
+		first.unlock( );
+	}
+
+	private ViewingSessionManager createManager( )
+	{
+		ViewingCache cache = new ViewingCache( new File( cacheFolder,
+				"documents" ).getAbsolutePath( ), //$NON-NLS-1$
+				new File( cacheFolder, "images" ).getAbsolutePath( ) ); //$NON-NLS-1$
+		return new ViewingSessionManager( cache, HTTP_SESSION_ID, config );
+	}
+
+	/**
+	 * Creates a session, making sure it gets a later id and access time than
+	 * the previous one.
+	 */
+	private IViewingSession createSession( ViewingSessionManager manager )
+			throws Exception
+	{
+		Thread.sleep( 20 );
+		return manager.createSession( );
+	}
+}
@@ -217,6 +217,18 @@ import org.eclipse.birt.report.viewer.util.BaseTestCase;
  * <td>Return engine context map.</td>
  * </tr>
  * 
+ * <tr>
+ * <td>{@link #testGetJobId()}</td>
+ * <td>Return the asynchronous report job id.</td>
+ * <td>Return trimmed id, or null if it isn't set.</td>
+ * </tr>
+ * 
+ * <tr>
+ * <td>{@link #testGetJobOperation()}</td>
+ * <td>Return the operation on an asynchronous report job.</td>
+ * <td>Return trimmed operation, default is status.</td>
+ * </tr>
+ * 
  * </table>
  * 
  */
@@ -990,4 +1002,50 @@ public class ParameterAccessorTest extends BaseTestCase
 		assertTrue( ( (HashMap) ( ParameterAccessor.pushAppContext( map,
 				request ).get( contextKey ) ) ).containsKey( "key1" ) ); //$NON-NLS-1$
 	}
+
+	/**
+	 * TestCase for getJobId method
+	 * <p>
+	 * Returns the trimmed job id, or null if it is blank
+	 * 
+	 */
+	public void testGetJobId( )
+	{
+		assertNull( ParameterAccessor.getJobId( request ) );
+
+		request.addParameter( ParameterAccessor.PARAM_JOB_ID, "  " ); //$NON-NLS-1$
+		assertNull( ParameterAccessor.getJobId( request ) );
+
+		request.addParameter( ParameterAccessor.PARAM_JOB_ID, " job1 " ); //$NON-NLS-1$
+		assertEquals( "job1", ParameterAccessor.getJobId( request ) ); //$NON-NLS-1$
+
+		request.removeParameter( ParameterAccessor.PARAM_JOB_ID );
+	}
+
+	/**
+	 * TestCase for getJobOperation method
+	 * <p>
+	 * Returns the trimmed job operation, default is status
+	 * 
+	 */
+	public void testGetJobOperation( )
+	{
+		assertEquals( ParameterAccessor.JOB_OPERATION_STATUS,
+				ParameterAccessor.getJobOperation( request ) );
+
+		request.addParameter( ParameterAccessor.PARAM_JOB_OPERATION, "" ); //$NON-NLS-1$
+		assertEquals( ParameterAccessor.JOB_OPERATION_STATUS,
+				ParameterAccessor.getJobOperation( request ) );
+
+		request.addParameter( ParameterAccessor.PARAM_JOB_OPERATION, " cancel " ); //$NON-NLS-1$
+		assertEquals( ParameterAccessor.JOB_OPERATION_CANCEL,
+				ParameterAccessor.getJobOperation( request ) );
+
+		request.addParameter( ParameterAccessor.PARAM_JOB_OPERATION,
+				ParameterAccessor.JOB_OPERATION_RESULT );
+		assertEquals( ParameterAccessor.JOB_OPERATION_RESULT,
+				ParameterAccessor.getJobOperation( request ) );
+
+		request.removeParameter( ParameterAccessor.PARAM_JOB_OPERATION );
+	}
 }
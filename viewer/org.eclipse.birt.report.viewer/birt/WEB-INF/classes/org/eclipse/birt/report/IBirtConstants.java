@@ -56,6 +56,9 @@ public interface IBirtConstants
 	// extract viewer model.
 	public static final String VIEWER_EXTRACT = "extract"; //$NON-NLS-1$
 
+	// asynchronous job viewer model.
+	public static final String VIEWER_JOB = "job"; //$NON-NLS-1$
+
 	// Servlet path for frameset model.
 	public static final String SERVLET_PATH_FRAMESET = "/" + VIEWER_FRAMESET; //$NON-NLS-1$
 
@@ -80,6 +83,9 @@ public interface IBirtConstants
 	// Servlet path for data extraction model.
 	public static final String SERVLET_PATH_EXTRACT = "/" + VIEWER_EXTRACT; //$NON-NLS-1$
 
+	// Servlet path for asynchronous job model.
+	public static final String SERVLET_PATH_JOB = "/" + VIEWER_JOB; //$NON-NLS-1$
+
 	// request GET method.
 	public static final String REQUEST_GET = "get"; //$NON-NLS-1$
 
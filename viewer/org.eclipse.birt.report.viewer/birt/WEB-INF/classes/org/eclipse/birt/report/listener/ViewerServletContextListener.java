@@ -20,6 +20,7 @@ import org.eclipse.birt.report.service.BirtReportServiceFactory;
 import org.eclipse.birt.report.service.BirtViewerReportService;
 import org.eclipse.birt.report.service.ReportEngineService;
 import org.eclipse.birt.report.service.api.IViewerReportService;
+import org.eclipse.birt.report.service.job.ReportJobManager;
 import org.eclipse.birt.report.utility.ParameterAccessor;
 
 /**
@@ -39,6 +40,7 @@ public class ViewerServletContextListener implements ServletContextListener
 	{
 		// When trying to destroy application, shutdown Platform and
 		// ReportEngineService.
+		ReportJobManager.shutdown( );
 		Platform.shutdown( );
 		ReportEngineService.shutdown( );
 
@@ -54,6 +56,8 @@ public class ViewerServletContextListener implements ServletContextListener
 	public void contextInitialized( ServletContextEvent event )
 	{
 		ParameterAccessor.initParameters( event.getServletContext( ) );
+		ReportJobManager.init( ParameterAccessor.jobThreads,
+				ParameterAccessor.jobTimeout );
 		IViewerReportService instance = new BirtViewerReportService( event
 				.getServletContext( ) );
 		BirtReportServiceFactory.init( instance );
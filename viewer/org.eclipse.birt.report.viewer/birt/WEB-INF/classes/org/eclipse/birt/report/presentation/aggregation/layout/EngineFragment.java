@@ -38,6 +38,7 @@ import org.eclipse.birt.report.service.actionhandler.BirtExtractDataActionHandle
 import org.eclipse.birt.report.service.actionhandler.BirtGetReportletActionHandler;
 import org.eclipse.birt.report.service.actionhandler.BirtRenderImageActionHandler;
 import org.eclipse.birt.report.service.actionhandler.BirtRenderReportActionHandler;
+import org.eclipse.birt.report.service.actionhandler.BirtReportJobActionHandler;
 import org.eclipse.birt.report.service.actionhandler.BirtRunAndRenderActionHandler;
 import org.eclipse.birt.report.service.actionhandler.BirtRunReportActionHandler;
 import org.eclipse.birt.report.session.IViewingSession;
@@ -116,6 +117,13 @@ public class EngineFragment extends BirtBaseFragment
 			else
 				response.setContentType( "application/octet-stream" ); //$NON-NLS-1$
 		}
+		else if ( IBirtConstants.SERVLET_PATH_JOB.equalsIgnoreCase( request
+				.getServletPath( ) )
+				&& !BirtReportJobActionHandler.isOutputRequest( request ) )
+		{
+			// job status
+			response.setContentType( "text/xml; charset=utf-8" ); //$NON-NLS-1$
+		}
 		else if ( IBirtConstants.SERVLET_PATH_DOCUMENT
 				.equalsIgnoreCase( request.getServletPath( ) ) )
 		{
@@ -213,6 +221,13 @@ public class EngineFragment extends BirtBaseFragment
 						context, op, upResponse );
 				extractDataHandler.execute( );
 			}
+			else if ( IBirtConstants.SERVLET_PATH_JOB
+					.equalsIgnoreCase( request.getServletPath( ) ) )
+			{
+				BirtReportJobActionHandler jobHandler = new BirtReportJobActionHandler(
+						context, op, upResponse, out );
+				jobHandler.execute( );
+			}
 			else if ( IBirtConstants.SERVLET_PATH_DOCUMENT
 					.equalsIgnoreCase( request.getServletPath( ) ) )
 			{
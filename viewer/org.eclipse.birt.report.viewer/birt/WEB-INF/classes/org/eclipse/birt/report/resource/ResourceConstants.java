@@ -63,6 +63,8 @@ public interface ResourceConstants
 	public static final String ACTION_EXCEPTION_PAGE_NUMBER_PARSE_ERROR = "birt.viewer.actionException.PAGE_NUMBER_PARSE_ERROR"; //$NON-NLS-1$
 	public static final String ACTION_EXCEPTION_INVALID_ID_FORMAT = "birt.viewer.actionException.INVALID_ID_FORMAT"; //$NON-NLS-1$
 	public static final String ACTION_EXCEPTION_DOCUMENT_FILE_NO_EXIST = "birt.viewer.actionException.DOCUMENT_FILE_NO_EXIST"; //$NON-NLS-1$
+	public static final String ACTION_EXCEPTION_JOB_NOT_FOUND = "birt.viewer.actionException.JOB_NOT_FOUND"; //$NON-NLS-1$
+	public static final String ACTION_EXCEPTION_JOB_NOT_COMPLETE = "birt.viewer.actionException.JOB_NOT_COMPLETE"; //$NON-NLS-1$
 
 	// birt soap binding exception
 	public static final String SOAP_BINDING_EXCEPTION_NO_HANDLER_FOR_TARGET = "birt.viewer.soapBindingException.NO_HANDLER_FOR_TARGET"; //$NON-NLS-1$
@@ -1262,30 +1262,24 @@ public class ReportEngineService
 	}
 
 	/**
-	 * Run report.
-	 * 
-	 * @param request
+	 * Creates a new run task and configures it. The task doesn't hold any
+	 * reference to the http request, so it may be run outside of the request
+	 * thread.
 	 * 
 	 * @param runnable
-	 * @param archive
-	 * @param documentName
 	 * @param locale
+	 * @param timeZone
 	 * @param parameters
 	 * @param displayTexts
 	 * @param maxRows
-	 * @return list of exceptions which occured during the run or null
-	 * @throws RemoteException
+	 * @param appContext
+	 * @return configured run task
 	 */
-	public List<Exception> runReport( HttpServletRequest request,
-			IReportRunnable runnable, String documentName, Locale locale,
-			TimeZone timeZone, Map parameters, Map displayTexts, Integer maxRows )
-			throws RemoteException
+	public IRunTask createRunTask( IReportRunnable runnable, Locale locale,
+			TimeZone timeZone, Map parameters, Map displayTexts,
+			Integer maxRows, Map appContext )
 	{
-		assert runnable != null;
-
-		// Preapre the run report task.
-		IRunTask runTask = null;
-		runTask = engine.createRunTask( runnable );
+		IRunTask runTask = engine.createRunTask( runnable );
 		runTask.setLocale( locale );
 
 		com.ibm.icu.util.TimeZone tz = BirtUtility.toICUTimeZone( timeZone );
@@ -1300,9 +1294,6 @@ public class ReportEngineService
 		if ( maxRows != null )
 			runTask.setMaxRowsPerQuery( maxRows.intValue( ) );
 
-		// add task into session
-		BirtUtility.addTask( request, runTask );
-
 		// Set display Text for select parameters
 		if ( displayTexts != null )
 		{
@@ -1316,8 +1307,44 @@ public class ReportEngineService
 		}
 
 		// set app context
-		Map context = BirtUtility.getAppContext( request );
-		runTask.setAppContext( context );
+		runTask.setAppContext( appContext );
+
+		return runTask;
+	}
+
+	/**
+	 * Run report.
+	 * 
+	 * @param request
+	 * 
+	 * @param runnable
+	 * @param archive
+	 * @param documentName
+	 * @param locale
+	 * @param parameters
+	 * @param displayTexts
+	 * @param maxRows
+	 * @return list of exceptions which occured during the run or null
+	 * @throws RemoteException
+	 */
+	public List<Exception> runReport( HttpServletRequest request,
+			IReportRunnable runnable, String documentName, Locale locale,
+			TimeZone timeZone, Map parameters, Map displayTexts, Integer maxRows )
+			throws RemoteException
+	{
+		assert runnable != null;
+
+		// Preapre the run report task.
+		IRunTask runTask = createRunTask( runnable,
+				locale,
+				timeZone,
+				parameters,
+				displayTexts,
+				maxRows,
+				BirtUtility.getAppContext( request ) );
+
+		// add task into session
+		BirtUtility.addTask( request, runTask );
 
 		// Run report.
 		try
@@ -0,0 +1,289 @@
+/*************************************************************************************
+ * Copyright (c) 2004 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.service.actionhandler;
+
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.axis.AxisFault;
+import org.eclipse.birt.report.context.IContext;
+import org.eclipse.birt.report.context.ViewerAttributeBean;
+import org.eclipse.birt.report.engine.api.EngineConstants;
+import org.eclipse.birt.report.engine.api.IReportRunnable;
+import org.eclipse.birt.report.engine.api.IRunTask;
+import org.eclipse.birt.report.resource.BirtResources;
+import org.eclipse.birt.report.resource.ResourceConstants;
+import org.eclipse.birt.report.service.BirtReportServiceFactory;
+import org.eclipse.birt.report.service.ReportEngineService;
+import org.eclipse.birt.report.service.api.IViewerReportDesignHandle;
+import org.eclipse.birt.report.service.api.IViewerReportService;
+import org.eclipse.birt.report.service.api.InputOptions;
+import org.eclipse.birt.report.service.api.ReportServiceException;
+import org.eclipse.birt.report.service.job.ReportJob;
+import org.eclipse.birt.report.service.job.ReportJobManager;
+import org.eclipse.birt.report.session.IViewingSession;
+import org.eclipse.birt.report.session.ViewingSessionUtil;
+import org.eclipse.birt.report.soapengine.api.GetUpdatedObjectsResponse;
+import org.eclipse.birt.report.soapengine.api.Operation;
+import org.eclipse.birt.report.utility.BirtUtility;
+import org.eclipse.birt.report.utility.ParameterAccessor;
+
+/**
+ * Action handler for asynchronous report jobs.
+ * <p>
+ * Without a job id, the report is submitted to the {@link ReportJobManager}
+ * and the job status is returned right away. With a job id, the handler
+ * either returns the job status, cancels the job, renders a single page which
+ * is already available or renders the complete output of a finished job. As
+ * for the other servlet patterns, every request carries the report design.
+ */
+public class BirtReportJobActionHandler extends AbstractBaseActionHandler
+{
+
+	/**
+	 * Output stream to store the job status or the report.
+	 */
+	private OutputStream os = null;
+
+	/**
+	 * Constructor.
+	 *
+	 * @param context
+	 * @param operation
+	 * @param response
+	 * @param os
+	 */
+	public BirtReportJobActionHandler( IContext context, Operation operation,
+			GetUpdatedObjectsResponse response, OutputStream os )
+	{
+		super( context, operation, response );
+		assert os != null;
+		this.os = os;
+	}
+
+	/**
+	 * Returns whether the request streams report output, rather than the job
+	 * status.
+	 *
+	 * @param request
+	 * @return true if the response contains report output
+	 */
+	public static boolean isOutputRequest( HttpServletRequest request )
+	{
+		if ( ParameterAccessor.getJobId( request ) == null )
+			return false;
+
+		return ParameterAccessor.JOB_OPERATION_RESULT
+				.equalsIgnoreCase( ParameterAccessor.getJobOperation( request ) )
+				|| ParameterAccessor.getPage( request ) > 0;
+	}
+
+	/**
+	 * Local execution.
+	 *
+	 * @exception ReportServiceException
+	 * @return
+	 */
+	public void __execute( ) throws Exception
+	{
+		ViewerAttributeBean attrBean = (ViewerAttributeBean) context.getBean( );
+		assert attrBean != null;
+
+		HttpServletRequest request = context.getRequest( );
+		ReportJobManager manager = getJobManager( );
+		String jobId = ParameterAccessor.getJobId( request );
+		if ( jobId == null )
+		{
+			writeStatus( submitJob( manager, attrBean ) );
+			return;
+		}
+
+		ReportJob job = manager.getJob( jobId, getOwner( request ) );
+		if ( job == null )
+		{
+			throw createFault( ResourceConstants.ACTION_EXCEPTION_JOB_NOT_FOUND,
+					new Object[]{jobId} );
+		}
+
+		String op = ParameterAccessor.getJobOperation( request );
+		if ( ParameterAccessor.JOB_OPERATION_CANCEL.equalsIgnoreCase( op ) )
+		{
+			manager.removeJob( jobId, getOwner( request ) );
+			writeStatus( job );
+		}
+		else if ( ParameterAccessor.JOB_OPERATION_RESULT.equalsIgnoreCase( op ) )
+		{
+			if ( job.getStatus( ) != ReportJob.STATUS_COMPLETE )
+			{
+				throw createFault( ResourceConstants.ACTION_EXCEPTION_JOB_NOT_COMPLETE,
+						new Object[]{jobId, job.getStatusName( )} );
+			}
+			renderJob( job, attrBean, 0, attrBean.getReportPageRange( ) );
+		}
+		else
+		{
+			int pageNumber = ParameterAccessor.getPage( request );
+			if ( pageNumber <= 0 )
+			{
+				writeStatus( job );
+			}
+			else if ( pageNumber <= job.getAvailablePages( ) )
+			{
+				renderJob( job, attrBean, pageNumber, null );
+			}
+			else if ( job.getStatus( ) == ReportJob.STATUS_COMPLETE )
+			{
+				throw createFault( ResourceConstants.ACTION_EXCEPTION_INVALID_PAGE_NUMBER,
+						new Object[]{
+								Integer.valueOf( pageNumber ),
+								Long.valueOf( job.getAvailablePages( ) )
+						} );
+			}
+			else
+			{
+				throw createFault( ResourceConstants.ACTION_EXCEPTION_JOB_NOT_COMPLETE,
+						new Object[]{jobId, job.getStatusName( )} );
+			}
+		}
+	}
+
+	/**
+	 * Configures a run task from the request and submits it as a new job.
+	 */
+	private ReportJob submitJob( ReportJobManager manager,
+			ViewerAttributeBean attrBean ) throws Exception
+	{
+		HttpServletRequest request = context.getRequest( );
+		IViewerReportDesignHandle designHandle = attrBean.getReportDesignHandle( request );
+		if ( designHandle == null || designHandle.getDesignObject( ) == null )
+		{
+			throw new ReportServiceException( BirtResources.getMessage( ResourceConstants.GENERAL_EXCEPTION_NO_REPORT_DESIGN ) );
+		}
+
+		Map parameterMap = attrBean.getParameters( );
+		if ( parameterMap == null )
+			parameterMap = new HashMap( );
+
+		Map displayTexts = attrBean.getDisplayTexts( );
+		if ( displayTexts == null )
+			displayTexts = new HashMap( );
+
+		Integer maxRows = null;
+		if ( ParameterAccessor.isReportParameterExist( request,
+				ParameterAccessor.PARAM_MAXROWS ) )
+			maxRows = Integer.valueOf( ParameterAccessor.getMaxRows( request ) );
+
+		// the job outlives the request, so it mustn't hold on to it
+		Map appContext = BirtUtility.getAppContext( request );
+		appContext.remove( EngineConstants.APPCONTEXT_BIRT_VIEWER_HTTPSERVET_REQUEST );
+
+		IRunTask runTask = ReportEngineService.getInstance( )
+				.createRunTask( (IReportRunnable) designHandle.getDesignObject( ),
+						attrBean.getLocale( ),
+						attrBean.getTimeZone( ),
+						parameterMap,
+						displayTexts,
+						maxRows,
+						appContext );
+
+		// the document either goes where the user asked, or into the cache of
+		// the viewing session, which is kept alive until the job is done. Only
+		// the latter is deleted with the job
+		String reportDesignName = attrBean.getReportDesignName( );
+		String docName = attrBean.getReportDocumentName( );
+		IViewingSession session = null;
+		if ( docName == null || docName.length( ) <= 0 )
+		{
+			session = ViewingSessionUtil.getSession( request );
+			if ( session == null )
+			{
+				session = ViewingSessionUtil.createSession( request );
+			}
+		}
+
+		if ( session != null )
+		{
+			// the job id isn't known yet, so use a unique viewer id
+			docName = session.getCachedReportDocument( reportDesignName,
+					Long.toString( System.nanoTime( ) ) );
+		}
+		return manager.submit( reportDesignName,
+				docName,
+				session != null,
+				getOwner( request ),
+				runTask,
+				session );
+	}
+
+	/**
+	 * Jobs belong to the http session which submitted them.
+	 */
+	private String getOwner( HttpServletRequest request )
+	{
+		return request.getSession( true ).getId( );
+	}
+
+	/**
+	 * Renders the given page, or the complete report if the page number is
+	 * 0, from the document of the job.
+	 */
+	private void renderJob( ReportJob job, ViewerAttributeBean attrBean,
+			int pageNumber, String pageRange ) throws Exception
+	{
+		InputOptions options = createInputOptions( attrBean, ParameterAccessor
+				.getSVGFlag( context.getRequest( ) ) );
+		getReportService( ).renderReport( job.getDocumentName( ),
+				pageNumber,
+				pageRange,
+				options,
+				os );
+	}
+
+	/**
+	 * Writes the status of the job as a small xml document.
+	 */
+	private void writeStatus( ReportJob job ) throws Exception
+	{
+		StringBuffer buffer = new StringBuffer( );
+		buffer.append( "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" ); //$NON-NLS-1$
+		buffer.append( "<job id=\"" ).append( job.getId( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( " status=\"" ).append( job.getStatusName( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( " availablePages=\"" ).append( job.getAvailablePages( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( " generatedPages=\"" ).append( job.getGeneratedPages( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( " fetchedRows=\"" ).append( job.getFetchedRows( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( " errors=\"" ).append( job.getErrors( ).size( ) ).append( '"' ); //$NON-NLS-1$
+		buffer.append( "/>" ); //$NON-NLS-1$
+		os.write( buffer.toString( ).getBytes( ParameterAccessor.UTF_8_ENCODE ) );
+	}
+
+	private AxisFault createFault( String key, Object[] arguments )
+	{
+		AxisFault fault = new AxisFault( );
+		fault.setFaultReason( BirtResources.getMessage( key, arguments ) );
+		return fault;
+	}
+
+	private ReportJobManager getJobManager( )
+	{
+		ReportJobManager.init( ParameterAccessor.jobThreads,
+				ParameterAccessor.jobTimeout );
+		return ReportJobManager.getInstance( );
+	}
+
+	protected IViewerReportService getReportService( )
+	{
+		return BirtReportServiceFactory.getReportService( );
+	}
+}
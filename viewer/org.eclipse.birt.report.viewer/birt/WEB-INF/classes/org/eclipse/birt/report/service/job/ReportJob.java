@@ -0,0 +1,418 @@
+/*************************************************************************************
+ * Copyright (c) 2004 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.service.job;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.eclipse.birt.core.exception.BirtException;
+import org.eclipse.birt.report.engine.api.IPageHandler;
+import org.eclipse.birt.report.engine.api.IProgressMonitor;
+import org.eclipse.birt.report.engine.api.IReportDocumentInfo;
+import org.eclipse.birt.report.engine.api.IRunTask;
+import org.eclipse.birt.report.session.IViewingSession;
+
+/**
+ * A report run submitted to the {@link ReportJobManager}. The job runs the
+ * report into a report document on a worker thread and tracks its progress
+ * through the engine progress monitor and page handler callbacks, so clients
+ * can poll the status and render the pages which are already available.
+ */
+public class ReportJob implements Runnable, IProgressMonitor, IPageHandler
+{
+
+	/**
+	 * The job is waiting for a worker thread.
+	 */
+	public static final int STATUS_QUEUED = 0;
+
+	/**
+	 * The job is generating the report document.
+	 */
+	public static final int STATUS_RUNNING = 1;
+
+	/**
+	 * The report document has been generated.
+	 */
+	public static final int STATUS_COMPLETE = 2;
+
+	/**
+	 * The report run failed.
+	 */
+	public static final int STATUS_FAILED = 3;
+
+	/**
+	 * The job has been cancelled.
+	 */
+	public static final int STATUS_CANCELLED = 4;
+
+	private static final String[] STATUS_NAMES = new String[]{
+			"queued", "running", "complete", "failed", "cancelled" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+	};
+
+	private final String id;
+
+	private final String reportDesignName;
+
+	private final String documentName;
+
+	private final boolean temporaryDocument;
+
+	private final String owner;
+
+	private IRunTask runTask;
+
+	private IViewingSession viewingSession;
+
+	private Future<?> future;
+
+	private volatile int status = STATUS_QUEUED;
+
+	/**
+	 * Number of pages which can be rendered from the document.
+	 */
+	private volatile long availablePages = 0;
+
+	/**
+	 * Number of pages generated so far.
+	 */
+	private volatile long generatedPages = 0;
+
+	/**
+	 * Number of rows fetched so far.
+	 */
+	private volatile long fetchedRows = 0;
+
+	private volatile long finishTime = 0;
+
+	private final List<Throwable> errors = new ArrayList<Throwable>( );
+
+	/**
+	 * Constructor.
+	 *
+	 * @param id
+	 *            job id
+	 * @param reportDesignName
+	 *            the report design file name
+	 * @param documentName
+	 *            the report document generated by the job
+	 * @param temporaryDocument
+	 *            true if the document has been created for the job and is
+	 *            deleted with it
+	 * @param owner
+	 *            id of the http session which submitted the job
+	 * @param runTask
+	 *            the configured run task, which must not refer to the http
+	 *            request
+	 * @param viewingSession
+	 *            the viewing session owning the document, may be null
+	 */
+	ReportJob( String id, String reportDesignName, String documentName,
+			boolean temporaryDocument, String owner, IRunTask runTask,
+			IViewingSession viewingSession )
+	{
+		this.id = id;
+		this.reportDesignName = reportDesignName;
+		this.documentName = documentName;
+		this.temporaryDocument = temporaryDocument;
+		this.owner = owner;
+		this.runTask = runTask;
+		this.viewingSession = viewingSession;
+		runTask.setProgressMonitor( this );
+		runTask.setPageHandler( this );
+	}
+
+	/**
+	 * @return the job id
+	 */
+	public String getId( )
+	{
+		return id;
+	}
+
+	/**
+	 * @return the report design file name
+	 */
+	public String getReportDesignName( )
+	{
+		return reportDesignName;
+	}
+
+	/**
+	 * @return the report document generated by the job
+	 */
+	public String getDocumentName( )
+	{
+		return documentName;
+	}
+
+	/**
+	 * @return true if the document is deleted with the job
+	 */
+	public boolean isTemporaryDocument( )
+	{
+		return temporaryDocument;
+	}
+
+	/**
+	 * @return id of the http session which submitted the job
+	 */
+	public String getOwner( )
+	{
+		return owner;
+	}
+
+	/**
+	 * Returns whether the job has been submitted by the given http session.
+	 *
+	 * @param sessionId
+	 *            http session id
+	 * @return true if the session owns the job
+	 */
+	public boolean isOwnedBy( String sessionId )
+	{
+		return owner != null && owner.equals( sessionId );
+	}
+
+	/**
+	 * @return the job status, one of the STATUS_* constants
+	 */
+	public int getStatus( )
+	{
+		return status;
+	}
+
+	/**
+	 * @return the name of the job status
+	 */
+	public String getStatusName( )
+	{
+		return STATUS_NAMES[status];
+	}
+
+	/**
+	 * @return true if the job won't change its status anymore
+	 */
+	public boolean isDone( )
+	{
+		return status >= STATUS_COMPLETE;
+	}
+
+	/**
+	 * Returns the number of pages which are ready for rendering. When the job
+	 * is complete it is the total page count.
+	 *
+	 * @return available page count
+	 */
+	public long getAvailablePages( )
+	{
+		return availablePages;
+	}
+
+	/**
+	 * @return number of pages generated so far
+	 */
+	public long getGeneratedPages( )
+	{
+		return generatedPages;
+	}
+
+	/**
+	 * @return number of rows fetched so far
+	 */
+	public long getFetchedRows( )
+	{
+		return fetchedRows;
+	}
+
+	/**
+	 * @return the time the job finished, or 0 if it is not done
+	 */
+	public long getFinishTime( )
+	{
+		return finishTime;
+	}
+
+	/**
+	 * @return errors raised by the report run
+	 */
+	public synchronized List<Throwable> getErrors( )
+	{
+		return new ArrayList<Throwable>( errors );
+	}
+
+	synchronized void setFuture( Future<?> future )
+	{
+		this.future = future;
+	}
+
+	/**
+	 * Cancels the job. A queued job is removed from the worker queue, a
+	 * running job cancels its run task.
+	 */
+	public void cancel( )
+	{
+		IRunTask task;
+		synchronized ( this )
+		{
+			if ( isDone( ) )
+			{
+				return;
+			}
+			task = runTask;
+			if ( status == STATUS_QUEUED && future != null
+					&& future.cancel( false ) )
+			{
+				task.close( );
+				finish( STATUS_CANCELLED );
+				return;
+			}
+		}
+		if ( task != null )
+		{
+			task.cancel( );
+		}
+	}
+
+	/**
+	 * Runs the report into the document.
+	 */
+	public void run( )
+	{
+		IRunTask task;
+		synchronized ( this )
+		{
+			if ( status != STATUS_QUEUED )
+			{
+				return;
+			}
+			status = STATUS_RUNNING;
+			task = runTask;
+		}
+
+		int endStatus = STATUS_FAILED;
+		try
+		{
+			task.run( documentName );
+			if ( task.getStatus( ) == IRunTask.STATUS_CANCELLED )
+			{
+				endStatus = STATUS_CANCELLED;
+			}
+			else if ( task.getStatus( ) == IRunTask.STATUS_SUCCEEDED )
+			{
+				endStatus = STATUS_COMPLETE;
+				availablePages = Math.max( availablePages, generatedPages );
+			}
+			synchronized ( this )
+			{
+				errors.addAll( task.getErrors( ) );
+			}
+		}
+		catch ( BirtException e )
+		{
+			synchronized ( this )
+			{
+				errors.add( e );
+			}
+		}
+		catch ( RuntimeException e )
+		{
+			synchronized ( this )
+			{
+				errors.add( e );
+			}
+		}
+		finally
+		{
+			task.close( );
+			synchronized ( this )
+			{
+				finish( endStatus );
+			}
+		}
+	}
+
+	/**
+	 * Marks the job as done and releases the run task and the viewing
+	 * session. Must be called with the job lock held.
+	 */
+	private void finish( int endStatus )
+	{
+		status = endStatus;
+		finishTime = System.currentTimeMillis( );
+		runTask = null;
+		if ( viewingSession != null )
+		{
+			viewingSession.unlock( );
+			viewingSession = null;
+		}
+		if ( endStatus != STATUS_COMPLETE )
+		{
+			deleteDocument( );
+		}
+	}
+
+	/**
+	 * Cancels the job and deletes its document, if the job created it.
+	 */
+	void dispose( )
+	{
+		cancel( );
+		if ( isDone( ) )
+		{
+			deleteDocument( );
+		}
+	}
+
+	/**
+	 * Deletes the document, unless it has been named by the user.
+	 */
+	private void deleteDocument( )
+	{
+		if ( temporaryDocument )
+		{
+			new File( documentName ).delete( );
+		}
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.api.IProgressMonitor#onProgress(int,
+	 *      int)
+	 */
+	public void onProgress( int type, int value )
+	{
+		switch ( type )
+		{
+			case END_PAGE :
+				generatedPages = value;
+				break;
+			case FETCH_ROW :
+				fetchedRows++;
+				break;
+		}
+	}
+
+	/**
+	 * @see org.eclipse.birt.report.engine.api.IPageHandler#onPage(int,
+	 *      boolean, org.eclipse.birt.report.engine.api.IReportDocumentInfo)
+	 */
+	public void onPage( int pageNumber, boolean checkpoint,
+			IReportDocumentInfo doc )
+	{
+		if ( checkpoint )
+		{
+			availablePages = pageNumber;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+/*************************************************************************************
+ * Copyright (c) 2004 Actuate Corporation and others.
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the Eclipse Public License v1.0
+ * which accompanies this distribution, and is available at
+ * http://www.eclipse.org/legal/epl-v10.html
+ *
+ * Contributors:
+ *     Actuate Corporation - Initial implementation.
+ ************************************************************************************/
+
+package org.eclipse.birt.report.service.job;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.birt.report.engine.api.IRunTask;
+import org.eclipse.birt.report.session.IViewingSession;
+
+/**
+ * Runs report jobs on a bounded pool of worker threads, so that long report
+ * runs don't hold the servlet threads. Jobs are identified by a random id and
+ * kept until they have been finished for longer than the job timeout.
+ */
+public class ReportJobManager
+{
+
+	private static ReportJobManager instance;
+
+	private final ConcurrentMap<String, ReportJob> jobs = new ConcurrentHashMap<String, ReportJob>( );
+
+	private final ExecutorService executor;
+
+	private final long jobTimeout;
+
+	/**
+	 * Creates a job manager, which is not the shared instance returned by
+	 * {@link #getInstance()}.
+	 *
+	 * @param threads
+	 *            number of worker threads
+	 * @param jobTimeout
+	 *            milliseconds a finished job is kept
+	 */
+	public ReportJobManager( int threads, long jobTimeout )
+	{
+		this.jobTimeout = jobTimeout;
+		this.executor = new ThreadPoolExecutor( threads,
+				threads,
+				0L,
+				TimeUnit.MILLISECONDS,
+				new LinkedBlockingQueue<Runnable>( ),
+				new WorkerThreadFactory( ) );
+	}
+
+	/**
+	 * Initializes the job manager.
+	 *
+	 * @param threads
+	 *            number of worker threads
+	 * @param jobTimeoutMinutes
+	 *            minutes a finished job is kept
+	 */
+	public synchronized static void init( int threads, int jobTimeoutMinutes )
+	{
+		if ( instance == null )
+		{
+			instance = new ReportJobManager( Math.max( 1, threads ),
+					Math.max( 1, jobTimeoutMinutes ) * 60000L );
+		}
+	}
+
+	/**
+	 * @return the job manager, or null if it is not initialized
+	 */
+	public synchronized static ReportJobManager getInstance( )
+	{
+		return instance;
+	}
+
+	/**
+	 * Cancels all jobs and stops the worker threads.
+	 */
+	public synchronized static void shutdown( )
+	{
+		if ( instance != null )
+		{
+			instance.close( );
+			instance = null;
+		}
+	}
+
+	/**
+	 * Cancels all jobs of this manager and stops its worker threads.
+	 */
+	public void close( )
+	{
+		executor.shutdownNow( );
+		Iterator<ReportJob> iter = jobs.values( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			iter.next( ).dispose( );
+		}
+		jobs.clear( );
+	}
+
+	/**
+	 * Submits a report run. The run task must have been configured without
+	 * any reference to the http request, as it runs after the request is
+	 * finished.
+	 *
+	 * @param reportDesignName
+	 *            the report design file name
+	 * @param documentName
+	 *            the report document to generate
+	 * @param temporaryDocument
+	 *            true if the document has been created for the job, so that
+	 *            it is deleted with the job. A document named by the user is
+	 *            never deleted.
+	 * @param owner
+	 *            id of the http session submitting the job, only this
+	 *            session can access the job
+	 * @param runTask
+	 *            the configured run task
+	 * @param viewingSession
+	 *            the viewing session owning the document, it is kept locked
+	 *            until the job is done. May be null.
+	 * @return the submitted job
+	 */
+	public ReportJob submit( String reportDesignName, String documentName,
+			boolean temporaryDocument, String owner, IRunTask runTask,
+			IViewingSession viewingSession )
+	{
+		purgeExpiredJobs( );
+
+		String id = UUID.randomUUID( ).toString( );
+		if ( viewingSession != null )
+		{
+			viewingSession.lock( );
+		}
+		ReportJob job = new ReportJob( id,
+				reportDesignName,
+				documentName,
+				temporaryDocument,
+				owner,
+				runTask,
+				viewingSession );
+		jobs.put( id, job );
+		job.setFuture( executor.submit( job ) );
+		return job;
+	}
+
+	/**
+	 * Returns the job with the given id, if it has been submitted by the given
+	 * session.
+	 *
+	 * @param id
+	 *            job id
+	 * @param owner
+	 *            id of the http session asking for the job
+	 * @return the job, or null if the job doesn't exist, has expired or
+	 *         belongs to another session
+	 */
+	public ReportJob getJob( String id, String owner )
+	{
+		purgeExpiredJobs( );
+
+		if ( id == null )
+		{
+			return null;
+		}
+		ReportJob job = jobs.get( id );
+		if ( job == null || !job.isOwnedBy( owner ) )
+		{
+			return null;
+		}
+		return job;
+	}
+
+	/**
+	 * Cancels the job and discards its temporary document.
+	 *
+	 * @param id
+	 *            job id
+	 * @param owner
+	 *            id of the http session removing the job
+	 * @return the removed job, or null if there is no such job or it belongs
+	 *         to another session
+	 */
+	public ReportJob removeJob( String id, String owner )
+	{
+		ReportJob job = getJob( id, owner );
+		if ( job != null && jobs.remove( id, job ) )
+		{
+			job.dispose( );
+			return job;
+		}
+		return null;
+	}
+
+	/**
+	 * Discards the jobs finished for longer than the job timeout.
+	 */
+	void purgeExpiredJobs( )
+	{
+		long expireTime = System.currentTimeMillis( ) - jobTimeout;
+		Iterator<ReportJob> iter = jobs.values( ).iterator( );
+		while ( iter.hasNext( ) )
+		{
+			ReportJob job = iter.next( );
+			if ( job.isDone( ) && job.getFinishTime( ) < expireTime )
+			{
+				iter.remove( );
+				job.dispose( );
+			}
+		}
+	}
+
+	/**
+	 * Creates daemon worker threads, so that pending jobs never prevent the
+	 * container from stopping.
+	 */
+	private static class WorkerThreadFactory implements ThreadFactory
+	{
+
+		private final AtomicInteger count = new AtomicInteger( );
+
+		public Thread newThread( Runnable r )
+		{
+			Thread thread = new Thread( r, "BIRT Report Job " //$NON-NLS-1$
+					+ count.incrementAndGet( ) );
+			thread.setDaemon( true );
+			return thread;
+		}
+	}
+}
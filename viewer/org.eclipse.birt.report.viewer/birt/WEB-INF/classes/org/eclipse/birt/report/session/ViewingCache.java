@@ -13,11 +13,18 @@ package org.eclipse.birt.report.session;
 
 import java.io.File;
 import java.io.Serializable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.eclipse.birt.report.IBirtConstants;
 
 /**
- * Manager class for the files cached for each session.
+ * Manager class for the files cached for each session. The files of expired
+ * sessions are deleted by a background reaper thread, so that request threads
+ * don't wait for the disk.
  */
 public class ViewingCache implements Serializable
 {
@@ -33,6 +40,16 @@ public class ViewingCache implements Serializable
 	 */
 	private static final String PREFIX_SUB_IMAGE_FOLDER = "BIRTIMG"; //$NON-NLS-1$	
 
+	/**
+	 * Seconds the reaper thread stays alive when there is nothing to delete.
+	 */
+	private static final long REAPER_KEEP_ALIVE = 30;
+
+	/**
+	 * Background executor deleting the cached files of expired sessions.
+	 */
+	private static ThreadPoolExecutor reaper;
+
 	/**
 	 * Document folder to put the report files and created documents.
 	 */
@@ -159,12 +176,59 @@ public class ViewingCache implements Serializable
 		if ( sessionId == null )
 			return;
 
-		deleteDir( documentFolder
+		final String documentDir = documentFolder
 				+ getSessionSubfolder( PREFIX_SUB_DOC_FOLDER, sessionId,
-						subSessionId ) );
-		deleteDir( imageFolder
+						subSessionId );
+		final String imageDir = imageFolder
 				+ getSessionSubfolder( PREFIX_SUB_IMAGE_FOLDER, sessionId,
-						subSessionId ) );
+						subSessionId );
+		Runnable deletion = new Runnable( ) {
+
+			public void run( )
+			{
+				deleteDir( documentDir );
+				deleteDir( imageDir );
+			}
+		};
+
+		try
+		{
+			getReaper( ).execute( deletion );
+		}
+		catch ( RejectedExecutionException e )
+		{
+			deletion.run( );
+		}
+	}
+
+	/**
+	 * Returns the reaper executor. Its single thread terminates when it has
+	 * been idle for a while.
+	 * 
+	 * @return reaper executor
+	 */
+	private static synchronized ThreadPoolExecutor getReaper( )
+	{
+		if ( reaper == null )
+		{
+			reaper = new ThreadPoolExecutor( 1,
+					1,
+					REAPER_KEEP_ALIVE,
+					TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>( ),
+					new ThreadFactory( ) {
+
+						public Thread newThread( Runnable r )
+						{
+							Thread thread = new Thread( r,
+									"BIRT Viewing Cache Reaper" ); //$NON-NLS-1$
+							thread.setDaemon( true );
+							return thread;
+						}
+					} );
+			reaper.allowCoreThreadTimeOut( true );
+		}
+		return reaper;
 	}
 
 	/**
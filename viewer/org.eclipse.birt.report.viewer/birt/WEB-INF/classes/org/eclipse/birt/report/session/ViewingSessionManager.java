@@ -14,8 +14,9 @@ package org.eclipse.birt.report.session;
 import java.io.Serializable;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.servlet.http.HttpSessionBindingEvent;
 import javax.servlet.http.HttpSessionBindingListener;
@@ -41,6 +42,12 @@ import org.eclipse.birt.report.resource.ResourceConstants;
  * minimumSessionCountThreshold, then sessionCountThreshold will take the value
  * of minimumSessionCountThreshold.</li>
  * </ul>
+ * The sessions are kept in a concurrent map, so looking up, creating and
+ * refreshing sessions never contend on a single lock. The LRU order is
+ * approximated from the last access time of each session, the cleanup is done
+ * by one request thread at a time while the others proceed, and the cached
+ * files of the removed sessions are deleted in the background by the
+ * {@link ViewingCache}.
  */
 public class ViewingSessionManager implements IViewingSessionManager, 
 	HttpSessionBindingListener, Serializable
@@ -48,13 +55,18 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	private static final long serialVersionUID = -7623325281275814412L;
 	
 	private ViewingCache viewingCache;
-	private long nextCleanupTime;
+	private volatile long nextCleanupTime;
 
 	/**
-	 * Linked hash map containing the ViewingSession objects in access order.
+	 * Concurrent map containing the ViewingSession objects by id.
 	 */
 	private Map<String, IViewingSession> sessions;
 
+	/**
+	 * Flag set while a thread is cleaning up the expired sessions.
+	 */
+	private AtomicBoolean cleaningUp;
+
 	/**
 	 * HTTP session ID to which the contained BIRT viewing sessions belong.
 	 */
@@ -63,14 +75,14 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	/**
 	 * Expired flag.
 	 */
-	private boolean expired;
+	private volatile boolean expired;
 
 	/**
 	 * Session count threshold after which the cleanup process will be
 	 * triggered. This value will change dynamically according to the number of
 	 * remaining sessions after cleanup.
 	 */
-	private int sessionCountThreshold;
+	private volatile int sessionCountThreshold;
 
 	private ViewingSessionConfig config;
 
@@ -120,12 +132,9 @@ public class ViewingSessionManager implements IViewingSessionManager,
 
 		public void invalidate( )
 		{
-			synchronized ( manager )
-			{
-				session.invalidate( );
-				// remove the session from the map
-				manager.sessions.remove( session.getId( ) );
-			}
+			session.invalidate( );
+			// remove the session from the map
+			manager.sessions.remove( session.getId( ) );
 		}
 
 		public boolean isExpired( )
@@ -174,10 +183,10 @@ public class ViewingSessionManager implements IViewingSessionManager,
 		this.config = config;
 		this.sessionCountThreshold = config.getMinimumSessionCountThreshold( );
 
-		// using LinkedHashMap to keep the insertion order and access time (LRU)
-		this.sessions = new LinkedHashMap<String, IViewingSession>( config
+		this.sessions = new ConcurrentHashMap<String, IViewingSession>( config
 				.getMinimumSessionCountThreshold( ), config
-				.getSessionCountThresholdFactor( ), true );
+				.getSessionCountThresholdFactor( ) );
+		this.cleaningUp = new AtomicBoolean( false );
 		this.expired = false;
 		this.nextCleanupTime = new Date( ).getTime( )
 				+ config.getSessionTimeout( ) * 1000l;
@@ -206,7 +215,7 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	 * @see
 	 * org.eclipse.birt.report.session.IViewingSessionManager#createSession()
 	 */
-	public synchronized IViewingSession createSession( ) throws ViewerException
+	public IViewingSession createSession( ) throws ViewerException
 	{
 		checkExpired( );
 		cleanUp( );
@@ -242,7 +251,7 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	 * org.eclipse.birt.report.session.IViewingSessionManager#getSession(java
 	 * .lang.String)
 	 */
-	public synchronized IViewingSession getSession( String id )
+	public IViewingSession getSession( String id )
 	{
 		checkExpired( );
 
@@ -292,15 +301,12 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	}
 
 	/**
-	 * Refreshes the given session by calling its refresh() method
-	 * and by updating the internal map order.
+	 * Refreshes the given session by calling its refresh() method. The
+	 * updated access time is what orders the sessions for cleanup.
 	 * @param session viewing session
 	 */
-	private synchronized void refreshSession( IViewingSession session )
+	private void refreshSession( IViewingSession session )
 	{
-		// touches the linked hash map to make it move
-		// the entry to the end
-		sessions.get( session.getId() );
 		session.refresh();
 	}
 
@@ -310,31 +316,35 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	 * @param id
 	 *            session id
 	 */
-	public synchronized void removeSession( String id )
+	public void removeSession( String id )
 	{
 		sessions.remove( id );
 	}
 
 	/**
 	 * Requests a cleanup operation. The operation is only performed if the
-	 * session count threshold or the timeout value has been reached.
-	 * 
-	 * @param sessions
-	 *            sessions
+	 * session count threshold or the timeout value has been reached, and no
+	 * other thread is already cleaning up.
 	 */
-	private synchronized void cleanUp( )
+	private void cleanUp( )
 	{
-		long now = new Date( ).getTime( );
-		if ( now >= nextCleanupTime || sessions.size( ) > sessionCountThreshold )
+		long now = System.currentTimeMillis( );
+		if ( now < nextCleanupTime && sessions.size( ) <= sessionCountThreshold )
 		{
-			doCleanup( );
-			if ( sessions.size( ) > 0 )
+			return;
+		}
+		if ( !cleaningUp.compareAndSet( false, true ) )
+		{
+			// another thread is already cleaning up
+			return;
+		}
+		try
+		{
+			long oldestAccess = doCleanup( now );
+			if ( oldestAccess < Long.MAX_VALUE )
 			{
-				// the oldest date is the first entry in the linked hash map
-				IViewingSession oldestSession = sessions.values( ).iterator( )
-						.next( );
-				nextCleanupTime = oldestSession.getLastAccess( ).getTime( )
-						+ config.getSessionTimeout( ) * 1000l;
+				nextCleanupTime = oldestAccess + config.getSessionTimeout( )
+						* 1000l;
 			}
 			else
 			{
@@ -343,12 +353,17 @@ public class ViewingSessionManager implements IViewingSessionManager,
 
 			int minimumThreshold = config.getMinimumSessionCountThreshold( );
 			float factor = config.getSessionCountThresholdFactor( );
-			sessionCountThreshold = sessions.size( )
-					+ (int) ( sessions.size( ) * factor );
-			if ( sessionCountThreshold < minimumThreshold )
+			int remaining = sessions.size( );
+			int threshold = remaining + (int) ( remaining * factor );
+			if ( threshold < minimumThreshold )
 			{
-				sessionCountThreshold = minimumThreshold;
+				threshold = minimumThreshold;
 			}
+			sessionCountThreshold = threshold;
+		}
+		finally
+		{
+			cleaningUp.set( false );
 		}
 	}
 
@@ -356,64 +371,88 @@ public class ViewingSessionManager implements IViewingSessionManager,
 	 * Checks whether there are existing sessions that have expired and clean
 	 * them up accordingly.
 	 * 
-	 * @param sessions
-	 *            sessions
+	 * @param now
+	 *            current time
+	 * @return the last access time of the oldest remaining session, or
+	 *         Long.MAX_VALUE if there is none
 	 */
-	private synchronized void doCleanup( )
+	private long doCleanup( long now )
 	{
-		if ( sessions.size( ) == 0 )
-		{
-			return;
-		}
-		long sessionTimeout = config.getSessionTimeout( ) * 1000l;
-		long currentTime = new java.util.Date( ).getTime( ) - sessionTimeout;
-		for ( Iterator<Map.Entry<String, IViewingSession>> i = sessions
-				.entrySet( ).iterator( ); i.hasNext( ); )
+		long oldestAccess = Long.MAX_VALUE;
+		long expireTime = now - config.getSessionTimeout( ) * 1000l;
+		for ( Iterator<IViewingSession> i = sessions.values( ).iterator( ); i
+				.hasNext( ); )
 		{
-			Map.Entry<String, IViewingSession> entry = i.next( );
-			IViewingSession session = entry.getValue( );
-			Date lastAccess = session.getLastAccess( );
-			if ( currentTime >= lastAccess.getTime( ) && !session.isLocked( ) )
+			IViewingSession session = i.next( );
+			long lastAccess = session.getLastAccess( ).getTime( );
+			if ( expireTime >= lastAccess && !session.isLocked( )
+					&& invalidateQuietly( session ) )
 			{
-				if ( !session.isExpired( ) )
-				{
-					( (ViewingSessionWrapper) session ).getWrappedSession( )
-							.invalidate( );
-				}
 				i.remove( );
 			}
-			else
+			else if ( lastAccess < oldestAccess )
 			{
-				// since the linked hash map is ordered by insertion, the
-				// iteration will stop as soon as the first non-expired session
-				// is met.
-				break;
+				oldestAccess = lastAccess;
 			}
 		}
+		return oldestAccess;
 	}
 
 	/**
-	 * Deletes the oldest session that is not locked regardless whether it is
-	 * has expired or not.
+	 * Deletes the least recently used session that is not locked regardless
+	 * whether it is has expired or not. The session stays in the map if it
+	 * has been locked before it could be invalidated.
+	 * 
+	 * @return true if a session has been deleted
 	 */
 	private boolean deleteOldestSession( )
 	{
-		for ( Iterator<Map.Entry<String, IViewingSession>> i = sessions
-				.entrySet( ).iterator( ); i.hasNext( ); )
+		IViewingSession oldest = null;
+		long oldestAccess = Long.MAX_VALUE;
+		for ( Iterator<IViewingSession> i = sessions.values( ).iterator( ); i
+				.hasNext( ); )
 		{
-			Map.Entry<String, IViewingSession> entry = i.next( );
-			IViewingSession session = entry.getValue( );
-			if ( !session.isLocked( ) )
+			IViewingSession session = i.next( );
+			long lastAccess = session.getLastAccess( ).getTime( );
+			if ( lastAccess < oldestAccess && !session.isLocked( ) )
 			{
-				( (ViewingSessionWrapper) session ).getWrappedSession( )
-						.invalidate( );
-				i.remove( );
-				return true;
+				oldest = session;
+				oldestAccess = lastAccess;
 			}
 		}
+		if ( oldest != null && invalidateQuietly( oldest ) )
+		{
+			sessions.remove( oldest.getId( ) );
+			return true;
+		}
 		return false;
 	}
 
+	/**
+	 * Invalidates the wrapped session, unless it has been locked by another
+	 * thread in the meantime. The caller removes the session from the map
+	 * only if this succeeds, so that sessions in use remain tracked.
+	 * 
+	 * @param session
+	 *            session wrapper
+	 * @return true if the session is invalid now, false if it is still in
+	 *         use
+	 */
+	private boolean invalidateQuietly( IViewingSession session )
+	{
+		IViewingSession wrapped = ( (ViewingSessionWrapper) session )
+				.getWrappedSession( );
+		try
+		{
+			wrapped.invalidate( );
+		}
+		catch ( IllegalStateException e )
+		{
+			// locked, or already invalidated by another thread
+		}
+		return wrapped.isExpired( );
+	}
+
 	/**
 	 * Asserts that the session has not expired.
 	 * 
@@ -324,6 +324,32 @@ public class ParameterAccessor
 	 */
 	public static final String PARAM_CLOSEWIN = "__closewin"; //$NON-NLS-1$
 
+	/**
+	 * URL parameter name that gives the id of an asynchronous report job.
+	 */
+	public static final String PARAM_JOB_ID = "__jobid"; //$NON-NLS-1$
+
+	/**
+	 * URL parameter name that gives the operation on an asynchronous report
+	 * job, see the JOB_OPERATION_* constants.
+	 */
+	public static final String PARAM_JOB_OPERATION = "__jobop"; //$NON-NLS-1$
+
+	/**
+	 * Job operation to query the status of a job. This is the default.
+	 */
+	public static final String JOB_OPERATION_STATUS = "status"; //$NON-NLS-1$
+
+	/**
+	 * Job operation to stream the finished output of a job.
+	 */
+	public static final String JOB_OPERATION_RESULT = "result"; //$NON-NLS-1$
+
+	/**
+	 * Job operation to cancel a queued or running job.
+	 */
+	public static final String JOB_OPERATION_CANCEL = "cancel"; //$NON-NLS-1$
+
 	/**
 	 * Parameter name that gives the result set names of the export data form.
 	 */
@@ -444,6 +470,18 @@ public class ParameterAccessor
 	 */
 	public static final String INIT_PARAM_VIEWER_CUBEMEMSIZE = "BIRT_VIEWER_CUBE_MEMORY_SIZE"; //$NON-NLS-1$
 
+	/**
+	 * Context parameter name that gives the number of worker threads running
+	 * asynchronous report jobs.
+	 */
+	public static final String INIT_PARAM_VIEWER_JOB_THREADS = "BIRT_VIEWER_JOB_THREADS"; //$NON-NLS-1$
+
+	/**
+	 * Context parameter name that gives how long (in minutes) a finished
+	 * asynchronous report job is kept before its document is discarded.
+	 */
+	public static final String INIT_PARAM_VIEWER_JOB_TIMEOUT = "BIRT_VIEWER_JOB_TIMEOUT"; //$NON-NLS-1$
+
 	/**
 	 * Context parameter name that if always overwrite generated document file.
 	 */
@@ -530,6 +568,16 @@ public class ParameterAccessor
 	 */
 	public static int cubeMemorySize;
 
+	/**
+	 * Number of worker threads running asynchronous report jobs
+	 */
+	public static int jobThreads;
+
+	/**
+	 * Minutes a finished asynchronous report job is kept
+	 */
+	public static int jobTimeout;
+
 	/**
 	 * Current web application locale.
 	 */
@@ -1586,6 +1634,27 @@ public class ParameterAccessor
 			cubeMemorySize = 0;
 		}
 
+		// Get asynchronous job settings from ServletContext
+		String s_jobThreads = context.getInitParameter( INIT_PARAM_VIEWER_JOB_THREADS );
+		try
+		{
+			jobThreads = Integer.valueOf( s_jobThreads ).intValue( );
+		}
+		catch ( NumberFormatException e )
+		{
+			jobThreads = Runtime.getRuntime( ).availableProcessors( );
+		}
+
+		String s_jobTimeout = context.getInitParameter( INIT_PARAM_VIEWER_JOB_TIMEOUT );
+		try
+		{
+			jobTimeout = Integer.valueOf( s_jobTimeout ).intValue( );
+		}
+		catch ( NumberFormatException e )
+		{
+			jobTimeout = 30;
+		}
+
 		// default resource path
 		String initResourceFolder = context.getInitParameter( INIT_PARAM_BIRT_RESOURCE_PATH );
 		if ( isDesigner && initResourceFolder == null )
@@ -3059,6 +3128,37 @@ public class ParameterAccessor
 		return false;
 	}
 
+	/**
+	 * Returns the id of the asynchronous report job the request refers to.
+	 * 
+	 * @param request
+	 * @return job id, or null if the request submits a new job
+	 */
+	public static String getJobId( HttpServletRequest request )
+	{
+		String jobId = getParameter( request, PARAM_JOB_ID );
+		if ( jobId == null || jobId.trim( ).length( ) <= 0 )
+			return null;
+
+		return jobId.trim( );
+	}
+
+	/**
+	 * Returns the operation on an asynchronous report job. Defaults to
+	 * querying the job status.
+	 * 
+	 * @param request
+	 * @return job operation
+	 */
+	public static String getJobOperation( HttpServletRequest request )
+	{
+		String op = getParameter( request, PARAM_JOB_OPERATION );
+		if ( op == null || op.trim( ).length( ) <= 0 )
+			return JOB_OPERATION_STATUS;
+
+		return op.trim( );
+	}
+
 	/**
 	 * Returns whether the "encoded paths" flag is set.
 	 * 